@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.thym.android.core.adt;
 
+import java.io.File;
+
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IResource;
@@ -22,7 +24,6 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.thym.android.core.AndroidCore;
 import org.eclipse.thym.core.HybridProject;
-import org.eclipse.thym.core.internal.cordova.CordovaCLI;
 import org.eclipse.thym.core.internal.cordova.ErrorDetectingCLIResult;
 import org.eclipse.thym.core.platform.AbstractNativeBinaryBuildDelegate;
 /**
@@ -32,6 +33,7 @@ import org.eclipse.thym.core.platform.AbstractNativeBinaryBuildDelegate;
  */
 public class BuildDelegate extends AbstractNativeBinaryBuildDelegate {
 
+	private static final String PLATFORM_ANDROID = "android";
 	private static String[] outputFolders = {"android","ant-build", "bin", "build", "outputs","apk"};
 
 	@Override
@@ -51,7 +53,12 @@ public class BuildDelegate extends AbstractNativeBinaryBuildDelegate {
 			if(isRelease()){
 				buildType = "--release";
 			}	
-			IStatus status = CordovaCLI.newCLIforProject(hybridProject).build(sm.newChild(70),"android",buildType).convertTo(ErrorDetectingCLIResult.class).asStatus();
+			File upToDate = getUpToDateArtifact(PLATFORM_ANDROID, buildType);
+			if(upToDate != null){
+				setBuildArtifact(upToDate);
+				return;
+			}
+			IStatus status = newCordovaCLI(hybridProject).build(sm.newChild(70),PLATFORM_ANDROID,buildType).convertTo(ErrorDetectingCLIResult.class).asStatus();
 			this.getProject().refreshLocal(IResource.DEPTH_INFINITE, sm.newChild(20));
 			if(status.getSeverity() == IStatus.ERROR){
 				throw new CoreException(status);
@@ -88,6 +95,7 @@ public class BuildDelegate extends AbstractNativeBinaryBuildDelegate {
         	if(!getBuildArtifact().exists()){
         		throw new CoreException(new Status(IStatus.ERROR, AndroidCore.PLUGIN_ID, "Build failed... Build artifact does not exist"));
         	}
+        	recordBuild(PLATFORM_ANDROID, buildType);
 		}
 		finally{
 			sm.done();
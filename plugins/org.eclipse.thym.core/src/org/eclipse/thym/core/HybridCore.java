@@ -33,6 +33,8 @@ import org.eclipse.thym.core.extensions.CordovaEngineRepoProvider;
 import org.eclipse.thym.core.extensions.ExtensionPointProxy;
 import org.eclipse.thym.core.extensions.NativeProjectBuilder;
 import org.eclipse.thym.core.extensions.PlatformSupport;
+import org.eclipse.thym.core.internal.cordova.CordovaCLISessionPool;
+import org.eclipse.thym.core.internal.util.SharedHttpClient;
 import org.eclipse.thym.core.platform.PlatformConstants;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
@@ -91,6 +93,8 @@ final public class HybridCore implements BundleActivator, DebugOptionsListener {
 			retrievalFactoryTracker.close();
 		}
 		WidgetModel.shutdown();
+		CordovaCLISessionPool.shutdown();
+		SharedHttpClient.shutdown();
 		HybridCore.context = null;
 	}
 	
@@ -38,6 +38,7 @@ import org.eclipse.thym.core.engine.internal.cordova.CordovaEngineProvider;
 import org.eclipse.thym.core.extensions.PlatformSupport;
 import org.eclipse.thym.core.internal.cordova.CordovaCLI;
 import org.eclipse.thym.core.internal.cordova.CordovaCLI.Command;
+import org.eclipse.thym.core.internal.cordova.CordovaCLIFuture;
 import org.eclipse.thym.core.internal.cordova.ErrorDetectingCLIResult;
 import org.eclipse.thym.core.platform.PlatformConstants;
 import org.osgi.framework.Version;
@@ -351,15 +352,23 @@ public class HybridMobileEngineManager {
 								"No engine found in config.xml");
 					}
 					SubMonitor loopMonitor = sm.newChild(70).setWorkRemaining(configEngines.size());
+					// queue all the platform commands at once, the project's CLI session runs them in order
+					List<CordovaCLIFuture> pending = new ArrayList<CordovaCLIFuture>();
 					for (Engine e : configEngines) {
 						String platformSpec = e.getName() + "@" + e.getSpec();
 						if (checkPlatformInstalled(activeEngines, e.getName())) {
-							subStatus = cordova.platform(Command.UPDATE, loopMonitor.newChild(1), platformSpec)
-									.convertTo(ErrorDetectingCLIResult.class).asStatus();
+							pending.add(cordova.platformAsync(Command.UPDATE, platformSpec));
 						} else {
-							subStatus = cordova.platform(Command.ADD, loopMonitor.newChild(1), platformSpec)
-									.convertTo(ErrorDetectingCLIResult.class).asStatus();
+							pending.add(cordova.platformAsync(Command.ADD, platformSpec));
 						}
+					}
+					for (CordovaCLIFuture future : pending) {
+						if(loopMonitor.isCanceled()){
+							future.cancel(true);
+							continue;
+						}
+						subStatus = future.getResult(loopMonitor.newChild(1))
+								.convertTo(ErrorDetectingCLIResult.class).asStatus();
 						status.add(subStatus);
 					}
 				}
@@ -12,7 +12,11 @@ package org.eclipse.thym.core.engine.internal.cordova;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,12 +30,8 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
-import org.eclipse.ecf.filetransfer.IncomingFileTransferException;
-import org.eclipse.ecf.filetransfer.identity.FileCreateException;
-import org.eclipse.ecf.filetransfer.identity.FileIDFactory;
-import org.eclipse.ecf.filetransfer.identity.IFileID;
-import org.eclipse.ecf.filetransfer.service.IRetrieveFileTransfer;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.thym.core.HybridCore;
 import org.eclipse.thym.core.engine.AbstractEngineRepoProvider;
@@ -41,6 +41,9 @@ import org.eclipse.thym.core.engine.HybridMobileEngineLocator.EngineSearchListen
 import org.eclipse.thym.core.engine.HybridMobileLibraryResolver;
 import org.eclipse.thym.core.extensions.CordovaEngineRepoProvider;
 import org.eclipse.thym.core.extensions.PlatformSupport;
+import org.eclipse.thym.core.internal.util.DownloadCoordinator;
+import org.eclipse.thym.core.internal.util.DownloadService;
+import org.eclipse.thym.core.internal.util.UntarOutputStream;
 
 public class CordovaEngineProvider implements HybridMobileEngineLocator, EngineSearchListener {
 	
@@ -51,6 +54,8 @@ public class CordovaEngineProvider implements HybridMobileEngineLocator, EngineS
 	public static final String CUSTOM_CORDOVA_ENGINE_ID = "custom_cordova";
 	
 	private volatile static ArrayList<HybridMobileEngine> engineList;
+	// shared by all the providers, keyed by the download URL
+	private static final DownloadCoordinator<File> engineDownloads = new DownloadCoordinator<File>();
 
 	
 	/**
@@ -154,48 +159,108 @@ public class CordovaEngineProvider implements HybridMobileEngineLocator, EngineS
 	}
 
 
+	/**
+	 * Downloads the engines to the {@link #getLibFolder()}. The archives are
+	 * extracted to a staging folder while they are downloaded, a completed
+	 * engine is moved to its folder so that a failed download does not leave
+	 * a partial engine behind. The received archive is kept until the engine
+	 * is installed so that a failed download is resumed by the next one, and
+	 * it is verified against the shasum of the engine if the repository
+	 * provides one. An engine that is already being downloaded, for instance
+	 * for another project, is not downloaded again, the download in progress
+	 * is waited for.
+	 *
+	 * @param engines
+	 * @param monitor
+	 */
 	public void downloadEngine(DownloadableCordovaEngine[] engines, IProgressMonitor monitor) {
 		if(monitor == null ){
 			monitor = new NullProgressMonitor();
 		}
-		
-		IRetrieveFileTransfer transfer = HybridCore.getDefault().getFileTransferService();
-		IFileID remoteFileID;
-
 		int platformSize = engines.length;
-		Object lock = new Object();
-		int incompleteCount = platformSize;
 		SubMonitor sm = SubMonitor.convert(monitor,platformSize );
-		for (int i = 0; i < platformSize; i++) {
-			sm.setTaskName("Download Cordova Engine "+engines[i].getVersion());
-			try {
-				URI uri = URI.create(engines[i].getDownloadURL());
-				remoteFileID = FileIDFactory.getDefault().createFileID(transfer.getRetrieveNamespace(), uri);
+		List<DownloadCoordinator<File>.Request> requests = new ArrayList<DownloadCoordinator<File>.Request>();
+		try{
+			for (int i = 0; i < platformSize; i++) {
 				if(sm.isCanceled()){
-					return;
+					break;
 				}
-				transfer.sendRetrieveRequest(remoteFileID, new EngineDownloadReceiver(engines[i].getVersion(), engines[i].getPlatformId(), lock, sm), null);
-			
-			} catch (FileCreateException e) {
-				HybridCore.log(IStatus.ERROR, "Engine download file create error", e);
-			} catch (IncomingFileTransferException e) {
-				HybridCore.log(IStatus.ERROR, "Engine download file transfer error", e);
+				final DownloadableCordovaEngine engine = engines[i];
+				requests.add(engineDownloads.submit(engine.getDownloadURL(), new DownloadCoordinator.Task<File>() {
+					@Override
+					public File run(IProgressMonitor monitor) throws CoreException {
+						return fetchEngine(engine, monitor);
+					}
+				}));
 			}
-		}
-		synchronized (lock) {
-			while(incompleteCount >0){
+			for (int i = 0; i < requests.size(); i++) {
+				sm.setTaskName("Download Cordova Engine "+engines[i].getVersion());
 				try {
-					lock.wait();
-				} catch (InterruptedException e) {
-					HybridCore.log(IStatus.INFO, "interrupted while waiting for all engines to download", e);
+					requests.get(i).get(sm.newChild(1));
+				} catch (CoreException e) {
+					if(e.getStatus().getSeverity() != IStatus.CANCEL){
+						HybridCore.log(IStatus.ERROR, "Engine download error", e);
+					}
 				}
-				incompleteCount--;
-				sm.worked(1);
 			}
+		}finally{
+			for (DownloadCoordinator<File>.Request request : requests) {
+				request.release();
+			}
+			resetEngineList();
 		}
-		resetEngineList();
 	}
-	
+
+	private File fetchEngine(DownloadableCordovaEngine engine, IProgressMonitor monitor) throws CoreException{
+		URI uri;
+		try {
+			uri = URI.create(engine.getDownloadURL());
+		} catch (IllegalArgumentException e) {
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+					NLS.bind("Invalid engine download URL {0}", engine.getDownloadURL()), e));
+		}
+		File staging = new File(getLibFolder().toFile(), "tmp");
+		String name = engine.getPlatformId()+"_"+engine.getVersion();
+		File stagingDir = new File(staging, name+"_"+System.nanoTime());
+		UntarOutputStream stream = new UntarOutputStream(stagingDir);
+		try{
+			DownloadService.Download download = DownloadService.create().download(uri, stream, new File(staging, name+".tgz.part"));
+			download.get(monitor);
+			String shasum = engine.getShasum();
+			if(shasum != null && !shasum.equalsIgnoreCase(download.getShasum())){
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+						NLS.bind("Downloaded engine {0} is corrupt, its shasum is {1} instead of {2}",
+								new Object[]{engine.getDownloadURL(), download.getShasum(), shasum})));
+			}
+			return installEngine(stagingDir, engine);
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Error while saving downloaded engine", e));
+		}finally{
+			stream.abort();
+			FileUtils.deleteQuietly(stagingDir);
+		}
+	}
+
+	private File installEngine(File stagingDir, DownloadableCordovaEngine engine) throws IOException{
+		File folder = new File(getLibFolder().toFile(),engine.getPlatformId()+"/"+CORDOVA_ENGINE_ID+"/"+engine.getVersion());
+		File root = stagingDir;
+		File[] files = stagingDir.listFiles();
+		// engine archives have their files in a single top level directory
+		if(files != null && files.length == 1 && files[0].isDirectory()){
+			root = files[0];
+		}
+		if(folder.exists()){
+			FileUtils.deleteDirectory(folder);
+		}
+		folder.getParentFile().mkdirs();
+		try{
+			Files.move(root.toPath(), folder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}catch(AtomicMoveNotSupportedException e){
+			Files.move(root.toPath(), folder.toPath());
+		}
+		return folder;
+	}
+
 	/**
 	 * Check if the platform is supported by this provider.
 	 * 
@@ -15,6 +15,7 @@ public class DownloadableCordovaEngine {
 	private String platformId;
 	private String downloadURL;
 	private String version;
+	private String shasum;
 	
 	public String getVersion() {
 		return version;
@@ -34,5 +35,14 @@ public class DownloadableCordovaEngine {
 	public void setDownloadURL(String downloadURI) {
 		this.downloadURL = downloadURI;
 	}
+	/**
+	 * @return SHA-1 of the download or null if it is not known
+	 */
+	public String getShasum() {
+		return shasum;
+	}
+	public void setShasum(String shasum) {
+		this.shasum = shasum;
+	}
 	
 }
@@ -13,24 +13,15 @@ package org.eclipse.thym.core.engine.internal.cordova;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.Socket;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import javax.net.SocketFactory;
-import javax.net.ssl.SSLContext;
-
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.params.HttpParams;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -38,7 +29,7 @@ import org.eclipse.osgi.util.NLS;
 import org.eclipse.thym.core.HybridCore;
 import org.eclipse.thym.core.engine.AbstractEngineRepoProvider;
 import org.eclipse.thym.core.extensions.PlatformSupport;
-import org.eclipse.thym.core.internal.util.HttpUtil;
+import org.eclipse.thym.core.internal.util.SharedHttpClient;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -50,30 +41,10 @@ public class NpmBasedEngineRepoProvider extends AbstractEngineRepoProvider{
 	private static final String NPM_URL ="https://registry.npmjs.org/cordova-{0}";
 	
 	private InputStream getRemoteJSonStream(String url) throws IOException{
-		try {
-			// SSLSocketFactory to patch HTTPClient's that are earlier than 4.3.2
-			// to enable SNI support.
-			SSLSocketFactory factory = new SSLSocketFactory(SSLContext.getDefault()){
-				@Override
-				public Socket createSocket() throws IOException {
-					return SocketFactory.getDefault().createSocket();
-				}
-				@Override
-				public Socket createSocket(HttpParams params) throws IOException {
-					return SocketFactory.getDefault().createSocket();
-				}
-			};
-			DefaultHttpClient client = new DefaultHttpClient();
-			HttpUtil.setupProxy(client);
-			client.getConnectionManager().getSchemeRegistry().register(new Scheme("https", 443, factory));
-			HttpGet get = new HttpGet(url);
-			HttpResponse response = client.execute(get);
-			HttpEntity entity = response.getEntity();
-			return entity.getContent();
-		} catch (NoSuchAlgorithmException e) {
-			HybridCore.log(IStatus.ERROR, "Error creating the SSL Factory ", e);
-		}
-		return null;
+		HttpGet get = new HttpGet(url);
+		HttpResponse response = SharedHttpClient.getClient().execute(get);
+		HttpEntity entity = response.getEntity();
+		return entity.getContent();
 	}
 	
 	@Override
@@ -121,6 +92,9 @@ public class NpmBasedEngineRepoProvider extends AbstractEngineRepoProvider{
 				engine.setPlatformId(platformId);
 				JsonObject dist = v.get("dist").getAsJsonObject();
 				engine.setDownloadURL(dist.get("tarball").getAsString());
+				if(dist.has("shasum")){
+					engine.setShasum(dist.get("shasum").getAsString());
+				}
 				engines.add(engine);
 			}
 		} finally {
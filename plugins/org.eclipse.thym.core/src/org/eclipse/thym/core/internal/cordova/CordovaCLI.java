@@ -12,10 +12,12 @@
 package org.eclipse.thym.core.internal.cordova;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -25,7 +27,6 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
 import org.eclipse.debug.core.DebugPlugin;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.ILaunchConfigurationType;
@@ -33,7 +34,7 @@ import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
 import org.eclipse.debug.core.ILaunchManager;
 import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.model.IProcess;
-import org.eclipse.debug.core.model.IStreamsProxy;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.thym.core.HybridCore;
 import org.eclipse.thym.core.HybridProject;
 import org.eclipse.thym.core.internal.util.ExternalProcessUtility;
@@ -49,6 +50,10 @@ import org.eclipse.thym.core.internal.util.ExternalProcessUtility;
 public class CordovaCLI {
 
 	public static final String OPTION_SAVE = "--save";
+	/**
+	 * System property to enable running cordova without a login shell
+	 */
+	public static final String SYSPROP_DIRECT_EXECUTION = "org.eclipse.thym.core.cli.direct";
 	private static final String P_COMMAND_PLUGIN = "plugin";
 	private static final String P_COMMAND_PLATFORM = "platform";
 	private static final String P_COMMAND_PREPARE = "prepare";
@@ -56,6 +61,16 @@ public class CordovaCLI {
 	private static final String P_COMMAND_RUN = "run";
 	private static final String P_COMMAND_BUILD = "build";
 	
+	private static final int MAX_LAUNCH_CONFIGURATIONS = 32;
+	//In memory launch configurations for CLI processes, keyed by label
+	private static final Map<String, ILaunchConfiguration> launchConfigurations = new LinkedHashMap<String, ILaunchConfiguration>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ILaunchConfiguration> eldest) {
+			return size() > MAX_LAUNCH_CONFIGURATIONS;
+		}
+	};
 	//Store locks for the projects.
 	private static Map<String, Lock> projectLock = Collections.synchronizedMap(new HashMap<String,Lock>());
 	private HybridProject project;
@@ -73,7 +88,67 @@ public class CordovaCLI {
 			return cliCommand;
 		}
 	}
-	
+
+	/**
+	 * A command that waits in the {@link CordovaCLICommandQueue} to be
+	 * submitted to the shell session of the project. The session is looked
+	 * up when the command starts, the one that was there when the command
+	 * was queued may be closed since. The future follows the one of the
+	 * session once submitted.
+	 */
+	private class ShellCommand implements Runnable {
+		private final String command;
+		private final IProgressMonitor monitor;
+		private final CordovaCLIFuture future = new CordovaCLIFuture(new CordovaCLIStreamListener());
+		private CordovaCLIFuture submitted;
+
+		private ShellCommand(String command, IProgressMonitor monitor){
+			this.command = command;
+			this.monitor = monitor;
+		}
+
+		@Override
+		public void run() {
+			if(future.isDone()){
+				// cancelled while waiting
+				return;
+			}
+			CordovaCLISession session = null;
+			Lock lock = projectLock();
+			lock.lock();
+			try{
+				session = getSession(monitor);
+			}catch(CoreException e){
+				future.fail(e);
+				return;
+			}finally{
+				lock.unlock();
+			}
+			if(session == null ){// canceled before the shell is started
+				future.complete(new CordovaCLIResult(""), -1);
+				return;
+			}
+			CordovaCLIFuture f = session.submit(command);
+			synchronized (this) {
+				submitted = f;
+			}
+			if(future.isCancelled()){
+				f.cancel(true);
+			}
+			future.completeWith(f);
+		}
+
+		private void cancel(){
+			CordovaCLIFuture f = null;
+			synchronized (this) {
+				f = submitted;
+			}
+			if(f != null){
+				f.cancel(true);
+			}
+		}
+	}
+
 	/**
 	 * Initialize a CLI for a {@link HybridProject}.
 	 * 
@@ -92,119 +167,252 @@ public class CordovaCLI {
 	}
 	
 	public CordovaCLIResult build (final IProgressMonitor monitor, final String...options )throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("cordova build"));
-		String cordovaCommand = generateCordovaCommand(P_COMMAND_BUILD, null, options);
-		sendCordovaCommand(process, cordovaCommand, monitor);
-		CordovaCLIResult result = new CordovaCLIResult(streamListener.getMessage());
-		return result;
+		return submitCommand(generateCordovaArguments(P_COMMAND_BUILD, null, options), monitor).getResult(monitor);
+	}
+	
+	/**
+	 * Asynchronous version of {@link #build(IProgressMonitor, String...)}
+	 * 
+	 * @param options
+	 * @return future for the result of the command
+	 * @throws CoreException
+	 */
+	public CordovaCLIFuture buildAsync (final String...options )throws CoreException{
+		return submitCommand(generateCordovaArguments(P_COMMAND_BUILD, null, options), null);
 	}
 	
+	/**
+	 * Runs <i>cordova prepare</i>. Identical prepare requests for the project that 
+	 * are made while one is waiting to run are merged, see {@link CordovaCLIScheduler}.
+	 * 
+	 * @param monitor
+	 * @param options
+	 * @return result
+	 * @throws CoreException
+	 */
 	public CordovaCLIResult prepare (final IProgressMonitor monitor, final String...options )throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("cordova prepare "));
-		String cordovaCommand = generateCordovaCommand(P_COMMAND_PREPARE, null, options);
-		sendCordovaCommand(process, cordovaCommand, monitor);
-		CordovaCLIResult result =  new CordovaCLIResult(streamListener.getMessage());
-		return result;
+		return schedulePrepare(options).getResult(monitor);
+	}
+	
+	/**
+	 * Asynchronous version of {@link #prepare(IProgressMonitor, String...)}
+	 * 
+	 * @param options
+	 * @return future for the result of the command
+	 * @throws CoreException
+	 */
+	public CordovaCLIFuture prepareAsync (final String...options )throws CoreException{
+		return schedulePrepare(options);
+	}
+	
+	private CordovaCLIFuture schedulePrepare(final String... options){
+		final List<String> arguments = generateCordovaArguments(P_COMMAND_PREPARE, null, options);
+		return CordovaCLIScheduler.getScheduler(getSessionKey()).schedule(generateCordovaCommand(arguments), 
+				new CordovaCLIScheduler.CommandSubmitter() {
+					@Override
+					public CordovaCLIFuture submit() throws CoreException {
+						return submitCommand(arguments, null);
+					}
+				});
 	}
 	
 	public CordovaCLIResult emulate (final IProgressMonitor monitor, final String...options )throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("cordova run --emulator"));
-		String cordovaCommand = generateCordovaCommand(P_COMMAND_EMULATE, null, options);
-		sendCordovaCommand(process, cordovaCommand, monitor);
-		CordovaCLIResult result =  new CordovaCLIResult(streamListener.getMessage());
-		return result;
+		return submitCommand(generateCordovaArguments(P_COMMAND_EMULATE, null, options), monitor).getResult(monitor);
+	}
+	
+	/**
+	 * Asynchronous version of {@link #emulate(IProgressMonitor, String...)}
+	 * 
+	 * @param options
+	 * @return future for the result of the command
+	 * @throws CoreException
+	 */
+	public CordovaCLIFuture emulateAsync (final String...options )throws CoreException{
+		return submitCommand(generateCordovaArguments(P_COMMAND_EMULATE, null, options), null);
 	}
 	
 	public CordovaCLIResult run (final IProgressMonitor monitor, final String...options )throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("cordova run"));
-		String cordovaCommand = generateCordovaCommand(P_COMMAND_RUN, null, options);
-		sendCordovaCommand(process, cordovaCommand, monitor);
-		CordovaCLIResult result =  new CordovaCLIResult(streamListener.getMessage());
-		return result;
+		return submitCommand(generateCordovaArguments(P_COMMAND_RUN, null, options), monitor).getResult(monitor);
+	}
+	
+	/**
+	 * Asynchronous version of {@link #run(IProgressMonitor, String...)}
+	 * 
+	 * @param options
+	 * @return future for the result of the command
+	 * @throws CoreException
+	 */
+	public CordovaCLIFuture runAsync (final String...options )throws CoreException{
+		return submitCommand(generateCordovaArguments(P_COMMAND_RUN, null, options), null);
 	}
 	
 	public CordovaCLIResult platform (final Command command, final IProgressMonitor monitor, final String... options ) throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("cordova platform "+ command.getCliCommand()));
-		String cordovaCommand = generateCordovaCommand(P_COMMAND_PLATFORM, command, options);
-		sendCordovaCommand(process, cordovaCommand, monitor);
-		CordovaCLIResult result = new CordovaCLIResult(streamListener.getMessage());
-		return result;
+		return submitCommand(generateCordovaArguments(P_COMMAND_PLATFORM, command, options), monitor).getResult(monitor);
+	}
+	
+	/**
+	 * Asynchronous version of {@link #platform(Command, IProgressMonitor, String...)}
+	 * 
+	 * @param command
+	 * @param options
+	 * @return future for the result of the command
+	 * @throws CoreException
+	 */
+	public CordovaCLIFuture platformAsync (final Command command, final String... options ) throws CoreException{
+		return submitCommand(generateCordovaArguments(P_COMMAND_PLATFORM, command, options), null);
 	}
 	
 	public CordovaCLIResult plugin(final Command command, final IProgressMonitor monitor, final String... options) throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("cordova plugin "+ command.getCliCommand()));
-		String cordovaCommand = generateCordovaCommand(P_COMMAND_PLUGIN,command, options);
-		sendCordovaCommand(process, cordovaCommand, monitor);
-		CordovaCLIResult result = new CordovaCLIResult(streamListener.getMessage());
-		return result;
+		return submitCommand(generateCordovaArguments(P_COMMAND_PLUGIN,command, options), monitor).getResult(monitor);
+	}
+	
+	/**
+	 * Asynchronous version of {@link #plugin(Command, IProgressMonitor, String...)}
+	 * 
+	 * @param command
+	 * @param options
+	 * @return future for the result of the command
+	 * @throws CoreException
+	 */
+	public CordovaCLIFuture pluginAsync(final Command command, final String... options) throws CoreException{
+		return submitCommand(generateCordovaArguments(P_COMMAND_PLUGIN,command, options), null);
 	}
 	
 	public CordovaCLIResult version(final IProgressMonitor monitor) throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("cordova -version"));
-		String cordovaCommand = generateCordovaCommand(null, null, "-version");
-		sendCordovaCommand(process, cordovaCommand, monitor);
-		CordovaCLIResult result = new CordovaCLIResult(streamListener.getMessage());
-		return result;		
+		return submitCommand(generateCordovaArguments(null, null, "-version"), monitor).getResult(monitor);
 	}
 	
 	public CordovaCLIResult nodeVersion(final IProgressMonitor monitor) throws CoreException{
-		final CordovaCLIStreamListener streamListener = new CordovaCLIStreamListener();
-		IProcess process = startShell(streamListener, monitor, getLaunchConfiguration("node -v"));
-		String command = "node -v\n";
-		sendCordovaCommand(process, command, monitor);
-		CordovaCLIResult result= new CordovaCLIResult(streamListener.getMessage());
-		return result;
+		return submitCommand(Arrays.asList("node", "-v"), monitor).getResult(monitor);
 	}
 
-	private void sendCordovaCommand(final IProcess process, final String cordovaCommand,
-			final IProgressMonitor monitor) throws CoreException {
+	/**
+	 * Queues the command to run on the shell session of the project, or 
+	 * directly if direct execution is enabled. The commands of a project run
+	 * in the order they are queued, also when some of them fall back to the 
+	 * shell, see {@link CordovaCLICommandQueue}. The per project lock is only 
+	 * held while the command is queued.
+	 */
+	private CordovaCLIFuture submitCommand(final List<String> arguments, final IProgressMonitor monitor) throws CoreException {
+		final String cordovaCommand = generateCordovaCommand(arguments);
+		CordovaCLIFuture future = null;
 		Lock lock = projectLock();
 		lock.lock();
 		try {
-			final IStreamsProxy streamProxy = process.getStreamsProxy();
-			streamProxy.write(cordovaCommand.toString());
-			while (!process.isTerminated()) {
-				//exit the shell after sending the command
-				streamProxy.write("exit\n");
-				if (monitor.isCanceled()) {
-					process.terminate();
-					break;
-				}
-				Thread.sleep(50);
+			if(isDirectExecution()){
+				future = submitDirectCommand(arguments);
+			}
+			if(future == null ){
+				future = submitShellCommand(cordovaCommand, monitor);
 			}
-		} catch (IOException e) {
-			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Fatal error invoking cordova CLI", e));
-		} catch (InterruptedException e) {
-			HybridCore.log(IStatus.INFO, "Exception waiting for process to terminate", e);
 		}
 		finally{
 			lock.unlock();
 		}
+		future.addListener(new CordovaCLIFuture.Listener() {
+			@Override
+			public void commandCompleted(CordovaCLIFuture f) {
+				HybridCore.trace(NLS.bind("Command {0} exited with code {1}", cordovaCommand.trim(), f.getExitCode()));
+			}
+		});
+		return future;
 	}
 	
-	private String generateCordovaCommand(final String command, final Command subCommand, final String... options) {
-		StringBuilder builder = new StringBuilder();
-		builder.append("cordova");
+	/**
+	 * Submits the command to the shell session once the previously queued 
+	 * commands of the project are completed.
+	 */
+	private CordovaCLIFuture submitShellCommand(String cordovaCommand, IProgressMonitor monitor){
+		final ShellCommand command = new ShellCommand(cordovaCommand, monitor);
+		command.future.setCancelHandler(new Runnable() {
+			@Override
+			public void run() {
+				command.cancel();
+			}
+		});
+		CordovaCLICommandQueue.enqueue(getSessionKey(), command.future, command);
+		return command.future;
+	}
+	
+	/**
+	 * Runs the executable directly with the cached login shell environment.
+	 * Returns null if the command should fall back to the shell, either because 
+	 * the environment can not be captured or the executable is not on the PATH, 
+	 * so that the shell can report the problem. 
+	 */
+	private CordovaCLIFuture submitDirectCommand(final List<String> arguments){
+		Map<String, String> env = null;
+		try {
+			env = LoginShellEnvironment.getEnvironment();
+		} catch (CoreException e) {
+			HybridCore.log(IStatus.WARNING, "Falling back to shell execution for Cordova CLI", e);
+			return null;
+		}
+		File executable = LoginShellEnvironment.findExecutable(arguments.get(0), env);
+		if(executable == null ){
+			return null;
+		}
+		String[] command = arguments.toArray(new String[arguments.size()]);
+		command[0] = executable.getAbsolutePath();
+		return CordovaCLIDirectCommand.submit(getSessionKey(), command, getWorkingDirectory(), 
+				LoginShellEnvironment.toEnvp(env), getLaunchConfiguration(generateCordovaCommand(arguments).trim()));
+	}
+	
+	/**
+	 * Direct execution runs cordova and node without a login shell using 
+	 * the environment that is captured from the login shell once. It is 
+	 * enabled with the <i>org.eclipse.thym.core.cli.direct</i> system property 
+	 * and is not available on Windows. 
+	 */
+	private boolean isDirectExecution(){
+		return !isWindows() && Boolean.getBoolean(SYSPROP_DIRECT_EXECUTION);
+	}
+	
+	private CordovaCLISession getSession(final IProgressMonitor monitor) throws CoreException{
+		final String key = getSessionKey();
+		final File workingDirectory = getWorkingDirectory();
+		CordovaCLISession session = CordovaCLISessionPool.getSession(key);
+		if(session != null && (workingDirectory == null || workingDirectory.equals(session.getWorkingDirectory()))){
+			return session;
+		}
+		session = new CordovaCLISession(workingDirectory, isWindows());
+		IProcess process = startShell(session, monitor, getLaunchConfiguration("cordova - " + key));
+		if(process == null ){
+			return null;
+		}
+		session.attach(process);
+		CordovaCLISessionPool.putSession(key, session);
+		return session;
+	}
+	
+	private String getSessionKey(){
+		return project.getProject().getName();
+	}
+	
+	private List<String> generateCordovaArguments(final String command, final Command subCommand, final String... options) {
+		List<String> arguments = new ArrayList<String>();
+		arguments.add("cordova");
 		if(command != null){
-			builder.append(" ");
-			builder.append(command);
+			arguments.addAll(Arrays.asList(command.split(" ")));
 		}
 		if(subCommand != null){
-			builder.append(" ");
-			builder.append(subCommand.getCliCommand() );
+			arguments.add(subCommand.getCliCommand());
 		}
 		for (String string : options) {
 			if(!string.isEmpty()){
+				arguments.add(string);
+			}
+		}
+		return arguments;
+	}
+	
+	private String generateCordovaCommand(final List<String> arguments) {
+		StringBuilder builder = new StringBuilder();
+		for (String string : arguments) {
+			if(builder.length() > 0){
 				builder.append(" ");
-				builder.append(string);
 			}
+			builder.append(string);
 		}
 		builder.append("\n");
 		return builder.toString();
@@ -216,6 +424,7 @@ public class CordovaCLI {
 		ArrayList<String> commandList = new ArrayList<String>();
 		if(isWindows()){
 			commandList.add("cmd");
+			commandList.add("/Q");
 		}else{
 			commandList.add("/bin/bash");
 			commandList.add("-l");
@@ -223,7 +432,7 @@ public class CordovaCLI {
 		ExternalProcessUtility ep = new ExternalProcessUtility();
 		IProcess process = ep.exec(commandList.toArray(new String[commandList.size()]), getWorkingDirectory(), 
 				monitor, null, launchConfiguration);
-		 if(listener != null){
+		 if(listener != null && process != null){
 			 process.getStreamsProxy().getOutputStreamMonitor().addListener(listener);
 			 process.getStreamsProxy().getErrorStreamMonitor().addListener(listener);
 		 }
@@ -235,30 +444,45 @@ public class CordovaCLI {
 		return OS.toLowerCase().indexOf("win")>-1;
 	}
 	
+	/**
+	 * Returns a launch configuration for the internal CLI processes. The launch 
+	 * configurations are never saved to avoid creating a .launch file and 
+	 * firing launch configuration change events for every command. One 
+	 * configuration is reused per label. 
+	 */
 	private ILaunchConfiguration getLaunchConfiguration(String label){
+		synchronized (launchConfigurations) {
+			ILaunchConfiguration cfg = launchConfigurations.get(label);
+			if(cfg != null ){
+				return cfg;
+			}
+		}
 		ILaunchManager manager = DebugPlugin.getDefault().getLaunchManager();
 		ILaunchConfigurationType type = manager.getLaunchConfigurationType(IExternalToolConstants.ID_PROGRAM_LAUNCH_CONFIGURATION_TYPE);
 		try {
-			ILaunchConfiguration cfg = type.newInstance(null, "cordova");
-			ILaunchConfigurationWorkingCopy wc = cfg.getWorkingCopy();
+			ILaunchConfigurationWorkingCopy wc = type.newInstance(null, "cordova");
 			wc.setAttribute(IProcess.ATTR_PROCESS_LABEL, label);
-			cfg = wc.doSave();
-			return cfg;
+			synchronized (launchConfigurations) {
+				launchConfigurations.put(label, wc);
+			}
+			return wc;
 		} catch (CoreException e) {
-			e.printStackTrace();
+			HybridCore.log(IStatus.WARNING, "Unable to create launch configuration for Cordova CLI", e);
 		}
 		return null;
 	}
 	
 	private Lock projectLock(){
-		final String projectName = project.getProject().getName();
-		Lock l = projectLock.get(project.getProject().getName());
-		if(l == null){
-			// Use reentrant locks
-			l = new ReentrantLock();
-			projectLock.put(projectName, l);
+		final String key = getSessionKey();
+		synchronized (projectLock) {
+			Lock l = projectLock.get(key);
+			if(l == null){
+				// Use reentrant locks
+				l = new ReentrantLock();
+				projectLock.put(key, l);
+			}
+			return l;
 		}
-		return l;
 	}
 	
 	private File getWorkingDirectory(){
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Runs the Cordova CLI commands of a project one after the other, whether
+ * they are executed directly or on the shell session of the project. A
+ * command that is queued behind another one is started on a job when the
+ * previous command is completed, not on the thread that completes it.
+ */
+final class CordovaCLICommandQueue {
+
+	//Last queued command for each key
+	private static final Map<String, CordovaCLIFuture> lastCommands = new HashMap<String, CordovaCLIFuture>();
+
+	private CordovaCLICommandQueue(){
+		//no instances
+	}
+
+	/**
+	 * Starts the command after the previously queued commands for the key
+	 * are completed. The command is started on the calling thread if no
+	 * other command for the key is pending.
+	 *
+	 * @param key
+	 * @param future future of the command, completed when the command is done
+	 * @param start starts the command, must not block
+	 */
+	static void enqueue(final String key, CordovaCLIFuture future, final Runnable start){
+		CordovaCLIFuture previous = null;
+		synchronized (lastCommands) {
+			previous = lastCommands.put(key, future);
+		}
+		future.addListener(new CordovaCLIFuture.Listener() {
+			@Override
+			public void commandCompleted(CordovaCLIFuture f) {
+				synchronized (lastCommands) {
+					if(lastCommands.get(key) == f){
+						lastCommands.remove(key);
+					}
+				}
+			}
+		});
+		if(previous == null){
+			start.run();
+			return;
+		}
+		previous.addListener(new CordovaCLIFuture.Listener() {
+			@Override
+			public void commandCompleted(CordovaCLIFuture f) {
+				Job job = new Job("Start Cordova CLI command") {
+					@Override
+					protected IStatus run(IProgressMonitor monitor) {
+						start.run();
+						return Status.OK_STATUS;
+					}
+				};
+				job.setSystem(true);
+				job.schedule();
+			}
+		});
+	}
+
+}
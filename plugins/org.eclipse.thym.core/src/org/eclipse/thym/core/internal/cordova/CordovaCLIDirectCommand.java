@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.IDebugEventSetListener;
+import org.eclipse.debug.core.ILaunchConfiguration;
+import org.eclipse.debug.core.model.IProcess;
+import org.eclipse.debug.core.model.IStreamMonitor;
+import org.eclipse.thym.core.HybridCore;
+import org.eclipse.thym.core.internal.util.ExternalProcessUtility;
+
+/**
+ * Runs a single Cordova CLI command as its own process, without a shell,
+ * using the environment captured by {@link LoginShellEnvironment}.
+ * Commands for the same key run one after the other, see
+ * {@link CordovaCLICommandQueue}. The command is completed when the
+ * process terminates.
+ */
+class CordovaCLIDirectCommand implements IDebugEventSetListener {
+
+	//Log file for each key, reused by the commands of the key
+	private static final Map<String, File> logFiles = new HashMap<String, File>();
+
+	private final String[] command;
+	private final File workingDirectory;
+	private final String[] envp;
+	private final ILaunchConfiguration launchConfiguration;
+	private final CordovaCLIStreamListener output;
+	private final CordovaCLIFuture future;
+	private IProcess process;
+	private boolean cancelled;
+
+	private CordovaCLIDirectCommand(String[] command, File workingDirectory, String[] envp, ILaunchConfiguration launchConfiguration,
+			File logFile){
+		this.command = command;
+		this.workingDirectory = workingDirectory;
+		this.envp = envp;
+		this.launchConfiguration = launchConfiguration;
+		this.output = new CordovaCLIStreamListener(logFile);
+		this.future = new CordovaCLIFuture(output);
+	}
+
+	/**
+	 * Runs the command after the previously queued commands for the key
+	 * are completed.
+	 *
+	 * @param key
+	 * @param command the executable followed by the arguments
+	 * @param workingDirectory
+	 * @param envp
+	 * @param launchConfiguration
+	 * @return future for the result
+	 */
+	static CordovaCLIFuture submit(String key, String[] command, File workingDirectory, String[] envp,
+			ILaunchConfiguration launchConfiguration){
+		final CordovaCLIDirectCommand directCommand = new CordovaCLIDirectCommand(command, workingDirectory, envp, launchConfiguration,
+				getLogFile(key));
+		directCommand.future.setCancelHandler(new Runnable() {
+			@Override
+			public void run() {
+				directCommand.cancel();
+			}
+		});
+		CordovaCLICommandQueue.enqueue(key, directCommand.future, new Runnable() {
+			@Override
+			public void run() {
+				directCommand.start();
+			}
+		});
+		return directCommand.future;
+	}
+
+	private static File getLogFile(String key){
+		synchronized (logFiles) {
+			File logFile = logFiles.get(key);
+			if(logFile == null){
+				logFile = CordovaCLIStreamListener.createLogFile();
+				if(logFile == null){
+					return null;
+				}
+				logFile.deleteOnExit();
+				logFiles.put(key, logFile);
+			}
+			return logFile;
+		}
+	}
+
+	private void start(){
+		synchronized (this) {
+			if(cancelled){
+				return;
+			}
+		}
+		HybridCore.trace("Direct execute cordova command: " + Arrays.toString(command));
+		try{
+			DebugPlugin.getDefault().addDebugEventListener(this);
+			ExternalProcessUtility ep = new ExternalProcessUtility();
+			IProcess p = ep.exec(command, workingDirectory, null, envp, launchConfiguration);
+			synchronized (this) {
+				process = p;
+			}
+			attachListener(p.getStreamsProxy().getOutputStreamMonitor());
+			attachListener(p.getStreamsProxy().getErrorStreamMonitor());
+			if(p.isTerminated()){
+				processTerminated();
+			}
+		}catch(CoreException e){
+			DebugPlugin.getDefault().removeDebugEventListener(this);
+			future.fail(e);
+		}
+	}
+
+	private void attachListener(IStreamMonitor monitor){
+		if(monitor == null ) return;
+		// Pick up anything that is written before the listener is added
+		synchronized (monitor) {
+			String contents = monitor.getContents();
+			if(contents != null && !contents.isEmpty()){
+				output.streamAppended(contents, monitor);
+			}
+			monitor.addListener(output);
+		}
+	}
+
+	private void cancel(){
+		IProcess p = null;
+		synchronized (this) {
+			cancelled = true;
+			p = process;
+		}
+		if(p != null && !p.isTerminated()){
+			try {
+				p.terminate();
+			} catch (DebugException e) {
+				HybridCore.log(IStatus.WARNING, "Unable to terminate cordova process", e);
+			}
+		}
+	}
+
+	@Override
+	public void handleDebugEvents(DebugEvent[] events) {
+		for (DebugEvent event : events) {
+			if(event.getKind() == DebugEvent.TERMINATE && event.getSource() == getProcess()){
+				processTerminated();
+			}
+		}
+	}
+
+	private synchronized IProcess getProcess(){
+		return process;
+	}
+
+	private void processTerminated(){
+		DebugPlugin.getDefault().removeDebugEventListener(this);
+		int exitCode = -1;
+		try{
+			exitCode = getProcess().getExitValue();
+		}catch(DebugException e){
+			//exit code is not available
+		}
+		future.complete(output.createResult(), exitCode);
+	}
+
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Pending result of a Cordova CLI command. The future is completed by the
+ * process events, no thread is blocked while the command is running unless
+ * a caller waits for the result.
+ * <p>
+ * Listeners are notified on the thread that completes the command, usually
+ * the thread that reads the output of the process, and should not block.
+ * </p>
+ */
+public class CordovaCLIFuture implements Future<CordovaCLIResult> {
+
+	/**
+	 * Notified when a command is completed, failed or cancelled.
+	 */
+	public interface Listener {
+		public void commandCompleted(CordovaCLIFuture future);
+	}
+
+	private final CountDownLatch done = new CountDownLatch(1);
+	private final CordovaCLIStreamListener output;
+	private final List<Listener> listeners = new ArrayList<Listener>();
+	private CordovaCLIResult result;
+	private CoreException exception;
+	private boolean cancelled;
+	private boolean finished;
+	private int exitCode = -1;
+	private Runnable cancelHandler;
+
+	public CordovaCLIFuture(CordovaCLIStreamListener output){
+		this.output = output;
+	}
+
+	/**
+	 * Adds a listener that is called when this future is done. If the
+	 * future is already done the listener is called immediately.
+	 *
+	 * @param listener
+	 */
+	public void addListener(Listener listener){
+		synchronized (this) {
+			if(!finished){
+				listeners.add(listener);
+				return;
+			}
+		}
+		notifyListener(listener);
+	}
+
+	/**
+	 * Returns the output that is received so far.
+	 * @return output
+	 */
+	public String getOutput(){
+		return output.getMessage();
+	}
+
+	/**
+	 * Exit code of the command if it is known, -1 otherwise.
+	 * @return exit code
+	 */
+	public synchronized int getExitCode(){
+		return exitCode;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		Runnable handler = null;
+		synchronized (this) {
+			if(finished){
+				return false;
+			}
+			finished = true;
+			cancelled = true;
+			handler = cancelHandler;
+		}
+		if(handler != null){
+			handler.run();
+		}
+		finish();
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public CordovaCLIResult get() throws InterruptedException, ExecutionException {
+		done.await();
+		return getNow();
+	}
+
+	@Override
+	public CordovaCLIResult get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		if(!done.await(timeout, unit)){
+			throw new TimeoutException();
+		}
+		return getNow();
+	}
+
+	/**
+	 * Waits for the command to complete. If the monitor is cancelled while
+	 * waiting the command is cancelled and a result with the output
+	 * received so far is returned.
+	 *
+	 * @param monitor
+	 * @return result
+	 * @throws CoreException if the command fails
+	 */
+	public CordovaCLIResult getResult(IProgressMonitor monitor) throws CoreException{
+		if(monitor == null ){
+			monitor = new NullProgressMonitor();
+		}
+		try{
+			while(!done.await(100, TimeUnit.MILLISECONDS)){
+				if(monitor.isCanceled()){
+					cancel(true);
+					break;
+				}
+			}
+			return getNow();
+		}catch(InterruptedException e){
+			HybridCore.log(IStatus.INFO, "Exception waiting for Cordova CLI command to complete", e);
+			Thread.currentThread().interrupt();
+		}catch(CancellationException e){
+			//return what we got so far
+		}catch(ExecutionException e){
+			if(e.getCause() instanceof CoreException){
+				throw (CoreException) e.getCause();
+			}
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Fatal error invoking cordova CLI", e.getCause()));
+		}
+		return output.createResult();
+	}
+
+	synchronized void setCancelHandler(Runnable cancelHandler) {
+		this.cancelHandler = cancelHandler;
+	}
+
+	boolean complete(CordovaCLIResult result, int exitCode){
+		synchronized (this) {
+			if(finished){
+				return false;
+			}
+			finished = true;
+			this.result = result;
+			this.exitCode = exitCode;
+		}
+		finish();
+		return true;
+	}
+
+	boolean fail(CoreException exception){
+		synchronized (this) {
+			if(finished){
+				return false;
+			}
+			finished = true;
+			this.exception = exception;
+		}
+		finish();
+		return true;
+	}
+
+	/**
+	 * Completes, fails or cancels this future the same as the given one
+	 * when it is done.
+	 *
+	 * @param other
+	 */
+	void completeWith(CordovaCLIFuture other){
+		other.addListener(new Listener() {
+			@Override
+			public void commandCompleted(CordovaCLIFuture f) {
+				try{
+					complete(f.getNow(), f.getExitCode());
+				}catch(CancellationException e){
+					cancel(true);
+				}catch(ExecutionException e){
+					fail(e.getCause() instanceof CoreException ? (CoreException) e.getCause()
+							: new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Fatal error invoking cordova CLI", e.getCause())));
+				}
+			}
+		});
+	}
+
+	private synchronized CordovaCLIResult getNow() throws ExecutionException{
+		if(cancelled){
+			throw new CancellationException();
+		}
+		if(exception != null){
+			throw new ExecutionException(exception);
+		}
+		return result;
+	}
+
+	private void finish(){
+		List<Listener> toNotify = null;
+		synchronized (this) {
+			done.countDown();
+			toNotify = new ArrayList<Listener>(listeners);
+			listeners.clear();
+		}
+		for (Listener listener : toNotify) {
+			notifyListener(listener);
+		}
+	}
+
+	private void notifyListener(Listener listener){
+		try{
+			listener.commandCompleted(this);
+		}catch(RuntimeException e){
+			HybridCore.log(IStatus.ERROR, "Error notifying Cordova CLI command listener", e);
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Line by line parser for the Cordova CLI output. Detects the errors,
+ * error codes and plug-in messages as the lines arrive so that the
+ * output does not need to be kept in memory to be analyzed.
+ */
+public class CordovaCLIOutputParser {
+
+	private static final String ERROR_PREFIX = "Error:";
+	private static final Pattern MISSING_VARIABLE = Pattern.compile("(?:\\s\\-\\-variable\\s(\\w*)=value)");
+	// Keep error messages to a reasonable size even if the whole output follows an error
+	private static final int MAX_ERROR_LENGTH = 64 * 1024;
+
+	private final StringBuilder errorMessage = new StringBuilder();
+	private final List<String> missingVariables = new ArrayList<String>();
+	private boolean error;
+	private int errorCode = CordovaCLIErrors.ERROR_GENERAL;
+
+	/**
+	 * Parses a complete output.
+	 *
+	 * @param text
+	 * @return parser
+	 */
+	public static CordovaCLIOutputParser parse(String text){
+		CordovaCLIOutputParser parser = new CordovaCLIOutputParser();
+		Scanner scanner = new Scanner(text);
+		while(scanner.hasNextLine()){
+			parser.parseLine(scanner.nextLine());
+		}
+		scanner.close();
+		return parser;
+	}
+
+	/**
+	 * Parses a single line, line should not include the line terminator.
+	 *
+	 * @param line
+	 */
+	public synchronized void parseLine(String line){
+		Matcher matcher = MISSING_VARIABLE.matcher(line);
+		if(matcher.find()){
+			missingVariables.add(matcher.group());
+		}
+		line = line.trim();// remove leading whitespace
+		if(line.startsWith(ERROR_PREFIX)){
+			error = true;
+			appendError(line.substring(ERROR_PREFIX.length(), line.length()).trim());
+		}else if(line.contains("command not found") || line.contains("is not recognized as an internal or external command")){
+			error = true;
+			appendError("Cordova not found, please run 'npm install -g cordova' on a command line to install Cordova globally");
+			errorCode = CordovaCLIErrors.ERROR_COMMAND_MISSING;
+		}
+		else{
+			if(error){
+				appendError(System.lineSeparator());
+				appendError(line);
+			}
+		}
+	}
+
+	public synchronized boolean hasError(){
+		return errorMessage.length() > 0;
+	}
+
+	public synchronized String getErrorMessage(){
+		return errorMessage.toString();
+	}
+
+	public synchronized int getErrorCode(){
+		return errorCode;
+	}
+
+	/**
+	 * Returns the messages about plug-in variables that are
+	 * required but not specified.
+	 *
+	 * @return list of messages, never null
+	 */
+	public synchronized List<String> getMissingPluginVariables(){
+		return Collections.unmodifiableList(new ArrayList<String>(missingVariables));
+	}
+
+	private void appendError(String text){
+		if(errorMessage.length() < MAX_ERROR_LENGTH){
+			errorMessage.append(text);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Red Hat, Inc. 
+ * Copyright (c) 2015, 2016 Red Hat, Inc. 
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.thym.core.internal.cordova;
 
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 
 import org.eclipse.core.runtime.IStatus;
@@ -24,14 +25,45 @@ import org.eclipse.core.runtime.Status;
 public class CordovaCLIResult {
 	
 	private final String message;
+	private CordovaCLIStreamListener output;
+	private CordovaCLIOutputParser parser;
 	
 	public CordovaCLIResult(String message){
 		this.message = message;
 	}
 	
+	/**
+	 * Creates a result for the output that is already processed 
+	 * by the stream listener.
+	 * 
+	 * @param message
+	 * @param output
+	 */
+	public CordovaCLIResult(String message, CordovaCLIStreamListener output){
+		this.message = message;
+		this.output = output;
+	}
+	
+	/**
+	 * Returns the output of the command, this may only be the last lines
+	 * of the output for long running commands.
+	 * 
+	 * @see #getLogFile()
+	 * @return message
+	 */
 	public String getMessage() {
 		return message;
 	}
+	
+	/**
+	 * Returns the file that contains the complete output of the command
+	 * if it is logged.
+	 * 
+	 * @return file or null 
+	 */
+	public File getLogFile(){
+		return output == null ? null : output.getLogFile();
+	}
 
 	public IStatus asStatus(){
 		return Status.OK_STATUS;
@@ -39,11 +71,30 @@ public class CordovaCLIResult {
 	
 	public <T extends CordovaCLIResult> T convertTo(Class<T> resultType){
 		try {
-			return resultType.getConstructor(String.class).newInstance(this.message);
+			T result = resultType.getConstructor(String.class).newInstance(this.message);
+			((CordovaCLIResult)result).output = this.output;
+			return result;
 		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException
 				| NoSuchMethodException | SecurityException e) {
 			throw new IllegalArgumentException("Result type is not valid");
 		}
 	}
+	
+	/**
+	 * Returns the parser for the output. If the output is streamed 
+	 * the parser that processed the complete output is returned, 
+	 * otherwise the message is parsed.
+	 *  
+	 * @return parser
+	 */
+	protected synchronized CordovaCLIOutputParser getOutputParser(){
+		if(output != null ){
+			return output.getParser();
+		}
+		if(parser == null ){
+			parser = CordovaCLIOutputParser.parse(message);
+		}
+		return parser;
+	}
 
 }
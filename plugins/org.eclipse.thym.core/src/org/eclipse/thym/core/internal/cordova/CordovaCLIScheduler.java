@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Per project scheduler that coalesces identical Cordova CLI commands, used
+ * for <i>cordova prepare</i> which is requested from several places
+ * within seconds of each other.
+ * <p>
+ * A request is held for {@link #COALESCE_DELAY} milliseconds before it is
+ * submitted, identical requests that arrive in the mean time, or while the
+ * same command is still running, are merged into a single pending request.
+ * So any number of identical requests result in at most one running and one
+ * pending command. All the merged requests receive the result of the same run.
+ * </p>
+ */
+public class CordovaCLIScheduler {
+
+	/**
+	 * Time in milliseconds a command waits for identical requests before it is
+	 * submitted. Can be overridden with <i>org.eclipse.thym.core.cli.coalesceDelay</i>
+	 * system property.
+	 */
+	public static final long COALESCE_DELAY = Long.getLong("org.eclipse.thym.core.cli.coalesceDelay", 250);
+
+	/**
+	 * Submits the command when the scheduler decides to run it.
+	 */
+	public interface CommandSubmitter {
+		public CordovaCLIFuture submit() throws CoreException;
+	}
+
+	private static final Map<String, CordovaCLIScheduler> schedulers = new HashMap<String, CordovaCLIScheduler>();
+
+	private class Request {
+		private final String command;
+		private final CommandSubmitter submitter;
+		private final List<CordovaCLIFuture> waiters = new ArrayList<CordovaCLIFuture>();
+		private CordovaCLIFuture submitted;
+		private boolean started;
+
+		private Request(String command, CommandSubmitter submitter){
+			this.command = command;
+			this.submitter = submitter;
+		}
+	}
+
+	private class StartJob extends Job {
+		private final Request request;
+
+		private StartJob(Request request){
+			super(NLS.bind("Run {0}", request.command.trim()));
+			this.request = request;
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			start(request);
+			return Status.OK_STATUS;
+		}
+	}
+
+	private final long delay;
+	private final Map<String, Request> pending = new HashMap<String, Request>();
+	private final Map<String, Request> running = new HashMap<String, Request>();
+	private long mergeCount;
+	private long runCount;
+
+	//public visibility to support testing
+	public CordovaCLIScheduler(long delay){
+		this.delay = delay;
+	}
+
+	/**
+	 * Returns the scheduler for the given key, usually the project name.
+	 *
+	 * @param key
+	 * @return scheduler
+	 */
+	public static CordovaCLIScheduler getScheduler(String key){
+		synchronized (schedulers) {
+			CordovaCLIScheduler scheduler = schedulers.get(key);
+			if(scheduler == null){
+				scheduler = new CordovaCLIScheduler(COALESCE_DELAY);
+				schedulers.put(key, scheduler);
+			}
+			return scheduler;
+		}
+	}
+
+	/**
+	 * Schedules the command. If an identical command is already waiting
+	 * to be run the request is merged with it.
+	 *
+	 * @param command the command line, used to detect identical requests
+	 * @param submitter called to submit the command once it is time to run
+	 * @return future for the result of the command
+	 */
+	public CordovaCLIFuture schedule(String command, CommandSubmitter submitter){
+		final CordovaCLIFuture future = new CordovaCLIFuture(new CordovaCLIStreamListener());
+		Request request = null;
+		boolean startNow = false;
+		synchronized (this) {
+			request = pending.get(command);
+			if(request != null){
+				mergeCount++;
+				HybridCore.trace(NLS.bind("Merged {0} with a pending request", command.trim()));
+			}else{
+				request = new Request(command, submitter);
+				pending.put(command, request);
+				// if the same command is running this request is started when it completes
+				startNow = !running.containsKey(command);
+			}
+			request.waiters.add(future);
+		}
+		final Request target = request;
+		future.setCancelHandler(new Runnable() {
+			@Override
+			public void run() {
+				cancel(target, future);
+			}
+		});
+		if(startNow){
+			new StartJob(request).schedule(delay);
+		}
+		return future;
+	}
+
+	/**
+	 * Number of requests that are waiting to be submitted.
+	 * @return queue depth
+	 */
+	public synchronized int getQueueDepth(){
+		int depth = 0;
+		for (Request request : pending.values()) {
+			depth += request.waiters.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Number of requests that are merged with a pending request since
+	 * this scheduler is created.
+	 * @return merge count
+	 */
+	public synchronized long getMergeCount(){
+		return mergeCount;
+	}
+
+	/**
+	 * Number of commands that are actually submitted since this scheduler
+	 * is created.
+	 * @return run count
+	 */
+	public synchronized long getRunCount(){
+		return runCount;
+	}
+
+	private void start(final Request request){
+		synchronized (this) {
+			if(request.started || pending.get(request.command) != request || running.containsKey(request.command)){
+				return;
+			}
+			pending.remove(request.command);
+			if(request.waiters.isEmpty()){
+				return;
+			}
+			request.started = true;
+			running.put(request.command, request);
+			runCount++;
+		}
+		CordovaCLIFuture submitted = null;
+		try{
+			submitted = request.submitter.submit();
+		}catch(CoreException e){
+			for (CordovaCLIFuture waiter : completed(request)) {
+				waiter.fail(e);
+			}
+			return;
+		}
+		boolean cancelled = false;
+		synchronized (this) {
+			request.submitted = submitted;
+			cancelled = request.waiters.isEmpty();
+		}
+		if(cancelled){
+			submitted.cancel(true);
+		}
+		submitted.addListener(new CordovaCLIFuture.Listener() {
+			@Override
+			public void commandCompleted(CordovaCLIFuture f) {
+				List<CordovaCLIFuture> waiters = completed(request);
+				if(f.isCancelled()){
+					for (CordovaCLIFuture waiter : waiters) {
+						waiter.cancel(true);
+					}
+					return;
+				}
+				CordovaCLIResult result = null;
+				try {
+					result = f.get();
+				} catch (Exception e) {
+					CoreException ce = e.getCause() instanceof CoreException ? (CoreException) e.getCause()
+							: new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Fatal error invoking cordova CLI", e));
+					for (CordovaCLIFuture waiter : waiters) {
+						waiter.fail(ce);
+					}
+					return;
+				}
+				for (CordovaCLIFuture waiter : waiters) {
+					waiter.complete(result, f.getExitCode());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Marks the request as completed and starts the next identical request
+	 * if there is one waiting.
+	 */
+	private List<CordovaCLIFuture> completed(Request request){
+		Request next = null;
+		List<CordovaCLIFuture> waiters = null;
+		synchronized (this) {
+			running.remove(request.command);
+			waiters = new ArrayList<CordovaCLIFuture>(request.waiters);
+			request.waiters.clear();
+			next = pending.get(request.command);
+		}
+		if(next != null){
+			new StartJob(next).schedule(delay);
+		}
+		return waiters;
+	}
+
+	private void cancel(Request request, CordovaCLIFuture waiter){
+		CordovaCLIFuture toCancel = null;
+		synchronized (this) {
+			if(!request.waiters.remove(waiter) || !request.waiters.isEmpty()){
+				return;
+			}
+			if(!request.started){
+				pending.remove(request.command);
+			}else{
+				// nobody is waiting for the result any more
+				toCancel = request.submitted;
+			}
+		}
+		if(toCancel != null){
+			toCancel.cancel(true);
+		}
+	}
+
+}
@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.IDebugEventSetListener;
+import org.eclipse.debug.core.IStreamListener;
+import org.eclipse.debug.core.model.IProcess;
+import org.eclipse.debug.core.model.IStreamMonitor;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * A long lived shell that can run several Cordova CLI commands in a row.
+ * Every command is followed by an echo of a unique sentinel and the
+ * exit code of the command, the output of the shell is split on the
+ * sentinel so that each command only sees its own output. The sentinel is
+ * also found after output that does not end with a new line. Commands read
+ * their input from the null device so that a command that prompts can
+ * not consume the sentinel.
+ * <p>
+ * Commands are queued and run one after the other. A command is completed
+ * when its sentinel is read from the output or when the shell process
+ * terminates, no thread waits for the command to complete. A command that
+ * does not complete in time is failed and the shell is closed.
+ * </p>
+ *
+ * @see CordovaCLISessionPool
+ */
+public class CordovaCLISession implements IStreamListener, IDebugEventSetListener {
+
+	/**
+	 * Commands that do not complete in this many milliseconds are failed and
+	 * their shell is closed, can be overridden with
+	 * <i>org.eclipse.thym.core.cli.commandTimeout</i> system property.
+	 * A value of 0 disables the timeout.
+	 */
+	public static final long COMMAND_TIMEOUT = Long.getLong("org.eclipse.thym.core.cli.commandTimeout", 60 * 60 * 1000);
+	static final String SENTINEL_PREFIX = "__THYM_CLI_DONE_";
+	private static final AtomicLong sentinelCounter = new AtomicLong();
+
+	private static class PendingCommand{
+		private final String command;
+		private final long timeout;
+		private final String sentinel;
+		private final CordovaCLIStreamListener output;
+		private final CordovaCLIFuture future;
+
+		private PendingCommand(String command, long timeout, File logFile){
+			this.command = command;
+			this.timeout = timeout;
+			this.sentinel = SENTINEL_PREFIX + sentinelCounter.incrementAndGet();
+			this.output = new CordovaCLIStreamListener(logFile);
+			this.future = new CordovaCLIFuture(output);
+		}
+	}
+
+	private final boolean windows;
+	private final File workingDirectory;
+	private final StringBuilder lineBuffer = new StringBuilder();
+	private final LinkedList<PendingCommand> queue = new LinkedList<PendingCommand>();
+	private final Object writeLock = new Object();
+	// the commands run one after the other and share the log file
+	private final File logFile = CordovaCLIStreamListener.createLogFile();
+	private IProcess process;
+	private PendingCommand running;
+	private boolean terminated;
+	private volatile long lastUsed;
+
+	public CordovaCLISession(File workingDirectory, boolean windows){
+		this.workingDirectory = workingDirectory;
+		this.windows = windows;
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Attaches the shell process to this session. This session should
+	 * already be registered as the listener to the output and error
+	 * streams of the process.
+	 *
+	 * @param process
+	 * @throws CoreException
+	 */
+	public void attach(IProcess process) throws CoreException{
+		this.process = process;
+		DebugPlugin.getDefault().addDebugEventListener(this);
+		if(!windows){
+			// Merge stderr to stdout so that error output can not arrive after the sentinel
+			write("exec 2>&1\n");
+		}
+	}
+
+	/**
+	 * Queues the given command to run on the shell with the default
+	 * {@link #COMMAND_TIMEOUT}. Output of the command is collected to the result.
+	 *
+	 * @param command the command line ending with a new line
+	 * @return future for the result of the command
+	 */
+	public CordovaCLIFuture submit(String command){
+		return submit(command, COMMAND_TIMEOUT);
+	}
+
+	/**
+	 * Queues the given command to run on the shell. Output of the command
+	 * is collected to the result. If the command does not complete within
+	 * the timeout after it is started, it is failed and the shell is closed.
+	 *
+	 * @param command the command line ending with a new line
+	 * @param timeout in milliseconds, 0 for no timeout
+	 * @return future for the result of the command
+	 */
+	public CordovaCLIFuture submit(String command, long timeout){
+		final PendingCommand pending = new PendingCommand(command, timeout, logFile);
+		pending.future.setCancelHandler(new Runnable() {
+			@Override
+			public void run() {
+				cancel(pending);
+			}
+		});
+		boolean start = false;
+		boolean failed = false;
+		synchronized (this) {
+			if(terminated){
+				failed = true;
+			}else{
+				queue.add(pending);
+				if(running == null){
+					running = queue.removeFirst();
+					start = true;
+				}
+			}
+		}
+		lastUsed = System.currentTimeMillis();
+		if(failed){
+			pending.future.fail(new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Cordova CLI shell is terminated")));
+		}
+		if(start){
+			startCommand(pending);
+		}
+		return pending.future;
+	}
+
+	/**
+	 * Whether this session can accept more commands.
+	 *
+	 * @return true if the shell is still running
+	 */
+	public synchronized boolean isAlive(){
+		return process != null && !terminated && !process.isTerminated();
+	}
+
+	/**
+	 * Whether a command is currently running on this session.
+	 * @return true if a command is running
+	 */
+	public synchronized boolean isBusy(){
+		return running != null;
+	}
+
+	/**
+	 * Time of the last use in milliseconds.
+	 * @return
+	 */
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	public File getWorkingDirectory() {
+		return workingDirectory;
+	}
+
+	/**
+	 * Exits the shell. Commands that are still waiting are failed.
+	 */
+	public void close(){
+		if(process != null && !process.isTerminated()){
+			try{
+				write("exit\n");
+			}catch(CoreException e){
+				// shell is going away anyway
+			}
+			try {
+				process.terminate();
+			} catch (DebugException e) {
+				HybridCore.log(IStatus.WARNING, "Unable to terminate Cordova CLI shell", e);
+			}
+		}
+		processTerminated();
+	}
+
+	@Override
+	public void handleDebugEvents(DebugEvent[] events) {
+		for (DebugEvent event : events) {
+			if(event.getKind() == DebugEvent.TERMINATE && event.getSource() == process){
+				processTerminated();
+			}
+		}
+	}
+
+	@Override
+	public void streamAppended(String text, IStreamMonitor monitor) {
+		if(text == null ) return;
+		PendingCommand completed = null;
+		int exitCode = -1;
+		PendingCommand next = null;
+		synchronized (this) {
+			for(int i = 0; i < text.length(); i++){
+				char c = text.charAt(i);
+				lineBuffer.append(c);
+				if(c != '\n'){
+					continue;
+				}
+				String line = lineBuffer.toString();
+				lineBuffer.setLength(0);
+				int sentinel = running != null ? line.indexOf(running.sentinel+":") : -1;
+				if(sentinel >= 0){
+					if(sentinel > 0){
+						// last output of the command without a new line
+						running.output.streamAppended(line.substring(0, sentinel), monitor);
+					}
+					exitCode = parseExitCode(line.substring(sentinel+running.sentinel.length()+1));
+					completed = running;
+					running = queue.isEmpty() ? null : queue.removeFirst();
+					next = running;
+					// Anything after the sentinel belongs to the next command.
+					if(i+1 < text.length()){
+						lineBuffer.append(text.substring(i+1));
+					}
+					break;
+				}
+				int leftover = line.indexOf(SENTINEL_PREFIX);
+				if(leftover >= 0){
+					// left over from a command that was abandoned
+					if(leftover == 0){
+						continue;
+					}
+					line = line.substring(0, leftover);
+				}
+				if(running != null){
+					running.output.streamAppended(line, monitor);
+				}
+			}
+		}
+		if(completed != null){
+			lastUsed = System.currentTimeMillis();
+			completed.future.complete(completed.output.createResult(), exitCode);
+			if(next != null){
+				startCommand(next);
+			}
+			// process the rest of the text with the next command
+			String rest = null;
+			synchronized (this) {
+				if(lineBuffer.length() > 0){
+					rest = lineBuffer.toString();
+					lineBuffer.setLength(0);
+				}
+			}
+			if(rest != null){
+				streamAppended(rest, monitor);
+			}
+		}
+	}
+
+	private void startCommand(PendingCommand pending){
+		try{
+			synchronized (writeLock) {
+				// the command must not read the input of the shell
+				write(windows ? "<NUL " : "</dev/null ");
+				write(pending.command);
+				write(generateSentinelCommand(pending.sentinel));
+			}
+		}catch(CoreException e){
+			pending.future.fail(e);
+			close();
+			return;
+		}
+		scheduleTimeout(pending);
+		if(process.isTerminated()){
+			processTerminated();
+		}
+	}
+
+	private void scheduleTimeout(final PendingCommand pending){
+		if(pending.timeout <= 0){
+			return;
+		}
+		final Job timeoutJob = new Job("Cordova CLI command timeout") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				timedOut(pending);
+				return Status.OK_STATUS;
+			}
+		};
+		timeoutJob.setSystem(true);
+		pending.future.addListener(new CordovaCLIFuture.Listener() {
+			@Override
+			public void commandCompleted(CordovaCLIFuture future) {
+				timeoutJob.cancel();
+			}
+		});
+		if(!pending.future.isDone()){
+			timeoutJob.schedule(pending.timeout);
+		}
+	}
+
+	private void timedOut(PendingCommand pending){
+		synchronized (this) {
+			if(running != pending){
+				return;
+			}
+		}
+		CoreException e = new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+				NLS.bind("Cordova CLI command \"{0}\" did not complete in {1} seconds", pending.command.trim(), pending.timeout / 1000)));
+		if(pending.future.fail(e)){
+			// the command may still be running or waiting for input, the shell can not be reused
+			close();
+		}
+	}
+
+	private void cancel(PendingCommand pending){
+		boolean isRunning = false;
+		synchronized (this) {
+			if(running == pending){
+				isRunning = true;
+			}else{
+				queue.remove(pending);
+			}
+		}
+		if(isRunning){
+			// there is no way to interrupt the running command but to kill the shell
+			close();
+		}
+	}
+
+	private void processTerminated(){
+		PendingCommand current = null;
+		List<PendingCommand> waiting = null;
+		synchronized (this) {
+			if(terminated){
+				return;
+			}
+			terminated = true;
+			current = running;
+			running = null;
+			if(current != null && lineBuffer.length() > 0){
+				current.output.streamAppended(lineBuffer.toString(), null);
+			}
+			lineBuffer.setLength(0);
+			waiting = new ArrayList<PendingCommand>(queue);
+			queue.clear();
+		}
+		DebugPlugin debugPlugin = DebugPlugin.getDefault();
+		if(debugPlugin != null){
+			debugPlugin.removeDebugEventListener(this);
+		}
+		if(current != null){
+			int exitCode = -1;
+			try{
+				exitCode = process.getExitValue();
+			}catch(DebugException e){
+				//exit code is not available
+			}
+			current.future.complete(current.output.createResult(), exitCode);
+		}
+		for (PendingCommand pending : waiting) {
+			pending.future.fail(new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+					"Cordova CLI shell terminated before the command could run")));
+		}
+		if(logFile != null){
+			logFile.delete();
+		}
+	}
+
+	private int parseExitCode(String code){
+		try{
+			return Integer.parseInt(code.trim());
+		}catch(NumberFormatException e){
+			return -1;
+		}
+	}
+
+	private String generateSentinelCommand(String commandSentinel){
+		if(windows){
+			return "echo "+ commandSentinel + ":%errorlevel%\n";
+		}
+		return "echo \"" + commandSentinel + ":$?\"\n";
+	}
+
+	private void write(String text) throws CoreException{
+		try {
+			process.getStreamsProxy().write(text);
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Fatal error invoking cordova CLI", e));
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Keeps a {@link CordovaCLISession} per project so that consecutive
+ * Cordova CLI calls do not pay for starting a login shell each time.
+ * Sessions that are not used for {@link #IDLE_TIMEOUT} milliseconds
+ * are closed.
+ */
+public final class CordovaCLISessionPool {
+
+	/**
+	 * Idle time in milliseconds after which a session is closed. Can be
+	 * overridden with <i>org.eclipse.thym.core.cli.sessionIdleTimeout</i>
+	 * system property.
+	 */
+	public static final long IDLE_TIMEOUT = Long.getLong("org.eclipse.thym.core.cli.sessionIdleTimeout", 5 * 60 * 1000);
+
+	private static final Map<String, CordovaCLISession> sessions = new HashMap<String, CordovaCLISession>();
+
+	private static final Job evictionJob = new Job("Close idle Cordova CLI sessions") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			evictIdleSessions(System.currentTimeMillis() - IDLE_TIMEOUT);
+			synchronized (CordovaCLISessionPool.class) {
+				if(!sessions.isEmpty() && !monitor.isCanceled()){
+					schedule(IDLE_TIMEOUT);
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	};
+
+	static{
+		evictionJob.setSystem(true);
+	}
+
+	private CordovaCLISessionPool(){
+		//no instances
+	}
+
+	/**
+	 * Returns a live session for the key or null if there is none.
+	 *
+	 * @param key
+	 * @return session or null
+	 */
+	public static synchronized CordovaCLISession getSession(String key){
+		CordovaCLISession session = sessions.get(key);
+		if(session != null && !session.isAlive()){
+			sessions.remove(key);
+			return null;
+		}
+		return session;
+	}
+
+	/**
+	 * Adds a session to the pool, closing any session that was
+	 * previously pooled for the key.
+	 *
+	 * @param key
+	 * @param session
+	 */
+	public static void putSession(String key, CordovaCLISession session){
+		CordovaCLISession old = null;
+		synchronized (CordovaCLISessionPool.class) {
+			old = sessions.put(key, session);
+			if(evictionJob.getState() == Job.NONE){
+				evictionJob.schedule(IDLE_TIMEOUT);
+			}
+		}
+		if(old != null && old != session){
+			old.close();
+		}
+	}
+
+	/**
+	 * Removes and closes the session for the key.
+	 * @param key
+	 */
+	public static void removeSession(String key){
+		CordovaCLISession session = null;
+		synchronized (CordovaCLISessionPool.class) {
+			session = sessions.remove(key);
+		}
+		if(session != null){
+			session.close();
+		}
+	}
+
+	/**
+	 * Closes all the sessions that were last used before the given time.
+	 * @param time
+	 */
+	static void evictIdleSessions(long time){
+		List<CordovaCLISession> evicted = new ArrayList<CordovaCLISession>();
+		synchronized (CordovaCLISessionPool.class) {
+			Iterator<CordovaCLISession> it = sessions.values().iterator();
+			while (it.hasNext()) {
+				CordovaCLISession session = it.next();
+				if(!session.isAlive() || (!session.isBusy() && session.getLastUsed() < time)){
+					it.remove();
+					evicted.add(session);
+				}
+			}
+		}
+		for (CordovaCLISession session : evicted) {
+			session.close();
+		}
+	}
+
+	/**
+	 * Closes all the pooled sessions.
+	 */
+	public static void shutdown(){
+		evictionJob.cancel();
+		List<CordovaCLISession> all = null;
+		synchronized (CordovaCLISessionPool.class) {
+			all = new ArrayList<CordovaCLISession>(sessions.values());
+			sessions.clear();
+		}
+		for (CordovaCLISession session : all) {
+			session.close();
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Red Hat, Inc. 
+ * Copyright (c) 2015, 2016 Red Hat, Inc.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,30 +10,200 @@
  *******************************************************************************/
 package org.eclipse.thym.core.internal.cordova;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.model.IStreamMonitor;
+import org.eclipse.thym.core.HybridCore;
 /**
- * Stream listener for Cordova CLI output. 
- * 
+ * Stream listener for Cordova CLI output.
+ * <p>
+ * The output is processed line by line, errors are detected by a
+ * {@link CordovaCLIOutputParser} as the lines arrive and only the
+ * last lines of the output are kept in memory. If the
+ * <i>org.eclipse.thym.core.cli.log</i> system property is set the
+ * complete output is also written to a log file. The log file is
+ * owned by the shell session, or the project for direct execution,
+ * and is overwritten by its next command.
+ * </p>
  * @author Gorkem Ercan
  *
  */
 public class CordovaCLIStreamListener implements IStreamListener {
 
-	private final StringBuffer message = new StringBuffer();
-	
+	/**
+	 * System property to keep the complete output of the commands in a temporary file
+	 */
+	public static final String SYSPROP_LOG_OUTPUT = "org.eclipse.thym.core.cli.log";
+	private static final int MAX_TAIL_LINES = 2000;
+	private static final int MAX_TAIL_CHARS = 512 * 1024;
+
+	private final ArrayDeque<String> tail = new ArrayDeque<String>();
+	private final StringBuilder partialLine = new StringBuilder();
+	private final CordovaCLIOutputParser parser = new CordovaCLIOutputParser();
+	private final int maxLines;
+	private final int maxChars;
+	private int tailChars;
+	private final File logFile;
+	private boolean logOutput;
+	private boolean logged;
+	private boolean completed;
+	private Writer logWriter;
+
+	public CordovaCLIStreamListener(){
+		this(null);
+	}
+
+	/**
+	 * @param logFile file to write the complete output to, or null
+	 */
+	public CordovaCLIStreamListener(File logFile){
+		this(MAX_TAIL_LINES, MAX_TAIL_CHARS, logFile);
+	}
+
+	/**
+	 * @param maxLines maximum number of lines to keep in memory
+	 * @param maxChars maximum number of characters to keep in memory
+	 * @param logFile file to write the complete output to, or null. Its
+	 * previous contents are replaced.
+	 */
+	public CordovaCLIStreamListener(int maxLines, int maxChars, File logFile){
+		this.maxLines = maxLines;
+		this.maxChars = maxChars;
+		this.logFile = logFile;
+		this.logOutput = logFile != null;
+	}
+
+	/**
+	 * Creates a temporary file for logging the complete output of commands
+	 * if logging is enabled with the <i>org.eclipse.thym.core.cli.log</i>
+	 * system property. The caller reuses the file for its commands and
+	 * deletes it when it is no longer needed.
+	 *
+	 * @return log file or null if logging is not enabled
+	 */
+	public static File createLogFile(){
+		if(!Boolean.getBoolean(SYSPROP_LOG_OUTPUT)){
+			return null;
+		}
+		try{
+			return File.createTempFile("cordova-cli", ".log");
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, "Unable to create Cordova CLI log, logging is disabled", e);
+			return null;
+		}
+	}
+
 	@Override
-	public void streamAppended(String text, IStreamMonitor monitor) {
-		message.append(text);
+	public synchronized void streamAppended(String text, IStreamMonitor monitor) {
+		if(text == null ) return;
+		writeLog(text);
+		int start = 0;
+		int newLine = text.indexOf('\n');
+		while(newLine > -1){
+			partialLine.append(text, start, newLine+1);
+			completeLine();
+			start = newLine+1;
+			newLine = text.indexOf('\n', start);
+		}
+		if(start < text.length()){
+			partialLine.append(text, start, text.length());
+		}
 	}
 
 	/**
-	 * Returns all the messages returned 
-	 * excluding the error messages
+	 * Returns the last lines of the output. The complete
+	 * output is available with {@link #getLogFile()} if
+	 * logging is enabled.
+	 *
 	 * @return
 	 */
-	public String getMessage(){
+	public synchronized String getMessage(){
+		StringBuilder message = new StringBuilder(tailChars + partialLine.length());
+		for (String line : tail) {
+			message.append(line);
+		}
+		message.append(partialLine);
 		return message.toString();
 	}
 
+	/**
+	 * Returns the parser that has processed the output so far.
+	 * @return parser
+	 */
+	public CordovaCLIOutputParser getParser(){
+		return parser;
+	}
+
+	/**
+	 * Returns the file with the complete output or null
+	 * if logging is not enabled. The file is overwritten
+	 * by the next command of the same session.
+	 * @return log file or null
+	 */
+	public synchronized File getLogFile(){
+		return logged ? logFile : null;
+	}
+
+	/**
+	 * Completes the processing of the output and creates a result.
+	 *
+	 * @return result
+	 */
+	public synchronized CordovaCLIResult createResult(){
+		if(!completed && partialLine.length() > 0){
+			parser.parseLine(partialLine.toString());
+		}
+		completed = true;
+		logOutput = false;
+		if(logWriter != null){
+			try {
+				logWriter.close();
+			} catch (IOException e) {
+				HybridCore.log(IStatus.WARNING, "Unable to close Cordova CLI log", e);
+			}
+			logWriter = null;
+			HybridCore.trace("Cordova CLI output is logged to " + logFile);
+		}
+		return new CordovaCLIResult(getMessage(), this);
+	}
+
+	private void completeLine(){
+		String line = partialLine.toString();
+		partialLine.setLength(0);
+		int end = line.length() - 1;
+		if(end > 0 && line.charAt(end-1) == '\r'){
+			end--;
+		}
+		parser.parseLine(line.substring(0, end));
+		tail.addLast(line);
+		tailChars += line.length();
+		while(tail.size() > maxLines || (tailChars > maxChars && tail.size() > 1)){
+			tailChars -= tail.removeFirst().length();
+		}
+	}
+
+	private void writeLog(String text){
+		if(!logOutput){
+			return;
+		}
+		try{
+			if(logWriter == null){
+				logWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile), "UTF-8"));
+				logged = true;
+			}
+			logWriter.write(text);
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, "Unable to write Cordova CLI log, logging is disabled", e);
+			logOutput = false;
+		}
+	}
+
 }
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Captures the environment of the user's login shell so that
+ * cordova and node can be executed directly, without starting
+ * a login shell for every command. The captured environment is
+ * cached and recaptured only if one of the shell profile files
+ * change. A login shell that does not print its environment in
+ * time, for instance because a profile script prompts, is killed
+ * and direct execution is not used until the profile files change.
+ */
+public final class LoginShellEnvironment {
+
+	/**
+	 * Time in milliseconds to wait for the login shell to print its environment,
+	 * can be overridden with <i>org.eclipse.thym.core.cli.loginShellTimeout</i>
+	 * system property.
+	 */
+	public static final long CAPTURE_TIMEOUT = Long.getLong("org.eclipse.thym.core.cli.loginShellTimeout", 10 * 1000);
+	private static final String MARKER = "__THYM_ENV__";
+	private static final String[] PROFILE_FILES = {".bash_profile", ".bash_login", ".profile", ".bashrc"};
+
+	private static Map<String, String> environment;
+	private static String profileStamp;
+	private static CoreException failure;
+
+	private LoginShellEnvironment(){
+		//no instances
+	}
+
+	/**
+	 * Returns the environment of the login shell.
+	 *
+	 * @return environment variables
+	 * @throws CoreException if the login shell can not be run or does
+	 * not complete in time
+	 */
+	public static synchronized Map<String, String> getEnvironment() throws CoreException{
+		String stamp = computeProfileStamp();
+		if(!stamp.equals(profileStamp)){
+			environment = null;
+			failure = null;
+			profileStamp = stamp;
+		}
+		if(failure != null){
+			throw failure;
+		}
+		if(environment == null){
+			try{
+				environment = captureEnvironment();
+			}catch(CoreException e){
+				if(!Thread.currentThread().isInterrupted()){
+					// do not wait for the login shell again until the profiles change
+					failure = e;
+				}
+				throw e;
+			}
+		}
+		return environment;
+	}
+
+	/**
+	 * Discards the cached environment.
+	 */
+	public static synchronized void invalidate(){
+		environment = null;
+		profileStamp = null;
+		failure = null;
+	}
+
+	/**
+	 * Converts the environment to the format expected by
+	 * {@link Runtime#exec(String[], String[])}
+	 *
+	 * @param env
+	 * @return envp
+	 */
+	public static String[] toEnvp(Map<String, String> env){
+		String[] envp = new String[env.size()];
+		int i = 0;
+		for (Map.Entry<String, String> entry : env.entrySet()) {
+			envp[i++] = entry.getKey() + "=" + entry.getValue();
+		}
+		return envp;
+	}
+
+	/**
+	 * Looks for the executable on the PATH of the given environment.
+	 *
+	 * @param name
+	 * @param env
+	 * @return the executable or null if it can not be located
+	 */
+	public static File findExecutable(String name, Map<String, String> env){
+		String path = env.get("PATH");
+		if(path == null ){
+			return null;
+		}
+		for (String dir : path.split(File.pathSeparator)) {
+			if(dir.isEmpty()){
+				continue;
+			}
+			File candidate = new File(dir, name);
+			if(candidate.isFile() && candidate.canExecute()){
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses the output of <i>env</i> that is printed after the marker.
+	 * Anything printed by the profile scripts before the marker is ignored.
+	 *
+	 * @param output
+	 * @return environment
+	 */
+	//public visibility to support testing
+	public static Map<String, String> parseEnvironment(String output){
+		Map<String, String> env = new HashMap<String, String>();
+		int start = output.indexOf(MARKER);
+		if(start < 0 ){
+			return env;
+		}
+		Scanner scanner = new Scanner(output.substring(start + MARKER.length()));
+		String lastKey = null;
+		while(scanner.hasNextLine()){
+			String line = scanner.nextLine();
+			int eq = line.indexOf('=');
+			if(eq > 0 && isVariableName(line.substring(0, eq))){
+				lastKey = line.substring(0, eq);
+				env.put(lastKey, line.substring(eq+1));
+			}else if(lastKey != null){
+				// continuation of a multi line value
+				env.put(lastKey, env.get(lastKey) + "\n" + line);
+			}
+		}
+		scanner.close();
+		return env;
+	}
+
+	private static boolean isVariableName(String name){
+		for(int i = 0; i < name.length(); i++){
+			char c = name.charAt(i);
+			if(!(Character.isLetterOrDigit(c) || c == '_')){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Map<String, String> captureEnvironment() throws CoreException{
+		long start = System.currentTimeMillis();
+		ProcessBuilder pb = new ProcessBuilder("/bin/bash", "-l", "-c", "echo " + MARKER + "; env");
+		pb.redirectErrorStream(true);
+		Process process = null;
+		try{
+			process = pb.start();
+			process.getOutputStream().close();
+			final InputStream in = process.getInputStream();
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			// read on a separate thread so that a profile that blocks can be timed out
+			Thread reader = new Thread("Login shell environment reader"){
+				@Override
+				public void run() {
+					try{
+						IOUtils.copy(in, output);
+					}catch(IOException e){
+						// the process is destroyed
+					}finally{
+						IOUtils.closeQuietly(in);
+					}
+				}
+			};
+			reader.setDaemon(true);
+			reader.start();
+			reader.join(CAPTURE_TIMEOUT);
+			if(reader.isAlive()){
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+						NLS.bind("Login shell did not print its environment in {0} ms", CAPTURE_TIMEOUT)));
+			}
+			Map<String, String> env = parseEnvironment(output.toString());
+			if(env.isEmpty()){
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Unable to read the login shell environment"));
+			}
+			HybridCore.trace(NLS.bind("Captured login shell environment in {0} ms", System.currentTimeMillis() - start));
+			return env;
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Unable to read the login shell environment", e));
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Interrupted while reading the login shell environment", e));
+		}finally{
+			if(process != null){
+				process.destroy();
+			}
+		}
+	}
+
+	private static String computeProfileStamp(){
+		File home = new File(System.getProperty("user.home"));
+		StringBuilder stamp = new StringBuilder();
+		for (String name : PROFILE_FILES) {
+			File f = new File(home, name);
+			stamp.append(f.lastModified()).append(':').append(f.length()).append(';');
+		}
+		return stamp.toString();
+	}
+
+}
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.cordova;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Detects the versions of the tools used by Cordova. The versions are
+ * cached with the resolved location, modification time and size of the
+ * executables, the tools are run again only if the executables change.
+ * The cache is shared by all the projects.
+ */
+public final class ToolchainProbe {
+
+	public static final String TOOL_CORDOVA = "cordova";
+	public static final String TOOL_NODE = "node";
+	public static final String TOOL_NPM = "npm";
+	public static final String TOOL_ADB = "adb";
+
+	/**
+	 * Time in milliseconds to wait for a tool to print its version, can be
+	 * overridden with <i>org.eclipse.thym.core.cli.probeTimeout</i> system
+	 * property.
+	 */
+	public static final long PROBE_TIMEOUT = Long.getLong("org.eclipse.thym.core.cli.probeTimeout", 30 * 1000);
+
+	private static final Pattern VERSION = Pattern.compile("\\d+(\\.\\d+)+");
+	private static final String[] DEFAULT_WINDOWS_EXTENSIONS = {".com", ".exe", ".bat", ".cmd"};
+	private static final Map<String, String> VERSION_ARGUMENTS = new HashMap<String, String>();
+	static{
+		VERSION_ARGUMENTS.put(TOOL_CORDOVA, "-version");
+		VERSION_ARGUMENTS.put(TOOL_NODE, "-v");
+		VERSION_ARGUMENTS.put(TOOL_NPM, "-v");
+		VERSION_ARGUMENTS.put(TOOL_ADB, "version");
+	}
+
+	private static class ProbeResult {
+		private final File executable;
+		private final long lastModified;
+		private final long length;
+		private final String version;
+
+		private ProbeResult(File executable, String version){
+			this.executable = executable;
+			this.lastModified = executable.lastModified();
+			this.length = executable.length();
+			this.version = version;
+		}
+
+		private boolean isValidFor(File file){
+			return executable.equals(file) && lastModified == file.lastModified() && length == file.length();
+		}
+	}
+
+	private static final Map<String, ProbeResult> cache = new HashMap<String, ProbeResult>();
+
+	private ToolchainProbe(){
+		//no instances
+	}
+
+	/**
+	 * Returns the version of the tool. The tool is only run if it is not
+	 * probed before or the executable has changed since.
+	 *
+	 * @param tool one of the TOOL_ constants
+	 * @return version or null if the tool is not installed or its version can not be detected
+	 * @throws CoreException if the environment to locate the tools can not be determined
+	 * or the tool does not print its version within {@link #PROBE_TIMEOUT}
+	 */
+	public static String getVersion(String tool) throws CoreException{
+		Map<String, String> env = getEnvironment();
+		File executable = findExecutable(tool, env);
+		if(executable == null){
+			synchronized (cache) {
+				cache.remove(tool);
+			}
+			return null;
+		}
+		synchronized (cache) {
+			ProbeResult result = cache.get(tool);
+			if(result != null && result.isValidFor(executable)){
+				return result.version;
+			}
+		}
+		String version = probe(tool, executable, env);
+		synchronized (cache) {
+			cache.put(tool, new ProbeResult(executable, version));
+		}
+		return version;
+	}
+
+	/**
+	 * Returns the versions of all the known tools.
+	 *
+	 * @return map of tool to version, version is null for missing tools
+	 * @throws CoreException if the environment to locate the tools can not be determined
+	 * or a tool does not print its version within {@link #PROBE_TIMEOUT}
+	 */
+	public static Map<String, String> getVersions() throws CoreException{
+		Map<String, String> versions = new LinkedHashMap<String, String>();
+		for (String tool : new String[]{TOOL_NODE, TOOL_NPM, TOOL_CORDOVA, TOOL_ADB}) {
+			versions.put(tool, getVersion(tool));
+		}
+		return versions;
+	}
+
+	/**
+	 * Returns the resolved location of the tool.
+	 *
+	 * @param tool
+	 * @return executable or null if it can not be located
+	 * @throws CoreException if the environment to locate the tools can not be determined
+	 */
+	public static File getExecutable(String tool) throws CoreException{
+		return findExecutable(tool, getEnvironment());
+	}
+
+	/**
+	 * Discards all the cached versions.
+	 */
+	public static void invalidate(){
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Extracts the version number from the output of a version command.
+	 *
+	 * @param output
+	 * @return version or null
+	 */
+	//public visibility to support testing
+	public static String parseVersion(String output){
+		if(output == null ){
+			return null;
+		}
+		Matcher matcher = VERSION.matcher(output);
+		if(matcher.find()){
+			return matcher.group();
+		}
+		return null;
+	}
+
+	private static String probe(String tool, File executable, Map<String, String> env) throws CoreException{
+		long start = System.currentTimeMillis();
+		ProcessBuilder pb = new ProcessBuilder(executable.getAbsolutePath(), VERSION_ARGUMENTS.get(tool));
+		pb.environment().clear();
+		pb.environment().putAll(env);
+		pb.redirectErrorStream(true);
+		// a first run prompt must not wait for input
+		pb.redirectInput(new File(isWindows() ? "NUL" : "/dev/null"));
+		Process process = null;
+		try{
+			process = pb.start();
+			final InputStream in = process.getInputStream();
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			// read on a separate thread so that a tool that blocks can be timed out
+			Thread reader = new Thread("Toolchain probe reader"){
+				@Override
+				public void run() {
+					try{
+						IOUtils.copy(in, out);
+					}catch(IOException e){
+						// the process is destroyed
+					}finally{
+						IOUtils.closeQuietly(in);
+					}
+				}
+			};
+			reader.setDaemon(true);
+			reader.start();
+			reader.join(PROBE_TIMEOUT);
+			if(reader.isAlive()){
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+						NLS.bind("{0} did not print its version in {1} ms", executable, PROBE_TIMEOUT)));
+			}
+			String output = out.toString();
+			int exit = process.waitFor();
+			HybridCore.trace(NLS.bind("Probed {0} version in {1} ms", tool, System.currentTimeMillis() - start));
+			if(exit != 0){
+				HybridCore.log(IStatus.WARNING, NLS.bind("{0} exited with code {1}: {2}", new Object[]{executable, exit, output}), null);
+				return null;
+			}
+			return parseVersion(output);
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, NLS.bind("Unable to run {0}", executable), e);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}finally{
+			if(process != null){
+				process.destroy();
+			}
+		}
+		return null;
+	}
+
+	private static Map<String, String> getEnvironment() throws CoreException{
+		if(isWindows()){
+			return System.getenv();
+		}
+		return LoginShellEnvironment.getEnvironment();
+	}
+
+	private static File findExecutable(String tool, Map<String, String> env){
+		File executable = null;
+		if(isWindows()){
+			String pathExt = env.get("PATHEXT");
+			String[] extensions = pathExt == null ? DEFAULT_WINDOWS_EXTENSIONS : pathExt.split(File.pathSeparator);
+			for (int i = 0; i < extensions.length && executable == null; i++) {
+				executable = LoginShellEnvironment.findExecutable(tool + extensions[i].toLowerCase(), env);
+			}
+		}else{
+			executable = LoginShellEnvironment.findExecutable(tool, env);
+		}
+		if(executable == null){
+			return null;
+		}
+		try {
+			// resolve the links so that an update of the linked binary is detected
+			return executable.getCanonicalFile();
+		} catch (IOException e) {
+			return executable.getAbsoluteFile();
+		}
+	}
+
+	private static boolean isWindows(){
+		String OS = System.getProperty("os.name","unknown");
+		return OS.toLowerCase().indexOf("win")>-1;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Red Hat, Inc. 
+ * Copyright (c) 2013, 2016 Red Hat, Inc.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,103 +10,235 @@
  *******************************************************************************/
 package org.eclipse.thym.core.internal.util;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.Header;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.StatusLine;
 import org.apache.http.client.cache.HttpCacheEntry;
 import org.apache.http.client.cache.HttpCacheStorage;
 import org.apache.http.client.cache.HttpCacheUpdateCallback;
 import org.apache.http.client.cache.HttpCacheUpdateException;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.impl.client.cache.HeapResource;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.thym.core.HybridCore;
 import org.osgi.framework.Bundle;
 
 
 /**
  * A cache storage whose back-end is on OSGi bundles data file area.
- * 
+ * <p>
+ * Each entry is stored on its own file named after the SHA-256 of the
+ * cache key, the key is also stored in the file and verified on read.
+ * Entries are written to a temporary file and renamed into place, so a
+ * crash never leaves a partially written entry behind. Every version of
+ * an entry gets a new file, a file is never rewritten while a body is
+ * read from it and the previous version is deleted once it is replaced.
+ * An index of the
+ * entries in least recently used order is kept to evict entries when the
+ * storage grows beyond its byte budget. If the index is lost it is
+ * rebuilt from the entry files. Bodies larger than {@link DiskResourceFactory#HEAP_THRESHOLD}
+ * are not loaded in memory, they are read from the entry file when used.
+ * </p>
+ * The byte budget can be overridden with <i>org.eclipse.thym.core.http.cacheSize</i>
+ * system property.
+ *
  * @author Gorkem Ercan
  *
  */
 public class BundleHttpCacheStorage implements HttpCacheStorage {
 	public static final String SUBDIR_HTTP_CACHE = "httpCache";
-	private File cacheDir;
-	
-	
+	/**
+	 * Default maximum size of the storage in bytes.
+	 */
+	public static final long MAX_SIZE = Long.getLong("org.eclipse.thym.core.http.cacheSize", 50 * 1024 * 1024);
+
+	private static final String INDEX_FILE = "index";
+	private static final String ENTRY_SUFFIX = ".entry";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String VERSION_SEPARATOR = "-";
+	private static final int MAGIC = 0x54484331; // THC1
+
+	/**
+	 * Resource for a large body that is read from the entry file on demand.
+	 * Entry files are not modified once written, a replaced entry is stored
+	 * in a new file.
+	 */
+	private static class FileRegionResource implements Resource {
+		private static final long serialVersionUID = 1L;
+		private final File file;
+		private final long offset;
+		private final long length;
+
+		private FileRegionResource(File file, long offset, long length){
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			InputStream in = new FileInputStream(file);
+			try{
+				IOUtils.skipFully(in, offset);
+			}catch(IOException e){
+				in.close();
+				throw e;
+			}
+			return new BoundedInputStream(in, length);
+		}
+
+		@Override
+		public long length() {
+			return length;
+		}
+
+		@Override
+		public void dispose() {
+			// the file is owned by the storage
+		}
+	}
+
+	/**
+	 * The current file of an entry.
+	 */
+	private static class StoredEntry {
+		private final File file;
+		private final long size;
+
+		private StoredEntry(File file){
+			this.file = file;
+			this.size = file.length();
+		}
+	}
+
+	private final File cacheDir;
+	private final long maxSize;
+	// hash to entry file, in least recently used order
+	private final LinkedHashMap<String, StoredEntry> index = new LinkedHashMap<String, StoredEntry>(16, 0.75f, true);
+	// replaced entry files that could not be deleted, they may be open for reading
+	private final List<File> staleFiles = new ArrayList<File>();
+	private long size;
+
+
 	public BundleHttpCacheStorage(Bundle bundle) {
-		File f = bundle.getDataFile(SUBDIR_HTTP_CACHE);
-		if(!f.exists()){
-			f.mkdir();
+		this(bundle.getDataFile(SUBDIR_HTTP_CACHE), MAX_SIZE);
+	}
+
+	//public visibility to support testing
+	public BundleHttpCacheStorage(File directory, long maxSize){
+		if(!directory.exists()){
+			directory.mkdirs();
 		}
-		cacheDir = f;
+		this.cacheDir = directory;
+		this.maxSize = maxSize;
+		loadIndex();
 	}
 
 	@Override
-	public void putEntry(String key, HttpCacheEntry entry) throws IOException {
-		ByteArrayOutputStream byteArrayOS = null;
-		ObjectOutputStream objectOut = null;
-			
+	public synchronized void putEntry(String key, HttpCacheEntry entry) throws IOException {
+		String hash = hash(key);
+		File temp = File.createTempFile(hash, TEMP_SUFFIX, cacheDir);
+		File target = null;
+		DataOutputStream out = null;
 		try{
-			File f = getCacheFile(key);
-			byteArrayOS = new ByteArrayOutputStream();
-			objectOut = new ObjectOutputStream(byteArrayOS);
-			objectOut.writeObject(entry);
-			objectOut.flush();
-			FileUtils.writeByteArrayToFile(f,byteArrayOS.toByteArray());
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			writeEntry(out, key, entry);
+			out.close();
+			out = null;
+			// a new file for the new version, readers of the previous one are not affected
+			target = File.createTempFile(hash + VERSION_SEPARATOR, ENTRY_SUFFIX, cacheDir);
+			moveAtomically(temp, target);
+		}catch(IOException e){
+			FileUtils.deleteQuietly(target);
+			throw e;
 		}finally{
-			if(objectOut != null )
-				objectOut.close();
-			if(byteArrayOS != null)
-				byteArrayOS.close();
+			IOUtils.closeQuietly(out);
+			FileUtils.deleteQuietly(temp);
 		}
-	}
-
-	private File getCacheFile(String key) {
-		String fileName = Integer.toHexString(key.hashCode());
-		File f = new File(cacheDir, fileName);
-		return f;
+		StoredEntry stored = new StoredEntry(target);
+		StoredEntry old = index.put(hash, stored);
+		size += stored.size;
+		if(old != null){
+			size -= old.size;
+			deleteEntryFile(old.file);
+		}
+		evict();
+		saveIndex();
 	}
 
 	@Override
-	public HttpCacheEntry getEntry(String key) throws IOException {
-		File f = getCacheFile(key);
-		if(f.exists()){
-			ByteArrayInputStream bais = null;
-			ObjectInputStream ois = null;
-			HttpCacheEntry entry = null;
-
-			try {
-				byte[] bytes = FileUtils.readFileToByteArray(f);
-				bais = new ByteArrayInputStream(bytes);
-				ois = new ObjectInputStream(bais);
-				entry = (HttpCacheEntry) ois.readObject();
-			} catch (ClassNotFoundException e) {
-				HybridCore.log(IStatus.ERROR, "Missing bundle", e);
-			}
-			finally{
-				if(ois != null )
-					ois.close();
-				if(bais != null )
-					bais.close();
-			}
-			return entry;	
+	public synchronized HttpCacheEntry getEntry(String key) throws IOException {
+		String hash = hash(key);
+		StoredEntry stored = index.get(hash); // marks as recently used
+		if(stored == null){
+			return null;
+		}
+		File f = stored.file;
+		if(!f.exists()){
+			size -= index.remove(hash).size;
+			return null;
+		}
+		DataInputStream in = null;
+		try{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+			return readEntry(in, key, f);
+		}catch(IOException e){
+			// corrupt or from an older version, treat as a miss
+			HybridCore.log(IStatus.WARNING, NLS.bind("Discarding unreadable HTTP cache entry {0}", f), e);
+			IOUtils.closeQuietly(in);
+			in = null;
+			remove(hash);
+			saveIndex();
+			return null;
+		}finally{
+			IOUtils.closeQuietly(in);
 		}
-		return null;
 	}
 
 	@Override
-	public void removeEntry(String key) throws IOException {
-		File f = getCacheFile(key);
-		FileUtils.deleteQuietly(f);
+	public synchronized void removeEntry(String key) throws IOException {
+		remove(hash(key));
+		saveIndex();
 	}
 
 	@Override
-	public void updateEntry(String key, HttpCacheUpdateCallback callback)
+	public synchronized void updateEntry(String key, HttpCacheUpdateCallback callback)
 			throws IOException, HttpCacheUpdateException {
 		HttpCacheEntry existing = getEntry(key);
 		HttpCacheEntry updated = callback.update(existing);
@@ -116,5 +248,280 @@ public class BundleHttpCacheStorage implements HttpCacheStorage {
 			putEntry(key, updated);
 		}
 	}
+
+	/**
+	 * Total size of the stored entries in bytes.
+	 * @return size
+	 */
+	public synchronized long getSize(){
+		return size;
+	}
+
+	/**
+	 * Number of stored entries.
+	 * @return count
+	 */
+	public synchronized int getEntryCount(){
+		return index.size();
+	}
+
+	private void remove(String hash){
+		StoredEntry removed = index.remove(hash);
+		if(removed != null){
+			size -= removed.size;
+			deleteEntryFile(removed.file);
+		}
+	}
+
+	private void evict(){
+		Iterator<Entry<String, StoredEntry>> iterator = index.entrySet().iterator();
+		// always keep the most recently used entry
+		while(size > maxSize && index.size() > 1 && iterator.hasNext()){
+			StoredEntry eldest = iterator.next().getValue();
+			size -= eldest.size;
+			iterator.remove();
+			deleteEntryFile(eldest.file);
+		}
+	}
+
+	private void deleteEntryFile(File file){
+		// fails on some platforms while the file is open, try again later
+		if(!file.delete() && file.exists()){
+			staleFiles.add(file);
+		}
+	}
+
+	private void deleteStaleFiles(){
+		Iterator<File> iterator = staleFiles.iterator();
+		while(iterator.hasNext()){
+			File file = iterator.next();
+			if(file.delete() || !file.exists()){
+				iterator.remove();
+			}
+		}
+	}
+
+	private static String getName(File entryFile){
+		String name = entryFile.getName();
+		return name.substring(0, name.length() - ENTRY_SUFFIX.length());
+	}
+
+	private static String getHash(String name){
+		int separator = name.indexOf(VERSION_SEPARATOR);
+		return separator < 0 ? name : name.substring(0, separator);
+	}
+
+	private void writeEntry(DataOutputStream out, String key, HttpCacheEntry entry) throws IOException{
+		out.writeInt(MAGIC);
+		writeString(out, key);
+		out.writeLong(entry.getRequestDate().getTime());
+		out.writeLong(entry.getResponseDate().getTime());
+		StatusLine status = entry.getStatusLine();
+		writeString(out, status.getProtocolVersion().getProtocol());
+		out.writeShort(status.getProtocolVersion().getMajor());
+		out.writeShort(status.getProtocolVersion().getMinor());
+		out.writeShort(status.getStatusCode());
+		writeString(out, status.getReasonPhrase());
+		Header[] headers = entry.getAllHeaders();
+		out.writeInt(headers.length);
+		for (Header header : headers) {
+			writeString(out, header.getName());
+			writeString(out, header.getValue());
+		}
+		Map<String, String> variants = entry.getVariantMap();
+		out.writeInt(variants.size());
+		for (Entry<String, String> variant : variants.entrySet()) {
+			writeString(out, variant.getKey());
+			writeString(out, variant.getValue());
+		}
+		Resource resource = entry.getResource();
+		if(resource == null){
+			out.writeLong(-1);
+			return;
+		}
+		out.writeLong(resource.length());
+		InputStream body = resource.getInputStream();
+		try{
+			long copied = IOUtils.copyLarge(body, out);
+			if(copied != resource.length()){
+				throw new IOException("Cache entry body does not match its length");
+			}
+		}finally{
+			body.close();
+		}
+	}
+
+	private HttpCacheEntry readEntry(DataInputStream in, String key, File file) throws IOException{
+		if(in.readInt() != MAGIC){
+			throw new IOException("Not an HTTP cache entry");
+		}
+		String storedKey = readString(in);
+		if(!key.equals(storedKey)){
+			throw new IOException("HTTP cache entry is stored for a different key");
+		}
+		Date requestDate = new Date(in.readLong());
+		Date responseDate = new Date(in.readLong());
+		ProtocolVersion version = new ProtocolVersion(readString(in), in.readShort(), in.readShort());
+		StatusLine status = new BasicStatusLine(version, in.readShort(), readString(in));
+		Header[] headers = new Header[in.readInt()];
+		for (int i = 0; i < headers.length; i++) {
+			headers[i] = new BasicHeader(readString(in), readString(in));
+		}
+		int variantCount = in.readInt();
+		Map<String, String> variants = new HashMap<String, String>(variantCount);
+		for (int i = 0; i < variantCount; i++) {
+			variants.put(readString(in), readString(in));
+		}
+		long length = in.readLong();
+		Resource resource = null;
+		if(length > DiskResourceFactory.HEAP_THRESHOLD){
+			// the body is at the end of the file, read it from there when needed
+			resource = new FileRegionResource(file, file.length() - length, length);
+		}else if(length >= 0){
+			byte[] body = new byte[(int) length];
+			in.readFully(body);
+			resource = new HeapResource(body);
+		}
+		return new HttpCacheEntry(requestDate, responseDate, status, headers, resource, variants);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException{
+		if(value == null){
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException{
+		int length = in.readInt();
+		if(length < 0){
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Reads the index, or rebuilds it from the entry files if it is
+	 * missing or does not match the directory.
+	 */
+	private void loadIndex(){
+		// entry file name to file
+		Map<String, File> files = new HashMap<String, File>();
+		File[] list = cacheDir.listFiles();
+		if(list != null){
+			for (File file : list) {
+				String name = file.getName();
+				if(name.endsWith(ENTRY_SUFFIX)){
+					files.put(getName(file), file);
+				}else if(!name.equals(INDEX_FILE)){
+					// left over temporary files and entries of older versions
+					FileUtils.deleteQuietly(file);
+				}
+			}
+		}
+		File indexFile = new File(cacheDir, INDEX_FILE);
+		if(indexFile.isFile()){
+			BufferedReader reader = null;
+			try{
+				reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+				String line;
+				while((line = reader.readLine()) != null){
+					File file = files.remove(line.trim());
+					if(file != null && !index.containsKey(getHash(line.trim()))){
+						StoredEntry stored = new StoredEntry(file);
+						index.put(getHash(line.trim()), stored);
+						size += stored.size;
+					}
+				}
+			}catch(IOException e){
+				HybridCore.log(IStatus.WARNING, "HTTP cache index is unreadable, rebuilding", e);
+			}finally{
+				IOUtils.closeQuietly(reader);
+			}
+		}
+		if(!files.isEmpty()){
+			// entries not in the index are the least recently used
+			List<File> remaining = new ArrayList<File>(files.values());
+			File[] sorted = remaining.toArray(new File[remaining.size()]);
+			Arrays.sort(sorted, new Comparator<File>() {
+				@Override
+				public int compare(File f1, File f2) {
+					return Long.compare(f1.lastModified(), f2.lastModified());
+				}
+			});
+			LinkedHashMap<String, StoredEntry> indexed = new LinkedHashMap<String, StoredEntry>(index);
+			index.clear();
+			for (File file : sorted) {
+				String hash = getHash(getName(file));
+				if(indexed.containsKey(hash)){
+					// a replaced version that could not be deleted
+					FileUtils.deleteQuietly(file);
+					continue;
+				}
+				StoredEntry stored = new StoredEntry(file);
+				StoredEntry older = index.put(hash, stored);
+				size += stored.size;
+				if(older != null){
+					size -= older.size;
+					FileUtils.deleteQuietly(older.file);
+				}
+			}
+			index.putAll(indexed);
+			evict();
+			saveIndex();
+		}
+	}
+
+	private void saveIndex(){
+		deleteStaleFiles();
+		File temp = null;
+		Writer writer = null;
+		try{
+			temp = File.createTempFile(INDEX_FILE, TEMP_SUFFIX, cacheDir);
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+			for (StoredEntry stored : index.values()) {
+				writer.write(getName(stored.file));
+				writer.write('\n');
+			}
+			writer.close();
+			writer = null;
+			moveAtomically(temp, new File(cacheDir, INDEX_FILE));
+		}catch(IOException e){
+			// the index is rebuilt from the entries if it is lost
+			HybridCore.log(IStatus.WARNING, "Unable to save HTTP cache index", e);
+		}finally{
+			IOUtils.closeQuietly(writer);
+			FileUtils.deleteQuietly(temp);
+		}
+	}
+
+	private static void moveAtomically(File source, File target) throws IOException{
+		try{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}catch(AtomicMoveNotSupportedException e){
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String hash(String key){
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] bytes = digest.digest(key.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(bytes.length * 2);
+			for (byte b : bytes) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is required to be available on every Java platform
+			throw new IllegalStateException(e);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
 }
-		
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.cache.InputLimit;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.client.cache.ResourceFactory;
+import org.apache.http.impl.client.cache.HeapResource;
+
+/**
+ * Creates the resources for the cached response bodies. Bodies up to
+ * {@link #HEAP_THRESHOLD} bytes are kept in memory, larger bodies are
+ * streamed to temporary files so that multi-megabyte registry documents
+ * can be cached without holding them on the heap.
+ * <p>
+ * The temporary files are deleted when their resources are disposed or
+ * garbage collected, and when the factory is created.
+ * </p>
+ */
+public class DiskResourceFactory implements ResourceFactory {
+
+	/**
+	 * Bodies larger than this are stored on disk.
+	 */
+	public static final int HEAP_THRESHOLD = 64 * 1024;
+
+	private static class DiskResource implements Resource {
+		private static final long serialVersionUID = 1L;
+		private final File file;
+
+		private DiskResource(File file){
+			this.file = file;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			return new FileInputStream(file);
+		}
+
+		@Override
+		public long length() {
+			return file.length();
+		}
+
+		@Override
+		public void dispose() {
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	private static class ResourceReference extends PhantomReference<DiskResource> {
+		private final File file;
+
+		private ResourceReference(DiskResource resource, ReferenceQueue<DiskResource> queue){
+			super(resource, queue);
+			this.file = resource.file;
+		}
+	}
+
+	private final File directory;
+	private final ReferenceQueue<DiskResource> queue = new ReferenceQueue<DiskResource>();
+	private final Set<ResourceReference> references = Collections.synchronizedSet(new HashSet<ResourceReference>());
+
+	public DiskResourceFactory(File directory){
+		if(directory.exists()){
+			// left over from an earlier session
+			try {
+				FileUtils.cleanDirectory(directory);
+			} catch (IOException e) {
+				// not critical, files are overwritten
+			}
+		}else{
+			directory.mkdirs();
+		}
+		this.directory = directory;
+	}
+
+	@Override
+	public Resource generate(String requestId, InputStream instream, InputLimit limit) throws IOException {
+		purge();
+		ByteArrayOutputStream heap = new ByteArrayOutputStream();
+		OutputStream out = heap;
+		File file = null;
+		boolean done = false;
+		try{
+			byte[] buffer = new byte[8 * 1024];
+			long total = 0;
+			int read;
+			while((read = instream.read(buffer)) != -1){
+				if(file == null && total + read > HEAP_THRESHOLD){
+					file = File.createTempFile("body", ".tmp", directory);
+					out = new FileOutputStream(file);
+					heap.writeTo(out);
+					heap = null;
+				}
+				out.write(buffer, 0, read);
+				total += read;
+				if(limit != null && total > limit.getValue()){
+					limit.reached();
+					break;
+				}
+			}
+			out.close();
+			done = true;
+		}finally{
+			IOUtils.closeQuietly(out);
+			if(!done && file != null){
+				FileUtils.deleteQuietly(file);
+			}
+		}
+		if(file == null){
+			return new HeapResource(heap.toByteArray());
+		}
+		DiskResource resource = new DiskResource(file);
+		references.add(new ResourceReference(resource, queue));
+		return resource;
+	}
+
+	@Override
+	public Resource copy(String requestId, Resource resource) throws IOException {
+		InputStream in = resource.getInputStream();
+		try{
+			return generate(requestId, in, null);
+		}finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Deletes the files of the resources that are no longer referenced.
+	 */
+	private void purge(){
+		Reference<? extends DiskResource> reference;
+		while((reference = queue.poll()) != null){
+			ResourceReference resourceReference = (ResourceReference) reference;
+			references.remove(resourceReference);
+			FileUtils.deleteQuietly(resourceReference.file);
+		}
+	}
+
+}
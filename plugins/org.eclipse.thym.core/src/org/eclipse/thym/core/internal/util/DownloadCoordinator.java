@@ -0,0 +1,340 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Coalesces concurrent downloads of the same resource. A download that is
+ * requested while an identical one is in progress joins it instead of
+ * starting another transfer into the same location, and receives its
+ * result or failure.
+ * <p>
+ * The download runs on a background job. Every caller waits for it with
+ * its own progress monitor, the progress of the download is reported to
+ * all of them. A caller that is cancelled stops waiting, the download is
+ * cancelled only when no caller waits for it anymore. A cancelled download
+ * stays registered until its job stops, a request for it in the meantime
+ * waits for that and starts a new one. Results are not kept after the
+ * download completes, a later request starts a new one.
+ * </p>
+ *
+ * @param <V> result of the download
+ */
+public class DownloadCoordinator<V> {
+
+	private static final long POLL_INTERVAL = 100;
+	private static final int TOTAL_WORK = 1000;
+
+	/**
+	 * Performs the download, the monitor is cancelled when no caller
+	 * waits for the result anymore.
+	 */
+	public interface Task<V> {
+		public V run(IProgressMonitor monitor) throws CoreException;
+	}
+
+	/**
+	 * The interest of a caller in a download.
+	 */
+	public class Request {
+		private final Flight flight;
+		private final boolean joined;
+		private boolean released;
+
+		private Request(Flight flight, boolean joined){
+			this.flight = flight;
+			this.joined = joined;
+		}
+
+		/**
+		 * Waits for the download to complete. The request is released when
+		 * it returns.
+		 *
+		 * @param monitor
+		 * @return result of the download
+		 * @throws CoreException if the download fails, with a cancel status
+		 * if the monitor or the download is cancelled
+		 */
+		public V get(IProgressMonitor monitor) throws CoreException{
+			if(monitor == null){
+				monitor = new NullProgressMonitor();
+			}
+			monitor.beginTask(flight.getName(), TOTAL_WORK);
+			int reported = 0;
+			try{
+				while(true){
+					// the monitor is not called under the lock
+					synchronized (DownloadCoordinator.this) {
+						if(flight.done){
+							break;
+						}
+						DownloadCoordinator.this.wait(POLL_INTERVAL);
+					}
+					if(monitor.isCanceled()){
+						throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID,
+								NLS.bind("{0} is cancelled", flight.getName())));
+					}
+					SharedProgress progress = flight.progress;
+					if(progress == null){
+						continue;
+					}
+					int completed = progress.getCompleted();
+					if(completed > reported){
+						monitor.worked(completed - reported);
+						reported = completed;
+					}
+					if(progress.subTask != null){
+						monitor.subTask(progress.subTask);
+					}
+				}
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID,
+						NLS.bind("Interrupted while waiting for {0}", flight.getName())));
+			}finally{
+				release();
+				monitor.done();
+			}
+			synchronized (DownloadCoordinator.this) {
+				if(flight.exception != null){
+					throw flight.exception;
+				}
+				return flight.value;
+			}
+		}
+
+		/**
+		 * Stops waiting for the download without waiting for it. The
+		 * download is cancelled if no other caller waits for it.
+		 */
+		public void release(){
+			boolean cancel = false;
+			synchronized (DownloadCoordinator.this) {
+				if(released){
+					return;
+				}
+				released = true;
+				if(--flight.waiters == 0 && !flight.done){
+					// stays registered until the job stops
+					flight.cancelled = true;
+					cancel = true;
+				}
+			}
+			if(cancel && flight.cancel()){
+				// had not started, will not run
+				flight.finish(null, new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID,
+						NLS.bind("{0} is cancelled", flight.getName()))));
+			}
+		}
+
+		/**
+		 * @return true if the request joined a download that was already in progress
+		 */
+		public boolean isJoined(){
+			return joined;
+		}
+	}
+
+	/**
+	 * Passes the progress of the download to the job monitor and records
+	 * it for the waiting callers, the cancellation is that of the job.
+	 */
+	private static class SharedProgress extends ProgressMonitorWrapper {
+		private volatile double totalWork;
+		private volatile double worked;
+		private volatile String subTask;
+
+		private SharedProgress(IProgressMonitor monitor){
+			super(monitor);
+		}
+
+		@Override
+		public void beginTask(String name, int totalWork) {
+			if(this.totalWork <= 0 && totalWork > 0){
+				// nested tasks report to the outermost one
+				this.totalWork = totalWork;
+			}
+			super.beginTask(name, totalWork);
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		@Override
+		public void internalWorked(double work) {
+			worked += work;
+			super.internalWorked(work);
+		}
+
+		@Override
+		public void subTask(String name) {
+			subTask = name;
+			super.subTask(name);
+		}
+
+		private int getCompleted(){
+			double total = totalWork;
+			if(total <= 0){
+				return 0;
+			}
+			return (int) Math.min(TOTAL_WORK, worked * TOTAL_WORK / total);
+		}
+	}
+
+	private class Flight extends Job {
+		private final String key;
+		private final Task<V> task;
+		private volatile SharedProgress progress;
+		private int waiters;
+		private boolean cancelled;
+		private boolean done;
+		private V value;
+		private CoreException exception;
+
+		private Flight(String key, Task<V> task){
+			super(NLS.bind("Download {0}", key));
+			this.key = key;
+			this.task = task;
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			progress = new SharedProgress(monitor);
+			V result = null;
+			CoreException failure = new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+					NLS.bind("Error while downloading {0}", key)));
+			try{
+				result = task.run(progress);
+				failure = null;
+			}catch(CoreException e){
+				failure = e;
+			}catch(RuntimeException e){
+				failure = new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+						NLS.bind("Error while downloading {0}", key), e));
+			}finally{
+				finish(result, failure);
+			}
+			return Status.OK_STATUS;
+		}
+
+		private void finish(V result, CoreException failure){
+			synchronized (DownloadCoordinator.this) {
+				if(done){
+					return;
+				}
+				value = result;
+				exception = failure;
+				done = true;
+				if(flights.get(key) == this){
+					flights.remove(key);
+				}
+				DownloadCoordinator.this.notifyAll();
+			}
+		}
+	}
+
+	private final Map<String, Flight> flights = new HashMap<String, Flight>();
+	private long startCount;
+	private long joinCount;
+
+	/**
+	 * Starts the download for the key, or joins the one in progress. If the
+	 * download in progress is cancelled, waits for it to stop before a new
+	 * one is started. The request must be waited for with
+	 * {@link Request#get(IProgressMonitor)} or released.
+	 *
+	 * @param key identifies the downloaded resource, e.g. its resolved URL
+	 * @param task performs the download if none is in progress
+	 * @return request
+	 */
+	public Request submit(String key, Task<V> task){
+		Flight flight;
+		boolean joined;
+		boolean interrupted = false;
+		synchronized (this) {
+			flight = flights.get(key);
+			while(flight != null && flight.cancelled){
+				try{
+					wait();
+				}catch(InterruptedException e){
+					interrupted = true;
+				}
+				flight = flights.get(key);
+			}
+			joined = flight != null;
+			if(joined){
+				joinCount++;
+			}else{
+				flight = new Flight(key, task);
+				flights.put(key, flight);
+				startCount++;
+			}
+			flight.waiters++;
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+		if(!joined){
+			flight.schedule();
+		}
+		return new Request(flight, joined);
+	}
+
+	/**
+	 * Performs the download for the key, or waits for the one in progress.
+	 *
+	 * @param key identifies the downloaded resource, e.g. its resolved URL
+	 * @param task performs the download if none is in progress
+	 * @param monitor
+	 * @return result of the download
+	 * @throws CoreException if the download fails or is cancelled
+	 */
+	public V execute(String key, Task<V> task, IProgressMonitor monitor) throws CoreException{
+		return submit(key, task).get(monitor);
+	}
+
+	/**
+	 * @return number of downloads in progress
+	 */
+	public synchronized int getInProgressCount(){
+		return flights.size();
+	}
+
+	/**
+	 * @return number of downloads started
+	 */
+	public synchronized long getStartCount(){
+		return startCount;
+	}
+
+	/**
+	 * @return number of requests that joined a download in progress
+	 */
+	public synchronized long getJoinCount(){
+		return joinCount;
+	}
+
+}
@@ -0,0 +1,715 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.params.HttpConnectionParams;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Downloads files asynchronously with the shared HTTP client. An attempt
+ * that does not receive any data for the timeout or that is interrupted
+ * is retried with an increasing delay, resuming with a range request
+ * from where the previous attempt stopped.
+ * <p>
+ * The received bytes can be kept in a partial file together with the
+ * validators of the response, <i>ETag</i> or <i>Last-Modified</i>, so that
+ * a later download of the same URI resumes from it. The server sends the
+ * whole content again if it has changed since. A download completes only
+ * when the length declared by the server is received, the SHA-1 of the
+ * content is available from {@link Download#getShasum()} for verification.
+ * </p>
+ */
+public class DownloadService {
+
+	/**
+	 * Attempts that do not receive any data for this long are aborted and
+	 * retried, can be overridden with <i>org.eclipse.thym.core.download.timeout</i>
+	 * system property in milliseconds.
+	 */
+	public static final long TIMEOUT = Long.getLong("org.eclipse.thym.core.download.timeout", 60 * 1000);
+	/**
+	 * Number of attempts before a download fails, can be overridden with
+	 * <i>org.eclipse.thym.core.download.attempts</i> system property.
+	 */
+	public static final int ATTEMPTS = Integer.getInteger("org.eclipse.thym.core.download.attempts", 5);
+	/**
+	 * Delay before the first retry in milliseconds, doubled for every next
+	 * retry. Can be overridden with <i>org.eclipse.thym.core.download.retryDelay</i>
+	 * system property.
+	 */
+	public static final long RETRY_DELAY = Long.getLong("org.eclipse.thym.core.download.retryDelay", 1000);
+	private static final long MAX_RETRY_DELAY = 30 * 1000;
+	private static final long POLL_INTERVAL = 100;
+	private static final String PARTIAL_SUFFIX = ".part";
+	private static final String VALIDATORS_SUFFIX = ".properties";
+	private static final String KEY_URI = "uri";
+	private static final String KEY_VALIDATOR = "validator";
+	private static final String KEY_LENGTH = "length";
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+	/**
+	 * Response that fails the download without further attempts.
+	 */
+	private static class UnexpectedResponseException extends IOException {
+		private static final long serialVersionUID = 1L;
+		private final int status;
+
+		private UnexpectedResponseException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+
+		private boolean isRetryable(){
+			return status >= 500 || status == HttpStatus.SC_REQUEST_TIMEOUT || status == 429;
+		}
+	}
+
+	/**
+	 * Failure to write the content to the stream, e.g. an archive that can
+	 * not be extracted. Fails the download without further attempts.
+	 */
+	private static class StreamException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private StreamException(URI uri, IOException cause) {
+			super(NLS.bind("Can not write the content of {0}", uri), cause);
+		}
+	}
+
+	/**
+	 * A download in progress. The attempts run on a background job, the
+	 * progress is reported and the cancellation is checked on the thread
+	 * that waits with {@link #get(IProgressMonitor)}. A cancelled download
+	 * is done once the job has stopped writing to the stream and the partial
+	 * file, so that the caller can clean up after them.
+	 */
+	public static class Download implements Future<File> {
+
+		private final URI uri;
+		private final File target;
+		private final File partial;
+		private final OutputStream stream;
+		private final DownloadService service;
+		private volatile long bytesReceived;
+		private volatile long fileLength = -1;
+		private MessageDigest digest;
+		private String validator;
+		private long position;
+		private boolean replayed;
+		private HttpGet request;
+		private String shasum;
+		private Job job;
+		private volatile Thread worker;
+		private boolean done;
+		private volatile boolean cancelled;
+		private Exception exception;
+
+		private Download(URI uri, File target, File partial, OutputStream stream, DownloadService service){
+			this.uri = uri;
+			this.target = target;
+			this.partial = partial;
+			this.stream = stream;
+			this.service = service;
+			this.replayed = stream == null || partial == null;
+		}
+
+		private void run(){
+			worker = Thread.currentThread();
+			Exception failure = null;
+			try{
+				digest = MessageDigest.getInstance("SHA-1");
+				loadValidators();
+				long delay = service.retryDelay;
+				for(int attempt = 1; ; attempt++){
+					try{
+						transfer();
+						break;
+					}catch(IOException e){
+						if(cancelled || attempt >= service.attempts || !isRetryable(e)){
+							throw e;
+						}
+						HybridCore.log(IStatus.INFO, NLS.bind("Download of {0} is interrupted after {1} bytes, retrying", uri, position), e);
+					}
+					synchronized (this) {
+						if(!cancelled){
+							wait(delay);
+						}
+					}
+					delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+				}
+				if(cancelled){
+					// cancelled, the partial file is kept for resuming
+					return;
+				}
+				shasum = toHex(digest.digest());
+				if(stream != null){
+					stream.close();
+				}
+				if(target != null){
+					Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				discardPartial();
+			}catch(UnexpectedResponseException e){
+				discardPartial();
+				failure = e;
+			}catch(Exception e){
+				failure = e;
+			}finally{
+				if(stream != null){
+					IOUtils.closeQuietly(stream);
+				}
+				finish(failure);
+			}
+		}
+
+		/**
+		 * A single attempt, requests the remaining content if some is
+		 * received already.
+		 */
+		private void transfer() throws IOException{
+			long offset = replayed ? position : partial.length();
+			HttpGet get = new HttpGet(uri);
+			// ranges apply to the encoded content, request it as is
+			get.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+			if(offset > 0){
+				get.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+				if(validator != null){
+					get.setHeader(HttpHeaders.IF_RANGE, validator);
+				}
+			}
+			HttpConnectionParams.setConnectionTimeout(get.getParams(), (int) Math.min(Integer.MAX_VALUE, service.timeout));
+			HttpConnectionParams.setSoTimeout(get.getParams(), (int) Math.min(Integer.MAX_VALUE, service.timeout));
+			synchronized (this) {
+				if(cancelled){
+					return;
+				}
+				request = get;
+			}
+			boolean completed = false;
+			try{
+				HttpResponse response = service.client.execute(get);
+				int status = response.getStatusLine().getStatusCode();
+				HttpEntity entity = response.getEntity();
+				long length;
+				if(offset > 0 && status == HttpStatus.SC_PARTIAL_CONTENT){
+					length = parseContentRange(response, offset);
+				}else if(status == HttpStatus.SC_OK){
+					length = entity != null ? entity.getContentLength() : -1;
+					if(offset > 0){
+						restart();
+					}
+				}else if(offset > 0 && status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE){
+					// the partial content is not from this version
+					restart();
+					throw new IOException(NLS.bind("Partial download of {0} is discarded", uri));
+				}else{
+					throw new UnexpectedResponseException(status, NLS.bind("Server responded {0} {1}",
+							status, response.getStatusLine().getReasonPhrase()));
+				}
+				fileLength = length;
+				saveValidators(response, length);
+				if(!replayed){
+					replay();
+				}
+				if(entity != null){
+					receive(entity.getContent());
+				}
+				if(length >= 0 && position != length){
+					throw new IOException(NLS.bind("Download of {0} is incomplete, {1} of {2} bytes received",
+							new Object[]{uri, position, length}));
+				}
+				completed = true;
+			}finally{
+				if(!completed){
+					get.abort();
+				}
+				synchronized (this) {
+					request = null;
+				}
+			}
+		}
+
+		private long parseContentRange(HttpResponse response, long offset) throws IOException{
+			Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+			Matcher matcher = header != null ? CONTENT_RANGE.matcher(header.getValue()) : null;
+			if(matcher == null || !matcher.matches() || Long.parseLong(matcher.group(1)) != offset){
+				restart();
+				throw new IOException(NLS.bind("Unexpected content range {0}", header == null ? null : header.getValue()));
+			}
+			if("*".equals(matcher.group(3))){
+				return -1;
+			}
+			long length = Long.parseLong(matcher.group(3));
+			if(fileLength >= 0 && length != fileLength){
+				restart();
+				throw new IOException(NLS.bind("Length of {0} has changed", uri));
+			}
+			return length;
+		}
+
+		private void receive(InputStream in) throws IOException{
+			OutputStream file = partial != null ? new FileOutputStream(partial, true) : null;
+			try{
+				byte[] buffer = new byte[16 * 1024];
+				int read;
+				while((read = in.read(buffer)) != -1){
+					checkCancelled();
+					if(file != null){
+						file.write(buffer, 0, read);
+					}
+					if(stream != null){
+						writeToStream(buffer, read);
+					}
+					digest.update(buffer, 0, read);
+					position += read;
+					bytesReceived = position;
+				}
+			}finally{
+				IOUtils.closeQuietly(file);
+				in.close();
+			}
+		}
+
+		/**
+		 * Passes the content that is kept in the partial file from an
+		 * earlier download on, and includes it in the SHA-1.
+		 */
+		private void replay() throws IOException{
+			InputStream in = new FileInputStream(partial);
+			try{
+				byte[] buffer = new byte[16 * 1024];
+				int read;
+				while((read = in.read(buffer)) != -1){
+					checkCancelled();
+					if(stream != null){
+						writeToStream(buffer, read);
+					}
+					digest.update(buffer, 0, read);
+					position += read;
+				}
+				bytesReceived = position;
+				replayed = true;
+			}finally{
+				in.close();
+			}
+		}
+
+		private void writeToStream(byte[] buffer, int length) throws StreamException{
+			try{
+				stream.write(buffer, 0, length);
+			}catch(IOException e){
+				throw new StreamException(uri, e);
+			}
+		}
+
+		private void checkCancelled() throws IOException{
+			if(cancelled){
+				throw new IOException(NLS.bind("Download of {0} is cancelled", uri));
+			}
+		}
+
+		/**
+		 * Starts over from the first byte, possible only while nothing is
+		 * passed on to the stream.
+		 */
+		private void restart() throws IOException{
+			if(stream != null && position > 0){
+				discardPartial();
+				throw new UnexpectedResponseException(HttpStatus.SC_CONFLICT, NLS.bind("Content of {0} has changed during the download", uri));
+			}
+			if(partial != null){
+				FileUtils.deleteQuietly(getValidatorsFile());
+				new FileOutputStream(partial).close();
+			}
+			digest.reset();
+			validator = null;
+			fileLength = -1;
+			position = 0;
+			bytesReceived = 0;
+			replayed = stream == null || partial == null;
+		}
+
+		private void loadValidators() throws IOException{
+			if(partial == null){
+				return;
+			}
+			if(!partial.exists()){
+				partial.getParentFile().mkdirs();
+				new FileOutputStream(partial).close();
+				return;
+			}
+			Properties properties = new Properties();
+			File file = getValidatorsFile();
+			if(file.isFile()){
+				InputStream in = new FileInputStream(file);
+				try{
+					properties.load(in);
+				}finally{
+					in.close();
+				}
+			}
+			String length = properties.getProperty(KEY_LENGTH);
+			validator = properties.getProperty(KEY_VALIDATOR);
+			if(validator == null || !uri.toString().equals(properties.getProperty(KEY_URI))){
+				// can not verify that the partial content is still valid
+				validator = null;
+				new FileOutputStream(partial).close();
+			}else if(length != null){
+				fileLength = Long.parseLong(length);
+			}
+			if(stream == null && partial.length() > 0){
+				// the partial file is resumed in place, the SHA-1 includes it
+				replay();
+			}
+		}
+
+		private void saveValidators(HttpResponse response, long length) throws IOException{
+			Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+			Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+			if(etag != null && !etag.getValue().startsWith("W/")){
+				// weak tags can not be used for ranges
+				validator = etag.getValue();
+			}else if(lastModified != null){
+				validator = lastModified.getValue();
+			}
+			if(partial == null || validator == null){
+				return;
+			}
+			Properties properties = new Properties();
+			properties.setProperty(KEY_URI, uri.toString());
+			properties.setProperty(KEY_VALIDATOR, validator);
+			if(length >= 0){
+				properties.setProperty(KEY_LENGTH, Long.toString(length));
+			}
+			OutputStream out = new FileOutputStream(getValidatorsFile());
+			try{
+				properties.store(out, null);
+			}finally{
+				out.close();
+			}
+		}
+
+		private void discardPartial(){
+			if(partial != null){
+				FileUtils.deleteQuietly(partial);
+				FileUtils.deleteQuietly(getValidatorsFile());
+			}
+		}
+
+		private File getValidatorsFile(){
+			return new File(partial.getPath() + VALIDATORS_SUFFIX);
+		}
+
+		/**
+		 * Waits for the download to complete, reporting the progress and
+		 * aborting the download when the monitor is cancelled. Returns only
+		 * after the download has stopped writing.
+		 *
+		 * @param monitor
+		 * @return the downloaded file or null if downloaded to a stream
+		 * @throws CoreException if the download fails or is cancelled
+		 */
+		public File get(IProgressMonitor monitor) throws CoreException{
+			if(monitor == null){
+				monitor = new NullProgressMonitor();
+			}
+			monitor.beginTask(NLS.bind("Downloading {0}", uri), 100);
+			int reported = 0;
+			try{
+				while(!isDone()){
+					if(monitor.isCanceled()){
+						// waits for the job to stop
+						cancel(true);
+						break;
+					}
+					synchronized (this) {
+						if(!done){
+							wait(POLL_INTERVAL);
+						}
+					}
+					long length = fileLength;
+					if(length > 0){
+						int percent = (int) Math.min(100, bytesReceived * 100 / length);
+						if(percent > reported){
+							monitor.worked(percent - reported);
+							reported = percent;
+						}
+						monitor.subTask(NLS.bind("{0} of {1} KB", bytesReceived / 1024, length / 1024));
+					}
+				}
+			}catch(InterruptedException e){
+				cancel(true);
+				Thread.currentThread().interrupt();
+			}finally{
+				monitor.done();
+			}
+			synchronized (this) {
+				if(cancelled){
+					throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID,
+							NLS.bind("Download of {0} is cancelled", uri)));
+				}
+				if(exception != null){
+					throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+							NLS.bind("Can not download {0}", uri), exception));
+				}
+				return target;
+			}
+		}
+
+		@Override
+		public File get() throws InterruptedException, ExecutionException {
+			synchronized (this) {
+				while(!done){
+					wait();
+				}
+				return getResult();
+			}
+		}
+
+		@Override
+		public File get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			synchronized (this) {
+				while(!done){
+					long remaining = deadline - System.nanoTime();
+					if(remaining <= 0){
+						throw new TimeoutException();
+					}
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				}
+				return getResult();
+			}
+		}
+
+		/**
+		 * Stops the download and waits for it to stop writing to the stream
+		 * and the partial file. The received content is kept in the partial
+		 * file if there is one.
+		 */
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			HttpGet current;
+			synchronized (this) {
+				if(done || cancelled){
+					return false;
+				}
+				cancelled = true;
+				current = request;
+				// wakes up the job waiting to retry
+				notifyAll();
+			}
+			if(current != null){
+				current.abort();
+			}
+			if(job.cancel()){
+				// had not started, will not run
+				if(stream != null){
+					IOUtils.closeQuietly(stream);
+				}
+				finish(null);
+			}
+			if(Thread.currentThread() != worker){
+				synchronized (this) {
+					try{
+						while(!done){
+							wait();
+						}
+					}catch(InterruptedException e){
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public synchronized boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * @return number of bytes received so far, including the resumed ones
+		 */
+		public long getBytesReceived(){
+			return bytesReceived;
+		}
+
+		/**
+		 * @return lower case hex SHA-1 of the downloaded content, available after a successful download
+		 */
+		public synchronized String getShasum(){
+			return shasum;
+		}
+
+		private File getResult() throws ExecutionException{
+			if(cancelled){
+				throw new CancellationException();
+			}
+			if(exception != null){
+				throw new ExecutionException(exception);
+			}
+			return target;
+		}
+
+		private void finish(Exception e){
+			synchronized (this) {
+				if(done){
+					return;
+				}
+				exception = e;
+				done = true;
+				notifyAll();
+			}
+		}
+	}
+
+	private final HttpClient client;
+	private final long timeout;
+	private final int attempts;
+	private final long retryDelay;
+
+	/**
+	 * @param client
+	 * @param timeout milliseconds without receiving any data after which an attempt is aborted
+	 * @param attempts number of attempts before a download fails
+	 * @param retryDelay milliseconds before the first retry
+	 */
+	public DownloadService(HttpClient client, long timeout, int attempts, long retryDelay){
+		this.client = client;
+		this.timeout = timeout;
+		this.attempts = Math.max(1, attempts);
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Creates a service that uses the {@link SharedHttpClient} with the
+	 * default {@link #TIMEOUT}, {@link #ATTEMPTS} and {@link #RETRY_DELAY}.
+	 * @return service
+	 */
+	public static DownloadService create(){
+		return new DownloadService(SharedHttpClient.getClient(), TIMEOUT, ATTEMPTS, RETRY_DELAY);
+	}
+
+	/**
+	 * Starts downloading the given URI to the target file. The content is
+	 * received to a <i>.part</i> file next to the target, which is moved
+	 * to the target when the download completes. A download that fails
+	 * or is cancelled is resumed by the next download to the same target.
+	 *
+	 * @param uri
+	 * @param target
+	 * @return the download in progress
+	 */
+	public Download download(URI uri, File target){
+		File partial = new File(target.getPath() + PARTIAL_SUFFIX);
+		return start(new Download(uri, target, partial, null, this));
+	}
+
+	/**
+	 * Starts downloading the given URI to the stream. The stream is closed
+	 * when the download completes, fails or is cancelled. The download
+	 * fails without further attempts if the stream can not be written or
+	 * closed.
+	 *
+	 * @param uri
+	 * @param stream
+	 * @return the download in progress
+	 */
+	public Download download(URI uri, OutputStream stream){
+		return download(uri, stream, null);
+	}
+
+	/**
+	 * Starts downloading the given URI to the stream and keeps the received
+	 * content in the partial file until the download completes. If the
+	 * partial file is left from an earlier download of the same URI, its
+	 * content is passed to the stream first and the rest is requested from
+	 * the server.
+	 *
+	 * @param uri
+	 * @param stream
+	 * @param partial file for the received content or null
+	 * @return the download in progress
+	 */
+	public Download download(URI uri, OutputStream stream, File partial){
+		return start(new Download(uri, null, partial, stream, this));
+	}
+
+	private Download start(final Download download){
+		Job job = new Job(NLS.bind("Download {0}", download.uri)) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				download.run();
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		download.job = job;
+		job.schedule();
+		return download;
+	}
+
+	private static boolean isRetryable(IOException e){
+		if(e instanceof UnexpectedResponseException){
+			return ((UnexpectedResponseException) e).isRetryable();
+		}
+		return !(e instanceof StreamException);
+	}
+
+	private static String toHex(byte[] bytes){
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+}
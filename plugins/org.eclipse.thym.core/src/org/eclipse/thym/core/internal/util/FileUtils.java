@@ -10,11 +10,11 @@
  *******************************************************************************/
 package org.eclipse.thym.core.internal.util;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
@@ -26,11 +26,18 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -44,6 +51,22 @@ import org.eclipse.core.runtime.FileLocator;
  *
  */
 public final class FileUtils {
+	private static final int TAR_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * Opens the archives that are extracted with {@link FileUtils#untarFile(File, File, ArchiveOpener)}.
+	 */
+	public interface ArchiveOpener {
+		public InputStream open(File archive) throws IOException;
+	}
+	
+	private static final ArchiveOpener FILE_OPENER = new ArchiveOpener() {
+		@Override
+		public InputStream open(File archive) throws IOException {
+			return new FileInputStream(archive);
+		}
+	};
+	
 	private FileUtils(){
 		//No instances
 	}	
@@ -422,42 +445,127 @@ public final class FileUtils {
 	    }
 	}
 	
+	/**
+	 * Extracts a .tar or .tar.gz archive to the output directory.
+	 * 
+	 * @param source archive
+	 * @param outputDir
+	 * @return the extracted files and directories
+	 * @throws IOException
+	 * @throws TarException if the source is not a tar archive
+	 * @see #untar(InputStream, File)
+	 */
 	public static File[] untarFile(File source, File outputDir) throws IOException, TarException {
-		TarFile tarFile = new TarFile(source);
-		List<File> untarredFiles = new ArrayList<File>();
+		return untarFile(source, outputDir, FILE_OPENER);
+	}
+	
+	/**
+	 * Extracts a .tar or .tar.gz archive that is opened with the opener to 
+	 * the output directory. The archive is opened and read only once.
+	 * 
+	 * @param source archive
+	 * @param outputDir
+	 * @param opener
+	 * @return the extracted files and directories
+	 * @throws IOException
+	 * @throws TarException if the source is not a tar archive
+	 */
+	//public visibility to support testing
+	public static File[] untarFile(File source, File outputDir, ArchiveOpener opener) throws IOException, TarException {
+		InputStream in = opener.open(source);
 		try {
-			for (Enumeration<TarEntry> e = tarFile.entries(); e.hasMoreElements();) {
-				TarEntry entry = e.nextElement();
-				InputStream input = tarFile.getInputStream(entry);
+			return untar(decompress(in), outputDir);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Buffers the stream and decompresses it if it starts with the gzip 
+	 * magic bytes.
+	 */
+	static InputStream decompress(InputStream source) throws IOException {
+		InputStream in = new BufferedInputStream(source, TAR_BUFFER_SIZE);
+		in.mark(2);
+		int magic = in.read() | (in.read() << 8);
+		in.reset();
+		if (magic == GZIPInputStream.GZIP_MAGIC) {
+			in = new GZIPInputStream(in, TAR_BUFFER_SIZE);
+		}
+		return in;
+	}
+	
+	/**
+	 * Extracts an uncompressed tar stream to the output directory in a 
+	 * single pass, writing every entry as it is read. The executable 
+	 * permissions and modification times of the entries are preserved. Does 
+	 * not close the stream.
+	 * 
+	 * @param in uncompressed tar stream
+	 * @param outputDir
+	 * @return the extracted files and directories
+	 * @throws IOException if an entry can not be written or points outside the output directory
+	 * @throws TarException if the stream is not a tar archive
+	 */
+	public static File[] untar(InputStream in, File outputDir) throws IOException, TarException {
+		Path root = outputDir.getAbsoluteFile().toPath().normalize();
+		outputDir.mkdirs();
+		boolean posix = Files.getFileStore(root).supportsFileAttributeView(PosixFileAttributeView.class);
+		List<File> untarredFiles = new ArrayList<File>();
+		TarInputStream tar = new TarInputStream(in);
+		byte[] buffer = new byte[TAR_BUFFER_SIZE];
+		TarEntry entry;
+		while ((entry = tar.getNextEntry()) != null) {
+			Path path = root.resolve(entry.getName()).normalize();
+			if (!path.startsWith(root)) {
+				throw new IOException("Tar entry is outside of the output directory: " + entry.getName());
+			}
+			File outFile = path.toFile();
+			if (entry.getFileType() == TarEntry.DIRECTORY || entry.getName().endsWith("/")) {
+				outFile.mkdirs();
+			} else if (entry.getFileType() == TarEntry.FILE) {
+				File parent = outFile.getParentFile();
+				if (!parent.isDirectory()) {
+					parent.mkdirs();
+				}
+				OutputStream out = new FileOutputStream(outFile);
 				try {
-					File outFile = new File(outputDir, entry.getName());
-					outFile = outFile.getCanonicalFile(); //bug 266844
-					untarredFiles.add(outFile);
-					if (entry.getFileType() == TarEntry.DIRECTORY) {
-						outFile.mkdirs();
-					} else {
-						if (outFile.exists())
-							outFile.delete();
-						else
-							outFile.getParentFile().mkdirs();
-						try {
-							copyStream(input, false, new FileOutputStream(outFile), true);
-						} catch (FileNotFoundException e1) {
-							// TEMP: ignore this for now in case we're trying to replace
-							// a running eclipse.exe
-						}
-						outFile.setLastModified(entry.getTime());
+					int len;
+					while ((len = tar.read(buffer, 0, buffer.length)) != -1) {
+						out.write(buffer, 0, len);
 					}
 				} finally {
-					input.close();
+					out.close();
 				}
+				if (posix) {
+					// always readable and writable by the owner so that it can be updated
+					Files.setPosixFilePermissions(path, toPermissions(entry.getMode() | 0600));
+				} else if ((entry.getMode() & 0111) != 0) {
+					outFile.setExecutable(true, (entry.getMode() & 011) == 0);
+				}
+			} else {
+				// links and special files are not supported
+				continue;
 			}
-		} finally {
-			tarFile.close();
+			if (entry.getTime() > 0) {
+				outFile.setLastModified(entry.getTime() * 1000);
+			}
+			untarredFiles.add(outFile);
 		}
 		return untarredFiles.toArray(new File[untarredFiles.size()]);
 	}
 	
+	private static Set<PosixFilePermission> toPermissions(long mode) {
+		Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+		PosixFilePermission[] values = PosixFilePermission.values(); // owner read to others execute
+		for (int i = 0; i < values.length; i++) {
+			if ((mode & (0400 >> i)) != 0) {
+				permissions.add(values[i]);
+			}
+		}
+		return permissions;
+	}
+	
 	public static int copyStream(InputStream in, boolean closeIn, OutputStream out, boolean closeOut) throws IOException {
 		try {
 			int written = 0;
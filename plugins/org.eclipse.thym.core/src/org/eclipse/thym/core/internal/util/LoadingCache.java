@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * A thread-safe cache that loads its values on demand. The cache is
+ * bounded by the number of entries and by their total weight, the least
+ * recently used entries are evicted first. Entries expire after a
+ * time-to-live.
+ * <p>
+ * Concurrent requests for a key that is being loaded wait for the load
+ * in progress instead of loading it again. Failed loads are not cached.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class LoadingCache<K, V> {
+
+	/**
+	 * Loads the value of a key on a cache miss.
+	 */
+	public interface Loader<K, V> {
+		public V load(K key) throws CoreException;
+	}
+
+	/**
+	 * Computes the weight of a value, used to bound the cache by the size
+	 * of the values rather than their number.
+	 */
+	public interface Weigher<V> {
+		public int weigh(V value);
+	}
+
+	/**
+	 * Snapshot of the cache statistics.
+	 */
+	public static class Stats {
+		private final long hitCount;
+		private final long missCount;
+		private final long loadFailureCount;
+		private final long evictionCount;
+		private final long expirationCount;
+		private final int size;
+		private final long weight;
+
+		private Stats(long hitCount, long missCount, long loadFailureCount, long evictionCount,
+				long expirationCount, int size, long weight){
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.loadFailureCount = loadFailureCount;
+			this.evictionCount = evictionCount;
+			this.expirationCount = expirationCount;
+			this.size = size;
+			this.weight = weight;
+		}
+
+		/** Requests served from the cache, including the ones that waited for a load in progress. */
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		/** Requests that loaded the value. */
+		public long getMissCount() {
+			return missCount;
+		}
+
+		public long getLoadFailureCount() {
+			return loadFailureCount;
+		}
+
+		/** Entries removed to stay within the size and weight limits. */
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		/** Entries removed because they outlived the time-to-live. */
+		public long getExpirationCount() {
+			return expirationCount;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public long getWeight() {
+			return weight;
+		}
+
+		@Override
+		public String toString() {
+			return NLS.bind("hits={0}, misses={1}, failures={2}, evictions={3}, expirations={4}, size={5}, weight={6}",
+					new Object[]{Long.toString(hitCount), Long.toString(missCount), Long.toString(loadFailureCount),
+					Long.toString(evictionCount), Long.toString(expirationCount), Integer.toString(size), Long.toString(weight)});
+		}
+	}
+
+	private static class CacheEntry<V> {
+		private final V value;
+		private final int weight;
+		private final long expires;
+
+		private CacheEntry(V value, int weight, long expires){
+			this.value = value;
+			this.weight = weight;
+			this.expires = expires;
+		}
+	}
+
+	private static class Load<V> {
+		private final CountDownLatch done = new CountDownLatch(1);
+		private V value;
+		private CoreException exception;
+	}
+
+	private final int maxSize;
+	private final long maxWeight;
+	private final long timeToLive;
+	private final Weigher<V> weigher;
+	// in least recently used order
+	private final LinkedHashMap<K, CacheEntry<V>> entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true);
+	private final Map<K, Load<V>> loads = new HashMap<K, Load<V>>();
+	private long weight;
+	private long hitCount;
+	private long missCount;
+	private long loadFailureCount;
+	private long evictionCount;
+	private long expirationCount;
+
+	/**
+	 * @param maxSize maximum number of entries
+	 * @param maxWeight maximum total weight of the entries
+	 * @param timeToLive time-to-live of an entry in milliseconds
+	 * @param weigher computes the weight of the values, if null all values weigh 1
+	 */
+	public LoadingCache(int maxSize, long maxWeight, long timeToLive, Weigher<V> weigher){
+		this.maxSize = maxSize;
+		this.maxWeight = maxWeight;
+		this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Returns the cached value for the key, loading it if necessary. If the
+	 * key is already being loaded by another thread, waits for that load.
+	 *
+	 * @param key
+	 * @param loader
+	 * @return value
+	 * @throws CoreException if the load fails or the wait is interrupted
+	 */
+	public V get(K key, Loader<K, V> loader) throws CoreException{
+		Load<V> load = null;
+		boolean owner = false;
+		synchronized (this) {
+			CacheEntry<V> entry = getEntry(key);
+			if(entry != null){
+				hitCount++;
+				return entry.value;
+			}
+			load = loads.get(key);
+			if(load == null){
+				load = new Load<V>();
+				loads.put(key, load);
+				owner = true;
+				missCount++;
+			}else{
+				hitCount++;
+			}
+		}
+		if(owner){
+			return load(key, loader, load);
+		}
+		try {
+			load.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID, NLS.bind("Interrupted while loading {0}", key)));
+		}
+		if(load.exception != null){
+			throw load.exception;
+		}
+		return load.value;
+	}
+
+	/**
+	 * Returns the cached value without loading it.
+	 * @param key
+	 * @return value or null
+	 */
+	public synchronized V getIfPresent(K key){
+		CacheEntry<V> entry = getEntry(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * Stores a value that was loaded outside of the cache, for instance a
+	 * more complete version of the cached value.
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void put(K key, V value){
+		store(key, value);
+	}
+
+	public synchronized void invalidate(K key){
+		CacheEntry<V> entry = entries.remove(key);
+		if(entry != null){
+			weight -= entry.weight;
+		}
+	}
+
+	public synchronized void invalidateAll(){
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized Stats getStats(){
+		return new Stats(hitCount, missCount, loadFailureCount, evictionCount, expirationCount, entries.size(), weight);
+	}
+
+	private V load(K key, Loader<K, V> loader, Load<V> load) throws CoreException{
+		try{
+			V value = loader.load(key);
+			synchronized (this) {
+				if(value != null){
+					store(key, value);
+				}
+			}
+			load.value = value;
+			return value;
+		}catch(CoreException e){
+			load.exception = e;
+			synchronized (this) {
+				loadFailureCount++;
+			}
+			throw e;
+		}catch(RuntimeException e){
+			load.exception = new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, NLS.bind("Error loading {0}", key), e));
+			synchronized (this) {
+				loadFailureCount++;
+			}
+			throw e;
+		}finally{
+			synchronized (this) {
+				loads.remove(key);
+			}
+			load.done.countDown();
+		}
+	}
+
+	private void store(K key, V value){
+		int w = weigher == null ? 1 : Math.max(1, weigher.weigh(value));
+		CacheEntry<V> old = entries.put(key, new CacheEntry<V>(value, w, System.nanoTime() + timeToLive));
+		weight += w - (old == null ? 0 : old.weight);
+		evict();
+	}
+
+	private CacheEntry<V> getEntry(K key){
+		CacheEntry<V> entry = entries.get(key);
+		if(entry != null && entry.expires - System.nanoTime() <= 0){
+			entries.remove(key);
+			weight -= entry.weight;
+			expirationCount++;
+			return null;
+		}
+		return entry;
+	}
+
+	private void evict(){
+		Iterator<Entry<K, CacheEntry<V>>> iterator = entries.entrySet().iterator();
+		// always keep the most recently loaded entry
+		while((entries.size() > maxSize || weight > maxWeight) && entries.size() > 1 && iterator.hasNext()){
+			Entry<K, CacheEntry<V>> eldest = iterator.next();
+			weight -= eldest.getValue().weight;
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.util;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.thym.core.HybridCore;
+import org.osgi.framework.Bundle;
+
+/**
+ * The HTTP client shared by the plug-in registry and the engine repositories.
+ * Connections are pooled and kept alive, so consecutive requests to the
+ * same host do not pay for new TCP and TLS handshakes. Responses are
+ * requested and decompressed with gzip. Connections that are idle for
+ * {@link #IDLE_TIMEOUT} milliseconds are closed.
+ * <p>
+ * The limits of the pool can be overridden with <i>org.eclipse.thym.core.http.maxConnections</i>
+ * and <i>org.eclipse.thym.core.http.maxConnectionsPerRoute</i> system properties.
+ * </p>
+ */
+@SuppressWarnings("deprecation")
+public final class SharedHttpClient {
+
+	public static final int MAX_CONNECTIONS = Integer.getInteger("org.eclipse.thym.core.http.maxConnections", 20);
+	public static final int MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger("org.eclipse.thym.core.http.maxConnectionsPerRoute", 4);
+	/**
+	 * Idle time in milliseconds after which a pooled connection is closed,
+	 * also used as the keep-alive duration when the server does not specify one.
+	 */
+	public static final long IDLE_TIMEOUT = Long.getLong("org.eclipse.thym.core.http.idleTimeout", 30 * 1000);
+	/**
+	 * Largest response body in bytes that is cached. Can be overridden with
+	 * <i>org.eclipse.thym.core.http.maxCachedObjectSize</i> system property.
+	 */
+	public static final int MAX_CACHED_OBJECT_SIZE = Integer.getInteger("org.eclipse.thym.core.http.maxCachedObjectSize", 16 * 1024 * 1024);
+	private static final String SUBDIR_HTTP_BODIES = "httpBodies";
+	private static final int CONNECT_TIMEOUT = 30 * 1000;
+	private static final int SOCKET_TIMEOUT = 60 * 1000;
+
+	private static PoolingClientConnectionManager connectionManager;
+	private static DefaultHttpClient client;
+	private static CachingHttpClient cachingClient;
+
+	private static final Job evictionJob = new Job("Close idle HTTP connections") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			synchronized (SharedHttpClient.class) {
+				if(connectionManager == null || monitor.isCanceled()){
+					return Status.OK_STATUS;
+				}
+				connectionManager.closeExpiredConnections();
+				connectionManager.closeIdleConnections(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+				if(connectionManager.getTotalStats().getAvailable() > 0
+						|| connectionManager.getTotalStats().getLeased() > 0){
+					schedule(IDLE_TIMEOUT);
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	};
+
+	static{
+		evictionJob.setSystem(true);
+	}
+
+	private SharedHttpClient(){
+		//no instances
+	}
+
+	/**
+	 * Returns the shared client. The client is thread-safe, callers must
+	 * consume or close the response entities to release the connections
+	 * back to the pool.
+	 *
+	 * @return client
+	 */
+	public static synchronized HttpClient getClient(){
+		if(client == null){
+			connectionManager = new PoolingClientConnectionManager(createSchemeRegistry(), IDLE_TIMEOUT * 2, TimeUnit.MILLISECONDS);
+			connectionManager.setMaxTotal(MAX_CONNECTIONS);
+			connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+			HttpParams params = new BasicHttpParams();
+			HttpConnectionParams.setConnectionTimeout(params, CONNECT_TIMEOUT);
+			HttpConnectionParams.setSoTimeout(params, SOCKET_TIMEOUT);
+			HttpConnectionParams.setStaleCheckingEnabled(params, true);
+			client = new DefaultHttpClient(connectionManager, params);
+			client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy(){
+				@Override
+				public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+					long duration = super.getKeepAliveDuration(response, context);
+					return duration < 0 ? IDLE_TIMEOUT : Math.min(duration, IDLE_TIMEOUT);
+				}
+			});
+			client.addRequestInterceptor(new RequestAcceptEncoding());
+			client.addResponseInterceptor(new ResponseContentEncoding());
+			client.addResponseInterceptor(new HttpResponseInterceptor() {
+				@Override
+				public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+					// headers describe the compressed body, drop them so that the
+					// cache does not validate the decompressed body against them
+					if(context != null && context.getAttribute(ResponseContentEncoding.UNCOMPRESSED) != null){
+						response.removeHeaders("Content-Length");
+						response.removeHeaders("Content-Encoding");
+						response.removeHeaders("Content-MD5");
+					}
+				}
+			});
+			HttpUtil.setupProxy(client);
+		}
+		if(evictionJob.getState() == Job.NONE){
+			evictionJob.schedule(IDLE_TIMEOUT);
+		}
+		return client;
+	}
+
+	/**
+	 * Returns a client that caches the responses on the bundle's data area
+	 * and delegates to the shared client.
+	 *
+	 * @return caching client
+	 */
+	public static synchronized HttpClient getCachingClient(){
+		if(cachingClient == null){
+			Bundle bundle = HybridCore.getContext().getBundle();
+			cachingClient = new CachingHttpClient(getClient(), new DiskResourceFactory(bundle.getDataFile(SUBDIR_HTTP_BODIES)),
+					new BundleHttpCacheStorage(bundle), getCacheConfig());
+		}
+		return cachingClient;
+	}
+
+	/**
+	 * Number of connections that are open, leased or available for reuse.
+	 * @return connection count
+	 */
+	public static synchronized int getOpenConnectionCount(){
+		if(connectionManager == null){
+			return 0;
+		}
+		return connectionManager.getTotalStats().getAvailable() + connectionManager.getTotalStats().getLeased();
+	}
+
+	/**
+	 * Closes all the connections. A new client is created if it is
+	 * requested afterwards.
+	 */
+	public static synchronized void shutdown(){
+		evictionJob.cancel();
+		if(connectionManager != null){
+			connectionManager.shutdown();
+		}
+		connectionManager = null;
+		client = null;
+		cachingClient = null;
+	}
+
+	/**
+	 * Configuration of the caching client. Responses are cached for the
+	 * current user only, up to {@link #MAX_CACHED_OBJECT_SIZE} bytes so that
+	 * the registry catalog is also cached. Stale responses are revalidated
+	 * with conditional requests.
+	 *
+	 * @return cache configuration
+	 */
+	public static CacheConfig getCacheConfig(){
+		CacheConfig config = new CacheConfig();
+		config.setMaxObjectSize(MAX_CACHED_OBJECT_SIZE);
+		config.setSharedCache(false);
+		return config;
+	}
+
+	private static SchemeRegistry createSchemeRegistry(){
+		SchemeRegistry registry = SchemeRegistryFactory.createDefault();
+		try {
+			// SSLSocketFactory to patch HTTPClient's that are earlier than 4.3.2
+			// to enable SNI support.
+			SSLSocketFactory factory = new SSLSocketFactory(SSLContext.getDefault()){
+				@Override
+				public Socket createSocket() throws IOException {
+					return SocketFactory.getDefault().createSocket();
+				}
+				@Override
+				public Socket createSocket(HttpParams params) throws IOException {
+					return SocketFactory.getDefault().createSocket();
+				}
+			};
+			registry.register(new Scheme("https", 443, factory));
+		} catch (NoSuchAlgorithmException e) {
+			HybridCore.log(IStatus.ERROR, "Error creating the SSL Factory ", e);
+		}
+		return registry;
+	}
+
+}
@@ -22,9 +22,10 @@ package org.eclipse.thym.core.internal.util;
 public class TarEntry implements Cloneable
 {	
 	private String name;
+	private String linkName;
 	private long mode, time, size;
 	private int type;
-	int filepos;
+	long filepos;
 
 	/**
 	 * Entry type for normal files.
@@ -43,7 +44,7 @@ public class TarEntry implements Cloneable
 	 * @param name filename
 	 * @param pos position in the file in bytes
 	 */
-	TarEntry(String name, int pos) {
+	TarEntry(String name, long pos) {
 		this.name = name;
 		mode = 0644;
 		type = FILE;
@@ -88,6 +89,15 @@ public class TarEntry implements Cloneable
 		return name;
 	}
 
+	/**
+	 * Returns the target of a link.
+	 * 
+	 * @return link target or null if this is not a link
+	 */
+	public String getLinkName() {
+		return linkName;
+	}
+
 	/**
 	 * Returns the size of the file in bytes.
 	 * 
@@ -126,6 +136,15 @@ public class TarEntry implements Cloneable
 		this.mode = mode;
 	}
 
+	/**
+	 * Sets the target of a link.
+	 * 
+	 * @param linkName
+	 */
+	public void setLinkName(String linkName) {
+		this.linkName = linkName;
+	}
+
 	/**
 	 * Sets the size of the file in bytes.
 	 * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Red Hat, Inc. 
+ * Copyright (c) 2013, 2016 Red Hat, Inc.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,22 +10,63 @@
  *******************************************************************************/
 package org.eclipse.thym.core.internal.util;
 
-import java.io.*;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 
 /**
- * Copied from org.eclipse.ui.internal.wizards.datatransfer.TarInputStream.
+ * Reads the entries of a tar archive, originally copied from
+ * org.eclipse.ui.internal.wizards.datatransfer.TarInputStream.
+ * <p>
+ * Supports ustar, the GNU long name and long link extensions and the pax
+ * extended headers. The numeric header fields are decoded in place in a
+ * header block that is reused for all the entries.
+ * </p>
  */
 public class TarInputStream extends FilterInputStream {
-	private int nextEntry = 0;
-	private int nextEOF = 0;
-	private int filepos = 0;
-	private int bytesread = 0;
+	private static final int BLOCK_SIZE = 512;
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private static final int NAME_OFFSET = 0;
+	private static final int NAME_LENGTH = 100;
+	private static final int MODE_OFFSET = 100;
+	private static final int MODE_LENGTH = 8;
+	private static final int SIZE_OFFSET = 124;
+	private static final int SIZE_LENGTH = 12;
+	private static final int MTIME_OFFSET = 136;
+	private static final int MTIME_LENGTH = 12;
+	private static final int CHECKSUM_OFFSET = 148;
+	private static final int CHECKSUM_LENGTH = 8;
+	private static final int TYPE_OFFSET = 156;
+	private static final int LINK_NAME_OFFSET = 157;
+	private static final int LINK_NAME_LENGTH = 100;
+	private static final int MAGIC_OFFSET = 257;
+	private static final int PREFIX_OFFSET = 345;
+	private static final int PREFIX_LENGTH = 155;
+
+	private static final byte TYPE_GNU_LONG_NAME = 'L';
+	private static final byte TYPE_GNU_LONG_LINK = 'K';
+	private static final byte TYPE_PAX_HEADER = 'x';
+	private static final byte TYPE_PAX_GLOBAL_HEADER = 'g';
+
+	private final byte[] header = new byte[BLOCK_SIZE];
+	private byte[] extended = new byte[BLOCK_SIZE];
+	private long nextEntry = 0;
+	private long nextEOF = 0;
+	private long filepos = 0;
+	private long bytesread = 0;
 	private TarEntry firstEntry = null;
+	private String longName = null;
 	private String longLinkName = null;
+	private String paxPath = null;
+	private String paxLinkPath = null;
+	private long paxSize = -1;
+	private long paxTime = -1;
 
 	/**
 	 * Creates a new tar input stream on the given input stream.
-	 * 
+	 *
 	 * @param in input stream
 	 * @throws TarException
 	 * @throws IOException
@@ -41,7 +82,7 @@ public class TarInputStream extends FilterInputStream {
 	/**
 	 * Create a new tar input stream, skipping ahead to the given entry
 	 * in the file.
-	 * 
+	 *
 	 * @param in input stream
 	 * @param entry skips to this entry in the file
 	 * @throws TarException
@@ -52,258 +93,365 @@ public class TarInputStream extends FilterInputStream {
 		skipToEntry(entry);
 	}
 
-	/**
-	 *  The checksum of a tar file header is simply the sum of the bytes in
-	 *  the header.
-	 * 
-	 * @param header
-	 * @return checksum
-	 */
-	private long headerChecksum(byte[] header) {
-		long sum = 0;
-		for (int i = 0; i < 512; i++) {
-			sum += header[i] & 0xff;
-		}
-		return sum;
-	}
-
 	/**
 	 * Skips ahead to the position of the given entry in the file.
-	 * 
+	 *
 	 * @param entry
 	 * @returns false if the entry has already been passed
 	 * @throws TarException
 	 * @throws IOException
 	 */
 	boolean skipToEntry(TarEntry entry) throws TarException, IOException {
-		int bytestoskip = entry.filepos - bytesread;
+		long bytestoskip = entry.filepos - bytesread;
 		if (bytestoskip < 0) {
 			return false;
 		}
-		while (bytestoskip > 0) {
-			long ret = in.skip(bytestoskip);
-			if (ret < 0) {
-				throw new IOException("early end of stream"); //$NON-NLS-1$
-			}
-			bytestoskip -= ret;
-			bytesread += ret;
-		}
+		skipFully(bytestoskip);
 		filepos = entry.filepos;
 		nextEntry = 0;
 		nextEOF = 0;
+		firstEntry = null;
 		// Read next header to seek to file data.
 		getNextEntry();
 		return true;
 	}
 
 	/**
-	 * Returns true if the header checksum is correct.
-	 * 
-	 * @param header
-	 * @return true if this header has a valid checksum
+	 * Moves ahead to the next file in the tar archive and returns
+	 * a TarEntry object describing it. The GNU long name and pax
+	 * extended headers are applied to the entry they precede.
+	 *
+	 * @return the next entry in the tar file or null at the end of the archive
+	 * @throws TarException
+	 * @throws IOException
 	 */
-	private boolean isValidTarHeader(byte[] header) {
-		long fileChecksum, calculatedChecksum;
-		int pos, i;
-
-		pos = 148;
-		StringBuffer checksumString = new StringBuffer();
-		for (i = 0; i < 8; i++) {
-			if (header[pos + i] == ' ') {
+	public TarEntry getNextEntry() throws TarException, IOException {
+		if (firstEntry != null) {
+			TarEntry entryReturn = firstEntry;
+			firstEntry = null;
+			return entryReturn;
+		}
+		// the extension headers are read again when skipping to the entry
+		long entryPos = filepos;
+		while (true) {
+			if (!readHeader()) {
+				return null;
+			}
+			byte type = header[TYPE_OFFSET];
+			long size = parseNumber(SIZE_OFFSET, SIZE_LENGTH);
+			if (size < 0) {
+				throw new TarException("Not a valid TAR format."); //$NON-NLS-1$
+			}
+			if (type == TYPE_GNU_LONG_NAME || type == TYPE_GNU_LONG_LINK) {
+				int length = readExtended(size);
+				int end = 0;
+				while (end < length && extended[end] != 0) {
+					end++;
+				}
+				String name = decodeString(extended, 0, end);
+				if (type == TYPE_GNU_LONG_NAME) {
+					longName = name;
+				} else {
+					longLinkName = name;
+				}
 				continue;
 			}
-			if (header[pos + i] == 0 || !Character.isDigit((char) header[pos + i])) {
-				break;
+			if (type == TYPE_PAX_HEADER) {
+				parsePaxHeader(readExtended(size));
+				continue;
+			}
+			if (type == TYPE_PAX_GLOBAL_HEADER) {
+				// global attributes are only used for comments in practice
+				readExtended(size);
+				continue;
 			}
-			checksumString.append((char) header[pos + i]);
+			return createEntry(entryPos, type, size);
 		}
-		if (checksumString.length() == 0) {
-			return false;
+	}
+
+	private TarEntry createEntry(long entryPos, byte type, long size) throws TarException {
+		String name;
+		if (paxPath != null) {
+			name = paxPath;
+		} else if (longName != null) {
+			name = longName;
+		} else {
+			int nameLength = fieldLength(NAME_OFFSET, NAME_LENGTH);
+			int prefixLength = isUstar() ? fieldLength(PREFIX_OFFSET, PREFIX_LENGTH) : 0;
+			if (prefixLength > 0) {
+				// the separator replaces the terminating NUL of the prefix, decoded at once
+				byte[] path = new byte[prefixLength + 1 + nameLength];
+				System.arraycopy(header, PREFIX_OFFSET, path, 0, prefixLength);
+				path[prefixLength] = '/';
+				System.arraycopy(header, NAME_OFFSET, path, prefixLength + 1, nameLength);
+				name = decodeString(path, 0, path.length);
+			} else {
+				name = decodeString(header, NAME_OFFSET, nameLength);
+			}
 		}
-		if (checksumString.charAt(0) != '0') {
-			checksumString.insert(0, '0');
+		TarEntry entry = new TarEntry(name, entryPos);
+		if (type != 0) {
+			entry.setFileType(type);
 		}
-		try {
-			fileChecksum = Long.decode(checksumString.toString()).longValue();
-		} catch (NumberFormatException exception) {
-			//This is not valid if it cannot be parsed
-			return false;
+		if (paxLinkPath != null) {
+			entry.setLinkName(paxLinkPath);
+		} else if (longLinkName != null) {
+			entry.setLinkName(longLinkName);
+		} else {
+			int linkLength = fieldLength(LINK_NAME_OFFSET, LINK_NAME_LENGTH);
+			if (linkLength > 0) {
+				entry.setLinkName(decodeString(header, LINK_NAME_OFFSET, linkLength));
+			}
 		}
-
-		// Blank out the checksum.
-		for (i = 0; i < 8; i++) {
-			header[pos + i] = ' ';
+		long mode = parseNumber(MODE_OFFSET, MODE_LENGTH);
+		if (mode < 0) {
+			throw new TarException("Not a valid TAR format."); //$NON-NLS-1$
+		}
+		entry.setMode(mode);
+		long time = paxTime >= 0 ? paxTime : parseNumber(MTIME_OFFSET, MTIME_LENGTH);
+		if (time >= 0) {
+			entry.setTime(time);
 		}
-		calculatedChecksum = headerChecksum(header);
+		if (paxSize >= 0) {
+			size = paxSize;
+		}
+		entry.setSize(size);
+		longName = longLinkName = paxPath = paxLinkPath = null;
+		paxSize = paxTime = -1;
 
-		return (fileChecksum == calculatedChecksum);
+		nextEOF = size;
+		nextEntry = blockAligned(size);
+		filepos += nextEntry;
+		return entry;
 	}
 
 	/**
-	 * Returns the next entry in the tar file.  Does not handle
-	 * GNU @LongLink extensions.
-	 * 
-	 * @return the next entry in the tar file
-	 * @throws TarException
-	 * @throws IOException
+	 * Reads the next header block, skipping what is left of the current
+	 * entry.
+	 *
+	 * @return false at the end of the archive
 	 */
-	TarEntry getNextEntryInternal() throws TarException, IOException {
-		byte[] header = new byte[512];
-		int pos = 0;
-		int i;
-
-		if (firstEntry != null) {
-			TarEntry entryReturn = firstEntry;
-			firstEntry = null;
-			return entryReturn;
-		}
-
-		while (nextEntry > 0) {
-			long ret = in.skip(nextEntry);
-			if (ret < 0) {
-				throw new IOException("early end of stream"); //$NON-NLS-1$
-			}
-			nextEntry -= ret;
-			bytesread += ret;
-		}
+	private boolean readHeader() throws TarException, IOException {
+		skipFully(nextEntry);
+		nextEntry = 0;
+		nextEOF = 0;
+		readFully(header, 0, BLOCK_SIZE);
+		filepos += BLOCK_SIZE;
 
-		int bytestoread = 512;
-		while (bytestoread > 0) {
-			int ret = super.read(header, 512 - bytestoread, bytestoread);
-			if (ret < 0) {
-				throw new IOException("early end of stream"); //$NON-NLS-1$
-			}
-			bytestoread -= ret;
-			bytesread += ret;
+		long sum = 0;
+		long signedSum = 0;
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			// the checksum is calculated as if its field was blank
+			byte b = i >= CHECKSUM_OFFSET && i < CHECKSUM_OFFSET + CHECKSUM_LENGTH ? (byte) ' ' : header[i];
+			sum += b & 0xff;
+			signedSum += b;
 		}
-
-		// If we have a header of all zeros, this marks the end of the file.
-		if (headerChecksum(header) == 0) {
+		if (sum == CHECKSUM_LENGTH * ' ' && isZeroBlock()) {
 			// We are at the end of the file.
-			if (filepos > 0) {
-				return null;
+			if (filepos > BLOCK_SIZE) {
+				return false;
 			}
-
 			// Invalid stream.
 			throw new TarException("not in tar format"); //$NON-NLS-1$
 		}
-
-		// Validate checksum.
-		if (!isValidTarHeader(header)) {
+		long checksum = parseNumber(CHECKSUM_OFFSET, CHECKSUM_LENGTH);
+		if (checksum < 0 || (checksum != sum && checksum != signedSum)) {
 			throw new TarException("not in tar format"); //$NON-NLS-1$
 		}
+		return true;
+	}
 
-		while (pos < 100 && header[pos] != 0) {
-			pos++;
-		}
-		String name = new String(header, 0, pos, "UTF8"); //$NON-NLS-1$
-		// Prepend the prefix here.
-		pos = 345;
-		if (header[pos] != 0) {
-			while (pos < 500 && header[pos] != 0) {
-				pos++;
+	private boolean isZeroBlock() {
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			if (header[i] != 0) {
+				return false;
 			}
-			String prefix = new String(header, 345, pos - 345, "UTF8"); //$NON-NLS-1$
-			name = prefix + "/" + name; //$NON-NLS-1$
 		}
+		return true;
+	}
 
-		TarEntry entry;
-		if (longLinkName != null) {
-			entry = new TarEntry(longLinkName, filepos);
-			longLinkName = null;
-		} else {
-			entry = new TarEntry(name, filepos);
+	private boolean isUstar() {
+		return header[MAGIC_OFFSET] == 'u' && header[MAGIC_OFFSET + 1] == 's' && header[MAGIC_OFFSET + 2] == 't'
+				&& header[MAGIC_OFFSET + 3] == 'a' && header[MAGIC_OFFSET + 4] == 'r';
+	}
+
+	/**
+	 * Decodes an octal number field, or a base-256 field used by GNU tar for
+	 * the values that do not fit.
+	 *
+	 * @return value or -1 if the field is empty or not a number
+	 */
+	private long parseNumber(int offset, int length) {
+		if ((header[offset] & 0x80) != 0) {
+			// base-256, the remaining bits of the first byte are the most significant ones
+			long value = header[offset] & 0x3f;
+			for (int i = 1; i < length; i++) {
+				value = (value << 8) | (header[offset + i] & 0xff);
+			}
+			return value;
 		}
-		if (header[156] != 0) {
-			entry.setFileType(header[156]);
+		int end = offset + length;
+		int pos = offset;
+		while (pos < end && header[pos] == ' ') {
+			pos++;
 		}
-
-		pos = 100;
-		StringBuffer mode = new StringBuffer();
-		for (i = 0; i < 8; i++) {
-			if (header[pos + i] == 0) {
+		long value = 0;
+		boolean digits = false;
+		for (; pos < end; pos++) {
+			byte b = header[pos];
+			if (b == 0 || b == ' ') {
 				break;
 			}
-			if (header[pos + i] == ' ') {
-				continue;
+			if (b < '0' || b > '7') {
+				return -1;
 			}
-			mode.append((char) header[pos + i]);
+			value = (value << 3) + (b - '0');
+			digits = true;
+		}
+		return digits ? value : -1;
+	}
+
+	/**
+	 * @return length of the NUL terminated field
+	 */
+	private int fieldLength(int offset, int length) {
+		int pos = offset;
+		int end = offset + length;
+		while (pos < end && header[pos] != 0) {
+			pos++;
 		}
-		if (mode.length() > 0 && mode.charAt(0) != '0') {
-			mode.insert(0, '0');
+		return pos - offset;
+	}
+
+	/**
+	 * Reads the content of an extension entry to the reused buffer.
+	 *
+	 * @return length of the content
+	 */
+	private int readExtended(long size) throws TarException, IOException {
+		if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+			throw new TarException("Extended header is too large"); //$NON-NLS-1$
 		}
-		try {
-			long fileMode = Long.decode(mode.toString()).longValue();
-			entry.setMode(fileMode);
-		} catch (NumberFormatException nfe) {
-			throw new TarException("Not a valid TAR format.", nfe);
+		int length = (int) size;
+		int padded = (int) blockAligned(size);
+		if (extended.length < padded) {
+			extended = new byte[padded];
 		}
+		readFully(extended, 0, padded);
+		filepos += padded;
+		return length;
+	}
 
-		pos = 100 + 24;
-		StringBuffer size = new StringBuffer();
-		for (i = 0; i < 12; i++) {
-			if (header[pos + i] == 0) {
-				break;
+	/**
+	 * Parses the records of a pax extended header, <i>"length key=value\n"</i>.
+	 */
+	private void parsePaxHeader(int length) throws TarException {
+		int pos = 0;
+		while (pos < length && extended[pos] != 0) {
+			int recordLength = 0;
+			int i = pos;
+			while (i < length && extended[i] >= '0' && extended[i] <= '9') {
+				recordLength = recordLength * 10 + (extended[i++] - '0');
 			}
-			if (header[pos + i] == ' ') {
-				continue;
+			int end = pos + recordLength;
+			if (recordLength == 0 || i >= length || extended[i] != ' ' || end > length) {
+				throw new TarException("Invalid pax extended header"); //$NON-NLS-1$
 			}
-			size.append((char) header[pos + i]);
-		}
-		if (size.charAt(0) != '0') {
-			size.insert(0, '0');
-		}
-		int fileSize;
-		try {
-			fileSize = Integer.decode(size.toString()).intValue();
-		} catch (NumberFormatException nfe) {
-			throw new TarException("Not a valid TAR format.", nfe);
+			int keyStart = i + 1;
+			int equals = keyStart;
+			while (equals < end && extended[equals] != '=') {
+				equals++;
+			}
+			if (equals >= end) {
+				throw new TarException("Invalid pax extended header"); //$NON-NLS-1$
+			}
+			// value ends before the newline
+			int valueStart = equals + 1;
+			int valueEnd = end - 1;
+			if (matches("path", keyStart, equals)) { //$NON-NLS-1$
+				paxPath = decodeString(extended, valueStart, valueEnd - valueStart);
+			} else if (matches("linkpath", keyStart, equals)) { //$NON-NLS-1$
+				paxLinkPath = decodeString(extended, valueStart, valueEnd - valueStart);
+			} else if (matches("size", keyStart, equals)) { //$NON-NLS-1$
+				paxSize = parseDecimal(valueStart, valueEnd);
+			} else if (matches("mtime", keyStart, equals)) { //$NON-NLS-1$
+				paxTime = parseDecimal(valueStart, valueEnd);
+			}
+			pos = end;
 		}
+	}
 
-		entry.setSize(fileSize);
-		nextEOF = fileSize;
-		if (fileSize % 512 > 0) {
-			nextEntry = fileSize + (512 - (fileSize % 512));
-		} else {
-			nextEntry = fileSize;
+	private boolean matches(String key, int start, int end) {
+		if (end - start != key.length()) {
+			return false;
 		}
-		filepos += (nextEntry + 512);
-		return entry;
+		for (int i = 0; i < key.length(); i++) {
+			if (extended[start + i] != key.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
-	 * Moves ahead to the next file in the tar archive and returns
-	 * a TarEntry object describing it.
-	 * 
-	 * @return the next entry in the tar file
-	 * @throws TarException
-	 * @throws IOException
+	 * Parses the integer part of a pax decimal value, the fractions of
+	 * seconds are ignored.
 	 */
-	public TarEntry getNextEntry() throws TarException, IOException {
-		TarEntry entry = getNextEntryInternal();
+	private long parseDecimal(int start, int end) throws TarException {
+		long value = 0;
+		int pos = start;
+		for (; pos < end && extended[pos] != '.'; pos++) {
+			byte b = extended[pos];
+			if (b < '0' || b > '9') {
+				throw new TarException("Invalid pax extended header"); //$NON-NLS-1$
+			}
+			value = value * 10 + (b - '0');
+		}
+		return pos == start ? -1 : value;
+	}
 
-		if (entry != null && entry.getName().equals("././@LongLink")) { //$NON-NLS-1$
-			// This is a GNU extension for doing long filenames.
-			// We get a file called ././@LongLink which just contains
-			// the real pathname.
-			byte[] longNameData = new byte[(int) entry.getSize()];
-			int bytesread = 0;
-			while (bytesread < longNameData.length) {
-				int cur = read(longNameData, bytesread, longNameData.length - bytesread);
-				if (cur < 0) {
-					throw new IOException("early end of stream"); //$NON-NLS-1$
-				}
-				bytesread += cur;
+	private static String decodeString(byte[] bytes, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			if (bytes[i] < 0) {
+				return new String(bytes, offset, length, UTF8);
+			}
+		}
+		// ASCII, which nearly all entry names are, does not need a decoder
+		@SuppressWarnings("deprecation")
+		String ascii = new String(bytes, 0, offset, length);
+		return ascii;
+	}
+
+	private static long blockAligned(long size) {
+		long remainder = size % BLOCK_SIZE;
+		return remainder == 0 ? size : size + BLOCK_SIZE - remainder;
+	}
+
+	private void readFully(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int ret = in.read(b, off, len);
+			if (ret < 0) {
+				throw new IOException("early end of stream"); //$NON-NLS-1$
 			}
+			off += ret;
+			len -= ret;
+			bytesread += ret;
+		}
+	}
 
-			int pos = 0;
-			while (pos < longNameData.length && longNameData[pos] != 0) {
-				pos++;
+	private void skipFully(long count) throws IOException {
+		while (count > 0) {
+			long ret = in.skip(count);
+			if (ret <= 0) {
+				// some streams do not skip, read through the header block that is free to use here
+				ret = in.read(header, 0, (int) Math.min(count, BLOCK_SIZE));
+				if (ret < 0) {
+					throw new IOException("early end of stream"); //$NON-NLS-1$
+				}
 			}
-			longLinkName = new String(longNameData, 0, pos, "UTF8"); //$NON-NLS-1$
-			return getNextEntryInternal();
+			count -= ret;
+			bytesread += ret;
 		}
-		return entry;
 	}
 
 	/* (non-Javadoc)
@@ -314,9 +462,12 @@ public class TarInputStream extends FilterInputStream {
 			return -1;
 		}
 		if (len > nextEOF) {
-			len = nextEOF;
+			len = (int) nextEOF;
+		}
+		int size = in.read(b, off, len);
+		if (size < 0) {
+			throw new IOException("early end of stream"); //$NON-NLS-1$
 		}
-		int size = super.read(b, off, len);
 		nextEntry -= size;
 		nextEOF -= size;
 		bytesread += size;
@@ -327,11 +478,44 @@ public class TarInputStream extends FilterInputStream {
 	 * @see java.io.FilterInputStream#read()
 	 */
 	public int read() throws IOException {
-		byte[] data = new byte[1];
-		int size = read(data, 0, 1);
-		if (size < 0) {
-			return size;
+		if (nextEOF == 0) {
+			return -1;
 		}
-		return data[0];
+		int b = in.read();
+		if (b < 0) {
+			throw new IOException("early end of stream"); //$NON-NLS-1$
+		}
+		nextEntry--;
+		nextEOF--;
+		bytesread++;
+		return b;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#skip(long)
+	 */
+	public long skip(long n) throws IOException {
+		long count = Math.min(n, nextEOF);
+		if (count <= 0) {
+			return 0;
+		}
+		skipFully(count);
+		nextEntry -= count;
+		nextEOF -= count;
+		return count;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#available()
+	 */
+	public int available() throws IOException {
+		return (int) Math.min(nextEOF, in.available());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#markSupported()
+	 */
+	public boolean markSupported() {
+		return false;
 	}
 }
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Extracts a .tar or .tar.gz archive to a directory while it is being
+ * written, so that a download does not need to be stored and read back.
+ * The extraction runs on a background job, the writer is blocked while
+ * the job is behind by more than a few chunks.
+ * <p>
+ * {@link #close()} waits for the extraction to complete and fails if the
+ * archive could not be extracted. The archive is read to its end, which
+ * makes the gzip checksum verified.
+ * </p>
+ */
+public class UntarOutputStream extends OutputStream {
+
+	private static final int QUEUE_CAPACITY = 32;
+	private static final long POLL_INTERVAL = 100;
+	private static final byte[] END = new byte[0];
+
+	private class QueueInputStream extends InputStream {
+		private byte[] chunk = new byte[0];
+		private int pos;
+
+		@Override
+		public int read() throws IOException {
+			if(!fill()){
+				return -1;
+			}
+			return chunk[pos++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0){
+				return 0;
+			}
+			if(!fill()){
+				return -1;
+			}
+			int count = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, count);
+			pos += count;
+			return count;
+		}
+
+		private boolean fill() throws IOException{
+			while(chunk != END && pos == chunk.length){
+				try {
+					byte[] next = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if(aborted){
+						throw new IOException("Extraction is aborted");
+					}
+					if(next != null){
+						chunk = next;
+						pos = 0;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Extraction is interrupted");
+				}
+			}
+			return chunk != END;
+		}
+	}
+
+	private final File outputDir;
+	private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile Exception failure;
+	private volatile boolean aborted;
+	private volatile boolean closed;
+	private File[] files;
+
+	/**
+	 * Starts the extraction to the given directory.
+	 * @param outputDir
+	 */
+	public UntarOutputStream(File outputDir) {
+		this.outputDir = outputDir;
+		Job job = new Job("Extract archive") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				extract();
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[]{(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if(closed){
+			throw new IOException("Stream is closed");
+		}
+		checkFailure();
+		if(len > 0){
+			enqueue(Arrays.copyOfRange(b, off, off + len));
+		}
+	}
+
+	/**
+	 * Waits for the extraction to complete.
+	 *
+	 * @throws IOException if the archive is incomplete or can not be extracted
+	 */
+	@Override
+	public void close() throws IOException {
+		if(!closed){
+			closed = true;
+			enqueue(END);
+		}
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abort();
+			throw new IOException("Extraction is interrupted");
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Stops the extraction without waiting for it, the extracted files are
+	 * left in the output directory.
+	 */
+	public void abort(){
+		aborted = true;
+		closed = true;
+		queue.clear();
+	}
+
+	/**
+	 * @return the extracted files and directories, available after a successful {@link #close()}
+	 */
+	public File[] getFiles(){
+		return files;
+	}
+
+	private void enqueue(byte[] chunk) throws IOException{
+		try {
+			while(!queue.offer(chunk, POLL_INTERVAL, TimeUnit.MILLISECONDS)){
+				checkFailure();
+				if(done.getCount() == 0){
+					throw new IOException("Archive has ended");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Extraction is interrupted");
+		}
+	}
+
+	private void checkFailure() throws IOException{
+		if(aborted){
+			throw new IOException("Extraction is aborted");
+		}
+		Exception e = failure;
+		if(e instanceof IOException){
+			throw (IOException) e;
+		}
+		if(e != null){
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	private void extract(){
+		try{
+			QueueInputStream raw = new QueueInputStream();
+			InputStream in = FileUtils.decompress(raw);
+			files = FileUtils.untar(in, outputDir);
+			// read the rest, the gzip trailer is only verified at the end
+			byte[] buffer = new byte[8192];
+			while(in.read(buffer) != -1){
+				// padding after the end of the archive
+			}
+			while(raw.read(buffer) != -1){
+				// data after the compressed stream
+			}
+		}catch(Exception e){
+			failure = e;
+		}finally{
+			done.countDown();
+		}
+	}
+
+}
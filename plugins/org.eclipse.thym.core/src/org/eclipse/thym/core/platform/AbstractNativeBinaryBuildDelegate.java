@@ -15,6 +15,8 @@ import java.io.File;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.thym.core.HybridProject;
+import org.eclipse.thym.core.internal.cordova.CordovaCLI;
 
 public abstract class AbstractNativeBinaryBuildDelegate {
 	
@@ -22,6 +24,7 @@ public abstract class AbstractNativeBinaryBuildDelegate {
 	private File destinationDir;
 	private boolean release;
 	private File buildArtifact;
+	private String buildFingerprint;
 
 	public void init(IProject project,  File destination) {
 		this.destinationDir = destination;
@@ -60,5 +63,59 @@ public abstract class AbstractNativeBinaryBuildDelegate {
 	protected void setBuildArtifact(File artifact){
 		this.buildArtifact = artifact;
 	}
+	
+	/**
+	 * Returns the artifact of the last successful build for the platform and 
+	 * build type if none of the build inputs has changed since, so that the 
+	 * build can be skipped. Must be called before the build, the fingerprint 
+	 * of the inputs is taken here and recorded by {@link #recordBuild(String, String)}.
+	 * 
+	 * @see BuildStateStore
+	 * @param platform
+	 * @param buildType
+	 * @return artifact or null if a build is needed
+	 * @throws CoreException
+	 */
+	protected File getUpToDateArtifact(String platform, String buildType) throws CoreException{
+		buildFingerprint = null;
+		if(!BuildStateStore.isIncremental()){
+			return null;
+		}
+		BuildStateStore store = BuildStateStore.getStore(getProject());
+		buildFingerprint = store.computeFingerprint();
+		return store.getUpToDateArtifact(platform, buildType, buildFingerprint);
+	}
+	
+	/**
+	 * Records the current build artifact as the result of a successful 
+	 * build of the inputs fingerprinted by {@link #getUpToDateArtifact(String, String)} 
+	 * before the build. Inputs that are changed while building are 
+	 * picked up by the next build.
+	 * 
+	 * @param platform
+	 * @param buildType
+	 * @throws CoreException
+	 */
+	protected void recordBuild(String platform, String buildType) throws CoreException{
+		if(!BuildStateStore.isIncremental() || buildFingerprint == null){
+			return;
+		}
+		BuildStateStore store = BuildStateStore.getStore(getProject());
+		store.recordBuild(platform, buildType, buildFingerprint, getBuildArtifact());
+		buildFingerprint = null;
+	}
+	
+	/**
+	 * Creates the Cordova CLI that should be used by this delegate. The 
+	 * commands run on the session of the project, so builds for different 
+	 * platforms that are started in parallel run their commands one after 
+	 * the other. Cordova does not support concurrent commands in a project.
+	 * 
+	 * @param project
+	 * @return cli
+	 */
+	protected CordovaCLI newCordovaCLI(HybridProject project){
+		return CordovaCLI.newCLIforProject(project);
+	}
 
 }
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.platform;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Records the state of the last successful native build of a project for each
+ * platform and build type. The state is a fingerprint of the build inputs,
+ * <i>www</i>, <i>merges</i>, <i>plugins</i>, <i>res</i>, <i>hooks</i>,
+ * <i>config.xml</i>, <i>build.json</i>, <i>package.json</i> and
+ * <i>platforms.json</i>, and the artifact produced. A build can be skipped if
+ * the fingerprint of the inputs is unchanged and the artifact still exists.
+ * <p>
+ * The fingerprint is computed from the contents of the files. The digests of
+ * the files are cached with their size and modification time, so only the
+ * changed files are read again.
+ * </p>
+ * Incremental builds can be disabled with <i>org.eclipse.thym.core.build.incremental=false</i>
+ * system property.
+ */
+public class BuildStateStore {
+
+	public static final String SYSPROP_INCREMENTAL = "org.eclipse.thym.core.build.incremental";
+	private static final String STATE_FILE = "buildstate.properties";
+	private static final String[] INPUT_DIRECTORIES = {PlatformConstants.DIR_WWW, PlatformConstants.DIR_MERGES,
+		PlatformConstants.DIR_PLUGINS, "res", "hooks", PlatformConstants.DIR_DOT_CORDOVA + "/hooks"};
+	// build.json has the signing configuration of release builds
+	private static final String[] INPUT_FILES = {PlatformConstants.FILE_XML_CONFIG, "build.json", "package.json",
+		PlatformConstants.PLATFORMS_JSON_PATH.toString()};
+	private static final Map<String, BuildStateStore> stores = new HashMap<String, BuildStateStore>();
+
+	private static class FileDigest {
+		private final long length;
+		private final long lastModified;
+		private final byte[] digest;
+
+		private FileDigest(long length, long lastModified, byte[] digest){
+			this.length = length;
+			this.lastModified = lastModified;
+			this.digest = digest;
+		}
+	}
+
+	private final IProject project;
+	private final Map<String, FileDigest> digests = new HashMap<String, FileDigest>();
+	private Properties state;
+	private long stateStamp;
+
+	private BuildStateStore(IProject project){
+		this.project = project;
+	}
+
+	/**
+	 * Returns the store for the project.
+	 *
+	 * @param project
+	 * @return store
+	 */
+	public static BuildStateStore getStore(IProject project){
+		synchronized (stores) {
+			BuildStateStore store = stores.get(project.getName());
+			if(store == null || !store.project.equals(project)){
+				store = new BuildStateStore(project);
+				stores.put(project.getName(), store);
+			}
+			return store;
+		}
+	}
+
+	/**
+	 * Whether builds should be skipped if the inputs have not changed.
+	 * @return true unless disabled with a system property
+	 */
+	public static boolean isIncremental(){
+		return !"false".equalsIgnoreCase(System.getProperty(SYSPROP_INCREMENTAL));
+	}
+
+	/**
+	 * Computes the fingerprint of the current build inputs.
+	 *
+	 * @return fingerprint
+	 * @throws CoreException if the inputs can not be read
+	 */
+	public synchronized String computeFingerprint() throws CoreException{
+		IPath location = project.getLocation();
+		if(location == null){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+					NLS.bind("Project {0} does not have a local location", project.getName())));
+		}
+		long start = System.currentTimeMillis();
+		File root = location.toFile();
+		MessageDigest fingerprint = newDigest();
+		try{
+			for (String dir : INPUT_DIRECTORIES) {
+				addFiles(fingerprint, new File(root, dir), dir);
+			}
+			for (String file : INPUT_FILES) {
+				addFile(fingerprint, new File(root, file), file);
+			}
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Error computing the build fingerprint", e));
+		}
+		HybridCore.trace(NLS.bind("Computed build fingerprint for {0} in {1} ms", project.getName(), System.currentTimeMillis() - start));
+		return toHex(fingerprint.digest());
+	}
+
+	/**
+	 * Returns the artifact of the last successful build if it was built from the
+	 * inputs with the given fingerprint and it still exists.
+	 *
+	 * @param platform
+	 * @param buildType
+	 * @param fingerprint
+	 * @return artifact or null if a build is needed
+	 */
+	public synchronized File getUpToDateArtifact(String platform, String buildType, String fingerprint){
+		String value = getState().getProperty(key(platform, buildType));
+		if(value == null){
+			return null;
+		}
+		String[] parts = value.split("\\|", 3);
+		if(parts.length != 3 || !parts[0].equals(fingerprint)){
+			return null;
+		}
+		File artifact = new File(parts[2]);
+		if(!artifact.exists() || !Long.toString(artifact.lastModified()).equals(parts[1])){
+			return null;
+		}
+		HybridCore.trace(NLS.bind("Build inputs of {0} for {1} are unchanged, reusing {2}", new Object[]{project.getName(), platform, artifact}));
+		return artifact;
+	}
+
+	/**
+	 * Records a successful build.
+	 *
+	 * @param platform
+	 * @param buildType
+	 * @param fingerprint fingerprint of the inputs of the build
+	 * @param artifact
+	 */
+	public synchronized void recordBuild(String platform, String buildType, String fingerprint, File artifact){
+		if(artifact == null || !artifact.exists()){
+			invalidate(platform, buildType);
+			return;
+		}
+		getState().setProperty(key(platform, buildType), fingerprint + "|" + artifact.lastModified() + "|" + artifact.getAbsolutePath());
+		saveState();
+	}
+
+	/**
+	 * Forgets the last build, the next build will not be skipped.
+	 * @param platform
+	 * @param buildType
+	 */
+	public synchronized void invalidate(String platform, String buildType){
+		if(getState().remove(key(platform, buildType)) != null){
+			saveState();
+		}
+	}
+
+	private void addFiles(MessageDigest fingerprint, File dir, String relativePath) throws IOException{
+		String[] names = dir.list();
+		if(names == null){
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			File file = new File(dir, name);
+			String path = relativePath + "/" + name;
+			if(file.isDirectory()){
+				addFiles(fingerprint, file, path);
+			}else{
+				addFile(fingerprint, file, path);
+			}
+		}
+	}
+
+	private void addFile(MessageDigest fingerprint, File file, String relativePath) throws IOException{
+		if(file == null || !file.isFile()){
+			return;
+		}
+		fingerprint.update(relativePath.getBytes("UTF-8"));
+		fingerprint.update((byte) 0);
+		fingerprint.update(getDigest(file));
+	}
+
+	private byte[] getDigest(File file) throws IOException{
+		String path = file.getAbsolutePath();
+		long length = file.length();
+		long lastModified = file.lastModified();
+		FileDigest cached = digests.get(path);
+		if(cached != null && cached.length == length && cached.lastModified == lastModified){
+			return cached.digest;
+		}
+		MessageDigest digest = newDigest();
+		InputStream in = null;
+		try{
+			in = new FileInputStream(file);
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while((read = in.read(buffer)) > -1){
+				digest.update(buffer, 0, read);
+			}
+		}finally{
+			IOUtils.closeQuietly(in);
+		}
+		byte[] result = digest.digest();
+		digests.put(path, new FileDigest(length, lastModified, result));
+		return result;
+	}
+
+	private Properties getState(){
+		File file = getStateFile();
+		long stamp = file == null ? 0 : file.lastModified();
+		// reload if the file is changed or deleted with the project
+		if(state == null || stamp != stateStamp){
+			state = new Properties();
+			stateStamp = stamp;
+			if(file != null && file.isFile()){
+				InputStream in = null;
+				try{
+					in = new FileInputStream(file);
+					state.load(in);
+				}catch(IOException e){
+					HybridCore.log(IStatus.WARNING, "Unable to read the build state, project will be rebuilt", e);
+					state.clear();
+				}finally{
+					IOUtils.closeQuietly(in);
+				}
+			}
+		}
+		return state;
+	}
+
+	private void saveState(){
+		File file = getStateFile();
+		if(file == null){
+			return;
+		}
+		OutputStream out = null;
+		try{
+			out = new FileOutputStream(file);
+			state.store(out, "Thym native build state");
+			out.close();
+			stateStamp = file.lastModified();
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, "Unable to save the build state", e);
+		}finally{
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private File getStateFile(){
+		if(!project.isAccessible()){
+			return null;
+		}
+		IPath location = project.getWorkingLocation(HybridCore.PLUGIN_ID);
+		if(location == null){
+			return null;
+		}
+		return location.append(STATE_FILE).toFile();
+	}
+
+	private static String key(String platform, String buildType){
+		return platform + "." + buildType;
+	}
+
+	private static MessageDigest newDigest(){
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is required to be available on every Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes){
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+}
@@ -14,6 +14,7 @@ package org.eclipse.thym.core.plugin;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -25,6 +26,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
@@ -156,6 +158,117 @@ public class CordovaPluginManager {
 		}
 	}
 	
+	/**
+	 * Installs several Cordova plug-ins with a single Cordova CLI invocation.
+	 * The project is refreshed once after all the plug-ins are processed.
+	 * <br/>
+	 * Cordova CLI stops at the first plug-in that fails, the returned status has
+	 * a child status for each plug-in so that the callers can tell which
+	 * plug-ins are installed.
+	 *
+	 * @param plugins
+	 * @param overwrite
+	 * @param monitor
+	 * @return a {@link MultiStatus} with a child for each plug-in
+	 * @throws CoreException
+	 * <ul>
+	 *<li>if plugin.xml is missing for a plug-in from a directory</li>
+	 *<li>if any of the plug-ins fail to install, status of the exception is the {@link MultiStatus}</li>
+	 *</ul>
+	 */
+	public IStatus installPlugins(Collection<PluginInstallSpec> plugins, FileOverwriteCallback overwrite, IProgressMonitor monitor) throws CoreException{
+		if(monitor == null )
+			monitor = new NullProgressMonitor();
+		MultiStatus result = new MultiStatus(HybridCore.PLUGIN_ID, 0, "Cordova plug-in installation", null);
+		if(plugins == null || plugins.isEmpty() || monitor.isCanceled()) return result;
+		List<String> options = new ArrayList<String>(plugins.size()+1);
+		for (PluginInstallSpec spec : plugins) {
+			if(spec.getDirectory() != null){
+				// read plugin.xml to verify the plugin
+				Document doc = readPluginXML(spec.getDirectory());
+				spec.setPluginId(doc.getDocumentElement().getAttribute("id"));
+			}
+			options.add(spec.getSpec());
+		}
+		options.add(CordovaCLI.OPTION_SAVE);
+		IStatus status = CordovaCLI.newCLIforProject(project)
+			.plugin(Command.ADD, monitor, options.toArray(new String[options.size()]))
+			.convertTo(PluginMessagesCLIResult.class)
+			.asStatus();
+		project.getProject().refreshLocal(IResource.DEPTH_INFINITE, monitor);
+		resetInstalledPlugins();
+		for (PluginInstallSpec spec : plugins) {
+			String id = spec.getPluginId();
+			if(id == null || id.isEmpty()){
+				// can not check individually, use the status of the command
+				result.add(status.isOK() ? pluginStatus(IStatus.OK, "Installed {0}", spec) : pluginStatus(status, spec));
+			}else if(isPluginInstalled(id)){
+				result.add(pluginStatus(IStatus.OK, "Installed {0}", spec));
+			}else{
+				result.add(status.isOK() ? pluginStatus(IStatus.ERROR, "{0} is not installed", spec) : pluginStatus(status, spec));
+			}
+		}
+		if(!result.isOK()){
+			throw new CoreException(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Removes several plug-ins with a single Cordova CLI invocation.
+	 * Plug-ins that are not installed are ignored.
+	 *
+	 * @param ids
+	 * @param monitor
+	 * @return a {@link MultiStatus} with a child for each removed plug-in
+	 * @throws CoreException if any of the plug-ins can not be removed,
+	 * status of the exception is the {@link MultiStatus}
+	 */
+	public IStatus unInstallPlugins(Collection<String> ids, IProgressMonitor monitor) throws CoreException{
+		if(monitor == null )
+			monitor = new NullProgressMonitor();
+		MultiStatus result = new MultiStatus(HybridCore.PLUGIN_ID, 0, "Cordova plug-in removal", null);
+		if(ids == null || monitor.isCanceled()) return result;
+		List<String> toRemove = new ArrayList<String>(ids.size());
+		for (String id : ids) {
+			if(id != null && isPluginInstalled(id)){
+				toRemove.add(id);
+			}
+		}
+		if(toRemove.isEmpty()) return result;
+		List<String> options = new ArrayList<String>(toRemove);
+		options.add(CordovaCLI.OPTION_SAVE);
+		IStatus status = CordovaCLI.newCLIforProject(project)
+			.plugin(Command.REMOVE, monitor, options.toArray(new String[options.size()]))
+			.convertTo(PluginMessagesCLIResult.class)
+			.asStatus();
+		project.getProject().refreshLocal(IResource.DEPTH_INFINITE, monitor);
+		resetInstalledPlugins();
+		for (String id : toRemove) {
+			if(!isPluginInstalled(id)){
+				result.add(new Status(IStatus.OK, HybridCore.PLUGIN_ID, NLS.bind("Removed {0}", id)));
+			}else if(status.isOK()){
+				result.add(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, NLS.bind("{0} is not removed", id)));
+			}else{
+				result.add(new Status(status.getSeverity(), HybridCore.PLUGIN_ID, status.getCode(),
+						NLS.bind("{0}: {1}", id, status.getMessage()), status.getException()));
+			}
+		}
+		if(!result.isOK()){
+			throw new CoreException(result);
+		}
+		return result;
+	}
+
+	private IStatus pluginStatus(int severity, String message, PluginInstallSpec spec){
+		return new Status(severity, HybridCore.PLUGIN_ID, NLS.bind(message, spec.getSpec()));
+	}
+
+	private IStatus pluginStatus(IStatus cliStatus, PluginInstallSpec spec){
+		return new Status(cliStatus.getSeverity(), HybridCore.PLUGIN_ID, cliStatus.getCode(),
+				NLS.bind("{0}: {1}", spec.getSpec(), cliStatus.getMessage()), cliStatus.getException());
+	}
+
 	private Document readPluginXML(File directory) throws CoreException {
 		File pluginFile = new File(directory, PlatformConstants.FILE_XML_PLUGIN);
 		if(!pluginFile.exists()){
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin;
+
+import java.io.File;
+import java.net.URI;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin.RegistryPluginVersion;
+
+/**
+ * Describes a Cordova plug-in to be installed with
+ * {@link CordovaPluginManager#installPlugins(java.util.Collection, FileOverwriteCallback, org.eclipse.core.runtime.IProgressMonitor)}.
+ * A plug-in can be installed from the registry, a local directory or a git repository.
+ *
+ */
+public class PluginInstallSpec {
+
+	private final String spec;
+	private final File directory;
+	private String pluginId;
+
+	private PluginInstallSpec(String spec, String pluginId, File directory){
+		this.spec = spec;
+		this.pluginId = pluginId;
+		this.directory = directory;
+	}
+
+	public static PluginInstallSpec fromRegistry(RegistryPluginVersion plugin){
+		Assert.isNotNull(plugin);
+		return new PluginInstallSpec(plugin.getName() + "@" + plugin.getVersionNumber(), plugin.getName(), null);
+	}
+
+	public static PluginInstallSpec fromDirectory(File directory){
+		Assert.isNotNull(directory);
+		return new PluginInstallSpec(directory.toString(), null, directory);
+	}
+
+	public static PluginInstallSpec fromGit(URI uri){
+		Assert.isNotNull(uri);
+		return new PluginInstallSpec(uri.toString(), null, null);
+	}
+
+	/**
+	 * Plug-in specification as it is passed to the Cordova CLI
+	 * @return spec
+	 */
+	public String getSpec() {
+		return spec;
+	}
+
+	/**
+	 * Returns the id of the plug-in if it is known before the installation.
+	 * Id is not known for plug-ins installed from git repositories.
+	 *
+	 * @return id or null
+	 */
+	public String getPluginId() {
+		return pluginId;
+	}
+
+	void setPluginId(String pluginId) {
+		this.pluginId = pluginId;
+	}
+
+	/**
+	 * Returns the directory for plug-ins installed from a local directory.
+	 * @return directory or null
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public String toString() {
+		return spec;
+	}
+
+}
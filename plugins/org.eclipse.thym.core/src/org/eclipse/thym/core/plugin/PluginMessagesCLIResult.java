@@ -10,8 +10,7 @@
  *******************************************************************************/
 package org.eclipse.thym.core.plugin;
 
-import java.util.Scanner;
-import java.util.regex.MatchResult;
+import java.util.List;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.osgi.util.NLS;
@@ -22,43 +21,26 @@ import org.eclipse.thym.core.internal.cordova.ErrorDetectingCLIResult;
 
 public class PluginMessagesCLIResult extends ErrorDetectingCLIResult {
 
-	private HybridMobileStatus pluginStatus;
 	public PluginMessagesCLIResult(String message) {
 		super(message);
-		parseMessage();
 	}
 	
 	@Override
 	public IStatus asStatus() {
-		if(pluginStatus != null){
-			return pluginStatus;
-		}
-		return super.asStatus();
-	}
-	
-	private void parseMessage(){
-		
-		Scanner scanner = new Scanner(getMessage());
-		
-		while(scanner.hasNextLine()){
-			//check of --variable APP_ID=value is needed
-			if( scanner.findInLine("(?:\\s\\-\\-variable\\s(\\w*)=value)") != null ){
-				MatchResult mr = scanner.match();
-				StringBuilder missingVars = new StringBuilder();
-				for(int i = 0; i<mr.groupCount();i++){
-					if(i>0){
-						missingVars.append(",");
-					}
-					missingVars.append(mr.group());
+		//check if --variable APP_ID=value is needed
+		List<String> missingVariables = getOutputParser().getMissingPluginVariables();
+		if(!missingVariables.isEmpty()){
+			StringBuilder missingVars = new StringBuilder();
+			for(int i = 0; i<missingVariables.size();i++){
+				if(i>0){
+					missingVars.append(",");
 				}
-				pluginStatus = new HybridMobileStatus(IStatus.ERROR, HybridCore.PLUGIN_ID, CordovaCLIErrors.ERROR_MISSING_PLUGIN_VARIABLE,
-						NLS.bind("This plugin requires {0} to be defined",missingVars), null);
-			
+				missingVars.append(missingVariables.get(i));
 			}
-			scanner.nextLine();
+			return new HybridMobileStatus(IStatus.ERROR, HybridCore.PLUGIN_ID, CordovaCLIErrors.ERROR_MISSING_PLUGIN_VARIABLE,
+					NLS.bind("This plugin requires {0} to be defined",missingVars), null);
 		}
-		scanner.close();
-		
+		return super.asStatus();
 	}
 
 }
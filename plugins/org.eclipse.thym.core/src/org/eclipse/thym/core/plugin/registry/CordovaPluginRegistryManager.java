@@ -13,38 +13,35 @@ package org.eclipse.thym.core.plugin.registry;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.client.cache.CacheConfig;
-import org.apache.http.impl.client.cache.CachingHttpClient;
-import org.apache.http.impl.client.cache.HeapResourceFactory;
+import org.apache.http.util.EntityUtils;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.ecf.filetransfer.IncomingFileTransferException;
-import org.eclipse.ecf.filetransfer.identity.FileCreateException;
-import org.eclipse.ecf.filetransfer.identity.FileIDFactory;
-import org.eclipse.ecf.filetransfer.identity.IFileID;
-import org.eclipse.ecf.filetransfer.service.IRetrieveFileTransfer;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.thym.core.HybridCore;
-import org.eclipse.thym.core.internal.util.BundleHttpCacheStorage;
-import org.eclipse.thym.core.internal.util.HttpUtil;
-import org.eclipse.thym.core.platform.PlatformConstants;
+import org.eclipse.thym.core.internal.util.DownloadCoordinator;
+import org.eclipse.thym.core.internal.util.DownloadService;
+import org.eclipse.thym.core.internal.util.LoadingCache;
+import org.eclipse.thym.core.internal.util.SharedHttpClient;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin.RegistryPluginVersion;
 
 import com.google.gson.stream.JsonReader;
@@ -52,166 +49,514 @@ import com.google.gson.stream.JsonToken;
 
 public class CordovaPluginRegistryManager {
 	
-	private static final String REGISTRY_URL = "http://registry.npmjs.org/";
+	static final String REGISTRY_URL = "http://registry.npmjs.org/";
+	static final String CATALOG_PATH = "-/_view/byKeyword?startkey=%5B%22ecosystem:cordova%22%5D&endkey=%5B%22ecosystem:cordova1%22%5D&group_level=3";
 //    private static final String PLUGIN_LIST_URL = 
 	
+	/**
+	 * Limits of the detailed plug-in information cache, can be overridden with
+	 * <i>org.eclipse.thym.core.registry.cacheSize</i> (number of plug-ins),
+	 * <i>org.eclipse.thym.core.registry.cacheWeight</i> (number of plug-in versions)
+	 * and <i>org.eclipse.thym.core.registry.cacheTTL</i> (milliseconds) system properties.
+	 */
+	private static final int CACHE_SIZE = Integer.getInteger("org.eclipse.thym.core.registry.cacheSize", 200);
+	private static final long CACHE_WEIGHT = Long.getLong("org.eclipse.thym.core.registry.cacheWeight", 20000);
+	private static final long CACHE_TTL = Long.getLong("org.eclipse.thym.core.registry.cacheTTL", 10 * 60 * 1000);
+	
+	// plug-in tarballs being downloaded by any of the managers, keyed by the tarball URL
+	private static final DownloadCoordinator<File> pluginDownloads = new DownloadCoordinator<File>();
+	// shared by all the managers, the wizards create their own managers
+	private static final LoadingCache<String, CordovaRegistryPlugin> detailedPluginInfoCache = 
+			new LoadingCache<String, CordovaRegistryPlugin>(CACHE_SIZE, CACHE_WEIGHT, CACHE_TTL, 
+					new LoadingCache.Weigher<CordovaRegistryPlugin>() {
+						@Override
+						public int weigh(CordovaRegistryPlugin plugin) {
+							List<RegistryPluginVersion> versions = plugin.getVersions();
+							return 1 + (versions == null ? 0 : versions.size());
+						}
+					});
+	
+	/**
+	 * Media type of the abbreviated npm registry metadata, which only 
+	 * carries what is needed to install a package.
+	 */
+	static final String ABBREVIATED_METADATA_TYPE = "application/vnd.npm.install-v1+json";
+	
+	/**
+	 * The abbreviated metadata is requested for plug-in details unless 
+	 * <i>org.eclipse.thym.core.registry.fullMetadata</i> system property is true.
+	 */
+	private static final boolean USE_ABBREVIATED_METADATA = !Boolean.getBoolean("org.eclipse.thym.core.registry.fullMetadata");
+	
+	/**
+	 * Number of catalog rows delivered together to a {@link PluginCatalogCallback}
+	 */
+	static final int CATALOG_BATCH_SIZE = 50;
+	
+	/**
+	 * Maximum number of concurrent registry requests for plug-in details, can be
+	 * overridden with <i>org.eclipse.thym.core.registry.fetchConcurrency</i> system property.
+	 */
+	public static final int FETCH_CONCURRENCY = Integer.getInteger("org.eclipse.thym.core.registry.fetchConcurrency", 4);
+	
+	// not a valid npm package name, never used by plugman
+	private static final String PACKAGE_STORE_DIR = "_thym";
+	
 	private final File cacheHome;
-	private HashMap<String, CordovaRegistryPlugin> detailedPluginInfoCache = new HashMap<String, CordovaRegistryPlugin>();
+	private final String registryUrl;
+	private PluginInfoFetch prefetch;
 	
 	public CordovaPluginRegistryManager() {
+		this(REGISTRY_URL);
+	}
+	
+	/**
+	 * @param registryUrl base URL of the npm registry ending with a /
+	 */
+	public CordovaPluginRegistryManager(String registryUrl) {
 		cacheHome = new File(FileUtils.getUserDirectory(), ".plugman"+File.separator+"cache");
+		this.registryUrl = registryUrl;
 	}
 	
+	/**
+	 * Returns the detailed information for the plug-in. The information is
+	 * cached, concurrent requests for the same plug-in result in a single 
+	 * registry request.
+	 * <p>
+	 * The abbreviated registry metadata is requested, which is enough for 
+	 * installing the plug-in, see {@link CordovaRegistryPlugin#isAbbreviated()}.
+	 * Use {@link #getCordovaPluginDetails(String)} for the description, 
+	 * license, keywords and maintainers.
+	 * </p>
+	 * 
+	 * @param name
+	 * @return plug-in
+	 * @throws CoreException
+	 */
 	public CordovaRegistryPlugin getCordovaPluginInfo(String name) throws CoreException {
-		
-		CordovaRegistryPlugin plugin = detailedPluginInfoCache.get(name);
-		if(plugin != null )
+		return detailedPluginInfoCache.get(name, new LoadingCache.Loader<String, CordovaRegistryPlugin>() {
+			@Override
+			public CordovaRegistryPlugin load(String key) throws CoreException {
+				return loadCordovaPluginInfo(key, USE_ABBREVIATED_METADATA);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the complete information for the plug-in, retrieves the full
+	 * registry document if only the abbreviated metadata is cached. 
+	 * 
+	 * @param name
+	 * @return plug-in
+	 * @throws CoreException
+	 */
+	public CordovaRegistryPlugin getCordovaPluginDetails(String name) throws CoreException {
+		CordovaRegistryPlugin plugin = detailedPluginInfoCache.getIfPresent(name);
+		if(plugin != null && !plugin.isAbbreviated()){
 			return plugin;
-		DefaultHttpClient defHttpClient = new DefaultHttpClient();
-		HttpUtil.setupProxy(defHttpClient);
-		HttpClient client =new CachingHttpClient(defHttpClient,
-				new HeapResourceFactory(), 
-				new BundleHttpCacheStorage(HybridCore.getContext().getBundle()), getCacheConfig()); 
+		}
+		plugin = loadCordovaPluginInfo(name, false);
+		detailedPluginInfoCache.put(name, plugin);
+		return plugin;
+	}
+	
+	private CordovaRegistryPlugin loadCordovaPluginInfo(String name, boolean abbreviated) throws CoreException {
+		if(RegistryMirror.isEnabled()){
+			return RegistryMirror.getDefault().getPlugin(name);
+		}
+		try{
+			return fetchCordovaPluginInfo(name, abbreviated);
+		}catch(CoreException e){
+			CordovaRegistryPlugin mirrored = RegistryMirror.getDefault().getStoredPlugin(name);
+			if(mirrored == null){
+				throw e;
+			}
+			HybridCore.log(IStatus.WARNING, "Registry is not reachable, using the local mirror for " + name, e);
+			return mirrored;
+		}
+	}
+	
+	/**
+	 * Returns the detailed information for the plug-ins. The plug-ins are
+	 * retrieved in parallel with up to {@link #FETCH_CONCURRENCY} concurrent
+	 * requests.
+	 * 
+	 * @param names
+	 * @param monitor
+	 * @return plug-ins in the order of the names or null if cancelled
+	 * @throws CoreException if any of the plug-ins can not be retrieved
+	 */
+	public List<CordovaRegistryPlugin> getCordovaPluginInfos(List<String> names, IProgressMonitor monitor) throws CoreException {
+		if(monitor == null )
+			monitor = new NullProgressMonitor();
+		monitor.beginTask("Retrieve Cordova Plug-in Details", IProgressMonitor.UNKNOWN);
+		PluginInfoFetch fetch = new PluginInfoFetch(this, names);
+		fetch.start(FETCH_CONCURRENCY);
+		try{
+			while(!fetch.await(100)){
+				if(monitor.isCanceled()){
+					fetch.cancel();
+					return null;
+				}
+			}
+		}catch(InterruptedException e){
+			fetch.cancel();
+			Thread.currentThread().interrupt();
+			return null;
+		}finally{
+			monitor.done();
+		}
+		List<CordovaRegistryPlugin> plugins = new ArrayList<CordovaRegistryPlugin>(names.size());
+		MultiStatus status = new MultiStatus(HybridCore.PLUGIN_ID, 0, "Can not retrieve plugin information", null);
+		for (String name : names) {
+			CoreException failure = fetch.getFailure(name);
+			if(failure != null){
+				status.add(failure.getStatus());
+			}else{
+				plugins.add(fetch.getResult(name));
+			}
+		}
+		if(!status.isOK()){
+			throw new CoreException(status.getChildren().length == 1 ? status.getChildren()[0] : status);
+		}
+		return plugins;
+	}
+	
+	/**
+	 * Starts retrieving the detailed information for the plug-ins in the 
+	 * background so that a later {@link #getCordovaPluginInfo(String)} is 
+	 * served from the cache. Replaces the plug-ins that are still waiting 
+	 * from an earlier prefetch. Failures are ignored.
+	 * 
+	 * @param names
+	 */
+	public synchronized void prefetchCordovaPluginInfos(Collection<String> names){
+		cancelPrefetch();
+		if(names.isEmpty()){
+			return;
+		}
+		prefetch = new PluginInfoFetch(this, names);
+		prefetch.start(FETCH_CONCURRENCY);
+	}
+	
+	/**
+	 * Cancels the plug-ins that are waiting to be prefetched.
+	 */
+	public synchronized void cancelPrefetch(){
+		if(prefetch != null){
+			prefetch.cancel();
+			prefetch = null;
+		}
+	}
+	
+	/**
+	 * Statistics of the detailed plug-in information cache.
+	 * @return stats
+	 */
+	public static LoadingCache.Stats getPluginInfoCacheStats(){
+		return detailedPluginInfoCache.getStats();
+	}
+	
+	private CordovaRegistryPlugin fetchCordovaPluginInfo(String name, boolean abbreviated) throws CoreException {
+		HttpClient client = SharedHttpClient.getCachingClient();
 		
-		HttpGet get = new HttpGet(REGISTRY_URL+name);
+		HttpGet get = new HttpGet(registryUrl+name);
+		if(abbreviated){
+			// registries that do not support the abbreviated metadata respond with the full document
+			get.setHeader("Accept", ABBREVIATED_METADATA_TYPE + ", application/json;q=0.8");
+		}
 		HttpResponse response;
+		JsonReader reader = null;
 		try {
 			response = client.execute(get);
 			HttpEntity entity = response.getEntity();
-			InputStream stream = entity.getContent();
-			JsonReader reader = new JsonReader(new InputStreamReader(stream));
-			plugin = new CordovaRegistryPlugin();
-			readPluginInfo(reader, plugin);
-			this.detailedPluginInfoCache.put(name, plugin);
+			if(response.getStatusLine().getStatusCode() != HttpStatus.SC_OK){
+				// an error document must not be parsed nor mirrored
+				EntityUtils.consume(entity);
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, 
+						NLS.bind("Registry responded with {0} for {1}", response.getStatusLine(), name)));
+			}
+			Header contentType = entity.getContentType();
+			boolean abbreviatedResponse = contentType != null && contentType.getValue().startsWith(ABBREVIATED_METADATA_TYPE);
+			// kept on the mirror for when the registry can not be reached
+			RegistryMirror.PluginCopy stream = RegistryMirror.getDefault().copyPlugin(name, getETag(response), abbreviatedResponse, entity.getContent());
+			reader = new JsonReader(new InputStreamReader(stream, "UTF-8"));
+			CordovaRegistryPlugin plugin = parsePluginDocument(reader);
+			plugin.setAbbreviated(abbreviatedResponse);
+			stream.commit();
 			return plugin;
 		} catch (ClientProtocolException e) {
 			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not retrieve plugin information for " + name, e));
 		} catch (IOException e) {
 			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not retrieve plugin information for " + name, e));
+		} finally {
+			// releases the connection back to the pool
+			if(reader != null )
+				try {
+					reader.close();
+				} catch (IOException e) { /*ignored*/ }
 		}
 	}
 	
 	/**
 	 * Returns a directory where the given version of the Cordova Plugin 
 	 * can be installed from. This method downloads the given 
-	 * cordova plugin if necessary.
+	 * cordova plugin if necessary. The tarball is extracted while it is
+	 * downloaded, verified against the shasum of the version and kept in
+	 * the {@link PluginPackageStore}.
+	 * The download is aborted when the monitor is cancelled. An interrupted
+	 * download is retried and resumed from the received part, also by the
+	 * next call if it fails. Concurrent calls for the same version share a
+	 * single download.
 	 * 
 	 * @param plugin
-	 * @return
+	 * @return directory of the extracted plug-in
+	 * @throws CoreException if the plug-in can not be downloaded or is corrupt,
+	 * with a cancel status if the download is cancelled
 	 */
-	public File getInstallationDirectory( RegistryPluginVersion plugin, IProgressMonitor monitor ){
+	public File getInstallationDirectory( final RegistryPluginVersion plugin, IProgressMonitor monitor ) throws CoreException{
 		if(monitor == null )
 			monitor = new NullProgressMonitor();
 		
-		File pluginDir = getFromCache(plugin);
+		final PluginPackageStore store = getPackageStore();
+		String shasum = plugin.getShasum();
+		if(shasum == null){
+			shasum = store.getReference(plugin.getName(), plugin.getVersionNumber());
+		}
+		File pluginDir = store.get(shasum);
 		if (pluginDir != null ){
+			store.addReference(plugin.getName(), plugin.getVersionNumber(), shasum);
 			return pluginDir;
 		}
-		File newCacheDir = calculateCacheDir(plugin);
-		
-		IRetrieveFileTransfer transfer = HybridCore.getDefault().getFileTransferService();
-		IFileID remoteFileID;
 		
+		final URI uri;
 		try {
-			remoteFileID = FileIDFactory.getDefault().createFileID(transfer.getRetrieveNamespace(), plugin.getTarball());
-			Object lock = new Object();
-			PluginReceiver receiver = new PluginReceiver(newCacheDir,monitor, lock);
-		    synchronized (lock) {
-		    	transfer.sendRetrieveRequest(remoteFileID, receiver, null);
-		    	lock.wait();
-			}
-		} catch (FileCreateException e) {
-			HybridCore.log(IStatus.ERROR, "Cordova plugin fetch error", e);
-		} catch (IncomingFileTransferException e) {
-			HybridCore.log(IStatus.ERROR, "Cordova plugin fetch error", e);
-		} catch (InterruptedException e) {
-			HybridCore.log(IStatus.ERROR, "Cordova plugin fetch error", e);
+			uri = URI.create(plugin.getTarball());
+		} catch (IllegalArgumentException e) {
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, 
+					NLS.bind("Invalid tarball URL {0}", plugin.getTarball()), e));
 		}
-		return new File(newCacheDir, "package");
+		return pluginDownloads.execute(uri.toString(), new DownloadCoordinator.Task<File>() {
+			@Override
+			public File run(IProgressMonitor monitor) throws CoreException {
+				return downloadPackage(store, plugin, uri, monitor);
+			}
+		}, monitor);
 	}
 	
-	private File getFromCache( RegistryPluginVersion plugin ){
-		File cachedPluginDir = calculateCacheDir(plugin);
-		File packageDir = new File(cachedPluginDir,"package");
-		if( !packageDir.isDirectory()){
-			return null;
+	private static File downloadPackage(PluginPackageStore store, RegistryPluginVersion plugin, URI uri, IProgressMonitor monitor) throws CoreException{
+		String shasum = plugin.getShasum();
+		if(shasum == null){
+			shasum = store.getReference(plugin.getName(), plugin.getVersionNumber());
+		}
+		File pluginDir = store.get(shasum);
+		if(pluginDir != null){
+			// stored by a download that completed in the mean time
+			store.addReference(plugin.getName(), plugin.getVersionNumber(), shasum);
+			return pluginDir;
+		}
+		// verified against the shasum of the version if it is known
+		PluginPackageStore.PackageOutputStream out = store.openPackage(plugin.getShasum());
+		try {
+			File partial = store.getPartialDownloadFile(plugin.getName(), plugin.getVersionNumber());
+			DownloadService.create().download(uri, out, partial).get(monitor);
+			pluginDir = out.commit();
+			store.addReference(plugin.getName(), plugin.getVersionNumber(), out.getShasum());
+			return pluginDir;
+		} finally {
+			out.abort();
 		}
-		File pluginxml = new File(packageDir, PlatformConstants.FILE_XML_PLUGIN);
-		if(cachedPluginDir.isDirectory() && pluginxml.exists())
-			return packageDir;
-		return null;
-	}
-
-	private File calculateCacheDir(RegistryPluginVersion plugin) {
-		File cachedPluginDir = new File(this.cacheHome, plugin.getName() + File.separator +
-				plugin.getVersionNumber());
-				
-		return cachedPluginDir;
 	}
 	
-	private static CacheConfig getCacheConfig(){
-		CacheConfig config = new CacheConfig();
-		config.setMaxObjectSize(120 *1024);
-		return config;
+	/**
+	 * Store of the downloaded plug-ins, shared with all the workspaces of the user.
+	 * @return store
+	 */
+	public PluginPackageStore getPackageStore(){
+		return new PluginPackageStore(new File(cacheHome, PACKAGE_STORE_DIR));
 	}
 	
+	/**
+	 * Returns the catalog of the Cordova plug-ins on the registry. If the 
+	 * local registry mirror is enabled the catalog is served from the mirror, 
+	 * otherwise the retrieved catalog is stored on the mirror, which is used
+	 * only if the registry is not reachable. The stored catalog is also 
+	 * returned if the registry reports that it is not modified.
+	 * 
+	 * @param monitor
+	 * @return plug-ins or null if cancelled
+	 * @throws CoreException
+	 */
 	public List<CordovaRegistryPluginInfo> retrievePluginInfos(IProgressMonitor monitor) throws CoreException
+	{
+		return retrievePluginInfos(monitor, null);
+	}
+	
+	/**
+	 * Returns the catalog of the Cordova plug-ins on the registry. The 
+	 * callback receives the plug-ins in batches while the catalog is parsed
+	 * so that they can be displayed before the whole catalog is retrieved.
+	 * The returned list is the concatenation of the batches unless the
+	 * catalog is served by the local mirror after a failure, see 
+	 * {@link #retrievePluginInfos(IProgressMonitor)}.
+	 * 
+	 * @param monitor
+	 * @param callback may be null
+	 * @return plug-ins or null if cancelled
+	 * @throws CoreException
+	 */
+	public List<CordovaRegistryPluginInfo> retrievePluginInfos(IProgressMonitor monitor, PluginCatalogCallback callback) throws CoreException
+	{
+		if(RegistryMirror.isEnabled()){
+			List<CordovaRegistryPluginInfo> plugins = RegistryMirror.getDefault().getPluginInfos(monitor);
+			if(plugins != null && callback != null){
+				callback.pluginInfosRetrieved(plugins);
+			}
+			return plugins;
+		}
+		try{
+			return downloadPluginInfos(monitor, callback);
+		}catch(CoreException e){
+			RegistryMirror mirror = RegistryMirror.getDefault();
+			if(!mirror.hasCatalog()){
+				throw e;
+			}
+			HybridCore.log(IStatus.WARNING, "Registry is not reachable, using the local mirror catalog", e);
+			return mirror.getStoredPluginInfos();
+		}
+	}
+	
+	private List<CordovaRegistryPluginInfo> downloadPluginInfos(IProgressMonitor monitor, PluginCatalogCallback callback) throws CoreException
 	{
 		
 		if(monitor == null )
 			monitor = new NullProgressMonitor();
 		
 		monitor.beginTask("Retrieve plug-in registry catalog", 10);
-		DefaultHttpClient theHttpClient = new DefaultHttpClient();
-		HttpUtil.setupProxy(theHttpClient);
-		HttpClient client = new CachingHttpClient(theHttpClient, 
-				new HeapResourceFactory(), 
-				new BundleHttpCacheStorage(HybridCore.getContext().getBundle()), getCacheConfig());
+		RegistryMirror mirror = RegistryMirror.getDefault();
+		RegistrySource.Document document = null;
 		JsonReader reader= null;
 		try {
 			if(monitor.isCanceled()){
 				return null;
 			}
-			String url = REGISTRY_URL + "-/_view/byKeyword?startkey=%5B%22ecosystem:cordova%22%5D&endkey=%5B%22ecosystem:cordova1%22%5D&group_level=3";
-			HttpGet get = new HttpGet(URI.create(url));
-			HttpResponse response = client.execute(get);
-			HttpEntity entity = response.getEntity();
-			InputStream stream = entity.getContent();
+			// streamed from the pooled client, the catalog stored on the mirror
+			// is revalidated instead of transferred again if unchanged
+			document = new HttpRegistrySource(registryUrl).getCatalog(mirror.getCatalogETag());
 			monitor.worked(7);
-			reader = new JsonReader(new InputStreamReader(stream));
-			reader.beginObject();//start the Registry
-			final ArrayList<CordovaRegistryPluginInfo> plugins = new ArrayList<CordovaRegistryPluginInfo>();
-			while(reader.hasNext()){
-				JsonToken token = reader.peek();
-				switch (token) {
-				case BEGIN_ARRAY: 
-					reader.beginArray();
-					break;
-				case BEGIN_OBJECT: 
-					plugins.add(parseCordovaRegistryPluginInfo(reader));
-					break;
-				default:
-					reader.skipValue();
-					break;
-				}
-				
+			if(!document.isModified()){
+				List<CordovaRegistryPluginInfo> plugins = mirror.getStoredPluginInfos();
+				notifyBatch(callback, plugins, 0);
+				return plugins;
+			}
+			reader = new JsonReader(new InputStreamReader(document.getContent(), "UTF-8"));
+			List<CordovaRegistryPluginInfo> plugins = parseCatalog(reader, callback, monitor);
+			if(plugins != null){
+				storeCatalog(plugins, document.getETag());
 			}
 			return plugins;
 
-		} catch (ClientProtocolException e) {
-			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not retrieve plugin catalog",e));
 		} catch (IOException e) {
 			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not retrieve plugin catalog", e));
 		}finally{
-			if(reader != null )
+			// releases the connection back to the pool
+			if(reader != null ){
 				try {
 					reader.close();
 				} catch (IOException e) { /*ignored*/ }
+			}else if(document != null){
+				IOUtils.closeQuietly(document.getContent());
+			}
 			monitor.done();
 		}
 	}
 	
-	private CordovaRegistryPluginInfo parseCordovaRegistryPluginInfo(JsonReader reader) throws IOException{
+	/**
+	 * Keeps the catalog on the mirror for when the registry can not be reached.
+	 */
+	private static void storeCatalog(List<CordovaRegistryPluginInfo> plugins, String etag){
+		try{
+			RegistryMirror.getDefault().storeCatalog(plugins, etag);
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, "Can not store the plug-in catalog on the registry mirror", e);
+		}
+	}
+	
+	private static String getETag(HttpResponse response){
+		Header etag = response.getFirstHeader("ETag");
+		return etag == null ? null : etag.getValue();
+	}
+	
+	/**
+	 * Parses the registry catalog.
+	 * @param reader
+	 * @return plug-ins
+	 * @throws IOException
+	 */
+	static List<CordovaRegistryPluginInfo> parseCatalog(JsonReader reader) throws IOException{
+		return parseCatalog(reader, null, new NullProgressMonitor());
+	}
+	
+	/**
+	 * Parses the registry catalog as it is read, the callback receives a
+	 * batch of plug-ins every {@link #CATALOG_BATCH_SIZE} rows.
+	 * 
+	 * @param reader
+	 * @param callback may be null
+	 * @param monitor
+	 * @return plug-ins or null if cancelled
+	 * @throws IOException
+	 */
+	static List<CordovaRegistryPluginInfo> parseCatalog(JsonReader reader, PluginCatalogCallback callback, IProgressMonitor monitor) throws IOException{
+		final ArrayList<CordovaRegistryPluginInfo> plugins = new ArrayList<CordovaRegistryPluginInfo>();
+		int batchStart = 0;
+		reader.beginObject();//start the Registry
+		while(reader.hasNext()){
+			if(!"rows".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY){
+				reader.skipValue();
+				continue;
+			}
+			reader.beginArray();
+			while(reader.hasNext()){
+				if(reader.peek() != JsonToken.BEGIN_OBJECT){
+					reader.skipValue();
+					continue;
+				}
+				plugins.add(parseCordovaRegistryPluginInfo(reader));
+				if(plugins.size() - batchStart == CATALOG_BATCH_SIZE){
+					if(monitor.isCanceled()){
+						return null;
+					}
+					notifyBatch(callback, plugins, batchStart);
+					batchStart = plugins.size();
+				}
+			}
+			reader.endArray();
+		}
+		reader.endObject();
+		notifyBatch(callback, plugins, batchStart);
+		return plugins;
+	}
+	
+	private static void notifyBatch(PluginCatalogCallback callback, List<CordovaRegistryPluginInfo> plugins, int batchStart){
+		if(callback != null && batchStart < plugins.size()){
+			callback.pluginInfosRetrieved(new ArrayList<CordovaRegistryPluginInfo>(plugins.subList(batchStart, plugins.size())));
+		}
+	}
+	
+	/**
+	 * Parses the registry document of a plug-in.
+	 * @param reader
+	 * @return plug-in
+	 * @throws IOException
+	 */
+	static CordovaRegistryPlugin parsePluginDocument(JsonReader reader) throws IOException{
+		CordovaRegistryPlugin plugin = new CordovaRegistryPlugin();
+		readPluginInfo(reader, plugin);
+		return plugin;
+	}
+	
+	private static CordovaRegistryPluginInfo parseCordovaRegistryPluginInfo(JsonReader reader) throws IOException{
 		CordovaRegistryPluginInfo info = new CordovaRegistryPluginInfo();
 		reader.beginObject();
 		reader.skipValue(); // name
@@ -225,7 +570,7 @@ public class CordovaPluginRegistryManager {
 		return info;
 	}
 	
-	private String safeReadStringValue(JsonReader reader) throws IOException{
+	private static String safeReadStringValue(JsonReader reader) throws IOException{
 		if(reader.peek() == JsonToken.STRING){
 			return reader.nextString();
 		}
@@ -233,7 +578,7 @@ public class CordovaPluginRegistryManager {
 		return "";
 	}
 
-	private void readVersionInfo(JsonReader reader, RegistryPluginVersion version)throws IOException{
+	private static void readVersionInfo(JsonReader reader, RegistryPluginVersion version)throws IOException{
 		Assert.isNotNull(version);
 		reader.beginObject();
 		while(reader.hasNext()){
@@ -245,6 +590,10 @@ public class CordovaPluginRegistryManager {
 					parseDistDetails(reader,  version);
 					break;
 				}
+				if("engines".equals(name)){
+					parseEngines(reader, version);
+					break;
+				}
 				break;
 
 			default:
@@ -255,7 +604,7 @@ public class CordovaPluginRegistryManager {
 		reader.endObject();
 	}
 	
-	private void readPluginInfo(JsonReader reader, CordovaRegistryPlugin plugin ) throws IOException {
+	private static void readPluginInfo(JsonReader reader, CordovaRegistryPlugin plugin ) throws IOException {
 		Assert.isNotNull(plugin);
 		reader.beginObject();
 
@@ -303,7 +652,24 @@ public class CordovaPluginRegistryManager {
 		reader.endObject();
 	}
 
-	private void parseDistDetails(JsonReader reader, RegistryPluginVersion plugin) throws IOException{
+	private static void parseEngines(JsonReader reader, RegistryPluginVersion version) throws IOException{
+		if(reader.peek() != JsonToken.BEGIN_OBJECT){
+			reader.skipValue();// old documents may list the engines in an array
+			return;
+		}
+		reader.beginObject();
+		while(reader.hasNext()){
+			String engine = reader.nextName();
+			if(reader.peek() == JsonToken.STRING){
+				version.addEngine(engine, reader.nextString());
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void parseDistDetails(JsonReader reader, RegistryPluginVersion plugin) throws IOException{
 		reader.beginObject();
 		JsonToken token = reader.peek();
 		while(token != JsonToken.END_OBJECT){
@@ -329,7 +695,7 @@ public class CordovaPluginRegistryManager {
 		reader.endObject();
 	}
 
-	private void parseVersions(JsonReader reader,
+	private static void parseVersions(JsonReader reader,
 			CordovaRegistryPlugin plugin) throws IOException{
 		reader.beginObject();//versions
 		JsonToken token = reader.peek();
@@ -351,7 +717,7 @@ public class CordovaPluginRegistryManager {
 		reader.endObject();
 	}
 
-	private void parseLatestVersion(JsonReader reader, CordovaRegistryPlugin plugin) throws IOException{
+	private static void parseLatestVersion(JsonReader reader, CordovaRegistryPlugin plugin) throws IOException{
 		reader.beginObject();
 		JsonToken token = reader.peek();
 		while ( token != JsonToken.END_OBJECT){
@@ -372,7 +738,7 @@ public class CordovaPluginRegistryManager {
 		reader.endObject();
 	}
 
-	private void parseMaintainers(JsonReader reader, CordovaRegistryPlugin plugin) throws IOException{
+	private static void parseMaintainers(JsonReader reader, CordovaRegistryPlugin plugin) throws IOException{
 		reader.beginArray();
 		String name=null, email = null;
 		JsonToken token = reader.peek();
@@ -406,7 +772,7 @@ public class CordovaPluginRegistryManager {
 		reader.endArray();
 	}
 
-	private void parseKeywords(JsonReader reader, CordovaRegistryPlugin plugin) throws IOException{
+	private static void parseKeywords(JsonReader reader, CordovaRegistryPlugin plugin) throws IOException{
 		reader.beginArray();
 		while(reader.hasNext()){
 			plugin.addKeyword(reader.nextString());
@@ -23,11 +23,13 @@ public class CordovaRegistryPlugin extends CordovaRegistryPluginInfo {
 	private Map<String, String> maintainers;
 	private String latestVersion;
 	private String license;
+	private boolean abbreviated;
 	
 	public class RegistryPluginVersion{
 		private String versionNumber;
 		private String tarball;
 		private String shasum;
+		private Map<String, String> engines;
 
 		public String getVersionNumber() {
 			return versionNumber;
@@ -56,6 +58,25 @@ public class CordovaRegistryPlugin extends CordovaRegistryPluginInfo {
 		public void setShasum(String shasum) {
 			this.shasum = shasum;
 		}
+
+		/**
+		 * Engine constraints of this version, such as the supported 
+		 * cordova versions.
+		 * @return engine name to version range, never null
+		 */
+		public Map<String, String> getEngines() {
+			if(engines == null){
+				return Collections.emptyMap();
+			}
+			return engines;
+		}
+
+		public void addEngine(String engine, String versionRange) {
+			if(engines == null){
+				engines = new HashMap<String, String>();
+			}
+			engines.put(engine, versionRange);
+		}
 	}
 	
 	public List<RegistryPluginVersion> getVersions() {
@@ -127,4 +148,21 @@ public class CordovaRegistryPlugin extends CordovaRegistryPluginInfo {
 	public void setLicense(String license) {
 		this.license = license;
 	}
+
+	/**
+	 * Whether this plug-in is read from the abbreviated registry metadata.
+	 * Abbreviated metadata carries the versions with their distribution 
+	 * and engine details but no description, license, keywords or 
+	 * maintainers.
+	 * 
+	 * @return true if abbreviated
+	 * @see CordovaPluginRegistryManager#getCordovaPluginDetails(String)
+	 */
+	public boolean isAbbreviated() {
+		return abbreviated;
+	}
+
+	public void setAbbreviated(boolean abbreviated) {
+		this.abbreviated = abbreviated;
+	}
 }
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * {@link RegistrySource} for a registry copy on a directory, for instance
+ * a shared drive for the machines that can not reach the registry. The
+ * directory contains the catalog as <i>catalog.json</i> and the plug-in
+ * documents as <i>&lt;plug-in name&gt;.json</i>, in the format of the npm
+ * registry. The entity tags are derived from the size and modification
+ * time of the files.
+ */
+public class FileRegistrySource implements RegistrySource {
+
+	public static final String CATALOG_FILE = "catalog.json";
+	private final File directory;
+
+	public FileRegistrySource(File directory){
+		this.directory = directory;
+	}
+
+	@Override
+	public Document getCatalog(String etag) throws IOException {
+		File catalog = new File(directory, CATALOG_FILE);
+		if(!catalog.isFile()){
+			throw new IOException(NLS.bind("{0} does not exist", catalog));
+		}
+		return get(catalog, etag);
+	}
+
+	@Override
+	public Document getPluginDocument(String name, String etag) throws IOException {
+		File document = new File(directory, URLEncoder.encode(name, "UTF-8") + ".json");
+		if(!document.isFile()){
+			return null;
+		}
+		return get(document, etag);
+	}
+
+	private Document get(File file, String etag){
+		String current = "\"" + Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length()) + "\"";
+		if(current.equals(etag)){
+			return new Document(null, etag);
+		}
+		try {
+			return new Document(new FileInputStream(file), current);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.internal.util.SharedHttpClient;
+
+/**
+ * {@link RegistrySource} for an npm registry, uses conditional requests.
+ */
+public class HttpRegistrySource implements RegistrySource {
+
+	private final String registryUrl;
+
+	/**
+	 * @param registryUrl base URL of the registry ending with a /
+	 */
+	public HttpRegistrySource(String registryUrl){
+		this.registryUrl = registryUrl;
+	}
+
+	@Override
+	public Document getCatalog(String etag) throws IOException {
+		Document document = get(registryUrl + CordovaPluginRegistryManager.CATALOG_PATH, etag);
+		if(document == null){
+			throw new IOException("Registry catalog is not found");
+		}
+		return document;
+	}
+
+	@Override
+	public Document getPluginDocument(String name, String etag) throws IOException {
+		return get(registryUrl + name.replace("/", "%2f"), etag);
+	}
+
+	private Document get(String url, String etag) throws IOException{
+		HttpGet get = new HttpGet(URI.create(url));
+		if(etag != null){
+			get.setHeader("If-None-Match", etag);
+		}
+		HttpResponse response = SharedHttpClient.getClient().execute(get);
+		int status = response.getStatusLine().getStatusCode();
+		Header etagHeader = response.getFirstHeader("ETag");
+		String newEtag = etagHeader == null ? null : etagHeader.getValue();
+		switch (status) {
+		case HttpStatus.SC_OK:
+			return new Document(response.getEntity().getContent(), newEtag);
+		case HttpStatus.SC_NOT_MODIFIED:
+			EntityUtils.consume(response.getEntity());
+			return new Document(null, etag);
+		case HttpStatus.SC_NOT_FOUND:
+			EntityUtils.consume(response.getEntity());
+			return null;
+		default:
+			EntityUtils.consume(response.getEntity());
+			throw new IOException(NLS.bind("Registry responded with {0} for {1}", response.getStatusLine(), url));
+		}
+	}
+
+}
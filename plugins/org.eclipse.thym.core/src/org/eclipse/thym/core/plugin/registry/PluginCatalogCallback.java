@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.util.List;
+
+/**
+ * Receives the plug-ins of the registry catalog while the catalog is
+ * being retrieved. Called on the thread that retrieves the catalog.
+ *
+ * @see CordovaPluginRegistryManager#retrievePluginInfos(org.eclipse.core.runtime.IProgressMonitor, PluginCatalogCallback)
+ */
+public interface PluginCatalogCallback {
+
+	/**
+	 * Called for every batch of plug-ins parsed from the catalog, in
+	 * catalog order.
+	 *
+	 * @param batch
+	 */
+	public void pluginInfosRetrieved(List<CordovaRegistryPluginInfo> batch);
+
+}
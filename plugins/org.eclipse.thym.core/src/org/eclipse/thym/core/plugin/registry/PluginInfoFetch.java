@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+
+/**
+ * Fetches the detailed information of several plug-ins with a bounded
+ * number of concurrent registry requests.
+ */
+class PluginInfoFetch {
+
+	private class FetchJob extends Job {
+
+		public FetchJob() {
+			super("Retrieve Cordova Plug-in Details");
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			String name;
+			while((name = next()) != null){
+				try{
+					CordovaRegistryPlugin plugin = manager.getCordovaPluginInfo(name);
+					synchronized (results) {
+						results.put(name, plugin);
+					}
+				}catch(CoreException e){
+					fail(name, e);
+				}catch(RuntimeException e){
+					// e.g. an unexpected registry document, must not stop the worker
+					fail(name, new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+							NLS.bind("Can not retrieve plugin information for {0}", name), e)));
+				}finally{
+					remaining.countDown();
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	private final CordovaPluginRegistryManager manager;
+	private final LinkedList<String> queue;
+	private final Map<String, CordovaRegistryPlugin> results = new HashMap<String, CordovaRegistryPlugin>();
+	private final Map<String, CoreException> failures = new HashMap<String, CoreException>();
+	private final CountDownLatch remaining;
+
+	PluginInfoFetch(CordovaPluginRegistryManager manager, Collection<String> names){
+		this.manager = manager;
+		this.queue = new LinkedList<String>(new LinkedHashSet<String>(names));
+		this.remaining = new CountDownLatch(queue.size());
+	}
+
+	/**
+	 * Starts fetching with up to the given number of concurrent requests.
+	 * @param concurrency
+	 */
+	void start(int concurrency){
+		int workers = Math.min(Math.max(1, concurrency), queue.size());
+		for (int i = 0; i < workers; i++) {
+			new FetchJob().schedule();
+		}
+	}
+
+	/**
+	 * Drops the plug-ins that are not fetched yet. The requests in progress
+	 * are completed, their results are cached.
+	 */
+	void cancel(){
+		synchronized (queue) {
+			while(!queue.isEmpty()){
+				queue.poll();
+				remaining.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Waits for the fetch to complete.
+	 * @param timeout in milliseconds
+	 * @return true if completed
+	 * @throws InterruptedException
+	 */
+	boolean await(long timeout) throws InterruptedException{
+		return remaining.await(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	CordovaRegistryPlugin getResult(String name){
+		synchronized (results) {
+			return results.get(name);
+		}
+	}
+
+	CoreException getFailure(String name){
+		synchronized (failures) {
+			return failures.get(name);
+		}
+	}
+
+	private void fail(String name, CoreException e){
+		synchronized (failures) {
+			failures.put(name, e);
+		}
+	}
+
+	private String next(){
+		synchronized (queue) {
+			return queue.poll();
+		}
+	}
+
+}
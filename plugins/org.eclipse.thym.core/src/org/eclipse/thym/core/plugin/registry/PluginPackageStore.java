@@ -0,0 +1,588 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+import org.eclipse.thym.core.internal.util.UntarOutputStream;
+
+/**
+ * Content addressed store of the extracted plug-in tarballs. The entries
+ * are keyed by the SHA-1 of the tarball, the <i>shasum</i> on the registry.
+ * <p>
+ * A tarball is extracted to a staging directory while it is downloaded.
+ * The staging directory is moved in place only after the tarball is
+ * verified against its SHA-1 and extracted completely, together with a marker that
+ * records what was extracted. Entries without a marker or with a tree that
+ * does not match the marker are discarded so that they are retrieved again.
+ * </p>
+ * <p>
+ * The plug-in versions refer to the entries. The references that are not
+ * used for {@link #MAX_UNUSED_AGE} are removed and the entries that are no
+ * longer referenced are garbage collected.
+ * </p>
+ */
+public class PluginPackageStore {
+
+	/**
+	 * References unused for longer than this are removed by the garbage
+	 * collection, can be overridden with
+	 * <i>org.eclipse.thym.core.plugin.storeMaxAge</i> system property in milliseconds.
+	 */
+	public static final long MAX_UNUSED_AGE = Long.getLong("org.eclipse.thym.core.plugin.storeMaxAge", TimeUnit.DAYS.toMillis(60));
+	private static final long GC_INTERVAL = TimeUnit.DAYS.toMillis(1);
+	// staging and entries younger than this are in use
+	private static final long IN_PROGRESS_AGE = TimeUnit.HOURS.toMillis(1);
+
+	private static final String DIR_ENTRIES = "sha1";
+	private static final String DIR_REFS = "refs";
+	private static final String DIR_STAGING = "staging";
+	private static final String FILE_LAST_GC = "last-gc";
+	private static final String MARKER = ".complete";
+	private static final String KEY_SHASUM = "shasum";
+	private static final String KEY_ROOT = "root";
+	private static final String KEY_FILES = "files";
+	private static final String KEY_BYTES = "bytes";
+
+	private final File root;
+
+	/**
+	 * @param root directory of the store
+	 */
+	public PluginPackageStore(File root){
+		this.root = root;
+	}
+
+	/**
+	 * Returns the extracted package for the tarball with the given SHA-1.
+	 * An incomplete or modified entry is removed.
+	 *
+	 * @param shasum
+	 * @return package directory or null if the store does not have a valid entry
+	 */
+	public File get(String shasum){
+		String key = normalize(shasum);
+		if(key == null){
+			return null;
+		}
+		File entry = new File(new File(root, DIR_ENTRIES), key);
+		if(!entry.exists()){
+			return null;
+		}
+		File marker = new File(entry, MARKER);
+		Properties properties = readMarker(marker);
+		if(properties == null || !key.equals(properties.getProperty(KEY_SHASUM)) 
+				|| !matches(properties, new File(entry, properties.getProperty(KEY_ROOT)))){
+			HybridCore.log(IStatus.WARNING, NLS.bind("Discarding incomplete plug-in package {0}", entry), null);
+			discard(entry);
+			return null;
+		}
+		marker.setLastModified(System.currentTimeMillis());
+		return new File(entry, properties.getProperty(KEY_ROOT));
+	}
+
+	/**
+	 * Extracts a plug-in tarball into the staging area of the store while
+	 * it is written and computes its SHA-1. The package is stored with
+	 * {@link #commit()} after it is verified.
+	 */
+	public class PackageOutputStream extends OutputStream {
+		private final String expected;
+		private final File staging;
+		private final UntarOutputStream untar;
+		private final MessageDigest digest;
+		private String shasum;
+		private boolean committed;
+
+		private PackageOutputStream(String expected, File staging) throws NoSuchAlgorithmException{
+			this.expected = expected;
+			this.staging = staging;
+			this.digest = MessageDigest.getInstance("SHA-1");
+			this.untar = new UntarOutputStream(staging);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			untar.write(b, off, len);
+			digest.update(b, off, len);
+		}
+
+		/**
+		 * Waits for the extraction to complete.
+		 */
+		@Override
+		public void close() throws IOException {
+			untar.close();
+		}
+
+		/**
+		 * Verifies the written tarball against the expected SHA-1 and moves
+		 * the extracted package into the store.
+		 *
+		 * @return package directory
+		 * @throws CoreException if the tarball is corrupt or can not be extracted
+		 */
+		public File commit() throws CoreException{
+			try{
+				close();
+				String actual = shasum != null ? shasum : toHex(digest.digest());
+				shasum = actual;
+				if(expected != null && !expected.equals(actual)){
+					throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+							NLS.bind("Downloaded plug-in is corrupt, its shasum is {0} instead of {1}", actual, expected)));
+				}
+				File packageDir = findPackageRoot(staging);
+				Properties properties = new Properties();
+				properties.setProperty(KEY_SHASUM, actual);
+				properties.setProperty(KEY_ROOT, staging.toURI().relativize(packageDir.toURI()).getPath());
+				long[] stats = new long[2];
+				count(packageDir, stats);
+				properties.setProperty(KEY_FILES, Long.toString(stats[0]));
+				properties.setProperty(KEY_BYTES, Long.toString(stats[1]));
+				writeMarker(new File(staging, MARKER), properties);
+				File entry = new File(new File(root, DIR_ENTRIES), actual);
+				entry.getParentFile().mkdirs();
+				if(!promote(staging, entry)){
+					// stored concurrently
+					File existing = get(actual);
+					if(existing != null){
+						return existing;
+					}
+					discard(entry);
+					if(!promote(staging, entry)){
+						throw new IOException(NLS.bind("Can not store {0}", entry));
+					}
+				}
+				committed = true;
+				return new File(entry, properties.getProperty(KEY_ROOT));
+			}catch(IOException e){
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not extract plug-in package", e));
+			}finally{
+				abort();
+				scheduleGarbageCollection();
+			}
+		}
+
+		/**
+		 * @return the SHA-1 of the written tarball, available after {@link #commit()}
+		 */
+		public String getShasum(){
+			return shasum;
+		}
+
+		/**
+		 * Discards the extracted files, does nothing after a successful {@link #commit()}.
+		 */
+		public void abort(){
+			if(!committed){
+				untar.abort();
+				FileUtils.deleteQuietly(staging);
+			}
+		}
+	}
+
+	/**
+	 * Opens a stream that extracts a plug-in tarball into the store.
+	 *
+	 * @param shasum expected SHA-1 of the tarball or null if it is not known
+	 * @return stream, to be committed or aborted
+	 * @throws CoreException
+	 */
+	public PackageOutputStream openPackage(String shasum) throws CoreException{
+		String key = normalize(shasum);
+		if(shasum != null && key == null){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, NLS.bind("Invalid shasum {0}", shasum)));
+		}
+		try{
+			File staging = createStagingFile("extract");
+			staging.delete();
+			staging.mkdirs();
+			return new PackageOutputStream(key, staging);
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not extract plug-in package", e));
+		}catch(NoSuchAlgorithmException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "SHA-1 is not supported", e));
+		}
+	}
+
+	/**
+	 * Verifies the tarball, extracts it and stores it.
+	 *
+	 * @param shasum expected SHA-1 of the tarball
+	 * @param tarball
+	 * @return package directory
+	 * @throws CoreException if the tarball does not match the SHA-1 or can not be extracted
+	 */
+	public File put(String shasum, File tarball) throws CoreException{
+		String key = normalize(shasum);
+		if(key == null){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, NLS.bind("Invalid shasum {0}", shasum)));
+		}
+		File existing = get(key);
+		if(existing != null){
+			return existing;
+		}
+		PackageOutputStream out = openPackage(shasum);
+		InputStream in = null;
+		try{
+			in = new FileInputStream(tarball);
+			IOUtils.copy(in, out);
+			return out.commit();
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not extract plug-in package", e));
+		}finally{
+			IOUtils.closeQuietly(in);
+			out.abort();
+		}
+	}
+
+	/**
+	 * Records that a plug-in version uses the tarball with the given SHA-1,
+	 * keeps the entry from being garbage collected.
+	 *
+	 * @param name
+	 * @param version
+	 * @param shasum
+	 */
+	public void addReference(String name, String version, String shasum){
+		String key = normalize(shasum);
+		if(key == null){
+			return;
+		}
+		File ref = getReferenceFile(name, version);
+		try{
+			if(!key.equals(readReference(ref))){
+				File temp = createStagingFile("ref");
+				FileUtils.writeStringToFile(temp, key, "US-ASCII");
+				ref.getParentFile().mkdirs();
+				move(temp, ref);
+			}
+			ref.setLastModified(System.currentTimeMillis());
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, NLS.bind("Can not record the plug-in package of {0}@{1}", name, version), e);
+		}
+	}
+
+	/**
+	 * @param name
+	 * @param version
+	 * @return SHA-1 of the tarball used by the plug-in version or null
+	 */
+	public String getReference(String name, String version){
+		return readReference(getReferenceFile(name, version));
+	}
+
+	/**
+	 * Removes the references that are not used for the given time, the
+	 * entries that are not referenced and the leftovers of interrupted
+	 * extractions.
+	 *
+	 * @param maxUnusedAge in milliseconds
+	 * @return number of entries removed
+	 */
+	public synchronized int collectGarbage(long maxUnusedAge){
+		long now = System.currentTimeMillis();
+		Set<String> referenced = new HashSet<String>();
+		File[] packages = new File(root, DIR_REFS).listFiles();
+		if(packages != null){
+			for (File pkg : packages) {
+				File[] refs = pkg.listFiles();
+				if(refs == null){
+					continue;
+				}
+				for (File ref : refs) {
+					if(now - ref.lastModified() > maxUnusedAge){
+						ref.delete();
+						continue;
+					}
+					String key = readReference(ref);
+					if(key != null){
+						referenced.add(key);
+					}
+				}
+				pkg.delete(); // only if empty
+			}
+		}
+		int removed = 0;
+		File[] entries = new File(root, DIR_ENTRIES).listFiles();
+		if(entries != null){
+			for (File entry : entries) {
+				if(referenced.contains(entry.getName()) || now - entry.lastModified() < IN_PROGRESS_AGE){
+					continue;
+				}
+				discard(entry);
+				removed++;
+			}
+		}
+		File[] staged = new File(root, DIR_STAGING).listFiles();
+		if(staged != null){
+			for (File file : staged) {
+				if(now - file.lastModified() > IN_PROGRESS_AGE){
+					FileUtils.deleteQuietly(file);
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Computes the SHA-1 of a file as the npm registry reports it.
+	 *
+	 * @param file
+	 * @return lower case hex SHA-1
+	 * @throws CoreException
+	 */
+	public static String sha1(File file) throws CoreException{
+		InputStream in = null;
+		try{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			in = new FileInputStream(file);
+			byte[] buffer = new byte[16 * 1024];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+			}
+			return toHex(digest.digest());
+		}catch(NoSuchAlgorithmException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "SHA-1 is not supported", e));
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, NLS.bind("Can not read {0}", file), e));
+		}finally{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private static String toHex(byte[] bytes){
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	private void scheduleGarbageCollection(){
+		final File lastGc = new File(root, FILE_LAST_GC);
+		if(System.currentTimeMillis() - lastGc.lastModified() < GC_INTERVAL){
+			return;
+		}
+		try {
+			FileUtils.touch(lastGc);
+		} catch (IOException e) {
+			return;
+		}
+		Job job = new Job("Clean plug-in package store") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				collectGarbage(MAX_UNUSED_AGE);
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 * Returns the file that keeps the tarball of a plug-in version while it
+	 * is downloaded, so that an interrupted download can be resumed. The
+	 * file is removed by the garbage collection if it is not resumed
+	 * within an hour.
+	 *
+	 * @param name
+	 * @param version
+	 * @return partial download file
+	 */
+	public File getPartialDownloadFile(String name, String version){
+		try {
+			return new File(new File(root, DIR_STAGING), "partial-" + URLEncoder.encode(name, "UTF-8")
+					+ "-" + URLEncoder.encode(version, "UTF-8") + ".tgz");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);// UTF-8 is always supported
+		}
+	}
+
+	private File getReferenceFile(String name, String version){
+		try {
+			return new File(new File(new File(root, DIR_REFS), URLEncoder.encode(name, "UTF-8")),
+					URLEncoder.encode(version, "UTF-8"));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);// UTF-8 is always supported
+		}
+	}
+
+	private static String readReference(File ref){
+		if(!ref.isFile()){
+			return null;
+		}
+		try {
+			return normalize(FileUtils.readFileToString(ref, "US-ASCII").trim());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private File createStagingFile(String prefix) throws IOException{
+		File staging = new File(root, DIR_STAGING);
+		staging.mkdirs();
+		return File.createTempFile(prefix, ".tmp", staging);
+	}
+
+	/**
+	 * npm tarballs have a single top level directory, usually <i>package</i>
+	 */
+	private static File findPackageRoot(File extracted) throws IOException{
+		File[] children = extracted.listFiles();
+		if(children == null || children.length == 0){
+			throw new IOException("Plug-in package is empty");
+		}
+		if(children.length == 1 && children[0].isDirectory()){
+			return children[0];
+		}
+		return extracted;
+	}
+
+	private static boolean matches(Properties properties, File packageDir){
+		if(!packageDir.isDirectory()){
+			return false;
+		}
+		long[] stats = new long[2];
+		count(packageDir, stats);
+		return Long.toString(stats[0]).equals(properties.getProperty(KEY_FILES))
+				&& Long.toString(stats[1]).equals(properties.getProperty(KEY_BYTES));
+	}
+
+	private static void count(File dir, long[] stats){
+		File[] children = dir.listFiles();
+		if(children == null){
+			return;
+		}
+		for (File child : children) {
+			if(child.isDirectory()){
+				count(child, stats);
+			}else if(!MARKER.equals(child.getName())){
+				stats[0]++;
+				stats[1] += child.length();
+			}
+		}
+	}
+
+	private static Properties readMarker(File marker){
+		if(!marker.isFile()){
+			return null;
+		}
+		InputStream in = null;
+		try{
+			in = new FileInputStream(marker);
+			Properties properties = new Properties();
+			properties.load(in);
+			return properties.getProperty(KEY_ROOT) == null ? null : properties;
+		}catch(IOException e){
+			return null;
+		}finally{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private static void writeMarker(File marker, Properties properties) throws IOException{
+		OutputStream out = new FileOutputStream(marker);
+		try{
+			properties.store(out, null);
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Moves the entry aside before deleting it so that a partially deleted
+	 * entry is never found.
+	 */
+	private void discard(File entry){
+		try{
+			File trash = createStagingFile("discard");
+			trash.delete();
+			move(entry, trash);
+			FileUtils.deleteQuietly(trash);
+		}catch(IOException e){
+			FileUtils.deleteQuietly(entry);
+		}
+	}
+
+	private static boolean promote(File staging, File entry) throws IOException{
+		try{
+			Files.move(staging.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		}catch(FileAlreadyExistsException e){
+			return false;
+		}catch(AtomicMoveNotSupportedException e){
+			if(entry.exists()){
+				return false;
+			}
+			Files.move(staging.toPath(), entry.toPath());
+			return true;
+		}catch(IOException e){
+			// some platforms report a non empty target as a generic failure
+			if(entry.exists()){
+				return false;
+			}
+			throw e;
+		}
+	}
+
+	private static void move(File source, File target) throws IOException{
+		try{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}catch(AtomicMoveNotSupportedException e){
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String normalize(String shasum){
+		if(shasum == null){
+			return null;
+		}
+		String key = shasum.trim().toLowerCase(Locale.ENGLISH);
+		if(!key.matches("[0-9a-f]{40}")){
+			return null;
+		}
+		return key;
+	}
+
+}
@@ -14,72 +14,94 @@ import java.io.File;
 import java.io.IOException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.ecf.filetransfer.IFileTransferListener;
 import org.eclipse.ecf.filetransfer.events.IFileTransferEvent;
 import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveDataEvent;
 import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveDoneEvent;
 import org.eclipse.ecf.filetransfer.events.IIncomingFileTransferReceiveStartEvent;
-import org.eclipse.thym.core.internal.util.FileUtils;
-import org.eclipse.thym.core.internal.util.TarException;
 
+/**
+ * Receives a plug-in tarball to the given file and notifies the lock
+ * when the transfer is done. The tarball is verified and extracted by the
+ * {@link PluginPackageStore}.
+ * 
+ * @deprecated no longer used by the registry manager, which downloads the
+ * plug-ins with {@link CordovaPluginRegistryManager#getInstallationDirectory(CordovaRegistryPlugin.RegistryPluginVersion, IProgressMonitor)}.
+ * Will be removed in a future release.
+ */
+@Deprecated
 public class PluginReceiver implements IFileTransferListener{
-	private final File cacheDirectory;
+	private final File tarFile;
 	private final Object lock;
 	private final IProgressMonitor monitor;
 	private int percentComplete;
+	private Exception exception;
+	private boolean done;
 
 	
-	public PluginReceiver(File directory, IProgressMonitor monitor,Object lock) {
-		this.cacheDirectory = directory;
+	public PluginReceiver(File tarFile, IProgressMonitor monitor,Object lock) {
+		this.tarFile = tarFile;
 		this.lock = lock;
 		this.monitor = monitor;
 	}
 
 	@Override
 	public void handleTransferEvent(IFileTransferEvent event) {
-		File tarFile = new File(cacheDirectory,"package.tgz");
-
 		 if (event instanceof IIncomingFileTransferReceiveStartEvent) {
 			 IIncomingFileTransferReceiveStartEvent startEvent = (IIncomingFileTransferReceiveStartEvent) event;
 			 try {
-				 if(!cacheDirectory.exists())
-					 cacheDirectory.mkdirs();
-				 
+				 if(monitor.isCanceled()){
+					 startEvent.cancel();
+					 finish(new OperationCanceledException());
+					 return;
+				 }
 				startEvent.receive(tarFile);
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				startEvent.cancel();
+				finish(e);
 			}
 		 }else if(event instanceof IIncomingFileTransferReceiveDataEvent){
 			 IIncomingFileTransferReceiveDataEvent dataEvent = (IIncomingFileTransferReceiveDataEvent) event;
+			 if(monitor.isCanceled()){
+				 dataEvent.getSource().cancel();
+				 return;
+			 }
 			 int completed = (int) (dataEvent.getSource().getPercentComplete() *100);
 //			 monitor.worked((percentComplete - completed));
 			 percentComplete = completed;
 		 }else if(event instanceof IIncomingFileTransferReceiveDoneEvent ){
-			 try {
-				 IIncomingFileTransferReceiveDoneEvent doneEvent = (IIncomingFileTransferReceiveDoneEvent) event;
-				 Exception ex = doneEvent.getException();
-				 
-				 if(ex == null){
-					FileUtils.untarFile(tarFile, cacheDirectory);
-				 }else{
-					 ex.printStackTrace();
-				 }
-				 
-			 }catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				} catch (TarException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}finally{
-					synchronized (lock) {
-						lock.notifyAll();
-					}
-			 }
+			 IIncomingFileTransferReceiveDoneEvent doneEvent = (IIncomingFileTransferReceiveDoneEvent) event;
+			 finish(doneEvent.getException());
 		 }
-	
-		
+	}
+
+	private void finish(Exception e){
+		synchronized (lock) {
+			if(exception == null){
+				exception = e;
+			}
+			done = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return true when the transfer is completed, failed or cancelled
+	 */
+	public boolean isDone() {
+		synchronized (lock) {
+			return done;
+		}
+	}
+
+	/**
+	 * @return the reason the transfer failed or null
+	 */
+	public Exception getException() {
+		synchronized (lock) {
+			return exception;
+		}
 	}
 
 }
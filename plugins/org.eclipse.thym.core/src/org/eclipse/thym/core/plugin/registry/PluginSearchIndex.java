@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * In memory full-text index over the names and descriptions of the catalog.
+ * Every word of a query must match the prefix of a word of the plug-in.
+ * Plug-ins can be added while the catalog is retrieved. The index is not
+ * thread-safe.
+ */
+public class PluginSearchIndex {
+
+	private final List<CordovaRegistryPluginInfo> plugins = new ArrayList<CordovaRegistryPluginInfo>();
+	private final TreeMap<String, BitSet> postings = new TreeMap<String, BitSet>();
+
+	public PluginSearchIndex(){
+	}
+
+	public PluginSearchIndex(List<CordovaRegistryPluginInfo> plugins){
+		for (CordovaRegistryPluginInfo info : plugins) {
+			add(info);
+		}
+	}
+
+	/**
+	 * Adds a plug-in after the ones already indexed.
+	 * @param info
+	 */
+	public void add(CordovaRegistryPluginInfo info){
+		int index = plugins.size();
+		plugins.add(info);
+		add(info.getName(), index);
+		add(info.getDescription(), index);
+	}
+
+	/**
+	 * @return number of indexed plug-ins
+	 */
+	public int size(){
+		return plugins.size();
+	}
+
+	/**
+	 * Returns the plug-ins matching the query in the catalog order.
+	 * @param query
+	 * @return plug-ins, all if the query has no words
+	 */
+	public List<CordovaRegistryPluginInfo> search(String query){
+		String[] words = tokenize(query);
+		if(words.length == 0){
+			return getPlugins();
+		}
+		BitSet matches = null;
+		for (String word : words) {
+			BitSet wordMatches = new BitSet(plugins.size());
+			for (BitSet posting : postings.subMap(word, word + Character.MAX_VALUE).values()) {
+				wordMatches.or(posting);
+			}
+			if(matches == null){
+				matches = wordMatches;
+			}else{
+				matches.and(wordMatches);
+			}
+			if(matches.isEmpty()){
+				return Collections.emptyList();
+			}
+		}
+		List<CordovaRegistryPluginInfo> result = new ArrayList<CordovaRegistryPluginInfo>(matches.cardinality());
+		for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+			result.add(plugins.get(i));
+		}
+		return result;
+	}
+
+	List<CordovaRegistryPluginInfo> getPlugins(){
+		return Collections.unmodifiableList(new ArrayList<CordovaRegistryPluginInfo>(plugins));
+	}
+
+	private void add(String text, int index){
+		for (String word : tokenize(text)) {
+			BitSet posting = postings.get(word);
+			if(posting == null){
+				posting = new BitSet();
+				postings.put(word, posting);
+			}
+			posting.set(index);
+		}
+	}
+
+	private static String[] tokenize(String text){
+		if(text == null){
+			return new String[0];
+		}
+		List<String> words = new ArrayList<String>();
+		for (String word : text.toLowerCase(Locale.ENGLISH).split("[^\\p{L}\\p{N}]+")) {
+			if(!word.isEmpty()){
+				words.add(word);
+			}
+		}
+		return words.toArray(new String[words.size()]);
+	}
+
+}
@@ -0,0 +1,657 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.thym.core.HybridCore;
+import org.osgi.framework.Bundle;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Local copy of the Cordova plug-in registry. The catalog and the plug-in
+ * documents are synchronized from a {@link RegistrySource} with conditional
+ * requests and kept on disk so that the plug-ins can be browsed and
+ * searched without a connection to the registry.
+ * <p>
+ * The mirror is used instead of the registry if
+ * <i>org.eclipse.thym.core.registry.mirror</i> or
+ * <i>org.eclipse.thym.core.registry.offline</i> system properties are
+ * set to true. In offline mode the mirror is never synchronized, it serves
+ * what was stored before. The mirror synchronizes from the directory given
+ * with <i>org.eclipse.thym.core.registry.mirrorSource</i> if set, see
+ * {@link FileRegistrySource}.
+ * </p>
+ * <p>
+ * When the mirror is not enabled the registry manager stores the catalog
+ * and the plug-in documents it retrieves on the mirror, and falls back to
+ * them if the registry can not be reached.
+ * </p>
+ */
+public class RegistryMirror {
+
+	public static final String SYSPROP_MIRROR = "org.eclipse.thym.core.registry.mirror";
+	public static final String SYSPROP_OFFLINE = "org.eclipse.thym.core.registry.offline";
+	public static final String SYSPROP_MIRROR_SOURCE = "org.eclipse.thym.core.registry.mirrorSource";
+
+	private static final String SUBDIR_MIRROR = "registryMirror";
+	private static final String CATALOG_FILE = "catalog.bin";
+	private static final String PLUGINS_DIR = "plugins";
+	private static final String PLUGIN_SUFFIX = ".json.gz";
+	private static final int CATALOG_MAGIC = 0x54524331; // TRC1
+	private static final int PLUGIN_MAGIC = 0x54525032; // TRP2
+	private static final int MAX_STRING_LENGTH = 1 << 20;
+
+	private static RegistryMirror defaultMirror;
+
+	private final File directory;
+	private final RegistrySource source;
+	private PluginSearchIndex index;
+	private String catalogETag;
+	private long lastSynchronized;
+	private boolean loaded;
+
+	/**
+	 * Reads a plug-in document and writes a copy of it to a temporary file.
+	 * Failures to write the copy are logged, they do not affect the reading.
+	 */
+	public class PluginCopy extends FilterInputStream {
+		private final String name;
+		private File temp;
+		private OutputStream copy;
+
+		private PluginCopy(String name, String etag, boolean abbreviated, InputStream content){
+			super(content);
+			this.name = name;
+			try{
+				temp = createTempFile();
+				copy = openPluginFile(temp, name, etag, abbreviated);
+			}catch(IOException e){
+				discard(e);
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b >= 0 && copy != null){
+				try{
+					copy.write(b);
+				}catch(IOException e){
+					discard(e);
+				}
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if(read > 0 && copy != null){
+				try{
+					copy.write(b, off, read);
+				}catch(IOException e){
+					discard(e);
+				}
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			// skipped content must be copied too
+			byte[] buffer = new byte[(int) Math.min(n, 8192)];
+			int read = read(buffer, 0, buffer.length);
+			return read < 0 ? 0 : read;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		/**
+		 * Reads the rest of the document and stores the copy on the mirror.
+		 * Called after the document is parsed successfully.
+		 */
+		public void commit(){
+			try{
+				byte[] buffer = new byte[8192];
+				while(copy != null && read(buffer, 0, buffer.length) >= 0){
+					// copy the remaining content
+				}
+				if(copy == null){
+					return;
+				}
+				copy.close();
+				copy = null;
+				File file = getPluginFile(name);
+				file.getParentFile().mkdirs();
+				move(temp, file);
+			}catch(IOException e){
+				discard(e);
+			}finally{
+				discard(null);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try{
+				super.close();
+			}finally{
+				discard(null);
+			}
+		}
+
+		private void discard(IOException e){
+			if(e != null){
+				HybridCore.log(IStatus.WARNING, NLS.bind("Can not store plug-in {0} on the registry mirror", name), e);
+			}
+			IOUtils.closeQuietly(copy);
+			copy = null;
+			if(temp != null){
+				temp.delete();
+				temp = null;
+			}
+		}
+	}
+
+	/**
+	 * @param directory where the mirror is stored
+	 * @param source where the mirror is synchronized from
+	 */
+	public RegistryMirror(File directory, RegistrySource source){
+		this.directory = directory;
+		this.source = source;
+	}
+
+	/**
+	 * Mirror stored on the bundle's data area.
+	 * @return mirror
+	 */
+	public static synchronized RegistryMirror getDefault(){
+		if(defaultMirror == null){
+			Bundle bundle = HybridCore.getContext().getBundle();
+			String sourceDir = System.getProperty(SYSPROP_MIRROR_SOURCE);
+			RegistrySource source = sourceDir != null && !sourceDir.isEmpty() ? new FileRegistrySource(new File(sourceDir))
+					: new HttpRegistrySource(CordovaPluginRegistryManager.REGISTRY_URL);
+			defaultMirror = new RegistryMirror(bundle.getDataFile(SUBDIR_MIRROR), source);
+		}
+		return defaultMirror;
+	}
+
+	/**
+	 * @return true if the registry is accessed through the mirror
+	 */
+	public static boolean isEnabled(){
+		return Boolean.getBoolean(SYSPROP_MIRROR) || isOffline();
+	}
+
+	/**
+	 * @return true if the mirror must not be synchronized
+	 */
+	public static boolean isOffline(){
+		return Boolean.getBoolean(SYSPROP_OFFLINE);
+	}
+
+	/**
+	 * Returns the catalog, synchronizes it first unless offline. The stored
+	 * catalog is returned if the synchronization fails.
+	 *
+	 * @param monitor
+	 * @return plug-ins or null if cancelled
+	 * @throws CoreException if there is no catalog to return
+	 */
+	public List<CordovaRegistryPluginInfo> getPluginInfos(IProgressMonitor monitor) throws CoreException{
+		if(monitor == null){
+			monitor = new NullProgressMonitor();
+		}
+		if(monitor.isCanceled()){
+			return null;
+		}
+		if(!isOffline()){
+			try{
+				synchronizeCatalog();
+			}catch(CoreException e){
+				if(!hasCatalog()){
+					throw e;
+				}
+				HybridCore.log(IStatus.WARNING, "Registry mirror can not be synchronized, using the stored catalog", e);
+			}
+		}
+		if(monitor.isCanceled()){
+			return null;
+		}
+		if(!hasCatalog()){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Registry mirror has no catalog"));
+		}
+		return getStoredPluginInfos();
+	}
+
+	/**
+	 * Returns the details of a plug-in, synchronizes it first unless
+	 * offline. The stored copy is returned if the synchronization fails.
+	 *
+	 * @param name
+	 * @return plug-in
+	 * @throws CoreException if there is no copy of the plug-in to return
+	 */
+	public CordovaRegistryPlugin getPlugin(String name) throws CoreException{
+		CoreException failure = null;
+		if(!isOffline()){
+			try{
+				synchronizePlugin(name);
+			}catch(CoreException e){
+				failure = e;
+			}
+		}
+		CordovaRegistryPlugin plugin = getStoredPlugin(name);
+		if(plugin == null){
+			if(failure != null){
+				throw failure;
+			}
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+					NLS.bind("Plug-in {0} is not available on the registry mirror", name)));
+		}
+		if(failure != null){
+			HybridCore.log(IStatus.WARNING, "Registry mirror can not be synchronized, using the stored copy of " + name, failure);
+		}
+		return plugin;
+	}
+
+	/**
+	 * Synchronizes the catalog and optionally the plug-in documents of the
+	 * catalog. Plug-ins that can not be synchronized are logged and skipped.
+	 *
+	 * @param monitor
+	 * @param includeDetails
+	 * @throws CoreException
+	 */
+	public void synchronize(IProgressMonitor monitor, boolean includeDetails) throws CoreException{
+		SubMonitor sm = SubMonitor.convert(monitor, "Synchronize registry mirror", 100);
+		synchronizeCatalog();
+		sm.worked(10);
+		if(!includeDetails){
+			return;
+		}
+		List<CordovaRegistryPluginInfo> plugins = getStoredPluginInfos();
+		SubMonitor detailsMonitor = sm.newChild(90).setWorkRemaining(plugins.size());
+		for (CordovaRegistryPluginInfo info : plugins) {
+			if(detailsMonitor.isCanceled()){
+				return;
+			}
+			detailsMonitor.subTask(info.getName());
+			try{
+				synchronizePlugin(info.getName());
+			}catch(CoreException e){
+				// the catalog may list plug-ins whose documents are gone
+				HybridCore.log(IStatus.WARNING, NLS.bind("Plug-in {0} is not mirrored", info.getName()), e);
+			}
+			detailsMonitor.worked(1);
+		}
+	}
+
+	/**
+	 * Synchronizes the catalog.
+	 * @return true if the catalog is changed
+	 * @throws CoreException
+	 */
+	public synchronized boolean synchronizeCatalog() throws CoreException{
+		load();
+		RegistrySource.Document document = null;
+		try{
+			document = source.getCatalog(index == null ? null : catalogETag);
+			if(!document.isModified()){
+				lastSynchronized = System.currentTimeMillis();
+				return false;
+			}
+			JsonReader reader = new JsonReader(new InputStreamReader(document.getContent(), "UTF-8"));
+			storeCatalog(CordovaPluginRegistryManager.parseCatalog(reader), document.getETag());
+			return true;
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Can not synchronize the registry catalog", e));
+		}finally{
+			if(document != null){
+				IOUtils.closeQuietly(document.getContent());
+			}
+		}
+	}
+
+	/**
+	 * Stores a catalog retrieved from the registry.
+	 *
+	 * @param plugins
+	 * @param etag entity tag of the catalog, may be null
+	 * @throws IOException
+	 */
+	public synchronized void storeCatalog(List<CordovaRegistryPluginInfo> plugins, String etag) throws IOException{
+		long time = System.currentTimeMillis();
+		writeCatalog(plugins, etag, time);
+		index = new PluginSearchIndex(plugins);
+		catalogETag = etag;
+		lastSynchronized = time;
+		loaded = true;
+	}
+
+	/**
+	 * Returns a stream that reads a plug-in document retrieved from the
+	 * registry and keeps a copy of it, which is stored on the mirror by
+	 * {@link PluginCopy#commit()}.
+	 *
+	 * @param name
+	 * @param etag entity tag of the document, may be null
+	 * @param abbreviated true if the document is the abbreviated metadata
+	 * @param content
+	 * @return stream of the content
+	 */
+	public PluginCopy copyPlugin(String name, String etag, boolean abbreviated, InputStream content){
+		return new PluginCopy(name, etag, abbreviated, content);
+	}
+
+	/**
+	 * Synchronizes the document of a plug-in.
+	 * @param name
+	 * @return true if the stored document is changed
+	 * @throws CoreException
+	 */
+	public boolean synchronizePlugin(String name) throws CoreException{
+		File file = getPluginFile(name);
+		RegistrySource.Document document = null;
+		try{
+			document = source.getPluginDocument(name, readPluginETag(file));
+			if(document == null){
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+						NLS.bind("Plug-in {0} is not found on the registry", name)));
+			}
+			if(!document.isModified()){
+				return false;
+			}
+			File temp = createTempFile();
+			OutputStream out = openPluginFile(temp, name, document.getETag(), false);
+			try{
+				IOUtils.copy(document.getContent(), out);
+				out.close();
+				file.getParentFile().mkdirs();
+				move(temp, file);
+			}finally{
+				IOUtils.closeQuietly(out);
+				temp.delete();
+			}
+			return true;
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID,
+					NLS.bind("Can not synchronize plug-in {0}", name), e));
+		}finally{
+			if(document != null){
+				IOUtils.closeQuietly(document.getContent());
+			}
+		}
+	}
+
+	/**
+	 * @return true if a catalog is stored
+	 */
+	public synchronized boolean hasCatalog(){
+		load();
+		return index != null;
+	}
+
+	/**
+	 * @return the stored catalog, empty if there is none
+	 */
+	public synchronized List<CordovaRegistryPluginInfo> getStoredPluginInfos(){
+		load();
+		if(index == null){
+			return Collections.emptyList();
+		}
+		return index.getPlugins();
+	}
+
+	/**
+	 * Searches the stored catalog. Every word of the query must be the
+	 * prefix of a word on the name or description of a plug-in.
+	 *
+	 * @param query
+	 * @return matching plug-ins in catalog order
+	 */
+	public synchronized List<CordovaRegistryPluginInfo> search(String query){
+		load();
+		if(index == null){
+			return Collections.emptyList();
+		}
+		return index.search(query);
+	}
+
+	/**
+	 * Returns the stored details of a plug-in.
+	 * @param name
+	 * @return plug-in or null if not stored
+	 */
+	public CordovaRegistryPlugin getStoredPlugin(String name){
+		File file = getPluginFile(name);
+		if(!file.isFile()){
+			return null;
+		}
+		DataInputStream in = null;
+		try{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if(in.readInt() != PLUGIN_MAGIC){
+				throw new IOException("Not a registry mirror document");
+			}
+			in.readUTF(); // name
+			in.readUTF(); // etag
+			boolean abbreviated = in.readBoolean();
+			JsonReader reader = new JsonReader(new InputStreamReader(new GZIPInputStream(in), "UTF-8"));
+			CordovaRegistryPlugin plugin = CordovaPluginRegistryManager.parsePluginDocument(reader);
+			plugin.setAbbreviated(abbreviated);
+			return plugin;
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, "Discarding corrupt registry mirror document "+ file, e);
+			IOUtils.closeQuietly(in);
+			in = null;
+			file.delete();
+			return null;
+		}finally{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * @return entity tag of the stored catalog or null
+	 */
+	public synchronized String getCatalogETag(){
+		load();
+		return index == null ? null : catalogETag;
+	}
+
+	/**
+	 * @return time of the last catalog synchronization or 0
+	 */
+	public synchronized long getLastSynchronized(){
+		load();
+		return lastSynchronized;
+	}
+
+	private void load(){
+		if(loaded){
+			return;
+		}
+		loaded = true;
+		File file = new File(directory, CATALOG_FILE);
+		if(!file.isFile()){
+			return;
+		}
+		DataInputStream in = null;
+		try{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if(in.readInt() != CATALOG_MAGIC){
+				throw new IOException("Not a registry mirror catalog");
+			}
+			String etag = readString(in);
+			long time = in.readLong();
+			int count = in.readInt();
+			List<CordovaRegistryPluginInfo> plugins = new ArrayList<CordovaRegistryPluginInfo>(count);
+			for (int i = 0; i < count; i++) {
+				CordovaRegistryPluginInfo info = new CordovaRegistryPluginInfo();
+				info.setName(readString(in));
+				info.setDescription(readString(in));
+				plugins.add(info);
+			}
+			index = new PluginSearchIndex(plugins);
+			catalogETag = etag;
+			lastSynchronized = time;
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, "Discarding corrupt registry mirror catalog", e);
+			IOUtils.closeQuietly(in);
+			in = null;
+			file.delete();
+		}finally{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private void writeCatalog(List<CordovaRegistryPluginInfo> plugins, String etag, long time) throws IOException{
+		File temp = createTempFile();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try{
+			out.writeInt(CATALOG_MAGIC);
+			writeString(out, etag);
+			out.writeLong(time);
+			out.writeInt(plugins.size());
+			for (CordovaRegistryPluginInfo info : plugins) {
+				writeString(out, info.getName());
+				writeString(out, info.getDescription());
+			}
+			out.close();
+			move(temp, new File(directory, CATALOG_FILE));
+		}finally{
+			IOUtils.closeQuietly(out);
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Opens a plug-in file for writing the header, the document is written
+	 * to the returned stream.
+	 */
+	private static OutputStream openPluginFile(File file, String name, String etag, boolean abbreviated) throws IOException{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try{
+			out.writeInt(PLUGIN_MAGIC);
+			out.writeUTF(name);
+			out.writeUTF(etag == null ? "" : etag);
+			out.writeBoolean(abbreviated);
+			return new GZIPOutputStream(out);
+		}catch(IOException e){
+			IOUtils.closeQuietly(out);
+			throw e;
+		}
+	}
+
+	private String readPluginETag(File file){
+		if(!file.isFile()){
+			return null;
+		}
+		DataInputStream in = null;
+		try{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if(in.readInt() != PLUGIN_MAGIC){
+				return null;
+			}
+			in.readUTF(); // name
+			String etag = in.readUTF();
+			if(in.readBoolean()){
+				// not the tag of the full document the source responds with
+				return null;
+			}
+			return etag.isEmpty() ? null : etag;
+		}catch(IOException e){
+			return null;
+		}finally{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private File getPluginFile(String name){
+		try {
+			return new File(new File(directory, PLUGINS_DIR), URLEncoder.encode(name, "UTF-8") + PLUGIN_SUFFIX);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);// UTF-8 is always supported
+		}
+	}
+
+	private File createTempFile() throws IOException{
+		directory.mkdirs();
+		return File.createTempFile("mirror", ".tmp", directory);
+	}
+
+	private static void move(File source, File target) throws IOException{
+		try{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}catch(AtomicMoveNotSupportedException e){
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException{
+		if(value == null){
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException{
+		int length = in.readInt();
+		if(length < 0){
+			return null;
+		}
+		if(length > MAX_STRING_LENGTH){
+			throw new IOException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+}
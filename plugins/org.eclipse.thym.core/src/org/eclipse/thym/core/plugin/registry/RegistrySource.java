@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.registry;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where the {@link RegistryMirror} synchronizes from. The documents are
+ * requested with the entity tag of the stored copy so that unchanged
+ * documents are not transferred again.
+ */
+public interface RegistrySource {
+
+	/**
+	 * A document retrieved from the source.
+	 */
+	public static class Document {
+		private final InputStream content;
+		private final String etag;
+
+		/**
+		 * @param content content or null if the document is not modified
+		 * @param etag entity tag of the content, may be null
+		 */
+		public Document(InputStream content, String etag){
+			this.content = content;
+			this.etag = etag;
+		}
+
+		/**
+		 * Content of the document, the caller must close it.
+		 * @return content or null if not modified
+		 */
+		public InputStream getContent() {
+			return content;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+
+		public boolean isModified(){
+			return content != null;
+		}
+	}
+
+	/**
+	 * Retrieves the catalog of the Cordova plug-ins.
+	 *
+	 * @param etag entity tag of the stored copy or null
+	 * @return document
+	 * @throws IOException
+	 */
+	public Document getCatalog(String etag) throws IOException;
+
+	/**
+	 * Retrieves the document of a plug-in.
+	 *
+	 * @param name
+	 * @param etag entity tag of the stored copy or null
+	 * @return document or null if the plug-in does not exist
+	 * @throws IOException
+	 */
+	public Document getPluginDocument(String name, String etag) throws IOException;
+
+}
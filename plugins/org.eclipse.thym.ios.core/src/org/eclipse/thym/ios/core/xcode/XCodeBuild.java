@@ -26,7 +26,6 @@ import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.model.IStreamMonitor;
 import org.eclipse.thym.core.HybridProject;
-import org.eclipse.thym.core.internal.cordova.CordovaCLI;
 import org.eclipse.thym.core.internal.cordova.ErrorDetectingCLIResult;
 import org.eclipse.thym.core.internal.util.ExternalProcessUtility;
 import org.eclipse.thym.core.platform.AbstractNativeBinaryBuildDelegate;
@@ -40,6 +39,7 @@ import org.eclipse.thym.ios.core.IOSCore;
  */
 public class XCodeBuild extends AbstractNativeBinaryBuildDelegate{
 	public static final String MIN_REQUIRED_VERSION = "6.0.0";
+	private static final String PLATFORM_IOS = "ios";
 	
 	private static class SDKListParser implements IStreamListener{
 		private StringBuffer buffer = new StringBuffer();
@@ -109,7 +109,12 @@ public class XCodeBuild extends AbstractNativeBinaryBuildDelegate{
 			if (sm.isCanceled()) {
 				return;
 			}
-			IStatus status = CordovaCLI.newCLIforProject(hybridProject).build(sm.newChild(70), "ios",buildType).convertTo(ErrorDetectingCLIResult.class).asStatus();
+			File upToDate = getUpToDateArtifact(PLATFORM_IOS, buildType);
+			if(upToDate != null){
+				setBuildArtifact(upToDate);
+				return;
+			}
+			IStatus status = newCordovaCLI(hybridProject).build(sm.newChild(70), PLATFORM_IOS,buildType).convertTo(ErrorDetectingCLIResult.class).asStatus();
 			this.getProject().refreshLocal(IResource.DEPTH_INFINITE, sm.newChild(20));
 			if(status.getSeverity() == IStatus.ERROR){
 				throw new CoreException(status);
@@ -128,6 +133,7 @@ public class XCodeBuild extends AbstractNativeBinaryBuildDelegate{
 				throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID,
 						"xcodebuild has failed: build artifact does not exist"));
 			}
+			recordBuild(PLATFORM_IOS, buildType);
 		} finally {
 			sm.done();
 		}
@@ -17,6 +17,8 @@ import org.eclipse.thym.core.HybridProject;
 import org.eclipse.thym.core.internal.cordova.CordovaCLI;
 import org.eclipse.thym.core.internal.cordova.CordovaCLIErrors;
 import org.eclipse.thym.core.internal.cordova.ErrorDetectingCLIResult;
+import org.eclipse.thym.core.internal.cordova.ToolchainProbe;
+import org.eclipse.thym.ui.HybridUI;
 import org.eclipse.ui.PlatformUI;
 import org.osgi.framework.Version;
 
@@ -35,6 +37,33 @@ public class RequirementsUtility {
 	 * @return error code or 0
 	 */
 	private static int doCheckCordovaRequirements(HybridProject project) {
+		try {
+			String cordovaVersion = ToolchainProbe.getVersion(ToolchainProbe.TOOL_CORDOVA);
+			if(cordovaVersion == null){
+				if(ToolchainProbe.getExecutable(ToolchainProbe.TOOL_CORDOVA) != null){
+					// installed but the version can not be determined
+					return CordovaCLIErrors.ERROR_GENERAL;
+				}
+				if(ToolchainProbe.getExecutable(ToolchainProbe.TOOL_NODE) == null){
+					return CordovaCLIErrors.ERROR_NODE_COMMAND_MISSING;
+				}
+				return CordovaCLIErrors.ERROR_CORDOVA_COMMAND_MISSING;
+			}
+			return isCordovaVersionSupported(cordovaVersion) ? 0 : CordovaCLIErrors.ERROR_CORDOVA_VERSION_OLD;
+		} catch (CoreException e) {
+			// tools can not be located without the CLI, let CLI run the checks
+			HybridUI.log(IStatus.WARNING, "Unable to probe Cordova toolchain, checking with Cordova CLI", e);
+			return doCheckCordovaRequirementsWithCLI(project);
+		}
+	}
+	
+	private static boolean isCordovaVersionSupported(String version){
+		Version cVer = Version.parseVersion(version);
+		Version mVer = Version.parseVersion(MIN_CORDOVA_VERSION);
+		return cVer.compareTo(mVer) >= 0;
+	}
+	
+	private static int doCheckCordovaRequirementsWithCLI(HybridProject project) {
 		try {
 			CordovaCLI cli = CordovaCLI.newCLIforProject(project);
 			ErrorDetectingCLIResult cordovaResult = cli.version(new NullProgressMonitor())
@@ -54,9 +83,7 @@ public class RequirementsUtility {
 				return CordovaCLIErrors.ERROR_CORDOVA_COMMAND_MISSING;
 			}
 			
-			Version cVer = Version.parseVersion(cordovaResult.getMessage());
-			Version mVer = Version.parseVersion(MIN_CORDOVA_VERSION);
-			if(cVer.compareTo(mVer) < 0 ){
+			if(!isCordovaVersionSupported(cordovaResult.getMessage())){
 				return CordovaCLIErrors.ERROR_CORDOVA_VERSION_OLD;
 			}
 			return 0;
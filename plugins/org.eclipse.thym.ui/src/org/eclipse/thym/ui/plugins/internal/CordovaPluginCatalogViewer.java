@@ -11,6 +11,7 @@
 package org.eclipse.thym.ui.plugins.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.equinox.internal.p2.ui.discovery.util.FilteredViewer;
@@ -39,19 +40,26 @@ public class CordovaPluginCatalogViewer extends FilteredViewer {
 	private static class CordovaPluginInfoContentProvider implements
 			IStructuredContentProvider {
 		
-		private Object[] pluginInfos;
+		private final List<Object> pluginInfos = new ArrayList<Object>();
 		@Override
 		public void dispose() {
 		}
 
 		@Override
 		public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
-			this.pluginInfos = (Object[]) newInput;
+			pluginInfos.clear();
+			if(newInput != null){
+				pluginInfos.addAll(Arrays.asList((Object[]) newInput));
+			}
 		}
 
 		@Override
 		public Object[] getElements(Object inputElement) {
-			return pluginInfos;
+			return pluginInfos.toArray();
+		}
+		
+		void append(Object[] elements){
+			pluginInfos.addAll(Arrays.asList(elements));
 		}
 	}
 	
@@ -81,6 +89,7 @@ public class CordovaPluginCatalogViewer extends FilteredViewer {
 	private HybridProject project;
 	private int style;
 	private InstalledPluginFilter installedPluginsFilter;
+	private CordovaPluginInfoContentProvider contentProvider;
 
 	private Button showInstalledBtn;
 
@@ -147,8 +156,8 @@ public class CordovaPluginCatalogViewer extends FilteredViewer {
 			}
 		};
 		
-		CordovaPluginInfoContentProvider provider = new CordovaPluginInfoContentProvider();
-		viewer.setContentProvider(provider);
+		contentProvider = new CordovaPluginInfoContentProvider();
+		viewer.setContentProvider(contentProvider);
 		viewer.setComparator(new CordovaPluginViewerComparator());
 		return viewer;
 	}
@@ -162,6 +171,22 @@ public class CordovaPluginCatalogViewer extends FilteredViewer {
 		return new CordovaPluginInfoItem(parent, pluginInfo,resources, this, installed);
 	}
 	
+	/**
+	 * Adds plug-ins to the catalog without refreshing the ones already 
+	 * displayed. Used for displaying the catalog while it is retrieved.
+	 * 
+	 * @param pluginInfos
+	 */
+	public void appendPluginInfos(List<CordovaRegistryPluginInfo> pluginInfos){
+		StructuredViewer viewer = getViewer();
+		if(viewer.getInput() == null){
+			viewer.setInput(new Object[0]);
+		}
+		Object[] elements = pluginInfos.toArray();
+		contentProvider.append(elements);
+		((PluginControlListViewer) viewer).append(elements);
+	}
+	
 	public void applyFilter(String filterText){
 		this.setFilterText(filterText);
 	}
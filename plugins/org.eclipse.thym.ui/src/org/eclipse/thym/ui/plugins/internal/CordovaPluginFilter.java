@@ -10,21 +10,76 @@
  *******************************************************************************/
 package org.eclipse.thym.ui.plugins.internal;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 import org.eclipse.equinox.internal.p2.ui.discovery.util.PatternFilter;
+import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.StructuredViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPluginInfo;
+import org.eclipse.thym.core.plugin.registry.PluginSearchIndex;
 
+/**
+ * Matches the plug-ins with a {@link PluginSearchIndex}, every word of the
+ * filter text must be the prefix of a word on the name or description. The
+ * plug-ins of the viewer are indexed when an element that is not indexed
+ * is filtered, so the catalog can grow while it is retrieved.
+ */
 @SuppressWarnings("restriction")
 public class CordovaPluginFilter extends PatternFilter {
-
+	
+	private PluginSearchIndex index = new PluginSearchIndex();
+	private Set<Object> indexed = newIdentitySet();
+	private Object indexedInput;
+	private String query;
+	private Set<Object> matches;
+	
+	@Override
+	public void setPattern(String patternString) {
+		super.setPattern(patternString);
+		query = patternString;
+		matches = null;
+	}
+	
 	@Override
 	protected boolean isLeafMatch(Viewer viewer, Object element) {
-		if( (element instanceof CordovaRegistryPluginInfo) ){
-			CordovaRegistryPluginInfo pluginInfo = (CordovaRegistryPluginInfo) element;
-			if(wordMatches(pluginInfo.getName()) || wordMatches(pluginInfo.getDescription()) ){
-				return true;
+		if( !(element instanceof CordovaRegistryPluginInfo) ){
+			return false;
+		}
+		if(viewer.getInput() != indexedInput){
+			index = new PluginSearchIndex();
+			indexed = newIdentitySet();
+			indexedInput = viewer.getInput();
+			matches = null;
+		}
+		if(!indexed.contains(element)){
+			// index the whole catalog once instead of element by element
+			if(viewer instanceof StructuredViewer 
+					&& ((StructuredViewer) viewer).getContentProvider() instanceof IStructuredContentProvider){
+				IStructuredContentProvider provider = (IStructuredContentProvider) ((StructuredViewer) viewer).getContentProvider();
+				for (Object catalogElement : provider.getElements(viewer.getInput())) {
+					addToIndex(catalogElement);
+				}
 			}
+			addToIndex(element);
+		}
+		if(matches == null){
+			matches = newIdentitySet();
+			matches.addAll(index.search(query));
 		}
-		return false;
+		return matches.contains(element);
+	}
+	
+	private void addToIndex(Object element){
+		if(element instanceof CordovaRegistryPluginInfo && indexed.add(element)){
+			index.add((CordovaRegistryPluginInfo) element);
+			matches = null;
+		}
+	}
+	
+	private static Set<Object> newIdentitySet(){
+		return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
 	}
 }
@@ -12,6 +12,11 @@ package org.eclipse.thym.ui.plugins.internal;
 
 import java.util.List;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.layout.GridLayoutFactory;
 import org.eclipse.jface.viewers.ComboViewer;
@@ -22,13 +27,20 @@ import org.eclipse.jface.viewers.LabelProvider;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Link;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.thym.core.plugin.registry.CordovaPluginRegistryManager;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin.RegistryPluginVersion;
+import org.eclipse.thym.ui.HybridUI;
 
 public class CordovaPluginItem extends ControlListItem<CordovaRegistryPlugin> {
 	
@@ -119,7 +131,11 @@ public class CordovaPluginItem extends ControlListItem<CordovaRegistryPlugin> {
 		licenseLbl.setFont(resources.getSubTextFont());
 		GridDataFactory.fillDefaults().grab(true, false).applyTo(licenseLbl);
 		setDescriptionText(getData().getDescription());
-		licenseLbl.setText("License:"+getData().getLicense());
+		if(getData().isAbbreviated()){
+			createDetailsLink(detailsContainer);
+		}else{
+			licenseLbl.setText("License:"+getData().getLicense());
+		}
 		
 		Label separator = new Label(this, SWT.SEPARATOR | SWT.HORIZONTAL);
 		GridDataFactory.fillDefaults()
@@ -130,6 +146,69 @@ public class CordovaPluginItem extends ControlListItem<CordovaRegistryPlugin> {
 		.applyTo(separator);
 	}
 
+	/**
+	 * The abbreviated registry metadata has no description or license, 
+	 * they are retrieved when asked for.
+	 */
+	private void createDetailsLink(Composite parent){
+		final Link detailsLink = new Link(parent, SWT.NONE);
+		detailsLink.setFont(resources.getSubTextFont());
+		detailsLink.setText("<a>Show details</a>");
+		detailsLink.addListener(SWT.Selection, new Listener() {
+			
+			@Override
+			public void handleEvent(Event event) {
+				detailsLink.setEnabled(false);
+				retrieveDetails(detailsLink);
+			}
+		});
+	}
+	
+	private void retrieveDetails(final Link detailsLink){
+		final String name = getData().getName();
+		final Display display = getDisplay();
+		Job job = new Job(NLS.bind("Retrieve details of {0}", name)) {
+			
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					final CordovaRegistryPlugin details = new CordovaPluginRegistryManager().getCordovaPluginDetails(name);
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							showDetails(details, detailsLink);
+						}
+					});
+					return Status.OK_STATUS;
+				} catch (CoreException e) {
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							if(!detailsLink.isDisposed()){
+								detailsLink.setEnabled(true);
+							}
+						}
+					});
+					return new Status(e.getStatus().getSeverity(), HybridUI.PLUGIN_ID, "Problem while getting Cordova plugin details", e);
+				}
+			}
+		};
+		job.schedule();
+	}
+	
+	@SuppressWarnings("restriction")
+	private void showDetails(CordovaRegistryPlugin details, Link detailsLink){
+		if(isDisposed()){
+			return;
+		}
+		setDescriptionText(details.getDescription());
+		licenseLbl.setText("License:"+details.getLicense());
+		detailsLink.dispose();
+		layout(true, true);
+		// resizes the list for the longer description
+		viewer.getViewer().refresh(getData());
+	}
+
 	private void modifyVersionSelection(RegistryPluginVersion selectedVersion) {
 		if(selectedVersion == null ){
 			selectedVersion = getLatestCordovaRegistryPluginVersion();
@@ -14,6 +14,7 @@ import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -64,6 +65,7 @@ import org.eclipse.thym.core.HybridProject;
 import org.eclipse.thym.core.platform.PlatformConstants;
 import org.eclipse.thym.core.plugin.registry.CordovaPluginRegistryManager;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPluginInfo;
+import org.eclipse.thym.core.plugin.registry.PluginCatalogCallback;
 /**
  * A wizard page that allows users to view cordova plug-in registry and select plug-ins either 
  * from registry or through other supported means. This page can be used within a wizard 
@@ -84,6 +86,7 @@ public class CordovaPluginSelectionPage extends WizardPage {
 	private static final String PAGE_DESCRIPTION = "Discover and Install Cordova Plug-ins";
 
 	private List<CordovaRegistryPluginInfo> cordovaPluginInfos;
+	private List<CordovaRegistryPluginInfo> streamedPluginInfos;
 	private HybridProject fixedProject;
 	private boolean noProject;
 	private IStructuredSelection initialSelection;
@@ -226,6 +229,7 @@ public class CordovaPluginSelectionPage extends WizardPage {
 			@Override
 			public void selectionChanged(SelectionChangedEvent event) {
 				setPageComplete(validatePage());
+				prefetchSelectedPluginDetails();
 			}
 		});
 	}
@@ -233,6 +237,9 @@ public class CordovaPluginSelectionPage extends WizardPage {
 	@Override
 	public void setVisible(boolean visible) {
 		super.setVisible(visible);
+		if(!visible){
+			client.cancelPrefetch();
+		}
 		if (visible && getSelectedTabItem() == registryTab) {
 			Display.getCurrent().asyncExec(new Runnable() {
 				@Override
@@ -285,7 +292,29 @@ public class CordovaPluginSelectionPage extends WizardPage {
 		btnProjectBrowse.setText("Browse...");
 	}
 
+	@SuppressWarnings("restriction")
 	private void populatePluginInfos() {
+		final Display display = getControl().getDisplay();
+		final List<CordovaRegistryPluginInfo> streamed = new ArrayList<CordovaRegistryPluginInfo>();
+		if (cordovaPluginInfos == null) {
+			streamedPluginInfos = streamed;
+			catalogViewer.getViewer().setInput(new Object[0]);
+		}
+		// display the plug-ins as they are parsed instead of waiting for the whole catalog
+		final PluginCatalogCallback callback = new PluginCatalogCallback() {
+			@Override
+			public void pluginInfosRetrieved(final List<CordovaRegistryPluginInfo> batch) {
+				display.asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						if(streamed == streamedPluginInfos && !getControl().isDisposed()){
+							streamed.addAll(batch);
+							catalogViewer.appendPluginInfos(batch);
+						}
+					}
+				});
+			}
+		};
 		try {
 			getContainer().run(true, true, new IRunnableWithProgress() {
 				@Override
@@ -296,7 +325,7 @@ public class CordovaPluginSelectionPage extends WizardPage {
 						// to avoid multiple trips to retrieve the info
 						try {
 							if (cordovaPluginInfos == null) {
-								cordovaPluginInfos = client.retrievePluginInfos(monitor);
+								cordovaPluginInfos = client.retrievePluginInfos(monitor, callback);
 							}
 						} catch (CoreException ce) {
 							throw new InvocationTargetException(ce);
@@ -382,6 +411,25 @@ public class CordovaPluginSelectionPage extends WizardPage {
 		return textProject.getText();
 	}
 	
+	@Override
+	public void dispose() {
+		client.cancelPrefetch();
+		super.dispose();
+	}
+	
+	/**
+	 * Retrieves the details of the selected plug-ins in the background, so 
+	 * that the confirmation page can show them without waiting.
+	 */
+	private void prefetchSelectedPluginDetails(){
+		List<CordovaRegistryPluginInfo> checked = getCheckedCordovaRegistryItems();
+		List<String> names = new ArrayList<String>(checked.size());
+		for (CordovaRegistryPluginInfo info : checked) {
+			names.add(info.getName());
+		}
+		client.prefetchCordovaPluginInfos(names);
+	}
+	
 	@SuppressWarnings("unchecked")
 	private List<CordovaRegistryPluginInfo> getCheckedCordovaRegistryItems(){
 		IStructuredSelection selection = catalogViewer.getSelection();
@@ -560,11 +608,15 @@ public class CordovaPluginSelectionPage extends WizardPage {
 		display.syncExec(new Runnable() {
 			@Override
 			public void run() {
+				if(cordovaPluginInfos.equals(streamedPluginInfos)){
+					return;// all displayed while retrieving
+				}
 				BusyIndicator.showWhile(display, new Runnable() {
 					@SuppressWarnings("restriction")
 					@Override
 					public void run() {
 						if(!getControl().isDisposed() && isCurrentPage()){
+							streamedPluginInfos = null;
 							catalogViewer.getViewer().setInput(pluginInfos);
 						}
 					}
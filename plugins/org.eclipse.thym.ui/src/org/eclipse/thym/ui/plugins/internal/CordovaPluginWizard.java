@@ -17,6 +17,7 @@ import static org.eclipse.thym.ui.plugins.internal.CordovaPluginSelectionPage.PL
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.runtime.Assert;
@@ -38,6 +39,7 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.thym.core.HybridProject;
 import org.eclipse.thym.core.plugin.CordovaPluginManager;
 import org.eclipse.thym.core.plugin.FileOverwriteCallback;
+import org.eclipse.thym.core.plugin.PluginInstallSpec;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin.RegistryPluginVersion;
 import org.eclipse.thym.ui.HybridUI;
 import org.eclipse.thym.ui.internal.status.StatusManager;
@@ -121,9 +123,11 @@ public class CordovaPluginWizard extends Wizard implements IWorkbenchWizard, Fil
 				pm.installPlugin(this.gitRepo,fileOverwriteCallback,false, monitor );
 				break;
 			case PLUGIN_SOURCE_REGISTRY:
+				List<PluginInstallSpec> specs = new ArrayList<PluginInstallSpec>(plugins.size());
 				for (RegistryPluginVersion cordovaRegistryPluginVersion : plugins) {
-					pm.installPlugin(cordovaRegistryPluginVersion,fileOverwriteCallback,false, monitor);
+					specs.add(PluginInstallSpec.fromRegistry(cordovaRegistryPluginVersion));
 				}
+				pm.installPlugins(specs, fileOverwriteCallback, monitor);
 				break;
 			default:
 				Assert.isTrue(false, "No valid plugin source can be determined");
@@ -210,6 +210,55 @@ public abstract class PluginControlListViewer extends StructuredViewer {
 		doUpdateContent();
 	}
 
+	/**
+	 * Adds the elements without recreating the existing items. Unlike 
+	 * {@link #add(Object[])} this is proportional to the number of new 
+	 * elements, it is meant for populating the viewer while the elements 
+	 * are being retrieved. The elements are filtered and placed according 
+	 * to the comparator.
+	 * 
+	 * @param elements new elements, not already on the viewer
+	 */
+	public void append(Object[] elements) {
+		Object[] infos = filter(elements);
+		if (infos.length == 0) {
+			return;
+		}
+		ViewerComparator sorter = getComparator();
+		if (sorter != null) {
+			sorter.sort(this, infos);
+		}
+		List<Control> children = new ArrayList<Control>(Arrays.asList(control.getChildren()));
+		for (Object info : infos) {
+			if (info == null) {
+				continue;
+			}
+			ControlListItem<?> item = createNewItem(info);
+			int index = sorter == null ? children.size() : insertionIndex(sorter, children, info);
+			if (index < children.size()) {
+				item.moveAbove(children.get(index));
+			}
+			children.add(index, item);
+		}
+		control.layout(true);
+		doUpdateContent();
+		updateVisibleItems();
+	}
+
+	private int insertionIndex(ViewerComparator sorter, List<Control> children, Object element) {
+		int low = 0;
+		int high = children.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorter.compare(this, children.get(mid).getData(), element) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
 	private void updateSize(Control c) {
 		if (c == null) {
 			return;
@@ -13,6 +13,9 @@ package org.eclipse.thym.ui.plugins.internal;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -93,10 +96,20 @@ public class PluginUninstallAction extends Action{
 				public void run(IProgressMonitor monitor) throws InvocationTargetException,
 				InterruptedException {
 					try {
+						// group the plug-ins per project so that each project is processed with one command
+						Map<HybridProject, List<String>> projectPlugins = new LinkedHashMap<HybridProject, List<String>>();
 						for (CordovaPlugin cordovaPlugin : pluginsToRemove) {
 							HybridProject project = HybridProject.getHybridProject(cordovaPlugin.getFolder().getProject());
-							monitor.subTask(NLS.bind("Uninstalling {0}", cordovaPlugin.getId()));
-							project.getPluginManager().unInstallPlugin(cordovaPlugin.getId(), monitor);
+							List<String> ids = projectPlugins.get(project);
+							if(ids == null){
+								ids = new ArrayList<String>();
+								projectPlugins.put(project, ids);
+							}
+							ids.add(cordovaPlugin.getId());
+						}
+						for (Map.Entry<HybridProject, List<String>> entry : projectPlugins.entrySet()) {
+							monitor.subTask(NLS.bind("Uninstalling {0}", entry.getValue()));
+							entry.getKey().getPluginManager().unInstallPlugins(entry.getValue(), monitor);
 						}
 					} catch (CoreException e) {
 						throw new InvocationTargetException(e);
@@ -51,13 +51,12 @@ public class RegistryConfirmPage extends WizardPage {
 
 		@Override
 		protected IStatus run(IProgressMonitor monitor) {
-			final ArrayList<CordovaRegistryPlugin> plugins = new ArrayList<CordovaRegistryPlugin>();
+			final List<CordovaRegistryPlugin> plugins;
 			try {
-				for (String plugin : pluginNames) {
-					if(monitor.isCanceled())
-						return Status.CANCEL_STATUS;
-					plugins.add(client.getCordovaPluginInfo(plugin));
-				}
+				plugins = client.getCordovaPluginInfos(pluginNames, monitor);
+				if(plugins == null)
+					return Status.CANCEL_STATUS;
+				fillCatalogDescriptions(plugins);
 			} catch (CoreException e) {
 				return new Status(e.getStatus().getSeverity(), HybridUI.PLUGIN_ID, "Problem while getting Cordova plugin details", e);
 			}
@@ -79,6 +78,28 @@ public class RegistryConfirmPage extends WizardPage {
 		
 	}
 
+	/**
+	 * The abbreviated registry metadata has no description, use the one
+	 * from the catalog.
+	 */
+	private void fillCatalogDescriptions(List<CordovaRegistryPlugin> plugins){
+		List<CordovaRegistryPluginInfo> infos = selected;
+		if(infos == null){
+			return;
+		}
+		for (CordovaRegistryPlugin plugin : plugins) {
+			if(!plugin.isAbbreviated() || plugin.getDescription() != null){
+				continue;
+			}
+			for (CordovaRegistryPluginInfo info : infos) {
+				if(info.getName().equals(plugin.getName())){
+					plugin.setDescription(info.getDescription());
+					break;
+				}
+			}
+		}
+	}
+
 	public RegistryConfirmPage() {
 		super(PAGE_NAME,PAGE_TITLE,HybridUI.getImageDescriptor(HybridUI.PLUGIN_ID, CordovaPluginWizard.IMAGE_WIZBAN));
 		setDescription(PAGE_DESC);	
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2016 Red Hat, Inc. 
+ * Copyright (c) 2013, 2016 Red Hat, Inc.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,66 +13,259 @@ package org.eclipse.thym.ui.wizard.export;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.io.FileUtils;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.thym.core.HybridCore;
 import org.eclipse.thym.core.platform.AbstractNativeBinaryBuildDelegate;
+import org.eclipse.thym.ui.HybridUI;
 import org.eclipse.ui.actions.WorkspaceModifyOperation;
 import org.eclipse.ui.dialogs.IOverwriteQuery;
 
+/**
+ * Builds and exports the native binaries for several platforms. The
+ * platforms are exported in parallel, up to {@link #PARALLELISM} at a time.
+ * Cordova does not support concurrent commands in a project, so the
+ * Cordova CLI commands of the builds still run one after the other on the
+ * session of the project. Refreshing the project, locating and copying the
+ * artifacts of a platform overlap with the build of the next one.
+ * A failure on one platform does not stop the others, all the failures
+ * are reported together when the export is completed.
+ */
 public class NativeBinaryExportOperation extends WorkspaceModifyOperation {
 
+	/**
+	 * Maximum number of platforms that are exported at the same time. Can be
+	 * overridden with <i>org.eclipse.thym.ui.export.parallelism</i> system property,
+	 * 1 builds the platforms one after the other.
+	 */
+	public static final int PARALLELISM = Integer.getInteger("org.eclipse.thym.ui.export.parallelism", 2);
+	private static final int TICKS_PER_PLATFORM = 1000;
+
+	/**
+	 * Progress monitor for the build of a single platform, the
+	 * progress is collected by the operation from the calling thread.
+	 */
+	private static class PlatformProgressMonitor extends NullProgressMonitor{
+		private double totalWork;
+		private double worked;
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			if(this.totalWork == 0 && totalWork > 0){
+				this.totalWork = totalWork;
+			}
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			worked += work;
+		}
+
+		@Override
+		public synchronized void done() {
+			worked = totalWork = 1;
+		}
+
+		private synchronized double getProgress(){
+			if(totalWork <= 0){
+				return 0;
+			}
+			return Math.min(1, worked/totalWork);
+		}
+	}
+
+	private class PlatformExport {
+		private final AbstractNativeBinaryBuildDelegate delegate;
+		private final PlatformProgressMonitor progress = new PlatformProgressMonitor();
+		private IStatus status = Status.OK_STATUS;
+
+		private PlatformExport(AbstractNativeBinaryBuildDelegate delegate){
+			this.delegate = delegate;
+		}
+
+		private void run(){
+			try{
+				if(progress.isCanceled()){
+					return;
+				}
+				delegate.buildNow(progress);
+				if(progress.isCanceled()){
+					return;
+				}
+				copyArtifact();
+			}catch(CoreException e){
+				status = e.getStatus();
+			}catch(IOException e){
+				HybridCore.log(IStatus.ERROR, "Error on NativeBinaryExportOperation", e);
+				status = new Status(IStatus.ERROR, HybridUI.PLUGIN_ID, "Error copying the build artifact", e);
+			}catch(RuntimeException e){
+				status = new Status(IStatus.ERROR, HybridUI.PLUGIN_ID, "Error building the mobile application", e);
+			}finally{
+				progress.done();
+				remaining.countDown();
+			}
+		}
+
+		private void copyArtifact() throws IOException, CoreException{
+			File artifact = delegate.getBuildArtifact();
+			if(artifact == null || !artifact.exists()){
+				throw new CoreException(new Status(IStatus.ERROR, HybridUI.PLUGIN_ID,
+						NLS.bind("Build artifact for {0} does not exist", delegate.getProject().getName())));
+			}
+			File destinationFile = new File(destinationDir, artifact.getName());
+			if(destinationFile.exists()){
+				String callback = null;
+				// ask one question at a time
+				synchronized (overwriteQuery) {
+					if(progress.isCanceled()){
+						return;
+					}
+					callback = overwriteQuery.queryOverwrite(destinationFile.toString());
+				}
+				if(IOverwriteQuery.NO.equals(callback)){
+					return;
+				}
+				if(IOverwriteQuery.CANCEL.equals(callback)){
+					cancelAll();
+					return;
+				}
+			}
+			if(artifact.isDirectory()){
+				FileUtils.copyDirectoryToDirectory(artifact, destinationDir);
+			}else{
+				FileUtils.copyFileToDirectory(artifact, destinationDir);
+			}
+		}
+	}
+
+	private class ExportJob extends Job{
+
+		public ExportJob() {
+			super("Export mobile application");
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			PlatformExport export = null;
+			while((export = nextExport()) != null){
+				export.run();
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
 	private List<AbstractNativeBinaryBuildDelegate> delegates;
 	private IOverwriteQuery overwriteQuery;
 	private File destinationDir;
-	
+	private final int parallelism;
+	private final List<PlatformExport> exports = new ArrayList<PlatformExport>();
+	private final LinkedList<PlatformExport> queue = new LinkedList<PlatformExport>();
+	private CountDownLatch remaining;
+
 	public NativeBinaryExportOperation(
 			List<AbstractNativeBinaryBuildDelegate> delegates,
 			File destination,
 			IOverwriteQuery query) {
+		this(delegates, destination, query, PARALLELISM);
+	}
+
+	public NativeBinaryExportOperation(
+			List<AbstractNativeBinaryBuildDelegate> delegates,
+			File destination,
+			IOverwriteQuery query, int parallelism) {
+		// Run without a scheduling rule, the builds refresh the project from other threads
+		super(null);
 		this.delegates = delegates;
 		this.overwriteQuery = query;
 		this.destinationDir = destination;
+		this.parallelism = Math.max(1, parallelism);
 	}
 
 	@Override
 	protected void execute(IProgressMonitor monitor) throws CoreException,
 			InvocationTargetException, InterruptedException {
-		SubMonitor sm = SubMonitor.convert(monitor);
-		sm.setWorkRemaining(delegates.size()*10);
-		for (AbstractNativeBinaryBuildDelegate delegate : delegates) {
-			if(monitor.isCanceled()){ 
-				break; 
+		SubMonitor sm = SubMonitor.convert(monitor, delegates.size()*TICKS_PER_PLATFORM);
+		int workers = Math.min(parallelism, delegates.size());
+		synchronized (queue) {
+			for (AbstractNativeBinaryBuildDelegate delegate : delegates) {
+				delegate.setRelease(true);
+				PlatformExport export = new PlatformExport(delegate);
+				exports.add(export);
+				queue.add(export);
 			}
-			delegate.setRelease(true);
-			delegate.buildNow(sm.newChild(10));
-			try {
-				File buildArtifact = delegate.getBuildArtifact();
-				File destinationFile = new File(destinationDir, buildArtifact.getName());
-				if(destinationFile.exists()){
-					String callback = overwriteQuery.queryOverwrite(destinationFile.toString());
-					if(IOverwriteQuery.NO.equals(callback)){
-						continue;
-					}
-					if(IOverwriteQuery.CANCEL.equals(callback)){
-						break;
-					}
-				}
-				File artifact = delegate.getBuildArtifact();
-				if(artifact.isDirectory()){
-					FileUtils.copyDirectoryToDirectory(artifact, destinationDir);
-				}else{
-					FileUtils.copyFileToDirectory(artifact, destinationDir);
+			remaining = new CountDownLatch(exports.size());
+		}
+		for (int i = 0; i < workers; i++) {
+			new ExportJob().schedule();
+		}
+		int reported = 0;
+		try{
+			while(!remaining.await(100, TimeUnit.MILLISECONDS)){
+				if(monitor.isCanceled()){
+					cancelAll();
 				}
-				sm.done();
-			} catch (IOException e) {
-				HybridCore.log(IStatus.ERROR, "Error on NativeBinaryExportOperation", e);
+				reported = reportProgress(sm, reported);
 			}
+		}catch(InterruptedException e){
+			cancelAll();
+			throw e;
+		}
+		reportProgress(sm, reported);
+		monitor.done();
+
+		MultiStatus status = new MultiStatus(HybridUI.PLUGIN_ID, 0, "Errors exporting mobile applications", null);
+		for (PlatformExport export : exports) {
+			if(!export.status.isOK()){
+				status.add(export.status);
+			}
+		}
+		if(!status.isOK()){
+			throw new CoreException(status.getChildren().length == 1 ? status.getChildren()[0] : status);
+		}
+	}
+
+	private int reportProgress(SubMonitor monitor, int reported){
+		double progress = 0;
+		for (PlatformExport export : exports) {
+			progress += export.progress.getProgress();
+		}
+		int total = (int) (progress * TICKS_PER_PLATFORM);
+		if(total > reported){
+			monitor.worked(total - reported);
+			return total;
+		}
+		return reported;
+	}
+
+	private PlatformExport nextExport(){
+		synchronized (queue) {
+			return queue.poll();
+		}
+	}
+
+	private void cancelAll(){
+		for (PlatformExport export : exports) {
+			export.progress.setCanceled(true);
 		}
-		monitor.done(); 
 	}
 }
@@ -17,6 +17,7 @@ import static org.eclipse.thym.ui.plugins.internal.CordovaPluginSelectionPage.PL
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.resources.IFile;
@@ -36,6 +37,7 @@ import org.eclipse.thym.core.HybridProject;
 import org.eclipse.thym.core.engine.HybridMobileEngine;
 import org.eclipse.thym.core.plugin.CordovaPluginManager;
 import org.eclipse.thym.core.plugin.FileOverwriteCallback;
+import org.eclipse.thym.core.plugin.PluginInstallSpec;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin.RegistryPluginVersion;
 import org.eclipse.thym.ui.HybridUI;
 import org.eclipse.thym.ui.internal.status.StatusManager;
@@ -141,9 +143,11 @@ public class NewHybridProjectWizard extends Wizard implements INewWizard,ICordov
 			break;
 		case PLUGIN_SOURCE_REGISTRY:
 			List<RegistryPluginVersion> plugins = pageFour.getSelectedPluginVersions();
+			List<PluginInstallSpec> specs = new ArrayList<PluginInstallSpec>(plugins.size());
 			for (RegistryPluginVersion cordovaRegistryPluginVersion : plugins) {
-				pm.installPlugin(cordovaRegistryPluginVersion,cb,false, monitor);
+				specs.add(PluginInstallSpec.fromRegistry(cordovaRegistryPluginVersion));
 			}
+			pm.installPlugins(specs, cb, monitor);
 			break;
 		default:
 			Assert.isTrue(false, "No valid plugin source can be determined");
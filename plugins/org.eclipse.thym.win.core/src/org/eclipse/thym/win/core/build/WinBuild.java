@@ -18,7 +18,6 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.thym.core.HybridProject;
-import org.eclipse.thym.core.internal.cordova.CordovaCLI;
 import org.eclipse.thym.core.platform.AbstractNativeBinaryBuildDelegate;
 import org.eclipse.thym.win.core.WinCore;
 import org.eclipse.thym.win.internal.core.Messages;
@@ -49,7 +48,7 @@ public class WinBuild extends AbstractNativeBinaryBuildDelegate {
 			if(isRelease()){
 				buildType = "--release";
 			}
-			CordovaCLI.newCLIforProject(hybridProject).build(generateMonitor, WIN, buildType);
+			newCordovaCLI(hybridProject).build(generateMonitor, WIN, buildType);
 		} finally {
 			monitor.done();
 		}
@@ -12,14 +12,21 @@ package org.eclipse.thym.core.internal.cordova;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.FileUtils;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.IWorkspaceRunnable;
@@ -28,6 +35,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.model.IProcess;
@@ -38,6 +46,8 @@ import org.eclipse.thym.core.internal.cordova.CordovaCLI.Command;
 import org.eclipse.thym.ui.wizard.project.HybridProjectCreator;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 @SuppressWarnings("restriction")
 public class CordovaCLITest {
@@ -195,6 +205,240 @@ public class CordovaCLITest {
     	assertEquals(CordovaCLIErrors.ERROR_COMMAND_MISSING, status.getCode());
     }   
     
+    @Test
+    public void testSessionSeparatesCommandOutput() throws Exception{
+    	final CordovaCLISession session = new CordovaCLISession(null, false);
+    	IProcess mockProcess = mock(IProcess.class);
+    	IStreamsProxy2 mockStreams  = mock(IStreamsProxy2.class);
+    	doReturn(mockStreams).when(mockProcess).getStreamsProxy();
+    	doReturn(Boolean.FALSE).when(mockProcess).isTerminated();
+    	doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				String text = (String) invocation.getArguments()[0];
+				if(text.startsWith("echo \""+CordovaCLISession.SENTINEL_PREFIX)){
+					String sentinel = text.substring(6, text.indexOf(':'));
+					session.streamAppended("Installing plugin\nDo", null);
+					session.streamAppended("ne\n"+sentinel+":3\n", null);
+				}
+				return null;
+			}
+		}).when(mockStreams).write(any(String.class));
+    	session.attach(mockProcess);
+    	
+    	final boolean[] notified = new boolean[1];
+    	CordovaCLIFuture future = session.submit("cordova plugin add cordova-plugin-console\n");
+    	future.addListener(new CordovaCLIFuture.Listener() {
+			@Override
+			public void commandCompleted(CordovaCLIFuture f) {
+				notified[0] = true;
+			}
+		});
+    	CordovaCLIResult result = future.get(5, TimeUnit.SECONDS);
+    	assertEquals(3, future.getExitCode());
+    	assertEquals("Installing plugin\nDone\n", result.getMessage());
+    	assertTrue(notified[0]);
+    	assertTrue(session.isAlive());
+    	assertFalse(session.isBusy());
+    	verify(mockStreams).write("cordova plugin add cordova-plugin-console\n");
+    	session.close();
+    }
+    
+    @Test
+    public void testSessionCompletesCommandWithoutTrailingNewLine() throws Exception{
+    	final CordovaCLISession session = new CordovaCLISession(null, false);
+    	IProcess mockProcess = mock(IProcess.class);
+    	IStreamsProxy2 mockStreams  = mock(IStreamsProxy2.class);
+    	doReturn(mockStreams).when(mockProcess).getStreamsProxy();
+    	doReturn(Boolean.FALSE).when(mockProcess).isTerminated();
+    	doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				String text = (String) invocation.getArguments()[0];
+				if(text.startsWith("echo \""+CordovaCLISession.SENTINEL_PREFIX)){
+					String sentinel = text.substring(6, text.indexOf(':'));
+					// e.g. node -p output, the sentinel is appended to the last line
+					session.streamAppended("6.0.0"+sentinel+":0\n", null);
+				}
+				return null;
+			}
+		}).when(mockStreams).write(any(String.class));
+    	session.attach(mockProcess);
+
+    	CordovaCLIFuture first = session.submit("cordova -v\n", 5000);
+    	CordovaCLIFuture second = session.submit("cordova -v\n", 5000);
+    	assertEquals("6.0.0", first.get(5, TimeUnit.SECONDS).getMessage());
+    	assertEquals(0, first.getExitCode());
+    	assertEquals("6.0.0", second.get(5, TimeUnit.SECONDS).getMessage());
+    	assertFalse(session.isBusy());
+    	session.close();
+    }
+
+    @Test
+    public void testSessionFailsQueuedCommandsOnTermination() throws Exception{
+    	CordovaCLISession session = new CordovaCLISession(null, false);
+    	IProcess mockProcess = mock(IProcess.class);
+    	IStreamsProxy2 mockStreams  = mock(IStreamsProxy2.class);
+    	doReturn(mockStreams).when(mockProcess).getStreamsProxy();
+    	doReturn(Boolean.FALSE).when(mockProcess).isTerminated();
+    	session.attach(mockProcess);
+    	
+    	CordovaCLIFuture first = session.submit("cordova build android\n");
+    	CordovaCLIFuture second = session.submit("cordova build ios\n");
+    	session.streamAppended("BUILD FAILED\n", null);
+    	session.handleDebugEvents(new DebugEvent[]{ new DebugEvent(mockProcess, DebugEvent.TERMINATE)});
+    	
+    	assertEquals("BUILD FAILED\n", first.get(5, TimeUnit.SECONDS).getMessage());
+    	try{
+    		second.get(5, TimeUnit.SECONDS);
+    		fail("queued command should fail when the shell terminates");
+    	}catch(ExecutionException e){
+    		assertTrue(e.getCause() instanceof CoreException);
+    	}
+    	assertFalse(session.isAlive());
+    }
+    
+    @Test
+    public void testSessionTimesOutCommandWaitingForInput() throws Exception{
+    	CordovaCLISession session = new CordovaCLISession(null, false);
+    	IProcess mockProcess = mock(IProcess.class);
+    	IStreamsProxy2 mockStreams  = mock(IStreamsProxy2.class);
+    	doReturn(mockStreams).when(mockProcess).getStreamsProxy();
+    	doReturn(Boolean.FALSE).when(mockProcess).isTerminated();
+    	session.attach(mockProcess);
+
+    	CordovaCLIFuture future = session.submit("cordova build android\n", 200);
+    	session.streamAppended("? May Cordova anonymously report usage statistics\n", null);
+    	try{
+    		future.get(5, TimeUnit.SECONDS);
+    		fail("command should time out");
+    	}catch(ExecutionException e){
+    		assertTrue(e.getCause() instanceof CoreException);
+    	}
+    	verify(mockStreams).write("</dev/null ");
+    	verify(mockStreams).write("cordova build android\n");
+    	verify(mockProcess).terminate();
+    	assertFalse(session.isAlive());
+    }
+
+    @Test
+    public void testSchedulerMergesIdenticalRequests() throws Exception{
+    	final CordovaCLISession session = new CordovaCLISession(null, false);
+    	IProcess mockProcess = mock(IProcess.class);
+    	IStreamsProxy2 mockStreams  = mock(IStreamsProxy2.class);
+    	doReturn(mockStreams).when(mockProcess).getStreamsProxy();
+    	doReturn(Boolean.FALSE).when(mockProcess).isTerminated();
+    	doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				String text = (String) invocation.getArguments()[0];
+				if(text.startsWith("echo \""+CordovaCLISession.SENTINEL_PREFIX)){
+					String sentinel = text.substring(6, text.indexOf(':'));
+					session.streamAppended("prepared\n"+sentinel+":0\n", null);
+				}
+				return null;
+			}
+		}).when(mockStreams).write(any(String.class));
+    	session.attach(mockProcess);
+    	
+    	final AtomicInteger submitted = new AtomicInteger();
+    	CordovaCLIScheduler.CommandSubmitter submitter = new CordovaCLIScheduler.CommandSubmitter() {
+			@Override
+			public CordovaCLIFuture submit() throws CoreException {
+				submitted.incrementAndGet();
+				return session.submit("cordova prepare\n");
+			}
+		};
+    	CordovaCLIScheduler scheduler = new CordovaCLIScheduler(500);
+    	CordovaCLIFuture[] futures = new CordovaCLIFuture[5];
+    	for (int i = 0; i < futures.length; i++) {
+    		futures[i] = scheduler.schedule("cordova prepare\n", submitter);
+		}
+    	CordovaCLIFuture other = scheduler.schedule("cordova prepare android\n", submitter);
+    	assertEquals(6, scheduler.getQueueDepth());
+    	assertEquals(4, scheduler.getMergeCount());
+    	
+    	for (CordovaCLIFuture future : futures) {
+			assertEquals("prepared\n", future.get(5, TimeUnit.SECONDS).getMessage());
+			assertEquals(0, future.getExitCode());
+		}
+    	other.get(5, TimeUnit.SECONDS);
+    	assertEquals(2, submitted.get());
+    	assertEquals(2, scheduler.getRunCount());
+    	assertEquals(0, scheduler.getQueueDepth());
+    	
+    	CordovaCLIFuture cancelled = scheduler.schedule("cordova prepare\n", submitter);
+    	assertTrue(cancelled.cancel(true));
+    	assertEquals(0, scheduler.getQueueDepth());
+    	session.close();
+    }
+    
+    @Test
+    public void testStreamListenerKeepsTailAndDetectsErrors(){
+    	CordovaCLIStreamListener listener = new CordovaCLIStreamListener(3, 1024, null);
+    	listener.streamAppended("Running command\nErr", null);
+    	listener.streamAppended("or: BUILD FAILED\r\n", null);
+    	for(int i = 0; i < 10; i++){
+    		listener.streamAppended("line "+i+"\n", null);
+    	}
+    	listener.streamAppended("last", null);
+    	assertEquals("line 7\nline 8\nline 9\nlast", listener.getMessage());
+    	
+    	CordovaCLIResult result = listener.createResult();
+    	assertNull(result.getLogFile());
+    	IStatus status = result.convertTo(ErrorDetectingCLIResult.class).asStatus();
+    	assertEquals(IStatus.ERROR, status.getSeverity());
+    	assertTrue(status.getMessage().startsWith("BUILD FAILED"));
+    	assertTrue(status.getMessage().endsWith("last"));
+    }
+    
+    @Test
+    public void testStreamListenerLogsCompleteOutput() throws IOException{
+    	File logFile = File.createTempFile("cordova-cli", ".log");
+    	try{
+    		CordovaCLIStreamListener listener = new CordovaCLIStreamListener(1, 1024, logFile);
+    		listener.streamAppended("first\nsecond\n", null);
+    		CordovaCLIResult result = listener.createResult();
+    		assertEquals("second\n", result.getMessage());
+    		assertEquals(logFile, result.getLogFile());
+    		assertEquals("first\nsecond\n", FileUtils.readFileToString(logFile, "UTF-8"));
+    		// the next command on the session replaces the log
+    		listener = new CordovaCLIStreamListener(1, 1024, logFile);
+    		listener.streamAppended("third\n", null);
+    		listener.createResult();
+    		assertEquals("third\n", FileUtils.readFileToString(logFile, "UTF-8"));
+    	}finally{
+    		logFile.delete();
+    	}
+    }
+    
+    @Test
+    public void testParseLoginShellEnvironment(){
+    	String output = "Welcome back!\n"+
+    			"__THYM_ENV__\n"+
+    			"PATH=/usr/local/bin:/usr/bin:/bin\n"+
+    			"ANDROID_HOME=/opt/android-sdk\n"+
+    			"MULTI=first\n"+
+    			"second line\n"+
+    			"EMPTY=\n";
+    	Map<String, String> env = LoginShellEnvironment.parseEnvironment(output);
+    	assertEquals(4, env.size());
+    	assertEquals("/usr/local/bin:/usr/bin:/bin", env.get("PATH"));
+    	assertEquals("/opt/android-sdk", env.get("ANDROID_HOME"));
+    	assertEquals("first\nsecond line", env.get("MULTI"));
+    	assertEquals("", env.get("EMPTY"));
+    	assertTrue(LoginShellEnvironment.parseEnvironment("no marker").isEmpty());
+    }
+    
+    @Test
+    public void testParseToolVersion(){
+    	assertEquals("6.3.1", ToolchainProbe.parseVersion("6.3.1\n"));
+    	assertEquals("4.6.0", ToolchainProbe.parseVersion("v4.6.0\n"));
+    	assertEquals("1.0.36", ToolchainProbe.parseVersion("Android Debug Bridge version 1.0.36\nRevision 0a04cdc4a62f-android\n"));
+    	assertNull(ToolchainProbe.parseVersion("-bash: cordova: command not found"));
+    	assertNull(ToolchainProbe.parseVersion(null));
+    }
+    
 	private void setupMocks(CordovaCLI mockCLI, IProcess mockProcess, IStreamsProxy2 mockStreams) throws CoreException {
 		when(mockCLI.startShell(any(IStreamListener.class), any(IProgressMonitor.class),any(ILaunchConfiguration.class))).thenReturn(mockProcess);
 		doReturn(mockStreams).when(mockProcess).getStreamsProxy();
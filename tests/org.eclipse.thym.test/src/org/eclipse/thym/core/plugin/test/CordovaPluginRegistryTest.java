@@ -10,15 +10,19 @@
  *******************************************************************************/
 package org.eclipse.thym.core.plugin.test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin.RegistryPluginVersion;
 import org.eclipse.thym.core.plugin.registry.CordovaRegistryPluginInfo;
 import org.eclipse.thym.core.plugin.registry.CordovaPluginRegistryManager;
 import org.eclipse.thym.core.plugin.registry.CordovaPluginRegistryMapper;
+import org.eclipse.thym.core.plugin.registry.PluginCatalogCallback;
 
 import static org.junit.Assert.*;
 
@@ -39,6 +43,24 @@ public class CordovaPluginRegistryTest {
 		assertNotNull(info.getName());
 	}
 
+	@Test
+	public void testRetrievePluginInfosInBatches() throws CoreException{
+		CordovaPluginRegistryManager client = getCordovaIORegistryClient();
+		final List<CordovaRegistryPluginInfo> streamed = new ArrayList<CordovaRegistryPluginInfo>();
+		final int[] batches = new int[1];
+		List<CordovaRegistryPluginInfo> infos = client.retrievePluginInfos(new NullProgressMonitor(), new PluginCatalogCallback() {
+			@Override
+			public void pluginInfosRetrieved(List<CordovaRegistryPluginInfo> batch) {
+				assertFalse(batch.isEmpty());
+				streamed.addAll(batch);
+				batches[0]++;
+			}
+		});
+		assertNotNull(infos);
+		assertEquals(infos, streamed);
+		assertTrue(infos.size() <= 50 || batches[0] > 1);
+	}
+
 	@Test
 	public void testReadCordovaPluginFromCordovaRegistry() throws CoreException{
 		CordovaPluginRegistryManager client = getCordovaIORegistryClient();
@@ -58,6 +80,35 @@ public class CordovaPluginRegistryTest {
 		assertNotNull(version.getTarball());
 	}
 	
+	@Test
+	public void testReadCordovaPluginDetailsFromCordovaRegistry() throws CoreException{
+		CordovaPluginRegistryManager client = getCordovaIORegistryClient();
+		CordovaRegistryPlugin plugin = client.getCordovaPluginInfo("cordova-plugin-vibration");
+		assertNotNull(plugin.getLatestVersion());
+		assertNotNull(plugin.getVersion(plugin.getLatestVersion()).getTarball());
+		CordovaRegistryPlugin details = client.getCordovaPluginDetails("cordova-plugin-vibration");
+		assertFalse(details.isAbbreviated());
+		assertNotNull(details.getDescription());
+		assertNotNull(details.getLicense());
+		assertEquals(plugin.getVersions().size(), details.getVersions().size());
+		// details replace the abbreviated metadata on the cache
+		assertSame(details, client.getCordovaPluginInfo("cordova-plugin-vibration"));
+	}
+	
+	@Test
+	public void testReadSeveralCordovaPluginsFromCordovaRegistry() throws CoreException{
+		CordovaPluginRegistryManager client = getCordovaIORegistryClient();
+		List<String> names = Arrays.asList("cordova-plugin-device", "cordova-plugin-console", "cordova-plugin-camera");
+		List<CordovaRegistryPlugin> plugins = client.getCordovaPluginInfos(names, new NullProgressMonitor());
+		assertNotNull(plugins);
+		assertEquals(names.size(), plugins.size());
+		for (int i = 0; i < names.size(); i++) {
+			assertEquals(names.get(i), plugins.get(i).getName());
+		}
+		// served from the cache
+		assertSame(plugins.get(0), client.getCordovaPluginInfo(names.get(0)));
+	}
+	
 	@Test
 	public void testCordovaRegistryMapper_toOld(){
 		String oldID = CordovaPluginRegistryMapper.toOld(MAPPER_NEW_ID); 
@@ -80,6 +131,33 @@ public class CordovaPluginRegistryTest {
 		assertEquals(MAPPER_OLD_ID,alternate);
 	}
 	
+	@Test
+	public void testRuntimeFailureOfPluginInfoIsReported() throws CoreException{
+		CordovaPluginRegistryManager client = new CordovaPluginRegistryManager(){
+			@Override
+			public CordovaRegistryPlugin getCordovaPluginInfo(String name) throws CoreException {
+				throw new IllegalStateException("Unexpected registry document for " + name);
+			}
+		};
+		final long deadline = System.currentTimeMillis() + 10000;
+		NullProgressMonitor monitor = new NullProgressMonitor(){
+			@Override
+			public boolean isCanceled() {
+				return System.currentTimeMillis() > deadline;
+			}
+		};
+		try{
+			List<CordovaRegistryPlugin> plugins = client.getCordovaPluginInfos(Arrays.asList("cordova-plugin-device", 
+					"cordova-plugin-file", "cordova-plugin-camera", "cordova-plugin-console", "cordova-plugin-media"), monitor);
+			assertNotNull("fetch must complete when the workers fail", plugins);
+			fail("runtime failures must be reported");
+		}catch(CoreException e){
+			assertEquals(IStatus.ERROR, e.getStatus().getSeverity());
+			assertEquals(5, e.getStatus().getChildren().length);
+			assertTrue(e.getStatus().getChildren()[0].getException() instanceof IllegalStateException);
+		}
+	}
+	
 	@Test
 	public void testCordovaRegistryMapper_nullParams(){
 		assertNull(CordovaPluginRegistryMapper.toNew(null));
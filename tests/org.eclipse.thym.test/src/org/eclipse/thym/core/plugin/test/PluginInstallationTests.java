@@ -20,6 +20,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.core.resources.IFile;
@@ -34,6 +36,7 @@ import org.eclipse.thym.core.platform.PlatformConstants;
 import org.eclipse.thym.core.plugin.CordovaPlugin;
 import org.eclipse.thym.core.plugin.CordovaPluginManager;
 import org.eclipse.thym.core.plugin.FileOverwriteCallback;
+import org.eclipse.thym.core.plugin.PluginInstallSpec;
 import org.eclipse.thym.hybrid.test.Activator;
 import org.eclipse.thym.hybrid.test.RequiresCordovaCLICategory;
 import org.eclipse.thym.hybrid.test.TestProject;
@@ -216,6 +219,31 @@ public class PluginInstallationTests {
 	}
 	
 
+	@Test
+	@Category(value=RequiresCordovaCLICategory.class)
+	public void installAndRemoveMultiplePlugins() throws CoreException{
+		CordovaPluginManager pm = getCordovaPluginManager();
+		List<PluginInstallSpec> specs = new ArrayList<PluginInstallSpec>();
+		specs.add(PluginInstallSpec.fromDirectory(new File(pluginsDirectroy, PLUGIN_DIR_TESTPLUGIN)));
+		specs.add(PluginInstallSpec.fromDirectory(new File(pluginsDirectroy, PLUGIN_DIR_NAMESPACEPLUGIN)));
+		IStatus status = pm.installPlugins(specs, new FileOverwriteCallback() {
+			
+			@Override
+			public boolean isOverwiteAllowed(String[] files) {
+				return true;
+			}
+		}, new NullProgressMonitor());
+		assertTrue(status.isOK());
+		assertEquals(2, status.getChildren().length);
+		assertTrue(pm.isPluginInstalled(PLUGIN_ID_TESTPLUGIN));
+		assertTrue(pm.isPluginInstalled(PLUGIN_ID_NAMESPACEPLUGIN));
+		
+		status = pm.unInstallPlugins(Arrays.asList(PLUGIN_ID_TESTPLUGIN, PLUGIN_ID_NAMESPACEPLUGIN), new NullProgressMonitor());
+		assertTrue(status.isOK());
+		assertFalse(pm.isPluginInstalled(PLUGIN_ID_TESTPLUGIN));
+		assertFalse(pm.isPluginInstalled(PLUGIN_ID_NAMESPACEPLUGIN));
+	}
+
 	private CordovaPluginManager installPlugin(String pluginsSubdir) throws CoreException {
 		CordovaPluginManager pm = getCordovaPluginManager();
 		File directory = new File(pluginsDirectroy, pluginsSubdir);
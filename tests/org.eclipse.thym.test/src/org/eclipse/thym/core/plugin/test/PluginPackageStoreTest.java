@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.plugin.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.thym.core.plugin.registry.PluginPackageStore;
+import org.eclipse.thym.hybrid.test.TarballBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PluginPackageStoreTest {
+
+	private File root;
+	private PluginPackageStore store;
+	private File tarball;
+	private String shasum;
+
+	@Before
+	public void setUp() throws Exception{
+		root = new File(FileUtils.getTempDirectory(), "thymStore" + System.nanoTime());
+		root.mkdirs();
+		store = new PluginPackageStore(new File(root, "store"));
+		tarball = new TarballBuilder()
+				.addDirectory("package")
+				.addFile("package/plugin.xml", "<plugin id=\"test-plugin\" version=\"1.0.0\"/>")
+				.addFile("package/www/test.js", "module.exports = {};")
+				.write(new File(root, "test-plugin-1.0.0.tgz"), true);
+		shasum = PluginPackageStore.sha1(tarball);
+	}
+
+	@After
+	public void tearDown(){
+		FileUtils.deleteQuietly(root);
+	}
+
+	@Test
+	public void testPutAndGet() throws CoreException{
+		assertNull(store.get(shasum));
+		File packageDir = store.put(shasum.toUpperCase(), tarball);
+		assertEquals("package", packageDir.getName());
+		assertTrue(new File(packageDir, "plugin.xml").isFile());
+		assertTrue(new File(packageDir, "www/test.js").isFile());
+		assertEquals(packageDir, store.get(shasum));
+		assertEquals(packageDir, store.put(shasum, tarball));
+	}
+
+	@Test
+	public void testPutRejectsWrongShasum(){
+		try{
+			store.put("0123456789abcdef0123456789abcdef01234567", tarball);
+			fail("tarball that does not match the shasum must be rejected");
+		}catch(CoreException e){
+			// expected
+		}
+		try{
+			store.put("not-a-shasum", tarball);
+			fail("invalid shasum must be rejected");
+		}catch(CoreException e){
+			// expected
+		}
+		assertNull(store.get("0123456789abcdef0123456789abcdef01234567"));
+	}
+
+	@Test
+	public void testOpenPackageWithoutShasum() throws Exception{
+		PluginPackageStore.PackageOutputStream out = store.openPackage(null);
+		try{
+			out.write(FileUtils.readFileToByteArray(tarball));
+			File packageDir = out.commit();
+			assertEquals(shasum, out.getShasum());
+			assertEquals(packageDir, store.get(shasum));
+		}finally{
+			out.abort();
+		}
+	}
+
+	@Test
+	public void testModifiedEntryIsDiscarded() throws Exception{
+		File packageDir = store.put(shasum, tarball);
+		FileUtils.writeStringToFile(new File(packageDir, "www/test.js"), "modified", "UTF-8");
+		assertNull(store.get(shasum));
+		assertFalse(packageDir.exists());
+
+		packageDir = store.put(shasum, tarball);
+		assertTrue(new File(packageDir, "plugin.xml").delete());
+		assertNull(store.get(shasum));
+		assertEquals("module.exports = {};",
+				FileUtils.readFileToString(new File(store.put(shasum, tarball), "www/test.js"), "UTF-8"));
+	}
+
+	@Test
+	public void testEntryWithoutMarkerIsIgnored() throws IOException{
+		File incomplete = new File(root, "store/sha1/" + shasum + "/package");
+		incomplete.mkdirs();
+		FileUtils.writeStringToFile(new File(incomplete, "plugin.xml"), "<plugin/>", "UTF-8");
+		assertNull(store.get(shasum));
+		assertFalse(incomplete.exists());
+	}
+
+	@Test
+	public void testReferences(){
+		assertNull(store.getReference("test-plugin", "1.0.0"));
+		store.addReference("test-plugin", "1.0.0", shasum);
+		assertEquals(shasum, store.getReference("test-plugin", "1.0.0"));
+		assertNull(store.getReference("test-plugin", "2.0.0"));
+		store.addReference("test-plugin", "1.0.0", "invalid");
+		assertEquals(shasum, store.getReference("test-plugin", "1.0.0"));
+	}
+
+	@Test
+	public void testCollectGarbage() throws Exception{
+		File referenced = store.put(shasum, tarball);
+		store.addReference("test-plugin", "1.0.0", shasum);
+		File other = new TarballBuilder()
+				.addFile("package/plugin.xml", "<plugin id=\"other-plugin\" version=\"1.0.0\"/>")
+				.write(new File(root, "other-plugin-1.0.0.tgz"), true);
+		File unreferenced = store.put(PluginPackageStore.sha1(other), other);
+		// entries added in the last hour may be in use
+		assertEquals(0, store.collectGarbage(Long.MAX_VALUE));
+		long old = System.currentTimeMillis() - 2 * 60 * 60 * 1000;
+		referenced.getParentFile().setLastModified(old);
+		unreferenced.getParentFile().setLastModified(old);
+
+		assertEquals(1, store.collectGarbage(Long.MAX_VALUE));
+		assertTrue(referenced.isDirectory());
+		assertFalse(unreferenced.exists());
+
+		new File(root, "store/refs/test-plugin/1.0.0").setLastModified(old);
+		assertEquals(1, store.collectGarbage(60 * 60 * 1000));
+		assertFalse(referenced.exists());
+		assertNull(store.getReference("test-plugin", "1.0.0"));
+	}
+
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.thym.core.platform.AbstractNativeBinaryBuildDelegate;
+import org.eclipse.thym.core.platform.BuildStateStore;
+import org.eclipse.thym.core.platform.PlatformConstants;
+import org.eclipse.thym.hybrid.test.TestProject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BuildStateStoreTest {
+
+	/**
+	 * Changes a file in www while it builds.
+	 */
+	private class EditingBuildDelegate extends AbstractNativeBinaryBuildDelegate {
+		private boolean built;
+
+		@Override
+		public void buildNow(IProgressMonitor monitor) throws CoreException {
+			if(getUpToDateArtifact("android", "--debug") != null){
+				return;
+			}
+			try {
+				File www = new File(project.getProject().getLocation().toFile(), PlatformConstants.DIR_WWW);
+				FileUtils.writeStringToFile(new File(www, "edited.js"), "var edited = true;");
+			} catch (IOException e) {
+				fail(e.getMessage());
+			}
+			built = true;
+			setBuildArtifact(artifact);
+			recordBuild("android", "--debug");
+		}
+	}
+
+	private TestProject project;
+	private File artifact;
+
+	@Before
+	public void setUp() throws IOException{
+		project = new TestProject();
+		artifact = File.createTempFile("app", ".apk");
+		FileUtils.writeStringToFile(artifact, "apk");
+	}
+
+	@After
+	public void tearDown() throws CoreException{
+		artifact.delete();
+		if(project != null){
+			project.delete();
+			project = null;
+		}
+	}
+
+	@Test
+	public void testUnchangedInputsReuseArtifact() throws CoreException{
+		BuildStateStore store = BuildStateStore.getStore(project.getProject());
+		String fingerprint = store.computeFingerprint();
+		assertEquals(fingerprint, store.computeFingerprint());
+		assertNull(store.getUpToDateArtifact("android", "--debug", fingerprint));
+		store.recordBuild("android", "--debug", fingerprint, artifact);
+		assertEquals(artifact.getAbsoluteFile(), store.getUpToDateArtifact("android", "--debug", fingerprint));
+		assertNull(store.getUpToDateArtifact("android", "--release", fingerprint));
+		store.invalidate("android", "--debug");
+		assertNull(store.getUpToDateArtifact("android", "--debug", fingerprint));
+	}
+
+	@Test
+	public void testChangedInputsRequireBuild() throws CoreException, IOException{
+		BuildStateStore store = BuildStateStore.getStore(project.getProject());
+		String fingerprint = store.computeFingerprint();
+		store.recordBuild("ios", "--emulator", fingerprint, artifact);
+		File www = new File(project.getProject().getLocation().toFile(), PlatformConstants.DIR_WWW);
+		FileUtils.writeStringToFile(new File(www, "new.js"), "var a = 1;");
+		String changed = store.computeFingerprint();
+		assertFalse(fingerprint.equals(changed));
+		assertNull(store.getUpToDateArtifact("ios", "--emulator", changed));
+	}
+
+	@Test
+	public void testChangedArtifactRequiresBuild() throws CoreException{
+		BuildStateStore store = BuildStateStore.getStore(project.getProject());
+		String fingerprint = store.computeFingerprint();
+		store.recordBuild("android", "--debug", fingerprint, artifact);
+		assertTrue(artifact.setLastModified(artifact.lastModified() - 10000));
+		assertNull(store.getUpToDateArtifact("android", "--debug", fingerprint));
+	}
+
+	@Test
+	public void testInputsChangedDuringBuildRequireBuild() throws CoreException{
+		EditingBuildDelegate delegate = new EditingBuildDelegate();
+		delegate.init(project.getProject(), null);
+		delegate.buildNow(new NullProgressMonitor());
+		assertTrue(delegate.built);
+		// the artifact was built from the inputs before the edit
+		delegate = new EditingBuildDelegate();
+		delegate.init(project.getProject(), null);
+		delegate.buildNow(new NullProgressMonitor());
+		assertTrue(delegate.built);
+		delegate = new EditingBuildDelegate();
+		delegate.init(project.getProject(), null);
+		delegate.buildNow(new NullProgressMonitor());
+		assertFalse(delegate.built);
+	}
+
+	@Test
+	public void testSigningAndResourceInputs() throws CoreException, IOException{
+		BuildStateStore store = BuildStateStore.getStore(project.getProject());
+		File root = project.getProject().getLocation().toFile();
+		String[] inputs = {"build.json", "package.json", "res/icon/android/icon.png", "hooks/after_prepare/hook.js"};
+		String fingerprint = store.computeFingerprint();
+		for (String input : inputs) {
+			FileUtils.writeStringToFile(new File(root, input), input);
+			String changed = store.computeFingerprint();
+			assertFalse(input, fingerprint.equals(changed));
+			fingerprint = changed;
+		}
+	}
+
+}
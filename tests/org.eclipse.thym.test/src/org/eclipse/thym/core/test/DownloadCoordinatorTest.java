@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.thym.core.HybridCore;
+import org.eclipse.thym.core.internal.util.DownloadCoordinator;
+import org.junit.Test;
+
+@SuppressWarnings("restriction") //test
+public class DownloadCoordinatorTest {
+
+	/**
+	 * Counts its runs and blocks until it is released or cancelled.
+	 */
+	private static class BlockingTask implements DownloadCoordinator.Task<String> {
+		private final AtomicInteger runs = new AtomicInteger();
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final String result;
+		private volatile boolean cancelled;
+
+		private BlockingTask(String result){
+			this.result = result;
+		}
+
+		@Override
+		public String run(IProgressMonitor monitor) throws CoreException {
+			runs.incrementAndGet();
+			monitor.beginTask("download", 10);
+			monitor.worked(5);
+			started.countDown();
+			try {
+				while(!release.await(20, TimeUnit.MILLISECONDS)){
+					if(monitor.isCanceled()){
+						cancelled = true;
+						throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID, "cancelled"));
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID, "interrupted"));
+			}
+			if(result == null){
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "download failed"));
+			}
+			return result;
+		}
+	}
+
+	@Test
+	public void testConcurrentRequestsShareTheDownload() throws Exception{
+		DownloadCoordinator<String> coordinator = new DownloadCoordinator<String>();
+		BlockingTask task = new BlockingTask("engine");
+		DownloadCoordinator<String>.Request first = coordinator.submit("http://example.com/engine.tgz", task);
+		assertTrue(task.started.await(5, TimeUnit.SECONDS));
+		DownloadCoordinator<String>.Request second = coordinator.submit("http://example.com/engine.tgz", new BlockingTask("other"));
+		assertFalse(first.isJoined());
+		assertTrue(second.isJoined());
+		assertEquals(1, coordinator.getInProgressCount());
+		task.release.countDown();
+		assertEquals("engine", first.get(new NullProgressMonitor()));
+		assertEquals("engine", second.get(new NullProgressMonitor()));
+		assertEquals(1, task.runs.get());
+		assertEquals(1, coordinator.getStartCount());
+		assertEquals(1, coordinator.getJoinCount());
+		assertEquals(0, coordinator.getInProgressCount());
+	}
+
+	@Test
+	public void testFailureIsShared() throws Exception{
+		DownloadCoordinator<String> coordinator = new DownloadCoordinator<String>();
+		BlockingTask task = new BlockingTask(null);
+		DownloadCoordinator<String>.Request first = coordinator.submit("plugin", task);
+		DownloadCoordinator<String>.Request second = coordinator.submit("plugin", task);
+		task.release.countDown();
+		assertFailed(first);
+		assertFailed(second);
+		assertEquals(1, task.runs.get());
+	}
+
+	@Test
+	public void testDifferentKeysAreNotShared() throws Exception{
+		DownloadCoordinator<String> coordinator = new DownloadCoordinator<String>();
+		BlockingTask android = new BlockingTask("android");
+		BlockingTask ios = new BlockingTask("ios");
+		android.release.countDown();
+		ios.release.countDown();
+		DownloadCoordinator<String>.Request first = coordinator.submit("android", android);
+		DownloadCoordinator<String>.Request second = coordinator.submit("ios", ios);
+		assertEquals("android", first.get(null));
+		assertEquals("ios", second.get(null));
+		assertEquals(2, coordinator.getStartCount());
+		assertEquals(0, coordinator.getJoinCount());
+	}
+
+	@Test
+	public void testCompletedDownloadIsNotReused() throws Exception{
+		DownloadCoordinator<String> coordinator = new DownloadCoordinator<String>();
+		BlockingTask first = new BlockingTask("first");
+		first.release.countDown();
+		assertEquals("first", coordinator.execute("plugin", first, null));
+		BlockingTask second = new BlockingTask("second");
+		second.release.countDown();
+		assertEquals("second", coordinator.execute("plugin", second, null));
+		assertEquals(1, second.runs.get());
+	}
+
+	@Test
+	public void testCancelledWaiterDoesNotCancelOthers() throws Exception{
+		DownloadCoordinator<String> coordinator = new DownloadCoordinator<String>();
+		BlockingTask task = new BlockingTask("engine");
+		DownloadCoordinator<String>.Request first = coordinator.submit("engine", task);
+		DownloadCoordinator<String>.Request second = coordinator.submit("engine", task);
+		assertTrue(task.started.await(5, TimeUnit.SECONDS));
+		NullProgressMonitor cancelled = new NullProgressMonitor();
+		cancelled.setCanceled(true);
+		try{
+			first.get(cancelled);
+			fail("cancelled waiter must stop waiting");
+		}catch(CoreException e){
+			assertEquals(IStatus.CANCEL, e.getStatus().getSeverity());
+		}
+		assertFalse(task.cancelled);
+		task.release.countDown();
+		assertEquals("engine", second.get(new NullProgressMonitor()));
+		assertFalse(task.cancelled);
+	}
+
+	@Test
+	public void testDownloadIsCancelledWithoutWaiters() throws Exception{
+		DownloadCoordinator<String> coordinator = new DownloadCoordinator<String>();
+		BlockingTask task = new BlockingTask("engine");
+		DownloadCoordinator<String>.Request first = coordinator.submit("engine", task);
+		DownloadCoordinator<String>.Request second = coordinator.submit("engine", task);
+		assertTrue(task.started.await(5, TimeUnit.SECONDS));
+		first.release();
+		second.release();
+		long deadline = System.currentTimeMillis() + 5000;
+		while(coordinator.getInProgressCount() > 0 && System.currentTimeMillis() < deadline){
+			Thread.sleep(20);
+		}
+		assertTrue(task.cancelled);
+		assertEquals(0, coordinator.getInProgressCount());
+		// a new request starts a new download
+		BlockingTask retry = new BlockingTask("retry");
+		retry.release.countDown();
+		assertEquals("retry", coordinator.execute("engine", retry, null));
+	}
+
+	@Test
+	public void testNewRequestWaitsForCancelledDownload() throws Exception{
+		final DownloadCoordinator<String> coordinator = new DownloadCoordinator<String>();
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicBoolean overlapped = new AtomicBoolean();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		final CountDownLatch stop = new CountDownLatch(1);
+		DownloadCoordinator<String>.Request first = coordinator.submit("engine", new DownloadCoordinator.Task<String>() {
+			@Override
+			public String run(IProgressMonitor monitor) throws CoreException {
+				active.incrementAndGet();
+				started.countDown();
+				try {
+					while(!monitor.isCanceled()){
+						Thread.sleep(20);
+					}
+					cancelled.countDown();
+					// keeps writing for a while after the cancellation
+					stop.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}finally{
+					active.decrementAndGet();
+				}
+				throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID, "cancelled"));
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		first.release();
+		assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+		assertEquals(1, coordinator.getInProgressCount());
+
+		final AtomicReference<String> result = new AtomicReference<String>();
+		Thread retry = new Thread(){
+			@Override
+			public void run() {
+				try {
+					result.set(coordinator.execute("engine", new DownloadCoordinator.Task<String>() {
+						@Override
+						public String run(IProgressMonitor monitor) throws CoreException {
+							if(active.get() > 0){
+								overlapped.set(true);
+							}
+							return "retry";
+						}
+					}, null));
+				} catch (CoreException e) {
+					result.set(e.getMessage());
+				}
+			}
+		};
+		retry.start();
+		Thread.sleep(200);
+		assertNull(result.get());
+		stop.countDown();
+		retry.join(5000);
+		assertEquals("retry", result.get());
+		assertFalse(overlapped.get());
+		assertEquals(2, coordinator.getStartCount());
+		assertEquals(0, coordinator.getJoinCount());
+	}
+
+	private static void assertFailed(DownloadCoordinator<String>.Request request){
+		try{
+			request.get(new NullProgressMonitor());
+			fail("failure must be shared");
+		}catch(CoreException e){
+			assertEquals("download failed", e.getStatus().getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.thym.core.internal.util.DownloadService;
+import org.eclipse.thym.core.internal.util.DownloadService.Download;
+import org.eclipse.thym.core.internal.util.SharedHttpClient;
+import org.eclipse.thym.core.plugin.registry.PluginPackageStore;
+import org.eclipse.thym.hybrid.test.LocalHttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("restriction") //test
+public class DownloadServiceTest {
+
+	private static class RecordingMonitor extends NullProgressMonitor {
+		private volatile int worked;
+
+		@Override
+		public void worked(int work) {
+			worked += work;
+		}
+	}
+
+	/**
+	 * Writes slowly, counting the writes and failing after the given
+	 * number of them.
+	 */
+	private static class SlowStream extends OutputStream {
+		private final AtomicInteger writes = new AtomicInteger();
+		private final int failAfter;
+		private volatile boolean writing;
+
+		private SlowStream(int failAfter){
+			this.failAfter = failAfter;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if(writes.incrementAndGet() > failAfter){
+				throw new IOException("Can not extract");
+			}
+			writing = true;
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}finally{
+				writing = false;
+			}
+		}
+	}
+
+	private LocalHttpServer server;
+	private File target;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException{
+		content = new byte[256 * 1024];
+		new Random(7).nextBytes(content);
+		server = new LocalHttpServer();
+		server.setContent("/plugin.tgz", content);
+		target = File.createTempFile("thymDownload", ".tgz");
+	}
+
+	@After
+	public void tearDown(){
+		server.stop();
+		FileUtils.deleteQuietly(target);
+		FileUtils.deleteQuietly(new File(target.getPath() + ".part"));
+		FileUtils.deleteQuietly(new File(target.getPath() + ".part.properties"));
+	}
+
+	@Test
+	public void testDownload() throws Exception{
+		RecordingMonitor monitor = new RecordingMonitor();
+		Download download = newService(10000).download(URI.create(server.getURL("/plugin.tgz")), target);
+		assertEquals(target, download.get(monitor));
+		assertTrue(download.isDone());
+		assertFalse(download.isCancelled());
+		assertEquals(content.length, download.getBytesReceived());
+		assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(target)));
+		assertTrue(monitor.worked > 0 && monitor.worked <= 100);
+	}
+
+	@Test
+	public void testMissingFile() throws CoreException{
+		Download download = newService(10000).download(URI.create(server.getURL("/missing.tgz")), target);
+		try{
+			download.get(new NullProgressMonitor());
+			fail("missing file must fail");
+		}catch(CoreException e){
+			assertEquals(IStatus.ERROR, e.getStatus().getSeverity());
+		}
+	}
+
+	@Test
+	public void testStalledDownloadTimesOut() throws CoreException{
+		server.setStall(20000);
+		long start = System.currentTimeMillis();
+		Download download = newService(500).download(URI.create(server.getURL("/plugin.tgz")), target);
+		try{
+			download.get(new NullProgressMonitor());
+			fail("stalled download must time out");
+		}catch(CoreException e){
+			assertEquals(IStatus.ERROR, e.getStatus().getSeverity());
+		}
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertFalse(download.isCancelled());
+	}
+
+	@Test
+	public void testCancelledByMonitor() throws CoreException{
+		server.setStall(20000);
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		new Thread(){
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(300);
+				} catch (InterruptedException e) {
+					// cancel right away
+				}
+				monitor.setCanceled(true);
+			}
+		}.start();
+		long start = System.currentTimeMillis();
+		Download download = newService(30000).download(URI.create(server.getURL("/plugin.tgz")), target);
+		try{
+			download.get(monitor);
+			fail("cancelled download must fail");
+		}catch(CoreException e){
+			assertEquals(IStatus.CANCEL, e.getStatus().getSeverity());
+		}
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertTrue(download.isCancelled());
+	}
+
+	@Test
+	public void testFuture() throws Exception{
+		server.setStall(20000);
+		Download download = newService(30000).download(URI.create(server.getURL("/plugin.tgz")), target);
+		try{
+			download.get(200, TimeUnit.MILLISECONDS);
+			fail("stalled download must not complete");
+		}catch(TimeoutException e){
+			// expected
+		}
+		assertFalse(download.isDone());
+		assertTrue(download.cancel(true));
+		assertTrue(download.isDone());
+		assertFalse(download.cancel(true));
+	}
+
+	@Test
+	public void testResumeAfterDroppedConnection() throws Exception{
+		server.setTruncate(100000, 2);
+		Download download = newService(10000).download(URI.create(server.getURL("/plugin.tgz")), target);
+		assertEquals(target, download.get(new NullProgressMonitor()));
+		assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(target)));
+		assertEquals(2, server.getPartialContentCount());
+		assertEquals(PluginPackageStore.sha1(target), download.getShasum());
+		assertFalse(new File(target.getPath() + ".part").exists());
+	}
+
+	@Test
+	public void testResumeFromPartialFile() throws Exception{
+		server.setTruncate(100000, 1);
+		DownloadService service = new DownloadService(SharedHttpClient.getClient(), 10000, 1, 50);
+		try{
+			service.download(URI.create(server.getURL("/plugin.tgz")), target).get(new NullProgressMonitor());
+			fail("truncated download must fail without retries");
+		}catch(CoreException e){
+			assertEquals(IStatus.ERROR, e.getStatus().getSeverity());
+		}
+		assertEquals(100000, new File(target.getPath() + ".part").length());
+		Download download = service.download(URI.create(server.getURL("/plugin.tgz")), target);
+		download.get(new NullProgressMonitor());
+		assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(target)));
+		assertEquals(1, server.getPartialContentCount());
+		assertEquals(PluginPackageStore.sha1(target), download.getShasum());
+	}
+
+	@Test
+	public void testChangedContentIsDownloadedAgain() throws Exception{
+		server.setTruncate(100000, 1);
+		DownloadService service = new DownloadService(SharedHttpClient.getClient(), 10000, 1, 50);
+		try{
+			service.download(URI.create(server.getURL("/plugin.tgz")), target).get(new NullProgressMonitor());
+			fail("truncated download must fail without retries");
+		}catch(CoreException e){
+			// expected
+		}
+		byte[] changed = content.clone();
+		changed[0]++;
+		server.setContent("/plugin.tgz", changed);
+		service.download(URI.create(server.getURL("/plugin.tgz")), target).get(new NullProgressMonitor());
+		assertTrue(Arrays.equals(changed, FileUtils.readFileToByteArray(target)));
+		assertEquals(0, server.getPartialContentCount());
+	}
+
+	@Test
+	public void testStreamResumesFromPartialFile() throws Exception{
+		File partial = new File(target.getPath() + ".stream");
+		server.setTruncate(100000, 1);
+		DownloadService service = new DownloadService(SharedHttpClient.getClient(), 10000, 1, 50);
+		try{
+			service.download(URI.create(server.getURL("/plugin.tgz")), new ByteArrayOutputStream(), partial).get(new NullProgressMonitor());
+			fail("truncated download must fail without retries");
+		}catch(CoreException e){
+			// expected
+		}
+		assertEquals(100000, partial.length());
+		server.setTruncate(150000, 1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Download download = newService(10000).download(URI.create(server.getURL("/plugin.tgz")), out, partial);
+		assertNull(download.get(new NullProgressMonitor()));
+		assertTrue(Arrays.equals(content, out.toByteArray()));
+		assertEquals(2, server.getPartialContentCount());
+		assertFalse(partial.exists());
+		FileUtils.writeByteArrayToFile(target, content);
+		assertEquals(PluginPackageStore.sha1(target), download.getShasum());
+	}
+
+	@Test
+	public void testStreamFailureIsNotRetried() throws Exception{
+		File partial = new File(target.getPath() + ".stream");
+		Download download = newService(10000).download(URI.create(server.getURL("/plugin.tgz")), new SlowStream(1), partial);
+		try{
+			download.get(new NullProgressMonitor());
+			fail("stream failure must fail the download");
+		}catch(CoreException e){
+			assertEquals(IStatus.ERROR, e.getStatus().getSeverity());
+		}
+		assertEquals(1, server.getRequestCount());
+		FileUtils.deleteQuietly(partial);
+	}
+
+	@Test
+	public void testCancelWaitsForTheStream() throws Exception{
+		File partial = new File(target.getPath() + ".stream");
+		SlowStream stream = new SlowStream(Integer.MAX_VALUE);
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		Download download = newService(10000).download(URI.create(server.getURL("/plugin.tgz")), stream, partial);
+		long deadline = System.currentTimeMillis() + 5000;
+		while(stream.writes.get() == 0 && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		monitor.setCanceled(true);
+		try{
+			download.get(monitor);
+			fail("cancelled download must fail");
+		}catch(CoreException e){
+			assertEquals(IStatus.CANCEL, e.getStatus().getSeverity());
+		}
+		assertFalse(stream.writing);
+		int writes = stream.writes.get();
+		long length = partial.length();
+		Thread.sleep(200);
+		assertEquals(writes, stream.writes.get());
+		assertEquals(length, partial.length());
+		FileUtils.deleteQuietly(partial);
+	}
+
+	private DownloadService newService(long timeout){
+		return new DownloadService(SharedHttpClient.getClient(), timeout, 3, 50);
+	}
+
+}
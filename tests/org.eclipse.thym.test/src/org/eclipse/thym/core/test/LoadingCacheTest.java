@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.thym.core.internal.util.LoadingCache;
+import org.junit.Test;
+
+@SuppressWarnings("restriction") //test
+public class LoadingCacheTest {
+
+	private static class CountingLoader implements LoadingCache.Loader<String, String> {
+		private final AtomicInteger loads = new AtomicInteger();
+
+		@Override
+		public String load(String key) throws CoreException {
+			loads.incrementAndGet();
+			return key.toUpperCase();
+		}
+	}
+
+	@Test
+	public void testHitAndMiss() throws CoreException{
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(10, 100, 60000, null);
+		CountingLoader loader = new CountingLoader();
+		assertEquals("A", cache.get("a", loader));
+		assertEquals("A", cache.get("a", loader));
+		assertEquals(1, loader.loads.get());
+		LoadingCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(1, stats.getSize());
+	}
+
+	@Test
+	public void testConcurrentRequestsLoadOnce() throws Exception{
+		final LoadingCache<String, String> cache = new LoadingCache<String, String>(10, 100, 60000, null);
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger loads = new AtomicInteger();
+		final LoadingCache.Loader<String, String> loader = new LoadingCache.Loader<String, String>() {
+			@Override
+			public String load(String key) throws CoreException {
+				loads.incrementAndGet();
+				loading.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return key.toUpperCase();
+			}
+		};
+		final String[] results = new String[4];
+		Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(){
+				@Override
+				public void run() {
+					try {
+						results[index] = cache.get("plugin", loader);
+					} catch (CoreException e) {
+						// result is checked
+					}
+				}
+			};
+			threads[i].start();
+		}
+		assertTrue(loading.await(10, TimeUnit.SECONDS));
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+		assertEquals(1, loads.get());
+		for (String result : results) {
+			assertEquals("PLUGIN", result);
+		}
+		assertEquals(1, cache.getStats().getMissCount());
+	}
+
+	@Test
+	public void testFailureIsNotCached() throws CoreException{
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(10, 100, 60000, null);
+		try{
+			cache.get("a", new LoadingCache.Loader<String, String>() {
+				@Override
+				public String load(String key) throws CoreException {
+					throw new CoreException(new Status(IStatus.ERROR, "test", "registry is down"));
+				}
+			});
+			fail("load failure expected");
+		}catch(CoreException e){
+			assertEquals("registry is down", e.getStatus().getMessage());
+		}
+		assertEquals("A", cache.get("a", new CountingLoader()));
+		assertEquals(1, cache.getStats().getLoadFailureCount());
+	}
+
+	@Test
+	public void testSizeAndWeightEviction() throws CoreException{
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(2, 100, 60000, null);
+		CountingLoader loader = new CountingLoader();
+		cache.get("a", loader);
+		cache.get("b", loader);
+		cache.get("a", loader);
+		cache.get("c", loader);
+		assertNull(cache.getIfPresent("b"));
+		assertNotNull(cache.getIfPresent("a"));
+		assertEquals(1, cache.getStats().getEvictionCount());
+
+		LoadingCache<String, String> weighted = new LoadingCache<String, String>(100, 10, 60000,
+				new LoadingCache.Weigher<String>() {
+					@Override
+					public int weigh(String value) {
+						return value.length();
+					}
+				});
+		weighted.get("abcd", loader);
+		weighted.get("efgh", loader);
+		weighted.get("ijkl", loader);
+		assertEquals(8, weighted.getStats().getWeight());
+		assertNull(weighted.getIfPresent("abcd"));
+	}
+
+	@Test
+	public void testPutReplacesValue() throws CoreException{
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(10, 100, 60000, null);
+		CountingLoader loader = new CountingLoader();
+		cache.get("a", loader);
+		cache.put("a", "complete");
+		assertEquals("complete", cache.get("a", loader));
+		assertEquals(1, loader.loads.get());
+		assertEquals(1, cache.getStats().getSize());
+	}
+
+	@Test
+	public void testExpiration() throws Exception{
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(10, 100, 50, null);
+		CountingLoader loader = new CountingLoader();
+		cache.get("a", loader);
+		Thread.sleep(100);
+		assertNull(cache.getIfPresent("a"));
+		cache.get("a", loader);
+		assertEquals(2, loader.loads.get());
+		assertEquals(1, cache.getStats().getExpirationCount());
+	}
+
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.thym.core.plugin.registry.CordovaPluginRegistryManager;
+import org.eclipse.thym.core.plugin.registry.CordovaRegistryPlugin;
+import org.eclipse.thym.core.plugin.registry.CordovaRegistryPluginInfo;
+import org.eclipse.thym.core.plugin.registry.FileRegistrySource;
+import org.eclipse.thym.core.plugin.registry.PluginSearchIndex;
+import org.eclipse.thym.core.plugin.registry.RegistryMirror;
+import org.eclipse.thym.hybrid.test.LocalHttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RegistryMirrorTest {
+
+	private File registryDir;
+	private File mirrorDir;
+
+	@Before
+	public void setUp() throws IOException{
+		File root = new File(FileUtils.getTempDirectory(), "thymRegistry" + System.nanoTime());
+		registryDir = new File(root, "registry");
+		mirrorDir = new File(root, "mirror");
+		writeCatalog(new String[][]{
+				{"cordova-plugin-camera", "Cordova Camera Plugin"},
+				{"cordova-plugin-device", "Cordova Device Plugin"},
+				{"cordova-plugin-geolocation", "Cordova Geolocation Plugin"}});
+		writePlugin("cordova-plugin-device", "1.1.1");
+	}
+
+	@After
+	public void tearDown(){
+		FileUtils.deleteQuietly(registryDir.getParentFile());
+	}
+
+	@Test
+	public void testSynchronizeCatalog() throws CoreException{
+		RegistryMirror mirror = newMirror();
+		assertFalse(mirror.hasCatalog());
+		assertTrue(mirror.synchronizeCatalog());
+		List<CordovaRegistryPluginInfo> plugins = mirror.getStoredPluginInfos();
+		assertEquals(3, plugins.size());
+		assertEquals("cordova-plugin-camera", plugins.get(0).getName());
+		assertEquals("Cordova Camera Plugin", plugins.get(0).getDescription());
+		assertFalse(mirror.synchronizeCatalog());
+	}
+
+	@Test
+	public void testSynchronizeChangedCatalog() throws Exception{
+		RegistryMirror mirror = newMirror();
+		mirror.synchronizeCatalog();
+		File catalog = new File(registryDir, FileRegistrySource.CATALOG_FILE);
+		long modified = catalog.lastModified();
+		writeCatalog(new String[][]{{"cordova-plugin-file", "Cordova File Plugin"}});
+		catalog.setLastModified(modified + 2000);
+		assertTrue(mirror.synchronizeCatalog());
+		assertEquals(1, mirror.getStoredPluginInfos().size());
+		assertEquals("cordova-plugin-file", mirror.getStoredPluginInfos().get(0).getName());
+	}
+
+	@Test
+	public void testSearch() throws CoreException{
+		RegistryMirror mirror = newMirror();
+		mirror.synchronizeCatalog();
+		assertEquals(3, mirror.search("cordova").size());
+		assertEquals(3, mirror.search("").size());
+		List<CordovaRegistryPluginInfo> result = mirror.search("geo");
+		assertEquals(1, result.size());
+		assertEquals("cordova-plugin-geolocation", result.get(0).getName());
+		assertEquals(1, mirror.search("Plugin CAMERA").size());
+		assertTrue(mirror.search("camera device").isEmpty());
+		assertTrue(mirror.search("battery").isEmpty());
+	}
+
+	@Test
+	public void testSynchronizePlugin() throws CoreException{
+		RegistryMirror mirror = newMirror();
+		assertNull(mirror.getStoredPlugin("cordova-plugin-device"));
+		assertTrue(mirror.synchronizePlugin("cordova-plugin-device"));
+		assertFalse(mirror.synchronizePlugin("cordova-plugin-device"));
+		CordovaRegistryPlugin plugin = mirror.getStoredPlugin("cordova-plugin-device");
+		assertNotNull(plugin);
+		assertEquals("cordova-plugin-device", plugin.getName());
+		assertEquals(1, plugin.getVersions().size());
+		assertEquals("1.1.1", plugin.getVersions().get(0).getVersionNumber());
+		try{
+			mirror.synchronizePlugin("cordova-plugin-missing");
+			fail("missing plug-in must fail");
+		}catch(CoreException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testStoredMirrorWithoutSource() throws CoreException{
+		RegistryMirror mirror = newMirror();
+		mirror.synchronize(null, true);
+		FileUtils.deleteQuietly(registryDir);
+
+		RegistryMirror reloaded = newMirror();
+		assertTrue(reloaded.hasCatalog());
+		assertEquals(3, reloaded.getPluginInfos(null).size());
+		assertEquals(1, reloaded.search("device").size());
+		assertNotNull(reloaded.getPlugin("cordova-plugin-device"));
+		try{
+			reloaded.getPlugin("cordova-plugin-camera");
+			fail("plug-in that is not mirrored must fail");
+		}catch(CoreException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testStoreRetrievedCatalog() throws IOException{
+		RegistryMirror mirror = newMirror();
+		assertNull(mirror.getCatalogETag());
+		List<CordovaRegistryPluginInfo> plugins = new ArrayList<CordovaRegistryPluginInfo>();
+		CordovaRegistryPluginInfo info = new CordovaRegistryPluginInfo();
+		info.setName("cordova-plugin-file");
+		info.setDescription("Cordova File Plugin");
+		plugins.add(info);
+		mirror.storeCatalog(plugins, "\"1\"");
+		assertEquals(1, mirror.search("file").size());
+
+		RegistryMirror reloaded = newMirror();
+		assertTrue(reloaded.hasCatalog());
+		assertEquals("\"1\"", reloaded.getCatalogETag());
+		assertEquals("cordova-plugin-file", reloaded.getStoredPluginInfos().get(0).getName());
+	}
+
+	@Test
+	public void testCopyRetrievedPlugin() throws IOException{
+		RegistryMirror mirror = newMirror();
+		File document = new File(registryDir, "cordova-plugin-device.json");
+		RegistryMirror.PluginCopy copy = mirror.copyPlugin("cordova-plugin-device", "\"1\"", true, new FileInputStream(document));
+		try{
+			// only the start of the document is read before the commit
+			assertTrue(copy.read(new byte[10], 0, 10) > 0);
+			copy.commit();
+		}finally{
+			copy.close();
+		}
+		CordovaRegistryPlugin plugin = mirror.getStoredPlugin("cordova-plugin-device");
+		assertNotNull(plugin);
+		assertTrue(plugin.isAbbreviated());
+		assertEquals("1.1.1", plugin.getLatestVersion());
+
+		copy = mirror.copyPlugin("cordova-plugin-camera", null, false, new FileInputStream(document));
+		copy.close();
+		assertNull("a copy that is not committed is discarded", mirror.getStoredPlugin("cordova-plugin-camera"));
+	}
+
+	@Test
+	public void testMissingPluginIsNotMirrored() throws Exception{
+		LocalHttpServer server = new LocalHttpServer();
+		server.setNotFoundContent("{\"error\":\"Not found\"}".getBytes("UTF-8"));
+		try{
+			CordovaPluginRegistryManager manager = new CordovaPluginRegistryManager(server.getURL("/"));
+			try{
+				manager.getCordovaPluginInfo("cordova-plugin-missing");
+				fail("missing plug-in must fail");
+			}catch(CoreException e){
+				assertEquals(IStatus.ERROR, e.getStatus().getSeverity());
+			}
+			assertEquals(1, server.getRequestCount());
+			assertNull(RegistryMirror.getDefault().getStoredPlugin("cordova-plugin-missing"));
+		}finally{
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testSearchIndexGrows(){
+		PluginSearchIndex index = new PluginSearchIndex();
+		CordovaRegistryPluginInfo camera = new CordovaRegistryPluginInfo();
+		camera.setName("cordova-plugin-camera");
+		camera.setDescription("Cordova Camera Plugin");
+		index.add(camera);
+		assertTrue(index.search("geo").isEmpty());
+		CordovaRegistryPluginInfo geolocation = new CordovaRegistryPluginInfo();
+		geolocation.setName("cordova-plugin-geolocation");
+		geolocation.setDescription("Cordova Geolocation Plugin");
+		index.add(geolocation);
+		assertEquals(2, index.size());
+		assertSame(geolocation, index.search("geo").get(0));
+		assertEquals(2, index.search("plugin").size());
+	}
+
+	private RegistryMirror newMirror(){
+		return new RegistryMirror(mirrorDir, new FileRegistrySource(registryDir));
+	}
+
+	private void writeCatalog(String[][] plugins) throws IOException{
+		StringBuilder json = new StringBuilder("{\"rows\":[");
+		for (int i = 0; i < plugins.length; i++) {
+			if(i > 0){
+				json.append(',');
+			}
+			json.append("{\"key\":[\"ecosystem:cordova\",\"").append(plugins[i][0]).append("\",\"")
+				.append(plugins[i][1]).append("\"],\"value\":1}");
+		}
+		json.append("]}");
+		FileUtils.writeStringToFile(new File(registryDir, FileRegistrySource.CATALOG_FILE), json.toString(), "UTF-8");
+	}
+
+	private void writePlugin(String name, String version) throws IOException{
+		String json = "{\"name\":\"" + name + "\",\"description\":\"Test plugin\","
+				+ "\"dist-tags\":{\"latest\":\"" + version + "\"},"
+				+ "\"versions\":{\"" + version + "\":{\"name\":\"" + name + "\",\"version\":\"" + version + "\","
+				+ "\"dist\":{\"shasum\":\"0123456789abcdef0123456789abcdef01234567\","
+				+ "\"tarball\":\"http://localhost/" + name + "-" + version + ".tgz\"}}}}";
+		FileUtils.writeStringToFile(new File(registryDir, name + ".json"), json, "UTF-8");
+	}
+
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.cache.CachingHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.thym.core.internal.util.BundleHttpCacheStorage;
+import org.eclipse.thym.core.internal.util.DiskResourceFactory;
+import org.eclipse.thym.core.internal.util.SharedHttpClient;
+import org.eclipse.thym.hybrid.test.LocalHttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("restriction") //test
+public class SharedHttpClientTest {
+
+	private static final String CONTENT = "{\"name\":\"cordova-plugin-device\"}";
+	private LocalHttpServer server;
+	private File cacheDir;
+
+	@Before
+	public void setUp() throws IOException{
+		SharedHttpClient.shutdown();
+		server = new LocalHttpServer();
+		server.setContent("/plugin", CONTENT.getBytes("UTF-8"));
+		cacheDir = new File(FileUtils.getTempDirectory(), "thymHttpClientTest" + System.nanoTime());
+	}
+
+	@After
+	public void tearDown(){
+		server.stop();
+		SharedHttpClient.shutdown();
+		FileUtils.deleteQuietly(cacheDir);
+	}
+
+	@Test
+	public void testConnectionReuse() throws IOException{
+		HttpClient client = SharedHttpClient.getClient();
+		assertSame(client, SharedHttpClient.getClient());
+		for (int i = 0; i < 5; i++) {
+			HttpResponse response = client.execute(new HttpGet(server.getURL("/plugin")));
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertEquals(CONTENT, EntityUtils.toString(response.getEntity(), "UTF-8"));
+		}
+		assertEquals(5, server.getRequestCount());
+		assertEquals(1, server.getConnectionCount());
+		assertEquals(1, SharedHttpClient.getOpenConnectionCount());
+	}
+
+	@Test
+	public void testGzipResponse() throws IOException{
+		server.setGzip(true);
+		HttpResponse response = SharedHttpClient.getClient().execute(new HttpGet(server.getURL("/plugin")));
+		assertNull(response.getFirstHeader("Content-Encoding"));
+		assertEquals(CONTENT, EntityUtils.toString(response.getEntity(), "UTF-8"));
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testLargeResponseRevalidated() throws IOException{
+		byte[] catalog = new byte[3 * DiskResourceFactory.HEAP_THRESHOLD];
+		new Random(7).nextBytes(catalog);
+		server.setContent("/catalog", catalog);
+		CachingHttpClient client = new CachingHttpClient(SharedHttpClient.getClient(),
+				new DiskResourceFactory(new File(cacheDir, "bodies")),
+				new BundleHttpCacheStorage(new File(cacheDir, "entries"), 10 * 1024 * 1024),
+				SharedHttpClient.getCacheConfig());
+
+		HttpResponse response = client.execute(new HttpGet(server.getURL("/catalog")));
+		assertTrue(Arrays.equals(catalog, EntityUtils.toByteArray(response.getEntity())));
+		assertEquals(0, server.getNotModifiedCount());
+
+		response = client.execute(new HttpGet(server.getURL("/catalog")));
+		assertEquals(200, response.getStatusLine().getStatusCode());
+		assertTrue(Arrays.equals(catalog, EntityUtils.toByteArray(response.getEntity())));
+		assertEquals(2, server.getRequestCount());
+		assertEquals(1, server.getNotModifiedCount());
+	}
+
+}
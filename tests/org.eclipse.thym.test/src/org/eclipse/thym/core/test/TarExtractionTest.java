@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.eclipse.thym.core.internal.util.FileUtils.ArchiveOpener;
+import org.eclipse.thym.hybrid.test.TarballBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("restriction") //test
+public class TarExtractionTest {
+
+	private File root;
+
+	@Before
+	public void setUp(){
+		root = new File(FileUtils.getTempDirectory(), "thymUntar" + System.nanoTime());
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown(){
+		FileUtils.deleteQuietly(root);
+	}
+
+	@Test
+	public void testUntarFile() throws Exception{
+		File tarball = new TarballBuilder()
+				.setTime(1400000000L)
+				.addDirectory("package")
+				.addFile("package/plugin.xml", "<plugin/>")
+				.addFile("package/bin/create", "#!/bin/sh".getBytes("UTF-8"), 0755)
+				.write(new File(root, "test.tgz"), true);
+		File out = new File(root, "out");
+		File[] files = org.eclipse.thym.core.internal.util.FileUtils.untarFile(tarball, out);
+		assertEquals(3, files.length);
+		File pluginXml = new File(out, "package/plugin.xml");
+		assertEquals("<plugin/>", FileUtils.readFileToString(pluginXml, "UTF-8"));
+		assertEquals(1400000000000L, pluginXml.lastModified());
+		File create = new File(out, "package/bin/create");
+		assertTrue(create.canExecute());
+		if(Files.getFileStore(out.toPath()).supportsFileAttributeView(PosixFileAttributeView.class)){
+			Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(create.toPath());
+			assertTrue(permissions.contains(PosixFilePermission.OTHERS_EXECUTE));
+			assertFalse(permissions.contains(PosixFilePermission.GROUP_WRITE));
+			assertFalse(Files.getPosixFilePermissions(pluginXml.toPath()).contains(PosixFilePermission.OWNER_EXECUTE));
+		}
+	}
+
+	@Test
+	public void testUncompressedTar() throws Exception{
+		File tarball = new TarballBuilder()
+				.addFile("package/plugin.xml", "<plugin/>")
+				.write(new File(root, "test.tar"), false);
+		File out = new File(root, "out");
+		org.eclipse.thym.core.internal.util.FileUtils.untarFile(tarball, out);
+		assertEquals("<plugin/>", FileUtils.readFileToString(new File(out, "package/plugin.xml"), "UTF-8"));
+	}
+
+	@Test
+	public void testLongNames() throws Exception{
+		StringBuilder name = new StringBuilder("package");
+		while(name.length() < 200){
+			name.append("/directory");
+		}
+		name.append("/file.js");
+		byte[] tar = new TarballBuilder()
+				.addFile(name.toString(), "long")
+				.addFile("package/short.js", "short")
+				.toByteArray(false);
+		File out = new File(root, "out");
+		org.eclipse.thym.core.internal.util.FileUtils.untar(new ByteArrayInputStream(tar), out);
+		assertEquals("long", FileUtils.readFileToString(new File(out, name.toString()), "UTF-8"));
+		assertEquals("short", FileUtils.readFileToString(new File(out, "package/short.js"), "UTF-8"));
+	}
+
+	@Test
+	public void testEntryOutsideOfOutputDirectory() throws Exception{
+		byte[] tar = new TarballBuilder()
+				.addFile("package/../../evil.js", "evil")
+				.toByteArray(false);
+		try{
+			org.eclipse.thym.core.internal.util.FileUtils.untar(new ByteArrayInputStream(tar), new File(root, "out"));
+			fail("entries outside of the output directory must be rejected");
+		}catch(IOException e){
+			// expected
+		}
+		assertFalse(new File(root.getParentFile(), "evil.js").exists());
+	}
+
+	@Test
+	public void testExtractionScalesLinearly() throws Exception{
+		for (int entries : new int[]{1000, 5000}) {
+			File tarball = createArchive(entries);
+			final List<CountingInputStream> opened = new ArrayList<CountingInputStream>();
+			File out = new File(root, "out" + entries);
+			org.eclipse.thym.core.internal.util.FileUtils.untarFile(tarball, out, new ArchiveOpener() {
+				@Override
+				public InputStream open(File archive) throws IOException {
+					CountingInputStream in = new CountingInputStream(new FileInputStream(archive));
+					opened.add(in);
+					return in;
+				}
+			});
+			assertEquals(entries, FileUtils.listFiles(out, null, true).size());
+			// a single pass, the work grows with the archive and not with the entries it holds
+			assertEquals("archive of " + entries + " entries is opened more than once", 1, opened.size());
+			assertTrue("archive of " + entries + " entries is read more than once: " + opened.get(0).getByteCount() + " of " + tarball.length() + " bytes",
+					opened.get(0).getByteCount() <= tarball.length());
+		}
+	}
+
+	private File createArchive(int entries) throws IOException{
+		TarballBuilder builder = new TarballBuilder();
+		byte[] content = new byte[700];
+		for (int i = 0; i < entries; i++) {
+			content[i % content.length] = (byte) i;
+			builder.addFile("package/dir" + (i / 100) + "/file" + i + ".js", content.clone(), 0644);
+		}
+		return builder.write(new File(root, entries + ".tgz"), true);
+	}
+
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import org.eclipse.thym.core.internal.util.TarInputStream;
+import org.eclipse.thym.hybrid.test.TarballBuilder;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Microbenchmark of the memory allocated per entry while reading the tar
+ * headers, the header fields are decoded without allocating. Depends on the
+ * JVM, so it is not part of {@link org.eclipse.thym.hybrid.test.AllHybridTests}
+ * and is run on its own.
+ */
+@SuppressWarnings("restriction") //test
+public class TarInputStreamBenchmark {
+
+	@Test
+	public void testHeaderParsingAllocation() throws Exception{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Method allocatedBytes = getAllocatedBytesMethod(bean);
+		// thread allocation accounting is not supported by every JVM
+		Assume.assumeNotNull(allocatedBytes);
+		int entries = 20000;
+		TarballBuilder builder = new TarballBuilder();
+		for (int i = 0; i < entries; i++) {
+			builder.addFile("package/www/plugin" + i + ".js", new byte[0], 0644);
+		}
+		byte[] tar = builder.toByteArray(false);
+		readHeaders(tar); // warm up
+		long threadId = Thread.currentThread().getId();
+		long before = (Long) allocatedBytes.invoke(bean, threadId);
+		int count = readHeaders(tar);
+		long allocated = (Long) allocatedBytes.invoke(bean, threadId) - before;
+		assertEquals(entries, count);
+		long perEntry = allocated / entries;
+		// the entry and its name, the old decoder allocated more than 1 KB per entry
+		assertTrue("allocated " + perEntry + " bytes per entry", perEntry < 400);
+	}
+
+	private static int readHeaders(byte[] tar) throws Exception{
+		TarInputStream in = new TarInputStream(new ByteArrayInputStream(tar));
+		int count = 0;
+		while(in.getNextEntry() != null){
+			count++;
+		}
+		in.close();
+		return count;
+	}
+
+	private static Method getAllocatedBytesMethod(ThreadMXBean bean){
+		// com.sun.management.ThreadMXBean is not visible to the bundle class loader
+		for (Class<?> type : bean.getClass().getInterfaces()) {
+			try {
+				Method method = type.getMethod("getThreadAllocatedBytes", long.class);
+				Method supported = type.getMethod("isThreadAllocatedMemoryEnabled");
+				if((Boolean) supported.invoke(bean)){
+					return method;
+				}
+			} catch (Exception e) {
+				// not this interface
+			}
+		}
+		return null;
+	}
+
+}
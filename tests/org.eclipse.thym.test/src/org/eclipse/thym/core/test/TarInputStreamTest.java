@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.thym.core.internal.util.TarEntry;
+import org.eclipse.thym.core.internal.util.TarException;
+import org.eclipse.thym.core.internal.util.TarInputStream;
+import org.eclipse.thym.hybrid.test.TarballBuilder;
+import org.junit.Test;
+
+@SuppressWarnings("restriction") //test
+public class TarInputStreamTest {
+
+	private static final String LONG_NAME;
+	static{
+		StringBuilder name = new StringBuilder("package");
+		while(name.length() < 150){
+			name.append("/directory");
+		}
+		LONG_NAME = name.append("/file.js").toString();
+	}
+
+	@Test
+	public void testEntries() throws Exception{
+		byte[] binary = new byte[1000];
+		for (int i = 0; i < binary.length; i++) {
+			binary[i] = (byte) (255 - i % 256);
+		}
+		byte[] tar = new TarballBuilder()
+				.setTime(1400000000L)
+				.addDirectory("package")
+				.addFile("package/bin/create", "#!/bin/sh".getBytes("UTF-8"), 0755)
+				.addFile("package/binary.dat", binary, 0644)
+				.toByteArray(false);
+		TarInputStream in = new TarInputStream(new ByteArrayInputStream(tar));
+
+		TarEntry entry = in.getNextEntry();
+		assertEquals("package/", entry.getName());
+		assertEquals(TarEntry.DIRECTORY, entry.getFileType());
+		assertEquals(-1, in.read());
+
+		entry = in.getNextEntry();
+		assertEquals("package/bin/create", entry.getName());
+		assertEquals(TarEntry.FILE, entry.getFileType());
+		assertEquals(0755, entry.getMode());
+		assertEquals(1400000000L, entry.getTime());
+		assertEquals(9, entry.getSize());
+		// the rest of the entry is skipped
+
+		entry = in.getNextEntry();
+		assertEquals("package/binary.dat", entry.getName());
+		assertEquals(binary.length, entry.getSize());
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		int b;
+		while((b = in.read()) != -1){
+			content.write(b);
+		}
+		assertTrue(Arrays.equals(binary, content.toByteArray()));
+		assertNull(in.getNextEntry());
+		in.close();
+	}
+
+	@Test
+	public void testGnuLongNames() throws Exception{
+		byte[] tar = new TarballBuilder()
+				.addFile(LONG_NAME, "long")
+				.addFile("package/short.js", "short")
+				.toByteArray(false);
+		assertNames(tar);
+	}
+
+	@Test
+	public void testPaxHeaders() throws Exception{
+		byte[] tar = new TarballBuilder()
+				.usePaxHeaders()
+				.addFile(LONG_NAME, "long")
+				.addFile("package/short.js", "short")
+				.toByteArray(false);
+		assertNames(tar);
+	}
+
+	@Test
+	public void testSkipStaysInEntry() throws Exception{
+		byte[] tar = new TarballBuilder()
+				.addFile("package/a.js", "0123456789")
+				.addFile("package/b.js", "b")
+				.toByteArray(false);
+		TarInputStream in = new TarInputStream(new ByteArrayInputStream(tar));
+		in.getNextEntry();
+		assertEquals(4, in.skip(4));
+		assertEquals('4', in.read());
+		assertEquals(5, in.skip(100));
+		assertEquals(-1, in.read());
+		assertEquals("package/b.js", in.getNextEntry().getName());
+		assertEquals('b', in.read());
+		in.close();
+	}
+
+	@Test
+	public void testNotTar() throws IOException{
+		byte[] data = new byte[2048];
+		Arrays.fill(data, (byte) 'a');
+		try{
+			new TarInputStream(new ByteArrayInputStream(data));
+			fail("not a tar archive");
+		}catch(TarException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testTruncatedArchive() throws Exception{
+		byte[] tar = new TarballBuilder()
+				.addFile("package/a.js", new byte[2000], 0644)
+				.toByteArray(false);
+		TarInputStream in = new TarInputStream(new ByteArrayInputStream(Arrays.copyOf(tar, 1024)));
+		byte[] buffer = new byte[4096];
+		try{
+			while(in.read(buffer, 0, buffer.length) != -1){
+				// read to the end
+			}
+			fail("truncated entry must fail");
+		}catch(IOException e){
+			// expected
+		}
+		in.close();
+	}
+
+	private static void assertNames(byte[] tar) throws Exception{
+		TarInputStream in = new TarInputStream(new ByteArrayInputStream(tar));
+		TarEntry entry = in.getNextEntry();
+		assertEquals(LONG_NAME, entry.getName());
+		assertEquals(4, entry.getSize());
+		byte[] content = new byte[10];
+		assertEquals(4, in.read(content, 0, content.length));
+		assertEquals("long", new String(content, 0, 4, "UTF-8"));
+		entry = in.getNextEntry();
+		assertEquals("package/short.js", entry.getName());
+		assertNull(in.getNextEntry());
+		in.close();
+	}
+
+}
@@ -10,24 +10,35 @@
  *******************************************************************************/
 package org.eclipse.thym.core.test;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.http.Header;
 import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
 import org.apache.http.client.cache.Resource;
 import org.apache.http.impl.client.cache.HeapResource;
 import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicStatusLine;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.eclipse.thym.core.internal.util.BundleHttpCacheStorage;
+import org.eclipse.thym.core.internal.util.DiskResourceFactory;
 import org.eclipse.thym.hybrid.test.Activator;
 
 import static org.junit.Assert.*;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -35,10 +46,17 @@ import org.junit.Test;
 public class TestBundleHttpStorage {
 	
 	private BundleHttpCacheStorage cacheStorage;
+	private File cacheDir;
 	
 	@Before
 	public  void setUp(){
 		cacheStorage = new BundleHttpCacheStorage(Activator.getDefault().getBundle());
+		cacheDir = new File(FileUtils.getTempDirectory(), "thymHttpCache" + System.nanoTime());
+	}
+	
+	@After
+	public void tearDown(){
+		FileUtils.deleteQuietly(cacheDir);
 	}
 	
 	@Test
@@ -48,6 +66,7 @@ public class TestBundleHttpStorage {
 		assertNotNull(cacheStorage.getEntry("foo"));
 	}
 
+	@Test
 	public void testCachePutAndRemove() throws IOException{
 		HttpCacheEntry entry = makeHttpCacheEntry();
 		cacheStorage.putEntry("foo", entry);
@@ -56,15 +75,153 @@ public class TestBundleHttpStorage {
 		assertNull(cacheStorage.getEntry("foo"));
 	}
 	
+	@Test
+	public void testEntryRoundTrip() throws IOException{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 1024*1024);
+		Map<String, String> variants = new HashMap<String, String>();
+		variants.put("{Accept-Encoding=gzip}", "variantKey");
+		HttpCacheEntry entry = makeHttpCacheEntry("{\"name\":\"cordova-plugin-device\"}".getBytes("UTF-8"), variants);
+		storage.putEntry("http://registry.npmjs.org/cordova-plugin-device", entry);
+		HttpCacheEntry read = storage.getEntry("http://registry.npmjs.org/cordova-plugin-device");
+		assertNotNull(read);
+		assertEquals(entry.getRequestDate(), read.getRequestDate());
+		assertEquals(entry.getResponseDate(), read.getResponseDate());
+		assertEquals(entry.getStatusLine().toString(), read.getStatusLine().toString());
+		assertEquals(entry.getAllHeaders().length, read.getAllHeaders().length);
+		assertEquals("MockServer/1.0", read.getFirstHeader("Server").getValue());
+		assertEquals(variants, read.getVariantMap());
+		assertEquals("{\"name\":\"cordova-plugin-device\"}", IOUtils.toString(read.getResource().getInputStream(), "UTF-8"));
+		assertEquals(1, storage.getEntryCount());
+	}
+	
+	@Test
+	public void testLargeBodyRoundTrip() throws IOException{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 10*1024*1024);
+		byte[] body = new byte[2 * DiskResourceFactory.HEAP_THRESHOLD];
+		Arrays.fill(body, (byte) 'x');
+		storage.putEntry("catalog", makeHttpCacheEntry(body, new HashMap<String, String>()));
+		HttpCacheEntry read = storage.getEntry("catalog");
+		assertEquals(body.length, read.getResource().length());
+		assertTrue(Arrays.equals(body, IOUtils.toByteArray(read.getResource().getInputStream())));
+	}
+	
+	@Test
+	public void testReplacedLargeBodyIsNotMixed() throws IOException{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 10*1024*1024);
+		byte[] first = new byte[2 * DiskResourceFactory.HEAP_THRESHOLD];
+		Arrays.fill(first, (byte) 'a');
+		byte[] second = new byte[first.length];
+		Arrays.fill(second, (byte) 'b');
+		storage.putEntry("catalog", makeHttpCacheEntry(first, new HashMap<String, String>()));
+		HttpCacheEntry read = storage.getEntry("catalog");
+		InputStream open = read.getResource().getInputStream();
+		try{
+			// replaced by a body of the same length while it is read
+			storage.putEntry("catalog", makeHttpCacheEntry(second, new HashMap<String, String>()));
+			assertTrue(Arrays.equals(first, IOUtils.toByteArray(open)));
+		}finally{
+			open.close();
+		}
+		HttpCacheEntry replaced = storage.getEntry("catalog");
+		assertTrue(Arrays.equals(second, IOUtils.toByteArray(replaced.getResource().getInputStream())));
+		assertEquals(1, storage.getEntryCount());
+		assertEquals(1, cacheDir.list(new SuffixFileFilter(".entry")).length);
+
+		BundleHttpCacheStorage restarted = new BundleHttpCacheStorage(cacheDir, 10*1024*1024);
+		assertTrue(Arrays.equals(second, IOUtils.toByteArray(restarted.getEntry("catalog").getResource().getInputStream())));
+	}
+
+	@Test
+	public void testKeysWithSameHashCode() throws IOException{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 1024*1024);
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		storage.putEntry("Aa", makeHttpCacheEntry("first".getBytes("UTF-8"), new HashMap<String, String>()));
+		storage.putEntry("BB", makeHttpCacheEntry("second".getBytes("UTF-8"), new HashMap<String, String>()));
+		assertEquals("first", IOUtils.toString(storage.getEntry("Aa").getResource().getInputStream(), "UTF-8"));
+		assertEquals("second", IOUtils.toString(storage.getEntry("BB").getResource().getInputStream(), "UTF-8"));
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEviction() throws IOException{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 3000);
+		byte[] body = new byte[800];
+		storage.putEntry("a", makeHttpCacheEntry(body, new HashMap<String, String>()));
+		storage.putEntry("b", makeHttpCacheEntry(body, new HashMap<String, String>()));
+		storage.putEntry("c", makeHttpCacheEntry(body, new HashMap<String, String>()));
+		assertNotNull(storage.getEntry("a"));
+		storage.putEntry("d", makeHttpCacheEntry(body, new HashMap<String, String>()));
+		assertTrue(storage.getSize() <= 3000);
+		assertNull(storage.getEntry("b"));
+		assertNotNull(storage.getEntry("a"));
+		assertNotNull(storage.getEntry("d"));
+	}
+	
+	@Test
+	public void testIndexRebuiltAfterRestart() throws IOException{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 1024*1024);
+		storage.putEntry("a", makeHttpCacheEntry("a".getBytes("UTF-8"), new HashMap<String, String>()));
+		storage.putEntry("b", makeHttpCacheEntry("b".getBytes("UTF-8"), new HashMap<String, String>()));
+		long size = storage.getSize();
+		assertTrue(new File(cacheDir, "index").delete());
+		// a temporary file of an interrupted write
+		FileUtils.writeStringToFile(new File(cacheDir, "partial.tmp"), "partial");
+		
+		BundleHttpCacheStorage restarted = new BundleHttpCacheStorage(cacheDir, 1024*1024);
+		assertEquals(2, restarted.getEntryCount());
+		assertEquals(size, restarted.getSize());
+		assertNotNull(restarted.getEntry("a"));
+		assertFalse(new File(cacheDir, "partial.tmp").exists());
+	}
+	
+	@Test
+	public void testCorruptEntryIsDiscarded() throws IOException{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 1024*1024);
+		storage.putEntry("a", makeHttpCacheEntry("body".getBytes("UTF-8"), new HashMap<String, String>()));
+		File[] entries = cacheDir.listFiles();
+		for (File file : entries) {
+			if(file.getName().endsWith(".entry")){
+				FileUtils.writeStringToFile(file, "garbage");
+			}
+		}
+		assertNull(storage.getEntry("a"));
+		assertEquals(0, storage.getEntryCount());
+		assertEquals(0, storage.getSize());
+	}
+	
+	@Test
+	public void testUpdateEntry() throws Exception{
+		BundleHttpCacheStorage storage = new BundleHttpCacheStorage(cacheDir, 1024*1024);
+		storage.putEntry("a", makeHttpCacheEntry("old".getBytes("UTF-8"), new HashMap<String, String>()));
+		storage.updateEntry("a", new HttpCacheUpdateCallback() {
+			@Override
+			public HttpCacheEntry update(HttpCacheEntry existing) throws IOException {
+				assertNotNull(existing);
+				return makeHttpCacheEntry("new".getBytes("UTF-8"), new HashMap<String, String>());
+			}
+		});
+		assertEquals("new", IOUtils.toString(storage.getEntry("a").getResource().getInputStream(), "UTF-8"));
+		storage.updateEntry("a", new HttpCacheUpdateCallback() {
+			@Override
+			public HttpCacheEntry update(HttpCacheEntry existing) throws IOException {
+				return null;
+			}
+		});
+		assertNull(storage.getEntry("a"));
+	}
+	
 	private HttpCacheEntry makeHttpCacheEntry() {
+		return makeHttpCacheEntry(new byte[0], new HashMap<String, String>());
+	}
+	
+	private HttpCacheEntry makeHttpCacheEntry(byte[] body, Map<String, String> variants) {
 		final Date now = new Date();
 	    final StatusLine statusLine = new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
 	    final Header[] headers = {
 	                new BasicHeader("Date", DateUtils.formatDate(now)),
 	                new BasicHeader("Server", "MockServer/1.0")
 	     };
-	    final Resource resource = new HeapResource(new byte[0]);
-		HttpCacheEntry entry = new HttpCacheEntry(now, now, statusLine, headers, resource);
+	    final Resource resource = new HeapResource(body);
+		HttpCacheEntry entry = new HttpCacheEntry(now, now, statusLine, headers, resource, variants);
 		return entry;
 	}
 	
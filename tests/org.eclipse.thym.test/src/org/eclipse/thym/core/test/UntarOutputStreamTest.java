@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.core.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.thym.core.internal.util.UntarOutputStream;
+import org.eclipse.thym.hybrid.test.TarballBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("restriction") //test
+public class UntarOutputStreamTest {
+
+	private File root;
+
+	@Before
+	public void setUp(){
+		root = new File(FileUtils.getTempDirectory(), "thymUntarStream" + System.nanoTime());
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown(){
+		FileUtils.deleteQuietly(root);
+	}
+
+	@Test
+	public void testExtractWhileWriting() throws Exception{
+		TarballBuilder builder = new TarballBuilder()
+				.addDirectory("package")
+				.addFile("package/plugin.xml", "<plugin/>");
+		for (int i = 0; i < 100; i++) {
+			builder.addFile("package/www/file" + i + ".js", new byte[3000], 0644);
+		}
+		byte[] tgz = builder.toByteArray(true);
+		File out = new File(root, "out");
+		UntarOutputStream stream = new UntarOutputStream(out);
+		// small chunks, more than the queue holds
+		for (int off = 0; off < tgz.length; off += 100) {
+			stream.write(tgz, off, Math.min(100, tgz.length - off));
+		}
+		stream.close();
+		stream.close();
+		assertEquals(102, stream.getFiles().length);
+		assertEquals("<plugin/>", FileUtils.readFileToString(new File(out, "package/plugin.xml"), "UTF-8"));
+		assertEquals(3000, new File(out, "package/www/file99.js").length());
+	}
+
+	@Test
+	public void testUncompressedTar() throws Exception{
+		byte[] tar = new TarballBuilder()
+				.addFile("package/plugin.xml", "<plugin/>")
+				.toByteArray(false);
+		File out = new File(root, "out");
+		UntarOutputStream stream = new UntarOutputStream(out);
+		stream.write(tar);
+		stream.close();
+		assertEquals("<plugin/>", FileUtils.readFileToString(new File(out, "package/plugin.xml"), "UTF-8"));
+	}
+
+	@Test
+	public void testTruncatedArchiveFailsOnClose() throws Exception{
+		byte[] tgz = new TarballBuilder()
+				.addFile("package/www/test.js", new byte[20000], 0644)
+				.toByteArray(true);
+		UntarOutputStream stream = new UntarOutputStream(new File(root, "out"));
+		stream.write(Arrays.copyOf(tgz, tgz.length / 2));
+		try{
+			stream.close();
+			fail("truncated archive must fail");
+		}catch(IOException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testCorruptArchiveFails() throws Exception{
+		byte[] tgz = new TarballBuilder()
+				.addFile("package/www/test.js", "test")
+				.toByteArray(true);
+		// damage the gzip trailer
+		tgz[tgz.length - 5] ^= 0xff;
+		UntarOutputStream stream = new UntarOutputStream(new File(root, "out"));
+		try{
+			stream.write(tgz);
+			stream.close();
+			fail("corrupt archive must fail");
+		}catch(IOException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testAbort() throws Exception{
+		UntarOutputStream stream = new UntarOutputStream(new File(root, "out"));
+		stream.abort();
+		try{
+			stream.write(new byte[10]);
+			fail("aborted stream must not be written");
+		}catch(IOException e){
+			// expected
+		}
+		try{
+			stream.close();
+			fail("aborted extraction must fail on close");
+		}catch(IOException e){
+			// expected
+		}
+	}
+
+}
@@ -14,12 +14,23 @@ import org.eclipse.thym.core.config.WidgetModelTest;
 import org.eclipse.thym.core.internal.cordova.CordovaCLITest;
 import org.eclipse.thym.core.plugin.test.CordovaPluginRegistryTest;
 import org.eclipse.thym.core.plugin.test.PluginInstallationTests;
+import org.eclipse.thym.core.plugin.test.PluginPackageStoreTest;
+import org.eclipse.thym.core.test.BuildStateStoreTest;
+import org.eclipse.thym.core.test.DownloadCoordinatorTest;
+import org.eclipse.thym.core.test.DownloadServiceTest;
 import org.eclipse.thym.core.test.ExternalProcessUtilityTest;
 import org.eclipse.thym.core.test.FileUtilsTest;
 import org.eclipse.thym.core.test.HybridMobileEngineTests;
 import org.eclipse.thym.core.test.HybridProjectConventionsTest;
+import org.eclipse.thym.core.test.LoadingCacheTest;
+import org.eclipse.thym.core.test.RegistryMirrorTest;
+import org.eclipse.thym.core.test.SharedHttpClientTest;
+import org.eclipse.thym.core.test.TarExtractionTest;
+import org.eclipse.thym.core.test.TarInputStreamTest;
+import org.eclipse.thym.core.test.UntarOutputStreamTest;
 import org.eclipse.thym.core.test.TestBundleHttpStorage;
 import org.eclipse.thym.hybrid.test.ios.pbxproject.PBXProjectTest;
+import org.eclipse.thym.ui.wizard.export.NativeBinaryExportOperationTest;
 import org.eclipse.thym.ui.wizard.project.HybridProjectConvertTest;
 import org.eclipse.thym.ui.wizard.project.HybridProjectCreatorTest;
 import org.junit.runner.RunWith;
@@ -30,7 +41,11 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({ FileUtilsTest.class, HybridProjectCreatorTest.class,HybridProjectConvertTest.class, 
 	WidgetModelTest.class, CordovaPluginRegistryTest.class,HybridProjectConventionsTest.class, HybridMobileEngineTests.class,
 	PluginInstallationTests.class,PBXProjectTest.class,IntegrityTest.class,
-	TestBundleHttpStorage.class,PluginXMLHelperTests.class,ExternalProcessUtilityTest.class,CordovaCLITest.class})
+	TestBundleHttpStorage.class,PluginXMLHelperTests.class,ExternalProcessUtilityTest.class,CordovaCLITest.class,
+	BuildStateStoreTest.class,SharedHttpClientTest.class,
+	LoadingCacheTest.class,RegistryMirrorTest.class,PluginPackageStoreTest.class,DownloadServiceTest.class,
+	TarExtractionTest.class,TarInputStreamTest.class,UntarOutputStreamTest.class,DownloadCoordinatorTest.class,
+	NativeBinaryExportOperationTest.class})
 public class AllHybridTests {
 
 }
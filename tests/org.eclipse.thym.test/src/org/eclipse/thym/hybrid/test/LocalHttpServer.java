@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.hybrid.test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.impl.cookie.DateUtils;
+
+/**
+ * Minimal HTTP/1.1 server on the loopback interface for the tests that
+ * need to observe the network behavior of the HTTP clients. Serves GET
+ * requests for the registered contents and keeps the connections alive.
+ * Responses carry an ETag, conditional requests with a matching
+ * <i>If-None-Match</i> are answered with 304. Range requests for the rest of
+ * the content, <i>bytes=N-</i>, are answered with 206 unless an
+ * <i>If-Range</i> does not match.
+ */
+public class LocalHttpServer {
+
+	private final ServerSocket serverSocket;
+	private final Map<String, byte[]> contents = Collections.synchronizedMap(new HashMap<String, byte[]>());
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final AtomicInteger notModifiedCount = new AtomicInteger();
+	private final AtomicInteger rangeCount = new AtomicInteger();
+	private final AtomicInteger truncatedResponses = new AtomicInteger();
+	private volatile int truncateAt;
+	private volatile boolean gzip;
+	private volatile long stall;
+	private volatile byte[] notFoundContent = new byte[0];
+
+	public LocalHttpServer() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread acceptor = new Thread("LocalHttpServer acceptor"){
+			@Override
+			public void run() {
+				acceptConnections();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Serves the content for the path.
+	 * @param path absolute path e.g. <i>/foo</i>
+	 * @param content
+	 */
+	public void setContent(String path, byte[] content){
+		contents.put(path, content);
+	}
+
+	/**
+	 * Serves the content with the 404 responses, e.g. the error document
+	 * of the npm registry.
+	 * @param content
+	 */
+	public void setNotFoundContent(byte[] content){
+		this.notFoundContent = content;
+	}
+
+	/**
+	 * Whether the responses are compressed with gzip if the
+	 * client accepts it.
+	 * @param gzip
+	 */
+	public void setGzip(boolean gzip){
+		this.gzip = gzip;
+	}
+
+	/**
+	 * Makes the server stop sending after the first half of the response
+	 * content for the given time, simulates a stalled server.
+	 * @param stall in milliseconds, 0 to send the responses at once
+	 */
+	public void setStall(long stall){
+		this.stall = stall;
+	}
+
+	/**
+	 * Makes the server close the connection after sending the given number
+	 * of content bytes, simulates a dropped connection.
+	 * @param bytes number of content bytes sent before the connection is closed
+	 * @param responses number of responses to truncate
+	 */
+	public void setTruncate(int bytes, int responses){
+		this.truncateAt = bytes;
+		this.truncatedResponses.set(responses);
+	}
+
+	public String getURL(String path){
+		return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+	}
+
+	/**
+	 * Number of accepted TCP connections.
+	 * @return count
+	 */
+	public int getConnectionCount(){
+		return connectionCount.get();
+	}
+
+	/**
+	 * Number of served requests.
+	 * @return count
+	 */
+	public int getRequestCount(){
+		return requestCount.get();
+	}
+
+	/**
+	 * Number of requests answered with 206 Partial Content.
+	 * @return count
+	 */
+	public int getPartialContentCount(){
+		return rangeCount.get();
+	}
+
+	/**
+	 * Number of requests answered with 304 Not Modified.
+	 * @return count
+	 */
+	public int getNotModifiedCount(){
+		return notModifiedCount.get();
+	}
+
+	public void stop(){
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// ignored
+		}
+	}
+
+	private void acceptConnections(){
+		while(!serverSocket.isClosed()){
+			try {
+				final Socket socket = serverSocket.accept();
+				connectionCount.incrementAndGet();
+				Thread handler = new Thread("LocalHttpServer connection"){
+					@Override
+					public void run() {
+						serve(socket);
+					}
+				};
+				handler.setDaemon(true);
+				handler.start();
+			} catch (IOException e) {
+				// closed
+			}
+		}
+	}
+
+	private void serve(Socket socket){
+		try{
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = socket.getOutputStream();
+			String requestLine;
+			while((requestLine = readLine(in)) != null && !requestLine.isEmpty()){
+				Map<String, String> headers = new HashMap<String, String>();
+				String line;
+				while((line = readLine(in)) != null && !line.isEmpty()){
+					int colon = line.indexOf(':');
+					if(colon > 0){
+						headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH), line.substring(colon+1).trim());
+					}
+				}
+				requestCount.incrementAndGet();
+				String[] parts = requestLine.split(" ");
+				byte[] content = parts.length > 1 ? contents.get(parts[1]) : null;
+				respond(out, content, headers);
+				if("close".equalsIgnoreCase(headers.get("connection"))){
+					break;
+				}
+			}
+		}catch(IOException e){
+			// connection is dropped
+		}finally{
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignored
+			}
+		}
+	}
+
+	private void respond(OutputStream out, byte[] content, Map<String, String> headers) throws IOException{
+		StringBuilder response = new StringBuilder();
+		int start = getRangeStart(content, headers);
+		if(content == null){
+			content = notFoundContent;
+			response.append("HTTP/1.1 404 Not Found\r\n");
+		}else if(start >= content.length){
+			response.append("HTTP/1.1 416 Requested Range Not Satisfiable\r\n");
+			response.append("Content-Range: bytes */").append(content.length).append("\r\n");
+			content = new byte[0];
+		}else if(start > 0){
+			rangeCount.incrementAndGet();
+			response.append("HTTP/1.1 206 Partial Content\r\n");
+			response.append("Date: ").append(DateUtils.formatDate(new Date())).append("\r\n");
+			response.append("ETag: ").append(getETag(content)).append("\r\n");
+			response.append("Content-Range: bytes ").append(start).append('-').append(content.length - 1)
+					.append('/').append(content.length).append("\r\n");
+			content = Arrays.copyOfRange(content, start, content.length);
+		}else if(getETag(content).equals(headers.get("if-none-match"))){
+			notModifiedCount.incrementAndGet();
+			response.append("HTTP/1.1 304 Not Modified\r\n");
+			response.append("Date: ").append(DateUtils.formatDate(new Date())).append("\r\n");
+			response.append("ETag: ").append(getETag(content)).append("\r\n");
+			response.append("\r\n");
+			out.write(response.toString().getBytes("US-ASCII"));
+			out.flush();
+			return;
+		}else{
+			response.append("HTTP/1.1 200 OK\r\n");
+			response.append("Date: ").append(DateUtils.formatDate(new Date())).append("\r\n");
+			response.append("ETag: ").append(getETag(content)).append("\r\n");
+			response.append("Accept-Ranges: bytes\r\n");
+			String acceptEncoding = headers.get("accept-encoding");
+			if(gzip && acceptEncoding != null && acceptEncoding.contains("gzip")){
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+				gzipOut.write(content);
+				gzipOut.close();
+				content = compressed.toByteArray();
+				response.append("Content-Encoding: gzip\r\n");
+			}
+		}
+		response.append("Content-Type: application/json\r\n");
+		response.append("Content-Length: ").append(content.length).append("\r\n");
+		response.append("\r\n");
+		out.write(response.toString().getBytes("US-ASCII"));
+		if(truncatedResponses.get() > 0 && content.length > truncateAt && truncatedResponses.getAndDecrement() > 0){
+			out.write(content, 0, truncateAt);
+			out.flush();
+			throw new IOException("Response is truncated");
+		}
+		if(stall > 0){
+			out.write(content, 0, content.length / 2);
+			out.flush();
+			try {
+				Thread.sleep(stall);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			out.write(content, content.length / 2, content.length - content.length / 2);
+		}else{
+			out.write(content);
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return first byte of the requested range, -1 if the whole content is to be sent
+	 */
+	private static int getRangeStart(byte[] content, Map<String, String> headers){
+		String range = headers.get("range");
+		if(content == null || range == null || !range.matches("bytes=\\d+-")){
+			return -1;
+		}
+		String ifRange = headers.get("if-range");
+		if(ifRange != null && !ifRange.equals(getETag(content))){
+			return -1;
+		}
+		return Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+	}
+
+	private static String getETag(byte[] content){
+		return "\"" + Integer.toHexString(Arrays.hashCode(content)) + "-" + content.length + "\"";
+	}
+
+	private static String readLine(InputStream in) throws IOException{
+		StringBuilder line = new StringBuilder();
+		int c;
+		while((c = in.read()) != -1){
+			if(c == '\n'){
+				int length = line.length();
+				if(length > 0 && line.charAt(length-1) == '\r'){
+					line.setLength(length-1);
+				}
+				return line.toString();
+			}
+			line.append((char) c);
+		}
+		return line.length() == 0 ? null : line.toString();
+	}
+
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.hybrid.test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes tar archives for tests, in ustar format with GNU long names or
+ * pax extended headers for the names that do not fit the header.
+ */
+public class TarballBuilder {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class Entry {
+		private final String name;
+		private final byte[] content;
+		private final int mode;
+		private final char type;
+
+		private Entry(String name, byte[] content, int mode, char type){
+			this.name = name;
+			this.content = content;
+			this.mode = mode;
+			this.type = type;
+		}
+	}
+
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private long time = System.currentTimeMillis() / 1000;
+	private boolean pax;
+
+	public TarballBuilder addFile(String name, String content){
+		return addFile(name, content.getBytes(UTF8), 0644);
+	}
+
+	public TarballBuilder addFile(String name, byte[] content, int mode){
+		entries.add(new Entry(name, content, mode, '0'));
+		return this;
+	}
+
+	public TarballBuilder addDirectory(String name){
+		entries.add(new Entry(name.endsWith("/") ? name : name + "/", new byte[0], 0755, '5'));
+		return this;
+	}
+
+	/**
+	 * @param time modification time of the entries in seconds
+	 */
+	public TarballBuilder setTime(long time){
+		this.time = time;
+		return this;
+	}
+
+	/**
+	 * Writes the long names to pax extended headers, as npm does, instead
+	 * of the GNU long name entries.
+	 */
+	public TarballBuilder usePaxHeaders(){
+		this.pax = true;
+		return this;
+	}
+
+	public File write(File file, boolean gzip) throws IOException{
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try{
+			write(out, gzip);
+		}finally{
+			out.close();
+		}
+		return file;
+	}
+
+	public byte[] toByteArray(boolean gzip) throws IOException{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(out, gzip);
+		return out.toByteArray();
+	}
+
+	private void write(OutputStream stream, boolean gzip) throws IOException{
+		OutputStream out = gzip ? new GZIPOutputStream(stream) : stream;
+		for (Entry entry : entries) {
+			byte[] name = entry.name.getBytes(UTF8);
+			if(name.length > 100 && pax){
+				writeEntry(out, "PaxHeader".getBytes(UTF8), paxRecord("path", entry.name), 0644, 'x');
+				byte[] truncated = new byte[100];
+				System.arraycopy(name, 0, truncated, 0, 100);
+				name = truncated;
+			}else if(name.length > 100){
+				byte[] longName = new byte[name.length + 1];
+				System.arraycopy(name, 0, longName, 0, name.length);
+				writeEntry(out, "././@LongLink".getBytes(UTF8), longName, 0644, 'L');
+				byte[] truncated = new byte[100];
+				System.arraycopy(name, 0, truncated, 0, 100);
+				name = truncated;
+			}
+			writeEntry(out, name, entry.content, entry.mode, entry.type);
+		}
+		out.write(new byte[1024]);
+		if(gzip){
+			((GZIPOutputStream) out).finish();
+		}
+		out.flush();
+	}
+
+	private void writeEntry(OutputStream out, byte[] name, byte[] content, int mode, char type) throws IOException{
+		byte[] header = new byte[512];
+		System.arraycopy(name, 0, header, 0, name.length);
+		octal(header, 100, 8, mode);
+		octal(header, 108, 8, 0);
+		octal(header, 116, 8, 0);
+		octal(header, 124, 12, content.length);
+		octal(header, 136, 12, time);
+		header[156] = (byte) type;
+		System.arraycopy("ustar\0".getBytes(UTF8), 0, header, 257, 6);
+		header[263] = '0';
+		header[264] = '0';
+		for (int i = 148; i < 156; i++) {
+			header[i] = ' ';
+		}
+		long checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xff;
+		}
+		octal(header, 148, 7, checksum);
+		out.write(header);
+		out.write(content);
+		int padding = (512 - content.length % 512) % 512;
+		out.write(new byte[padding]);
+	}
+
+	/**
+	 * A pax record is <i>"length key=value\n"</i> where the length counts
+	 * its own digits.
+	 */
+	private static byte[] paxRecord(String key, String value){
+		int length = key.getBytes(UTF8).length + value.getBytes(UTF8).length + 3;
+		int digits = Integer.toString(length).length();
+		if(Integer.toString(length + digits).length() > digits){
+			digits++;
+		}
+		return ((length + digits) + " " + key + "=" + value + "\n").getBytes(UTF8);
+	}
+
+	private static void octal(byte[] header, int offset, int length, long value){
+		String digits = Long.toOctalString(value);
+		int pad = length - 1 - digits.length();
+		for (int i = 0; i < pad; i++) {
+			header[offset + i] = '0';
+		}
+		for (int i = 0; i < digits.length(); i++) {
+			header[offset + pad + i] = (byte) digits.charAt(i);
+		}
+		header[offset + length - 1] = 0;
+	}
+
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * 	Contributors:
+ * 		 Red Hat Inc. - initial API and implementation and/or initial documentation
+ *******************************************************************************/
+package org.eclipse.thym.ui.wizard.export;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.thym.core.platform.AbstractNativeBinaryBuildDelegate;
+import org.eclipse.thym.ui.HybridUI;
+import org.eclipse.ui.dialogs.IOverwriteQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativeBinaryExportOperationTest {
+
+	/**
+	 * Waits for the first two builds to run at the same time, then
+	 * produces an artifact or fails.
+	 */
+	private static class ConcurrentBuildDelegate extends AbstractNativeBinaryBuildDelegate {
+		private final String name;
+		private final File outputDir;
+		private final CountDownLatch concurrent;
+		private final boolean fail;
+		private boolean wasConcurrent;
+
+		private ConcurrentBuildDelegate(String name, File outputDir, CountDownLatch concurrent, boolean fail){
+			this.name = name;
+			this.outputDir = outputDir;
+			this.concurrent = concurrent;
+			this.fail = fail;
+		}
+
+		@Override
+		public void buildNow(IProgressMonitor monitor) throws CoreException {
+			monitor.beginTask(name, 10);
+			concurrent.countDown();
+			try {
+				wasConcurrent = concurrent.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if(fail){
+				throw new CoreException(new Status(IStatus.ERROR, HybridUI.PLUGIN_ID, name + " failed"));
+			}
+			File artifact = new File(outputDir, name + ".apk");
+			try {
+				FileUtils.writeStringToFile(artifact, name);
+			} catch (IOException e) {
+				throw new CoreException(new Status(IStatus.ERROR, HybridUI.PLUGIN_ID, "Can not write artifact", e));
+			}
+			setBuildArtifact(artifact);
+			monitor.worked(10);
+			monitor.done();
+		}
+	}
+
+	private static final IOverwriteQuery OVERWRITE_ALL = new IOverwriteQuery() {
+		@Override
+		public String queryOverwrite(String pathString) {
+			return ALL;
+		}
+	};
+
+	private File outputDir;
+	private File destinationDir;
+
+	@Before
+	public void setUp() throws IOException{
+		outputDir = Files.createTempDirectory("build").toFile();
+		destinationDir = Files.createTempDirectory("export").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException{
+		FileUtils.deleteDirectory(outputDir);
+		FileUtils.deleteDirectory(destinationDir);
+	}
+
+	@Test
+	public void testPlatformsAreExportedInParallel() throws Exception{
+		CountDownLatch concurrent = new CountDownLatch(2);
+		List<AbstractNativeBinaryBuildDelegate> delegates = new ArrayList<AbstractNativeBinaryBuildDelegate>();
+		ConcurrentBuildDelegate android = new ConcurrentBuildDelegate("android", outputDir, concurrent, false);
+		ConcurrentBuildDelegate ios = new ConcurrentBuildDelegate("ios", outputDir, concurrent, false);
+		ConcurrentBuildDelegate windows = new ConcurrentBuildDelegate("windows", outputDir, concurrent, false);
+		delegates.add(android);
+		delegates.add(ios);
+		delegates.add(windows);
+		new NativeBinaryExportOperation(delegates, destinationDir, OVERWRITE_ALL, 2).run(new NullProgressMonitor());
+
+		assertTrue(android.wasConcurrent);
+		assertTrue(ios.wasConcurrent);
+		for (AbstractNativeBinaryBuildDelegate delegate : delegates) {
+			assertTrue(delegate.isRelease());
+			assertTrue(new File(destinationDir, delegate.getBuildArtifact().getName()).isFile());
+		}
+	}
+
+	@Test
+	public void testFailureDoesNotStopOtherPlatforms() throws Exception{
+		CountDownLatch concurrent = new CountDownLatch(2);
+		List<AbstractNativeBinaryBuildDelegate> delegates = new ArrayList<AbstractNativeBinaryBuildDelegate>();
+		delegates.add(new ConcurrentBuildDelegate("android", outputDir, concurrent, true));
+		delegates.add(new ConcurrentBuildDelegate("ios", outputDir, concurrent, false));
+		try{
+			new NativeBinaryExportOperation(delegates, destinationDir, OVERWRITE_ALL, 2).run(new NullProgressMonitor());
+			fail("failed platform must be reported");
+		}catch(InvocationTargetException e){
+			assertTrue(e.getCause() instanceof CoreException);
+			assertEquals("android failed", ((CoreException) e.getCause()).getStatus().getMessage());
+		}
+		assertTrue(new File(destinationDir, "ios.apk").isFile());
+		assertFalse(new File(destinationDir, "android.apk").exists());
+	}
+
+}